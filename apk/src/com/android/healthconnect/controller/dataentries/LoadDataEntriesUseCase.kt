@@ -54,7 +54,7 @@ constructor(
     override suspend fun execute(input: LoadDataEntriesInput): List<FormattedEntry> {
         val timeFilterRange = getTimeFilter(input.selectedDate)
         val dataTypes = getDataTypes(input.permissionType)
-        return dataTypes.map { dataType -> readDataType(dataType, timeFilterRange) }.flatten()
+        return readDataTypes(dataTypes, timeFilterRange)
     }
 
     private fun getTimeFilter(selectedDate: Instant): TimeInstantRangeFilter {
@@ -68,20 +68,35 @@ constructor(
         return TimeInstantRangeFilter.Builder().setStartTime(start).setEndTime(end).build()
     }
 
-    private suspend fun readDataType(
-        data: Class<out Record>,
+    private suspend fun readDataTypes(
+        dataTypes: List<Class<out Record>>,
         timeFilterRange: TimeInstantRangeFilter
     ): List<FormattedEntry> {
-        val filter =
-            ReadRecordsRequestUsingFilters.Builder(data).setTimeRangeFilter(timeFilterRange).build()
-        val records =
-            suspendCancellableCoroutine<ReadRecordsResponse<*>> { continuation ->
-                    healthConnectManager.readRecords(
-                        filter, Runnable::run, continuation.asOutcomeReceiver())
-                }
-                .records
-                .sortedByDescending { record -> getStartTime(record) }
-        return records.mapNotNull { record -> getFormatterRecord(record) }
+        if (dataTypes.isEmpty()) {
+            return emptyList()
+        }
+        val filters =
+            dataTypes.map { data ->
+                ReadRecordsRequestUsingFilters.Builder(data)
+                    .setTimeRangeFilter(timeFilterRange)
+                    .build()
+            }
+        // All the data types are read with a single call to the service.
+        val responses =
+            suspendCancellableCoroutine<Map<Class<out Record>, ReadRecordsResponse<*>>> {
+                continuation ->
+                healthConnectManager.readRecordsForTypes(
+                    filters, Runnable::run, continuation.asOutcomeReceiver())
+            }
+        return dataTypes
+            .map { dataType ->
+                responses[dataType]
+                    ?.records
+                    .orEmpty()
+                    .sortedByDescending { record -> getStartTime(record) }
+                    .mapNotNull { record -> getFormatterRecord(record) }
+            }
+            .flatten()
     }
 
     private suspend fun getFormatterRecord(record: Record): FormattedEntry? {
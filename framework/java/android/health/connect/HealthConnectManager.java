@@ -54,16 +54,21 @@ import android.health.connect.aidl.IApplicationInfoResponseCallback;
 import android.health.connect.aidl.IChangeLogsResponseCallback;
 import android.health.connect.aidl.IDataStagingFinishedCallback;
 import android.health.connect.aidl.IEmptyResponseCallback;
+import android.health.connect.aidl.IExportRecordsCallback;
 import android.health.connect.aidl.IGetChangeLogTokenCallback;
 import android.health.connect.aidl.IGetHealthConnectDataStateCallback;
 import android.health.connect.aidl.IGetHealthConnectMigrationUiStateCallback;
 import android.health.connect.aidl.IGetPriorityResponseCallback;
 import android.health.connect.aidl.IHealthConnectService;
+import android.health.connect.aidl.IImportRecordsCallback;
 import android.health.connect.aidl.IInsertRecordsResponseCallback;
 import android.health.connect.aidl.IMigrationCallback;
+import android.health.connect.aidl.IReadRecordsForTypesResponseCallback;
 import android.health.connect.aidl.IReadRecordsResponseCallback;
 import android.health.connect.aidl.IRecordTypeInfoResponseCallback;
 import android.health.connect.aidl.InsertRecordsResponseParcel;
+import android.health.connect.aidl.ReadRecordsForTypesRequestParcel;
+import android.health.connect.aidl.ReadRecordsForTypesResponseParcel;
 import android.health.connect.aidl.ReadRecordsResponseParcel;
 import android.health.connect.aidl.RecordIdFiltersParcel;
 import android.health.connect.aidl.RecordTypeInfoResponseParcel;
@@ -78,6 +83,7 @@ import android.health.connect.datatypes.DataOrigin;
 import android.health.connect.datatypes.Record;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.InternalExternalRecordConverter;
+import android.health.connect.internal.datatypes.utils.RecordMapper;
 import android.health.connect.migration.HealthConnectMigrationUiState;
 import android.health.connect.migration.MigrationEntity;
 import android.health.connect.migration.MigrationEntityParcel;
@@ -88,6 +94,7 @@ import android.os.Binder;
 import android.os.OutcomeReceiver;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import java.lang.annotation.Retention;
@@ -105,6 +112,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -1101,6 +1109,11 @@ public class HealthConnectManager {
         Objects.requireNonNull(request);
         Objects.requireNonNull(executor);
         Objects.requireNonNull(callback);
+        if (request instanceof ReadRecordsRequestUsingFilters
+                && ((ReadRecordsRequestUsingFilters<?>) request).getProjection() != 0) {
+            throw new IllegalArgumentException(
+                    "Requests with a projection must be read with readRecordColumns");
+        }
         try {
             mService.readRecords(
                     mContext.getAttributionSource(),
@@ -1111,6 +1124,253 @@ public class HealthConnectManager {
         }
     }
 
+    /**
+     * API to read records of several record types with one call, e.g. all the record types shown
+     * for a day. The records of each type are read as with {@link #readRecords}, from the same
+     * snapshot of the database.
+     *
+     * <p>All the requests must have the same time range filter and page size, and each request
+     * must be for a different record type. The page token of each request is used to read the
+     * next page of its record type.
+     *
+     * @param requests Read request of each record type.
+     * @param executor Executor on which to invoke the callback.
+     * @param callback Callback to receive the response of each record type.
+     * @throws IllegalArgumentException if {@code requests} is empty, has several requests for the
+     *     same record type, or if the requests don't share the same time filter and page size.
+     * @throws SecurityException if app without read or write permission of one of the record types
+     *     tries to read.
+     * @hide
+     */
+    @SystemApi
+    public void readRecordsForTypes(
+            @NonNull List<ReadRecordsRequestUsingFilters<? extends Record>> requests,
+            @NonNull @CallbackExecutor Executor executor,
+            @NonNull
+                    OutcomeReceiver<
+                                    Map<Class<? extends Record>, ReadRecordsResponse<?>>,
+                                    HealthConnectException>
+                            callback) {
+        Objects.requireNonNull(requests);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(callback);
+        try {
+            mService.readRecordsForTypes(
+                    mContext.getAttributionSource(),
+                    new ReadRecordsForTypesRequestParcel(requests),
+                    new IReadRecordsForTypesResponseCallback.Stub() {
+                        @Override
+                        public void onResult(ReadRecordsForTypesResponseParcel parcel) {
+                            Binder.clearCallingIdentity();
+                            Map<Class<? extends Record>, ReadRecordsResponse<?>> responses =
+                                    new ArrayMap<>(requests.size());
+                            for (int i = 0; i < requests.size(); i++) {
+                                ReadRecordsResponseParcel response = parcel.getResponses().get(i);
+                                List<Record> externalRecords =
+                                        mInternalExternalRecordConverter.getLazyExternalRecords(
+                                                response.getRecordsParcel().getRecords());
+                                responses.put(
+                                        requests.get(i).getRecordType(),
+                                        new ReadRecordsResponse<>(
+                                                externalRecords, response.getPageToken()));
+                            }
+                            executor.execute(() -> callback.onResult(responses));
+                        }
+
+                        @Override
+                        public void onError(HealthConnectExceptionParcel exception) {
+                            returnError(executor, exception, callback);
+                        }
+                    });
+        } catch (RemoteException remoteException) {
+            remoteException.rethrowFromSystemServer();
+        }
+    }
+
+    /**
+     * API to read the columns of the {@link ReadRecordsRequestUsingFilters#getProjection()
+     * projection} of {@code request}, e.g. the start times and values of the records to draw a
+     * chart. The records are read as with {@link #readRecords}, with the same permissions, but
+     * are returned as one array per column instead of {@link Record} objects.
+     *
+     * @param request Read request with a projection.
+     * @param executor Executor on which to invoke the callback.
+     * @param callback Callback to receive the columns of the records.
+     * @throws IllegalArgumentException if {@code request} has no projection.
+     * @throws SecurityException if app without read or write permission tries to read.
+     * @hide
+     */
+    @SystemApi
+    public void readRecordColumns(
+            @NonNull ReadRecordsRequestUsingFilters<? extends Record> request,
+            @NonNull @CallbackExecutor Executor executor,
+            @NonNull OutcomeReceiver<ReadRecordColumnsResponse, HealthConnectException> callback) {
+        Objects.requireNonNull(request);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(callback);
+        if (request.getProjection() == 0) {
+            throw new IllegalArgumentException("Request has no projection");
+        }
+        try {
+            mService.readRecords(
+                    mContext.getAttributionSource(),
+                    request.toReadRecordsRequestParcel(),
+                    new IReadRecordsResponseCallback.Stub() {
+                        @Override
+                        public void onResult(ReadRecordsResponseParcel parcel) {
+                            Binder.clearCallingIdentity();
+                            ReadRecordColumnsResponse response =
+                                    new ReadRecordColumnsResponse(
+                                            parcel.getRecordColumnsParcel(),
+                                            parcel.getPageToken());
+                            executor.execute(() -> callback.onResult(response));
+                        }
+
+                        @Override
+                        public void onError(HealthConnectExceptionParcel exception) {
+                            returnError(executor, exception, callback);
+                        }
+                    });
+        } catch (RemoteException remoteException) {
+            remoteException.rethrowFromSystemServer();
+        }
+    }
+
+    /**
+     * Writes all the records of {@code recordTypes} to {@code destination}, reading them from a
+     * single snapshot of the HealthConnect database.
+     *
+     * <p>The records are streamed page by page, so that millions of records can be exported in
+     * one call without holding them in memory. Each record is written in a length-prefixed binary
+     * format read by {@link #importRecords}; the stream is complete only once {@code callback}
+     * receives the result.
+     *
+     * @param recordTypes record types to export, all the record types are exported if empty.
+     * @param destination file descriptor to write the records to, it is not closed by this API.
+     * @param executor Executor on which to invoke the callbacks.
+     * @param progressListener optional listener periodically receiving the number of records
+     *     written so far.
+     * @param callback Callback to receive the total number of records written.
+     * @hide
+     */
+    @SystemApi
+    @RequiresPermission(MANAGE_HEALTH_DATA_PERMISSION)
+    public void exportRecords(
+            @NonNull List<Class<? extends Record>> recordTypes,
+            @NonNull ParcelFileDescriptor destination,
+            @NonNull @CallbackExecutor Executor executor,
+            @Nullable Consumer<Long> progressListener,
+            @NonNull OutcomeReceiver<Long, HealthConnectException> callback) {
+        Objects.requireNonNull(recordTypes);
+        Objects.requireNonNull(destination);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(callback);
+        RecordMapper recordMapper = RecordMapper.getInstance();
+        int[] recordTypeIds = new int[recordTypes.size()];
+        for (int i = 0; i < recordTypeIds.length; i++) {
+            recordTypeIds[i] = recordMapper.getRecordType(recordTypes.get(i));
+        }
+        try {
+            mService.exportRecords(
+                    mContext.getAttributionSource(),
+                    recordTypeIds,
+                    destination,
+                    new IExportRecordsCallback.Stub() {
+                        @Override
+                        public void onProgress(long numberOfRecords) {
+                            if (progressListener == null) {
+                                return;
+                            }
+                            Binder.clearCallingIdentity();
+                            executor.execute(() -> progressListener.accept(numberOfRecords));
+                        }
+
+                        @Override
+                        public void onResult(long numberOfRecords) {
+                            Binder.clearCallingIdentity();
+                            executor.execute(() -> callback.onResult(numberOfRecords));
+                        }
+
+                        @Override
+                        public void onError(HealthConnectExceptionParcel exception) {
+                            returnError(executor, exception, callback);
+                        }
+                    });
+        } catch (RemoteException e) {
+            throw e.rethrowFromSystemServer();
+        }
+    }
+
+    /**
+     * Inserts the records of a stream written by {@link #exportRecords} into the HealthConnect
+     * database, as if they were inserted by the calling app with {@link #insertRecords}.
+     *
+     * <p>The stream is parsed and validated while the previous records are written, and the
+     * records are committed every {@link ImportRecordsRequest#getCommitInterval} records. Records
+     * failing validation are skipped and reported in the response. Unlike {@link #insertRecords},
+     * records conflicting with an existing record, e.g. with the same client record id, don't
+     * replace it, they are skipped and reported as invalid records. The import is metered by a
+     * bulk import quota of records, instead of the limits of each {@link #insertRecords} call.
+     *
+     * <p>In case of an error, the records committed before the error are kept.
+     *
+     * @param request the import request.
+     * @param executor Executor on which to invoke the callbacks.
+     * @param progressListener optional listener receiving the number of records imported so far
+     *     each time records are committed.
+     * @param callback Callback to receive the result of the import.
+     * @throws SecurityException if the app can't write one of the record types of the stream.
+     * @hide
+     */
+    @SystemApi
+    public void importRecords(
+            @NonNull ImportRecordsRequest request,
+            @NonNull @CallbackExecutor Executor executor,
+            @Nullable Consumer<Long> progressListener,
+            @NonNull OutcomeReceiver<ImportRecordsResponse, HealthConnectException> callback) {
+        Objects.requireNonNull(request);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(callback);
+        try {
+            mService.importRecords(
+                    mContext.getAttributionSource(),
+                    request.getSource(),
+                    request.getCommitInterval(),
+                    request.getMaxErrors(),
+                    new IImportRecordsCallback.Stub() {
+                        @Override
+                        public void onProgress(long numberOfRecords) {
+                            if (progressListener == null) {
+                                return;
+                            }
+                            Binder.clearCallingIdentity();
+                            executor.execute(() -> progressListener.accept(numberOfRecords));
+                        }
+
+                        @Override
+                        public void onResult(
+                                long numberOfRecordsImported,
+                                long numberOfInvalidRecords,
+                                List<String> errors) {
+                            Binder.clearCallingIdentity();
+                            ImportRecordsResponse response =
+                                    new ImportRecordsResponse(
+                                            numberOfRecordsImported,
+                                            numberOfInvalidRecords,
+                                            errors);
+                            executor.execute(() -> callback.onResult(response));
+                        }
+
+                        @Override
+                        public void onError(HealthConnectExceptionParcel exception) {
+                            returnError(executor, exception, callback);
+                        }
+                    });
+        } catch (RemoteException e) {
+            throw e.rethrowFromSystemServer();
+        }
+    }
+
     /**
      * Updates {@code records} into the HealthConnect database. In case of an error or a permission
      * failure the HealthConnect service, {@link OutcomeReceiver#onError} will be invoked with a
@@ -1615,7 +1875,7 @@ public class HealthConnectManager {
                 try {
                     List<T> externalRecords =
                             (List<T>)
-                                    mInternalExternalRecordConverter.getExternalRecords(
+                                    mInternalExternalRecordConverter.getLazyExternalRecords(
                                             parcel.getRecordsParcel().getRecords());
                     executor.execute(
                             () ->
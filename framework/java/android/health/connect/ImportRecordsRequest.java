@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect;
+
+import android.annotation.IntRange;
+import android.annotation.NonNull;
+import android.annotation.SystemApi;
+import android.os.ParcelFileDescriptor;
+
+import java.util.Objects;
+
+/**
+ * A request to import a stream of records written by {@link HealthConnectManager#exportRecords}
+ * with {@link HealthConnectManager#importRecords}.
+ *
+ * @hide
+ */
+@SystemApi
+public final class ImportRecordsRequest {
+    /** Default number of records committed together. */
+    public static final int DEFAULT_COMMIT_INTERVAL = 1000;
+    /** Maximum number of records committed together. */
+    public static final int MAXIMUM_COMMIT_INTERVAL = 5000;
+    /** Default number of invalid records reported in {@link ImportRecordsResponse#getErrors}. */
+    public static final int DEFAULT_MAX_ERRORS = 100;
+    /** Maximum number of invalid records reported in {@link ImportRecordsResponse#getErrors}. */
+    public static final int MAXIMUM_MAX_ERRORS = 1000;
+
+    private final ParcelFileDescriptor mSource;
+    private final int mCommitInterval;
+    private final int mMaxErrors;
+
+    /**
+     * @see Builder
+     */
+    private ImportRecordsRequest(
+            @NonNull ParcelFileDescriptor source, int commitInterval, int maxErrors) {
+        mSource = source;
+        mCommitInterval = commitInterval;
+        mMaxErrors = maxErrors;
+    }
+
+    /** Returns the file descriptor the records are read from. */
+    @NonNull
+    public ParcelFileDescriptor getSource() {
+        return mSource;
+    }
+
+    /** Returns the maximum number of records committed together. */
+    @IntRange(from = 1, to = MAXIMUM_COMMIT_INTERVAL)
+    public int getCommitInterval() {
+        return mCommitInterval;
+    }
+
+    /** Returns the maximum number of invalid records reported in the response. */
+    @IntRange(from = 0, to = MAXIMUM_MAX_ERRORS)
+    public int getMaxErrors() {
+        return mMaxErrors;
+    }
+
+    /** Builder class for {@link ImportRecordsRequest} */
+    public static final class Builder {
+        private final ParcelFileDescriptor mSource;
+        private int mCommitInterval = DEFAULT_COMMIT_INTERVAL;
+        private int mMaxErrors = DEFAULT_MAX_ERRORS;
+
+        /**
+         * @param source file descriptor to read the records from, it is not closed by {@link
+         *     HealthConnectManager#importRecords}.
+         */
+        public Builder(@NonNull ParcelFileDescriptor source) {
+            Objects.requireNonNull(source);
+            mSource = source;
+        }
+
+        /**
+         * Sets the maximum number of records committed together. Records are also committed
+         * before their total size exceeds the size limit of an insert. If not set, {@link
+         * #DEFAULT_COMMIT_INTERVAL} is used.
+         *
+         * <p>Records committed before a failure of the import are kept.
+         *
+         * @throws IllegalArgumentException if {@code commitInterval} is not between 1 and {@link
+         *     #MAXIMUM_COMMIT_INTERVAL}.
+         */
+        @NonNull
+        public Builder setCommitInterval(
+                @IntRange(from = 1, to = MAXIMUM_COMMIT_INTERVAL) int commitInterval) {
+            if (commitInterval < 1 || commitInterval > MAXIMUM_COMMIT_INTERVAL) {
+                throw new IllegalArgumentException(
+                        "Commit interval must be between 1 and " + MAXIMUM_COMMIT_INTERVAL);
+            }
+            mCommitInterval = commitInterval;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of invalid records reported in the response. If not set, {@link
+         * #DEFAULT_MAX_ERRORS} is used.
+         *
+         * @throws IllegalArgumentException if {@code maxErrors} is not between 0 and {@link
+         *     #MAXIMUM_MAX_ERRORS}.
+         */
+        @NonNull
+        public Builder setMaxErrors(@IntRange(from = 0, to = MAXIMUM_MAX_ERRORS) int maxErrors) {
+            if (maxErrors < 0 || maxErrors > MAXIMUM_MAX_ERRORS) {
+                throw new IllegalArgumentException(
+                        "Max errors must be between 0 and " + MAXIMUM_MAX_ERRORS);
+            }
+            mMaxErrors = maxErrors;
+            return this;
+        }
+
+        /** Returns an object of {@link ImportRecordsRequest}. */
+        @NonNull
+        public ImportRecordsRequest build() {
+            return new ImportRecordsRequest(mSource, mCommitInterval, mMaxErrors);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect;
+
+import android.annotation.NonNull;
+import android.annotation.SystemApi;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Response of {@link HealthConnectManager#importRecords}.
+ *
+ * @hide
+ */
+@SystemApi
+public final class ImportRecordsResponse {
+    private final long mNumberOfRecordsImported;
+    private final long mNumberOfInvalidRecords;
+    private final List<String> mErrors;
+
+    /**
+     * @param numberOfRecordsImported number of records written to the database.
+     * @param numberOfInvalidRecords number of records of the stream which failed validation or
+     *     conflicted with an existing record.
+     * @param errors messages of the first invalid records.
+     * @hide
+     */
+    public ImportRecordsResponse(
+            long numberOfRecordsImported,
+            long numberOfInvalidRecords,
+            @NonNull List<String> errors) {
+        Objects.requireNonNull(errors);
+        mNumberOfRecordsImported = numberOfRecordsImported;
+        mNumberOfInvalidRecords = numberOfInvalidRecords;
+        mErrors = errors;
+    }
+
+    /** Returns the number of records written to the database. */
+    public long getNumberOfRecordsImported() {
+        return mNumberOfRecordsImported;
+    }
+
+    /**
+     * Returns the number of records of the stream which failed validation or conflicted with an
+     * existing record, and were skipped.
+     */
+    public long getNumberOfInvalidRecords() {
+        return mNumberOfInvalidRecords;
+    }
+
+    /**
+     * Returns why the first {@link ImportRecordsRequest#getMaxErrors} invalid records failed
+     * validation. Each message starts with the index of the record in the stream.
+     */
+    @NonNull
+    public List<String> getErrors() {
+        return mErrors;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect;
+
+import android.annotation.NonNull;
+import android.annotation.SystemApi;
+import android.health.connect.aidl.RecordColumnsParcel;
+
+/**
+ * Response containing the columns of a page of records for {@link
+ * HealthConnectManager#readRecordColumns}. Each column has one entry per record, in the order of
+ * the request.
+ *
+ * @hide
+ */
+@SystemApi
+public final class ReadRecordColumnsResponse {
+    private static final long[] EMPTY_LONGS = new long[0];
+    private static final double[] EMPTY_DOUBLES = new double[0];
+
+    private final RecordColumnsParcel mColumns;
+    private final long mNextPageToken;
+
+    /**
+     * @param columns columns of the records.
+     * @param nextPageToken the token to read the next page of records.
+     * @hide
+     */
+    public ReadRecordColumnsResponse(@NonNull RecordColumnsParcel columns, long nextPageToken) {
+        mColumns = columns;
+        mNextPageToken = nextPageToken;
+    }
+
+    /** Returns the number of records read. */
+    public int getRecordCount() {
+        return mColumns.size();
+    }
+
+    /**
+     * Returns the start time of each record in milliseconds since the epoch, empty if {@link
+     * ReadRecordsRequestUsingFilters#PROJECTION_START_TIME} is not projected.
+     */
+    @NonNull
+    public long[] getStartTimes() {
+        return mColumns.getStartTimes() == null ? EMPTY_LONGS : mColumns.getStartTimes();
+    }
+
+    /**
+     * Returns the end time of each record in milliseconds since the epoch, empty if {@link
+     * ReadRecordsRequestUsingFilters#PROJECTION_END_TIME} is not projected.
+     */
+    @NonNull
+    public long[] getEndTimes() {
+        return mColumns.getEndTimes() == null ? EMPTY_LONGS : mColumns.getEndTimes();
+    }
+
+    /**
+     * Returns the main value of each record, empty if {@link
+     * ReadRecordsRequestUsingFilters#PROJECTION_VALUE} is not projected.
+     *
+     * <p>Values are in the unit records store them in: the count of {@link
+     * android.health.connect.datatypes.StepsRecord} and {@link
+     * android.health.connect.datatypes.WheelchairPushesRecord}, meters for {@link
+     * android.health.connect.datatypes.DistanceRecord}, {@link
+     * android.health.connect.datatypes.ElevationGainedRecord} and {@link
+     * android.health.connect.datatypes.HeightRecord}, calories for {@link
+     * android.health.connect.datatypes.ActiveCaloriesBurnedRecord} and {@link
+     * android.health.connect.datatypes.TotalCaloriesBurnedRecord}, floors for {@link
+     * android.health.connect.datatypes.FloorsClimbedRecord}, liters for {@link
+     * android.health.connect.datatypes.HydrationRecord}, grams for {@link
+     * android.health.connect.datatypes.WeightRecord}, beats per minute for {@link
+     * android.health.connect.datatypes.RestingHeartRateRecord} and percents for {@link
+     * android.health.connect.datatypes.BodyFatRecord}. Other record types have no value.
+     */
+    @NonNull
+    public double[] getValues() {
+        return mColumns.getValues() == null ? EMPTY_DOUBLES : mColumns.getValues();
+    }
+
+    /**
+     * Returns a page token to read the next page of the result. -1 if there are no more pages
+     * available.
+     */
+    public long getNextPageToken() {
+        return mNextPageToken;
+    }
+}
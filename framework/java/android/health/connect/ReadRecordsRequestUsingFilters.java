@@ -23,6 +23,7 @@ import static android.health.connect.Constants.MAXIMUM_PAGE_SIZE;
 import android.annotation.IntRange;
 import android.annotation.NonNull;
 import android.annotation.Nullable;
+import android.annotation.SystemApi;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
 import android.health.connect.datatypes.DataOrigin;
 import android.health.connect.datatypes.Record;
@@ -40,11 +41,36 @@ import java.util.concurrent.Executor;
  * @param <T> the type of the Record for the request
  */
 public final class ReadRecordsRequestUsingFilters<T extends Record> extends ReadRecordsRequest<T> {
+    /**
+     * Projects the start time of the records, the time of instant records.
+     *
+     * @see Builder#setProjection
+     * @hide
+     */
+    @SystemApi public static final int PROJECTION_START_TIME = 1;
+
+    /**
+     * Projects the end time of the records, the time of instant records.
+     *
+     * @see Builder#setProjection
+     * @hide
+     */
+    @SystemApi public static final int PROJECTION_END_TIME = 1 << 1;
+
+    /**
+     * Projects the main value of the records, see {@link ReadRecordColumnsResponse#getValues()}.
+     *
+     * @see Builder#setProjection
+     * @hide
+     */
+    @SystemApi public static final int PROJECTION_VALUE = 1 << 2;
+
     private final TimeRangeFilter mTimeRangeFilter;
     private final Set<DataOrigin> mDataOrigins;
     private final int mPageSize;
     private final long mPageToken;
     private final boolean mAscending;
+    private final int mProjection;
 
     /**
      * @see Builder
@@ -55,7 +81,8 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
             @NonNull Set<DataOrigin> dataOrigins,
             int pageSize,
             long pageToken,
-            boolean ascending) {
+            boolean ascending,
+            int projection) {
         super(recordType);
         Objects.requireNonNull(dataOrigins);
         mTimeRangeFilter = timeRangeFilter;
@@ -67,6 +94,7 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
             mAscending = ascending;
         }
         mPageToken = pageToken;
+        mProjection = projection;
     }
 
     /** Returns time range b/w which the read operation is to be performed */
@@ -99,6 +127,17 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
         return mAscending;
     }
 
+    /**
+     * Returns the columns read by {@link HealthConnectManager#readRecordColumns}, 0 to read full
+     * records.
+     *
+     * @hide
+     */
+    @SystemApi
+    public int getProjection() {
+        return mProjection;
+    }
+
     /**
      * Returns an object of ReadRecordsRequestParcel to carry read request
      *
@@ -118,6 +157,7 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
         private long mPageToken = DEFAULT_LONG;
         private boolean mAscending = true;
         private boolean mIsOrderingSet = false;
+        private int mProjection;
 
         /**
          * @param recordType Class object of {@link Record} type that needs to be read
@@ -202,6 +242,27 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
             return this;
         }
 
+        /**
+         * Sets the columns to read with {@link HealthConnectManager#readRecordColumns}, instead of
+         * full records.
+         *
+         * @param projection a combination of {@link #PROJECTION_START_TIME}, {@link
+         *     #PROJECTION_END_TIME} and {@link #PROJECTION_VALUE}, or 0 to read full records.
+         * @throws IllegalArgumentException if {@code projection} has unknown columns.
+         * @hide
+         */
+        @SystemApi
+        @NonNull
+        public Builder<T> setProjection(int projection) {
+            if ((projection
+                            & ~(PROJECTION_START_TIME | PROJECTION_END_TIME | PROJECTION_VALUE))
+                    != 0) {
+                throw new IllegalArgumentException("Unknown projection: " + projection);
+            }
+            mProjection = projection;
+            return this;
+        }
+
         /**
          * Returns an Object of {@link ReadRecordsRequestUsingFilters}
          *
@@ -221,7 +282,13 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
                 throw new IllegalStateException("Cannot set both pageToken and sort order");
             }
             return new ReadRecordsRequestUsingFilters<>(
-                    mTimeRangeFilter, mRecordType, mDataOrigins, mPageSize, mPageToken, mAscending);
+                    mTimeRangeFilter,
+                    mRecordType,
+                    mDataOrigins,
+                    mPageSize,
+                    mPageToken,
+                    mAscending,
+                    mProjection);
         }
     }
 }
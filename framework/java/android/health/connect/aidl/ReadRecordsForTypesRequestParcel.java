@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.aidl;
+
+import android.annotation.NonNull;
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.ArraySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A Parcel to carry read requests of several record types to {@see
+ * HealthConnectManager#readRecordsForTypes}
+ *
+ * <p>All the requests share the same time filter and page size, and each request is for a
+ * different record type.
+ *
+ * @hide
+ */
+public class ReadRecordsForTypesRequestParcel implements Parcelable {
+    public static final Creator<ReadRecordsForTypesRequestParcel> CREATOR =
+            new Creator<>() {
+                @Override
+                public ReadRecordsForTypesRequestParcel createFromParcel(Parcel in) {
+                    return new ReadRecordsForTypesRequestParcel(in);
+                }
+
+                @Override
+                public ReadRecordsForTypesRequestParcel[] newArray(int size) {
+                    return new ReadRecordsForTypesRequestParcel[size];
+                }
+            };
+
+    private final List<ReadRecordsRequestParcel> mRequests;
+
+    protected ReadRecordsForTypesRequestParcel(Parcel in) {
+        mRequests = in.createTypedArrayList(ReadRecordsRequestParcel.CREATOR);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code requests} is empty, has several requests for the
+     *     same record type or requests with a projection, or if the requests don't share the same
+     *     time filter and page size.
+     */
+    public ReadRecordsForTypesRequestParcel(
+            @NonNull List<? extends ReadRecordsRequestUsingFilters<?>> requests) {
+        Objects.requireNonNull(requests);
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("Requests list can not be empty");
+        }
+
+        mRequests = new ArrayList<>(requests.size());
+        Set<Integer> recordTypes = new ArraySet<>();
+        for (ReadRecordsRequestUsingFilters<?> request : requests) {
+            ReadRecordsRequestParcel parcel = new ReadRecordsRequestParcel(request);
+            if (parcel.getProjection() != 0) {
+                throw new IllegalArgumentException(
+                        "Requests with a projection can't be read as records");
+            }
+            if (!recordTypes.add(parcel.getRecordType())) {
+                throw new IllegalArgumentException(
+                        "Several requests for record type " + request.getRecordType());
+            }
+            if (!mRequests.isEmpty() && !hasSameFilters(mRequests.get(0), parcel)) {
+                throw new IllegalArgumentException(
+                        "All requests must have the same time filter and page size");
+            }
+            mRequests.add(parcel);
+        }
+    }
+
+    /** Returns the read request of each record type. */
+    @NonNull
+    public List<ReadRecordsRequestParcel> getRequests() {
+        return mRequests;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeTypedList(mRequests);
+    }
+
+    private static boolean hasSameFilters(
+            @NonNull ReadRecordsRequestParcel first, @NonNull ReadRecordsRequestParcel second) {
+        return first.getStartTime() == second.getStartTime()
+                && first.getEndTime() == second.getEndTime()
+                && first.usesLocalTimeFilter() == second.usesLocalTimeFilter()
+                && first.getPageSize() == second.getPageSize();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.aidl;
+
+import android.annotation.NonNull;
+import android.health.connect.HealthConnectManager;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.List;
+
+/**
+ * A parcel to carry response to {@link HealthConnectManager#readRecordsForTypes}
+ *
+ * @hide
+ */
+public class ReadRecordsForTypesResponseParcel implements Parcelable {
+    /** Response of each request, in the order of {@link ReadRecordsForTypesRequestParcel} */
+    private final List<ReadRecordsResponseParcel> mResponses;
+
+    public ReadRecordsForTypesResponseParcel(@NonNull List<ReadRecordsResponseParcel> responses) {
+        mResponses = responses;
+    }
+
+    protected ReadRecordsForTypesResponseParcel(Parcel in) {
+        mResponses = in.createTypedArrayList(ReadRecordsResponseParcel.CREATOR);
+    }
+
+    /** Returns the records and next page token of each record type. */
+    @NonNull
+    public List<ReadRecordsResponseParcel> getResponses() {
+        return mResponses;
+    }
+
+    public static final Creator<ReadRecordsForTypesResponseParcel> CREATOR =
+            new Creator<ReadRecordsForTypesResponseParcel>() {
+                @Override
+                public ReadRecordsForTypesResponseParcel createFromParcel(Parcel in) {
+                    return new ReadRecordsForTypesResponseParcel(in);
+                }
+
+                @Override
+                public ReadRecordsForTypesResponseParcel[] newArray(int size) {
+                    return new ReadRecordsForTypesResponseParcel[size];
+                }
+            };
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeTypedList(mResponses);
+    }
+}
@@ -61,6 +61,7 @@ public class ReadRecordsRequestParcel implements Parcelable {
     private final long mPageToken;
     private final boolean mAscending;
     private final boolean mLocalTimeFilter;
+    private final int mProjection;
 
     protected ReadRecordsRequestParcel(Parcel in) {
         mRecordType = in.readInt();
@@ -74,6 +75,7 @@ public class ReadRecordsRequestParcel implements Parcelable {
         mPageSize = in.readInt();
         mPageToken = in.readLong();
         mAscending = in.readBoolean();
+        mProjection = in.readInt();
     }
 
     public ReadRecordsRequestParcel(ReadRecordsRequestUsingIds<?> request) {
@@ -88,6 +90,7 @@ public class ReadRecordsRequestParcel implements Parcelable {
         // set to -1 as pageToken is not supported for read using ids but only with filters.
         mPageToken = DEFAULT_LONG;
         mAscending = true;
+        mProjection = 0;
     }
 
     public ReadRecordsRequestParcel(ReadRecordsRequestUsingFilters<?> request) {
@@ -111,6 +114,7 @@ public class ReadRecordsRequestParcel implements Parcelable {
         mPageSize = request.getPageSize();
         mPageToken = request.getPageToken();
         mAscending = request.isAscending();
+        mProjection = request.getProjection();
     }
 
     public int getRecordType() {
@@ -145,6 +149,14 @@ public class ReadRecordsRequestParcel implements Parcelable {
         return mAscending;
     }
 
+    /**
+     * Returns the {@link ReadRecordsRequestUsingFilters#getProjection() projection} of the
+     * request, 0 to read full records.
+     */
+    public int getProjection() {
+        return mProjection;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -165,5 +177,6 @@ public class ReadRecordsRequestParcel implements Parcelable {
         dest.writeInt(mPageSize);
         dest.writeLong(mPageToken);
         dest.writeBoolean(mAscending);
+        dest.writeInt(mProjection);
     }
 }
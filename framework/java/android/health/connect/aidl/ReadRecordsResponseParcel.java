@@ -17,6 +17,7 @@
 package android.health.connect.aidl;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.HealthConnectManager;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -33,15 +34,29 @@ public class ReadRecordsResponseParcel implements Parcelable {
     /** page token to be used as a token for the next read request */
     private final long mPageToken;
 
+    /** Columns read from {@link HealthConnectManager#readRecordColumns}, instead of records */
+    @Nullable private final RecordColumnsParcel mRecordColumnsParcel;
+
     public ReadRecordsResponseParcel(@NonNull RecordsParcel recordsParcel, long pageToken) {
+        this(recordsParcel, pageToken, /* recordColumnsParcel= */ null);
+    }
+
+    public ReadRecordsResponseParcel(
+            @NonNull RecordsParcel recordsParcel,
+            long pageToken,
+            @Nullable RecordColumnsParcel recordColumnsParcel) {
         mRecordsParcel = recordsParcel;
         mPageToken = pageToken;
+        mRecordColumnsParcel = recordColumnsParcel;
     }
 
     protected ReadRecordsResponseParcel(Parcel in) {
         mRecordsParcel =
                 in.readParcelable(RecordsParcel.class.getClassLoader(), RecordsParcel.class);
         mPageToken = in.readLong();
+        mRecordColumnsParcel =
+                in.readParcelable(
+                        RecordColumnsParcel.class.getClassLoader(), RecordColumnsParcel.class);
     }
 
     @NonNull
@@ -53,6 +68,11 @@ public class ReadRecordsResponseParcel implements Parcelable {
         return mPageToken;
     }
 
+    @Nullable
+    public RecordColumnsParcel getRecordColumnsParcel() {
+        return mRecordColumnsParcel;
+    }
+
     public static final Creator<ReadRecordsResponseParcel> CREATOR =
             new Creator<ReadRecordsResponseParcel>() {
                 @Override
@@ -75,5 +95,6 @@ public class ReadRecordsResponseParcel implements Parcelable {
     public void writeToParcel(@NonNull Parcel dest, int flags) {
         dest.writeParcelable(mRecordsParcel, 0);
         dest.writeLong(mPageToken);
+        dest.writeParcelable(mRecordColumnsParcel, 0);
     }
 }
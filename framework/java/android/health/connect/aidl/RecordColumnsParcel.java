@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.aidl;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.HealthConnectManager;
+import android.health.connect.internal.ParcelUtils;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * A parcel to carry the columns of a page of records from {@link
+ * HealthConnectManager#readRecordColumns}, as flat arrays with one entry per record.
+ *
+ * @hide
+ */
+public class RecordColumnsParcel implements Parcelable {
+    @NonNull
+    public static final Creator<RecordColumnsParcel> CREATOR =
+            new Creator<>() {
+                @Override
+                public RecordColumnsParcel createFromParcel(Parcel in) {
+                    return new RecordColumnsParcel(in);
+                }
+
+                @Override
+                public RecordColumnsParcel[] newArray(int size) {
+                    return new RecordColumnsParcel[size];
+                }
+            };
+
+    private final int mSize;
+    @Nullable private final long[] mStartTimes;
+    @Nullable private final long[] mEndTimes;
+    @Nullable private final double[] mValues;
+
+    /**
+     * @param size number of records.
+     * @param startTimes start time of each record, or null if not projected.
+     * @param endTimes end time of each record, or null if not projected.
+     * @param values value of each record, or null if not projected.
+     */
+    public RecordColumnsParcel(
+            int size,
+            @Nullable long[] startTimes,
+            @Nullable long[] endTimes,
+            @Nullable double[] values) {
+        mSize = size;
+        mStartTimes = startTimes;
+        mEndTimes = endTimes;
+        mValues = values;
+    }
+
+    private RecordColumnsParcel(@NonNull Parcel in) {
+        in = ParcelUtils.getParcelForSharedMemoryIfRequired(in);
+        mSize = in.readInt();
+        mStartTimes = in.readBoolean() ? in.createLongArray() : null;
+        mEndTimes = in.readBoolean() ? in.createLongArray() : null;
+        mValues = in.readBoolean() ? in.createDoubleArray() : null;
+    }
+
+    /** Returns the number of records. */
+    public int size() {
+        return mSize;
+    }
+
+    @Nullable
+    public long[] getStartTimes() {
+        return mStartTimes;
+    }
+
+    @Nullable
+    public long[] getEndTimes() {
+        return mEndTimes;
+    }
+
+    @Nullable
+    public double[] getValues() {
+        return mValues;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        ParcelUtils.putToRequiredMemory(dest, flags, this::writeToParcelInternal);
+    }
+
+    private void writeToParcelInternal(@NonNull Parcel dest) {
+        dest.writeInt(mSize);
+        dest.writeBoolean(mStartTimes != null);
+        if (mStartTimes != null) {
+            dest.writeLongArray(mStartTimes);
+        }
+        dest.writeBoolean(mEndTimes != null);
+        if (mEndTimes != null) {
+            dest.writeLongArray(mEndTimes);
+        }
+        dest.writeBoolean(mValues != null);
+        if (mValues != null) {
+            dest.writeDoubleArray(mValues);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.internal;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_UNKNOWN;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.utils.RecordMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length-prefixed binary stream of {@link RecordInternal}s, used to export and import records
+ * through a file descriptor.
+ *
+ * <p>The stream starts with {@link #MAGIC} and {@link #VERSION}. Each record is then written as
+ * its record type, the length of its payload and the payload itself, which is the fields of the
+ * record in the order of {@link RecordInternal#writeToStream}. The stream ends with {@link
+ * android.health.connect.datatypes.RecordTypeIdentifier#RECORD_TYPE_UNKNOWN}, so that a
+ * truncated stream is detected by the reader.
+ *
+ * <p>Fields are written with {@link DataOutputStream} in big-endian order, and strings with
+ * {@link #writeString}. Unlike parcels, streams are kept as files: the fields of each record type
+ * are written by their own methods, and {@link #VERSION} is bumped on any change of them.
+ *
+ * @hide
+ */
+public final class RecordStream {
+    public static final int MAGIC = 0x48435253;
+    public static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int NULL_STRING_LENGTH = -1;
+
+    private RecordStream() {}
+
+    /** Writes {@code value} as its length in UTF-8 bytes followed by the bytes. */
+    public static void writeString(@NonNull DataOutputStream out, @Nullable String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a string written by {@link #writeString}. */
+    @Nullable
+    public static String readString(@NonNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_STRING_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(in, length)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the size of a collection, which can't be larger than the rest of the record, so that a
+     * malformed size fails before allocating the collection.
+     */
+    public static int readSize(@NonNull DataInputStream in) throws IOException {
+        return checkLength(in, in.readInt());
+    }
+
+    private static int checkLength(@NonNull DataInputStream in, int length) throws IOException {
+        // The payload of a record is fully read before its fields, available() is exact.
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return length;
+    }
+
+    /** Writes records to an {@link OutputStream}. */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream mOut;
+        private final ByteArrayOutputStream mPayload = new ByteArrayOutputStream();
+        private final DataOutputStream mPayloadOut = new DataOutputStream(mPayload);
+
+        public Writer(@NonNull OutputStream out) throws IOException {
+            mOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+            mOut.writeInt(MAGIC);
+            mOut.writeInt(VERSION);
+        }
+
+        /** Writes {@code recordInternal} to the stream. */
+        public void writeRecord(@NonNull RecordInternal<?> recordInternal) throws IOException {
+            mPayload.reset();
+            recordInternal.writeToStream(mPayloadOut);
+            mPayloadOut.flush();
+            mOut.writeInt(recordInternal.getRecordType());
+            mOut.writeInt(mPayload.size());
+            mPayload.writeTo(mOut);
+        }
+
+        /** Marks the end of the stream and flushes it. No record can be written afterwards. */
+        public void finish() throws IOException {
+            mOut.writeInt(RECORD_TYPE_UNKNOWN);
+            mOut.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mOut.close();
+        }
+    }
+
+    /** Reads records from an {@link InputStream} written by a {@link Writer}. */
+    public static final class Reader implements Closeable {
+        private final DataInputStream mIn;
+        private final int mMaxRecordSize;
+        private int mLastRecordSize;
+
+        /**
+         * @param maxRecordSize maximum payload size of a single record, larger records make
+         *     {@link #readRecord} fail before allocating them.
+         */
+        public Reader(@NonNull InputStream in, int maxRecordSize) throws IOException {
+            mIn = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+            mMaxRecordSize = maxRecordSize;
+            if (mIn.readInt() != MAGIC) {
+                throw new IOException("Not a record stream");
+            }
+            int version = mIn.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported record stream version: " + version);
+            }
+        }
+
+        /**
+         * Returns the next record of the stream, or null once the end of the stream is reached.
+         *
+         * @throws java.io.EOFException if the stream is truncated.
+         * @throws IOException if the stream is malformed.
+         */
+        @Nullable
+        public RecordInternal<?> readRecord() throws IOException {
+            int recordType = mIn.readInt();
+            if (recordType == RECORD_TYPE_UNKNOWN) {
+                return null;
+            }
+            int size = mIn.readInt();
+            if (size < 0 || size > mMaxRecordSize) {
+                throw new IOException("Invalid record size: " + size);
+            }
+            byte[] payload = new byte[size];
+            mIn.readFully(payload);
+            mLastRecordSize = size;
+
+            Class<? extends RecordInternal<?>> recordClass =
+                    RecordMapper.getInstance()
+                            .getRecordIdToInternalRecordClassMap()
+                            .get(recordType);
+            if (recordClass == null) {
+                throw new IOException("Unknown record type: " + recordType);
+            }
+            try (DataInputStream payloadIn =
+                    new DataInputStream(new ByteArrayInputStream(payload))) {
+                RecordInternal<?> recordInternal = recordClass.getConstructor().newInstance();
+                recordInternal.populateUsing(payloadIn);
+                if (payloadIn.available() != 0) {
+                    throw new IOException("Unread fields in record of type " + recordType);
+                }
+                return recordInternal;
+            } catch (InstantiationException
+                    | IllegalAccessException
+                    | NoSuchMethodException
+                    | InvocationTargetException
+                    | RuntimeException e) {
+                throw new IOException("Malformed record of type " + recordType, e);
+            }
+        }
+
+        /** Returns the payload size of the last record returned by {@link #readRecord}. */
+        public int getLastRecordSize() {
+            return mLastRecordSize;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+}
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Energy;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see ActiveCaloriesBurnedRecord
  * @hide
@@ -60,8 +64,18 @@ public final class ActiveCaloriesBurnedRecordInternal
         mEnergy = parcel.readDouble();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mEnergy = in.readDouble();
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mEnergy);
     }
+
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mEnergy);
+    }
 }
@@ -23,6 +23,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Temperature;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see BasalBodyTemperatureRecord
  * @hide
@@ -74,9 +78,21 @@ public final class BasalBodyTemperatureRecordInternal
         mTemperature = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mMeasurementLocation = in.readInt();
+        mTemperature = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mMeasurementLocation);
         parcel.writeDouble(mTemperature);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mMeasurementLocation);
+        out.writeDouble(mTemperature);
+    }
 }
@@ -23,6 +23,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Power;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see BasalMetabolicRateRecord
  * @hide
@@ -57,8 +61,18 @@ public final class BasalMetabolicRateRecordInternal
         mBasalMetabolicRate = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mBasalMetabolicRate = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mBasalMetabolicRate);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mBasalMetabolicRate);
+    }
 }
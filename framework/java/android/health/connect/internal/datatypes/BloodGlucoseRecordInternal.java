@@ -23,6 +23,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.BloodGlucose;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see BloodGlucoseRecord
  * @hide
@@ -103,6 +107,14 @@ public final class BloodGlucoseRecordInternal extends InstantRecordInternal<Bloo
         mMealType = parcel.readInt();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mSpecimenSource = in.readInt();
+        mLevel = in.readDouble();
+        mRelationToMeal = in.readInt();
+        mMealType = in.readInt();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mSpecimenSource);
@@ -110,4 +122,12 @@ public final class BloodGlucoseRecordInternal extends InstantRecordInternal<Bloo
         parcel.writeInt(mRelationToMeal);
         parcel.writeInt(mMealType);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mSpecimenSource);
+        out.writeDouble(mLevel);
+        out.writeInt(mRelationToMeal);
+        out.writeInt(mMealType);
+    }
 }
@@ -24,6 +24,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Pressure;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @hide
  * @see BloodPressureRecord
@@ -103,6 +107,14 @@ public final class BloodPressureRecordInternal extends InstantRecordInternal<Blo
         mBodyPosition = parcel.readInt();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mMeasurementLocation = in.readInt();
+        mSystolic = in.readDouble();
+        mDiastolic = in.readDouble();
+        mBodyPosition = in.readInt();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mMeasurementLocation);
@@ -110,4 +122,12 @@ public final class BloodPressureRecordInternal extends InstantRecordInternal<Blo
         parcel.writeDouble(mDiastolic);
         parcel.writeInt(mBodyPosition);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mMeasurementLocation);
+        out.writeDouble(mSystolic);
+        out.writeDouble(mDiastolic);
+        out.writeInt(mBodyPosition);
+    }
 }
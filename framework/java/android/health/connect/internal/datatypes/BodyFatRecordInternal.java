@@ -22,6 +22,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Percentage;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see BodyFatRecord
  * @hide
@@ -55,8 +59,18 @@ public final class BodyFatRecordInternal extends InstantRecordInternal<BodyFatRe
         mPercentage = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mPercentage = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mPercentage);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mPercentage);
+    }
 }
@@ -23,6 +23,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Mass;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /** @hide */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_BODY_WATER_MASS)
 public final class BodyWaterMassRecordInternal extends InstantRecordInternal<BodyWaterMassRecord> {
@@ -33,11 +37,21 @@ public final class BodyWaterMassRecordInternal extends InstantRecordInternal<Bod
         mBodyWaterMass = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mBodyWaterMass = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mBodyWaterMass);
     }
 
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mBodyWaterMass);
+    }
+
     public double getBodyWaterMass() {
         return mBodyWaterMass;
     }
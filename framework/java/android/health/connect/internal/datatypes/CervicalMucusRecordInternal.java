@@ -23,6 +23,10 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see CervicalMucusRecord
  * @hide
@@ -71,9 +75,21 @@ public final class CervicalMucusRecordInternal extends InstantRecordInternal<Cer
         mAppearance = parcel.readInt();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mSensation = in.readInt();
+        mAppearance = in.readInt();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mSensation);
         parcel.writeInt(mAppearance);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mSensation);
+        out.writeInt(mAppearance);
+    }
 }
@@ -20,8 +20,12 @@ import android.annotation.NonNull;
 import android.health.connect.datatypes.CyclingPedalingCadenceRecord;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -75,6 +79,16 @@ public class CyclingPedalingCadenceRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        int size = RecordStream.readSize(in);
+        mCyclingPedalingCadenceRecordSamples = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            mCyclingPedalingCadenceRecordSamples.add(
+                    new CyclingPedalingCadenceRecordSample(in.readDouble(), in.readLong()));
+        }
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mCyclingPedalingCadenceRecordSamples.size());
@@ -85,6 +99,16 @@ public class CyclingPedalingCadenceRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mCyclingPedalingCadenceRecordSamples.size());
+        for (CyclingPedalingCadenceRecordSample cyclingPedalingCadenceRecordSample :
+                mCyclingPedalingCadenceRecordSamples) {
+            out.writeDouble(cyclingPedalingCadenceRecordSample.getRevolutionsPerMinute());
+            out.writeLong(cyclingPedalingCadenceRecordSample.getEpochMillis());
+        }
+    }
+
     private List<CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample>
             getExternalSamples() {
         List<CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample>
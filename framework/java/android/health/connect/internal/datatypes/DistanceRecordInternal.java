@@ -22,6 +22,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Length;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see DistanceRecord
  * @hide
@@ -59,8 +63,18 @@ public final class DistanceRecordInternal extends IntervalRecordInternal<Distanc
         mDistance = parcel.readDouble();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mDistance = in.readDouble();
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mDistance);
     }
+
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mDistance);
+    }
 }
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Length;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see ElevationGainedRecord
  * @hide
@@ -60,8 +64,18 @@ public final class ElevationGainedRecordInternal
         mElevation = parcel.readDouble();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mElevation = in.readDouble();
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mElevation);
     }
+
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mElevation);
+    }
 }
@@ -19,10 +19,14 @@ package android.health.connect.internal.datatypes;
 import android.annotation.NonNull;
 import android.health.connect.datatypes.ExerciseLap;
 import android.health.connect.datatypes.units.Length;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
 import com.android.internal.annotations.VisibleForTesting;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -79,6 +83,39 @@ public class ExerciseLapInternal {
         return laps;
     }
 
+    static void writeLapsToStream(List<ExerciseLapInternal> laps, DataOutputStream out)
+            throws IOException {
+        if (laps == null) {
+            out.writeInt(0);
+            return;
+        }
+
+        out.writeInt(laps.size());
+        for (ExerciseLapInternal lap : laps) {
+            out.writeLong(lap.mStartTime);
+            out.writeLong(lap.mEndTime);
+            out.writeDouble(lap.mLength);
+        }
+    }
+
+    static List<ExerciseLapInternal> populateLapsFromStream(DataInputStream in)
+            throws IOException {
+        int lapsSize = RecordStream.readSize(in);
+        if (lapsSize == 0) {
+            return null;
+        }
+
+        ArrayList<ExerciseLapInternal> laps = new ArrayList<>(lapsSize);
+        for (int i = 0; i < lapsSize; i++) {
+            laps.add(
+                    new ExerciseLapInternal()
+                            .setStarTime(in.readLong())
+                            .setEndTime(in.readLong())
+                            .setLength(in.readDouble()));
+        }
+        return laps;
+    }
+
     /** Returns laps start time. */
     @VisibleForTesting
     public void writeToParcel(Parcel parcel) {
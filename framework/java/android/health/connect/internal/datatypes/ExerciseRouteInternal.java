@@ -22,10 +22,14 @@ import android.annotation.Nullable;
 import android.health.connect.Constants;
 import android.health.connect.datatypes.ExerciseRoute;
 import android.health.connect.datatypes.units.Length;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
 import com.android.internal.annotations.VisibleForTesting;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -85,6 +89,48 @@ public class ExerciseRouteInternal {
         }
     }
 
+    /** Reads the route from a record stream. */
+    @Nullable
+    static ExerciseRouteInternal readFromStream(@NonNull DataInputStream in) throws IOException {
+        boolean routeIsNull = in.readBoolean();
+        if (routeIsNull) {
+            return null;
+        }
+
+        int routeSize = RecordStream.readSize(in);
+        ArrayList<LocationInternal> routeLocations = new ArrayList<>(routeSize);
+        for (int i = 0; i < routeSize; i++) {
+            routeLocations.add(
+                    new LocationInternal()
+                            .setTime(in.readLong())
+                            .setLatitude(in.readDouble())
+                            .setLongitude(in.readDouble())
+                            .setHorizontalAccuracy(in.readDouble())
+                            .setVerticalAccuracy(in.readDouble())
+                            .setAltitude(in.readDouble()));
+        }
+        return new ExerciseRouteInternal(routeLocations);
+    }
+
+    /** Writes the route to a record stream. */
+    static void writeToStream(@Nullable ExerciseRouteInternal route, @NonNull DataOutputStream out)
+            throws IOException {
+        out.writeBoolean(route == null);
+        if (route == null) {
+            return;
+        }
+
+        out.writeInt(route.mRouteExerciseRouteLocations.size());
+        for (LocationInternal location : route.mRouteExerciseRouteLocations) {
+            out.writeLong(location.getTime());
+            out.writeDouble(location.getLatitude());
+            out.writeDouble(location.getLongitude());
+            out.writeDouble(location.getHorizontalAccuracy());
+            out.writeDouble(location.getVerticalAccuracy());
+            out.writeDouble(location.getAltitude());
+        }
+    }
+
     /** Convert internal route to external route object. */
     @VisibleForTesting
     public ExerciseRoute toExternalRoute() {
@@ -19,10 +19,14 @@ package android.health.connect.internal.datatypes;
 import android.annotation.NonNull;
 import android.health.connect.datatypes.ExerciseSegment;
 import android.health.connect.datatypes.ExerciseSegmentType;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
 import com.android.internal.annotations.VisibleForTesting;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -80,6 +84,39 @@ public class ExerciseSegmentInternal {
         segments.forEach((segment) -> segment.writeToParcel(parcel));
     }
 
+    static void writeSegmentsToStream(
+            List<ExerciseSegmentInternal> segments, DataOutputStream out) throws IOException {
+        if (segments == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(segments.size());
+        for (ExerciseSegmentInternal segment : segments) {
+            out.writeLong(segment.mStartTime);
+            out.writeLong(segment.mEndTime);
+            out.writeInt(segment.mRepetitionsCount);
+            out.writeInt(segment.mSegmentType);
+        }
+    }
+
+    static List<ExerciseSegmentInternal> populateSegmentsFromStream(DataInputStream in)
+            throws IOException {
+        int size = RecordStream.readSize(in);
+        if (size == 0) {
+            return null;
+        }
+        ArrayList<ExerciseSegmentInternal> segments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            segments.add(
+                    new ExerciseSegmentInternal()
+                            .setStarTime(in.readLong())
+                            .setEndTime(in.readLong())
+                            .setRepetitionsCount(in.readInt())
+                            .setSegmentType(in.readInt()));
+        }
+        return segments;
+    }
+
     /** Writes record to parcel. */
     @VisibleForTesting
     public void writeToParcel(Parcel parcel) {
@@ -22,8 +22,12 @@ import android.health.connect.datatypes.ExerciseSessionRecord;
 import android.health.connect.datatypes.ExerciseSessionType;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -191,6 +195,17 @@ public final class ExerciseSessionRecordInternal
         ExerciseSegmentInternal.writeSegmentsToParcel(mExerciseSegments, parcel);
     }
 
+    @Override
+    public void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        RecordStream.writeString(out, mNotes);
+        out.writeInt(mExerciseType);
+        RecordStream.writeString(out, mTitle);
+        out.writeBoolean(mHasRoute);
+        ExerciseRouteInternal.writeToStream(mExerciseRoute, out);
+        ExerciseLapInternal.writeLapsToStream(mExerciseLaps, out);
+        ExerciseSegmentInternal.writeSegmentsToStream(mExerciseSegments, out);
+    }
+
     @Override
     public void populateIntervalRecordFrom(@NonNull Parcel parcel) {
         mNotes = parcel.readString();
@@ -202,6 +217,17 @@ public final class ExerciseSessionRecordInternal
         mExerciseSegments = ExerciseSegmentInternal.populateSegmentsFromParcel(parcel);
     }
 
+    @Override
+    public void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mNotes = RecordStream.readString(in);
+        mExerciseType = in.readInt();
+        mTitle = RecordStream.readString(in);
+        mHasRoute = in.readBoolean();
+        mExerciseRoute = ExerciseRouteInternal.readFromStream(in);
+        mExerciseLaps = ExerciseLapInternal.populateLapsFromStream(in);
+        mExerciseSegments = ExerciseSegmentInternal.populateSegmentsFromStream(in);
+    }
+
     /** Add route location to the session */
     public void addRouteLocation(ExerciseRouteInternal.LocationInternal location) {
         if (mExerciseRoute == null) {
@@ -21,6 +21,10 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see FloorsClimbedRecord
  * @hide
@@ -55,8 +59,18 @@ public final class FloorsClimbedRecordInternal extends IntervalRecordInternal<Fl
         mFloors = parcel.readDouble();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mFloors = in.readDouble();
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mFloors);
     }
+
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mFloors);
+    }
 }
@@ -21,8 +21,12 @@ import android.annotation.Nullable;
 import android.health.connect.datatypes.HeartRateRecord;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -104,6 +108,15 @@ public class HeartRateRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        int size = RecordStream.readSize(in);
+        mHeartRateHeartRateSamples = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            mHeartRateHeartRateSamples.add(new HeartRateSample(in.readInt(), in.readLong()));
+        }
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mHeartRateHeartRateSamples.size());
@@ -113,6 +126,15 @@ public class HeartRateRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mHeartRateHeartRateSamples.size());
+        for (HeartRateSample heartRateSample : mHeartRateHeartRateSamples) {
+            out.writeInt(heartRateSample.getBeatsPerMinute());
+            out.writeLong(heartRateSample.getEpochMillis());
+        }
+    }
+
     private List<HeartRateRecord.HeartRateSample> getExternalSamples() {
         List<HeartRateRecord.HeartRateSample> heartRateRecords =
                 new ArrayList<>(mHeartRateHeartRateSamples.size());
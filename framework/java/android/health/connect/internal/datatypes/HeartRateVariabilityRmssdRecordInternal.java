@@ -22,6 +22,10 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /** @hide */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_HEART_RATE_VARIABILITY_RMSSD)
 public final class HeartRateVariabilityRmssdRecordInternal
@@ -33,11 +37,21 @@ public final class HeartRateVariabilityRmssdRecordInternal
         mHeartRateVariabilityMillis = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mHeartRateVariabilityMillis = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mHeartRateVariabilityMillis);
     }
 
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mHeartRateVariabilityMillis);
+    }
+
     public double getHeartRateVariabilityMillis() {
         return mHeartRateVariabilityMillis;
     }
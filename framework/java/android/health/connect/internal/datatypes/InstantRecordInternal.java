@@ -20,6 +20,9 @@ import android.annotation.NonNull;
 import android.health.connect.datatypes.InstantRecord;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -67,6 +70,22 @@ public abstract class InstantRecordInternal<T extends InstantRecord> extends Rec
         populateInstantRecordTo(parcel);
     }
 
+    @Override
+    void populateRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mTime = in.readLong();
+        mZoneOffset = in.readInt();
+
+        populateInstantRecordFrom(in);
+    }
+
+    @Override
+    void populateRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeLong(mTime);
+        out.writeInt(mZoneOffset);
+
+        populateInstantRecordTo(out);
+    }
+
     Instant getTime() {
         return Instant.ofEpochMilli(mTime);
     }
@@ -106,4 +125,10 @@ public abstract class InstantRecordInternal<T extends InstantRecord> extends Rec
      * transmissions
      */
     abstract void populateInstantRecordTo(@NonNull Parcel parcel);
+
+    /** Populates the fields of the child class from a record stream. */
+    abstract void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException;
+
+    /** Writes the fields of the child class to a record stream. */
+    abstract void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException;
 }
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.IntermenstrualBleedingRecord;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /** @hide */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_INTERMENSTRUAL_BLEEDING)
 public final class IntermenstrualBleedingRecordInternal
@@ -30,9 +34,15 @@ public final class IntermenstrualBleedingRecordInternal
     @Override
     void populateInstantRecordFrom(@NonNull Parcel parcel) {}
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {}
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {}
 
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {}
+
     @NonNull
     @Override
     public IntermenstrualBleedingRecord toExternalRecord() {
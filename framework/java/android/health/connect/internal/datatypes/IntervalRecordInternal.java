@@ -19,6 +19,9 @@ import android.annotation.NonNull;
 import android.health.connect.datatypes.IntervalRecord;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -74,6 +77,26 @@ public abstract class IntervalRecordInternal<T extends IntervalRecord> extends R
         populateIntervalRecordFrom(parcel);
     }
 
+    @Override
+    void populateRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeLong(mStartTime);
+        out.writeInt(mStartZoneOffset);
+        out.writeLong(mEndTime);
+        out.writeInt(mEndZoneOffset);
+
+        populateIntervalRecordTo(out);
+    }
+
+    @Override
+    void populateRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mStartTime = in.readLong();
+        mStartZoneOffset = in.readInt();
+        mEndTime = in.readLong();
+        mEndZoneOffset = in.readInt();
+
+        populateIntervalRecordFrom(in);
+    }
+
     Instant getStartTime() {
         return Instant.ofEpochMilli(mStartTime);
     }
@@ -134,4 +157,10 @@ public abstract class IntervalRecordInternal<T extends IntervalRecord> extends R
      * transmissions
      */
     abstract void populateIntervalRecordTo(@NonNull Parcel parcel);
+
+    /** Populates the fields of the child class from a record stream. */
+    abstract void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException;
+
+    /** Writes the fields of the child class to a record stream. */
+    abstract void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException;
 }
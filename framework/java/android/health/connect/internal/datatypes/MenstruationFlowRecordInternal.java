@@ -22,6 +22,10 @@ import android.health.connect.datatypes.MenstruationFlowRecord.MenstruationFlowT
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see MenstruationFlowRecord
  * @hide
@@ -56,8 +60,18 @@ public final class MenstruationFlowRecordInternal
         mFlow = parcel.readInt();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mFlow = in.readInt();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mFlow);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mFlow);
+    }
 }
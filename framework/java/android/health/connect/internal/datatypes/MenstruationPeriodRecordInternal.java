@@ -21,6 +21,10 @@ import android.health.connect.datatypes.MenstruationPeriodRecord;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see MenstruationPeriodRecord
  * @hide
@@ -41,6 +45,12 @@ public final class MenstruationPeriodRecordInternal
     @Override
     void populateIntervalRecordFrom(@NonNull Parcel parcel) {}
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {}
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {}
+
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {}
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.internal.datatypes;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.datatypes.DataOrigin;
+import android.health.connect.datatypes.Device;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+
+import java.util.Map;
+
+/**
+ * Shares the {@link DataOrigin}s and {@link Device}s between the external records of a page, so
+ * that a page builds one instance of each app and device it has records of. Not thread safe.
+ *
+ * @hide
+ */
+public final class MetadataObjectsPool {
+    private final Map<String, DataOrigin> mDataOrigins = new ArrayMap<>();
+    // Devices by manufacturer, model and device type.
+    private final Map<String, Map<String, SparseArray<Device>>> mDevices = new ArrayMap<>();
+
+    /** Returns the data origin of {@code packageName}, building it if it isn't pooled yet. */
+    @NonNull
+    public DataOrigin getDataOrigin(@Nullable String packageName) {
+        DataOrigin dataOrigin = mDataOrigins.get(packageName);
+        if (dataOrigin == null) {
+            dataOrigin = new DataOrigin.Builder().setPackageName(packageName).build();
+            mDataOrigins.put(packageName, dataOrigin);
+        }
+        return dataOrigin;
+    }
+
+    /** Returns the device with the given values, building it if it isn't pooled yet. */
+    @NonNull
+    public Device getDevice(@Nullable String manufacturer, @Nullable String model, int deviceType) {
+        SparseArray<Device> devices =
+                mDevices.computeIfAbsent(manufacturer, key -> new ArrayMap<>())
+                        .computeIfAbsent(model, key -> new SparseArray<>());
+        Device device = devices.get(deviceType);
+        if (device == null) {
+            device =
+                    new Device.Builder()
+                            .setManufacturer(manufacturer)
+                            .setType(deviceType)
+                            .setModel(model)
+                            .build();
+            devices.put(deviceType, device);
+        }
+        return device;
+    }
+}
@@ -25,8 +25,13 @@ import android.health.connect.datatypes.NutritionRecord;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Energy;
 import android.health.connect.datatypes.units.Mass;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @hide
  * @see NutritionRecord
@@ -664,6 +669,54 @@ public final class NutritionRecordInternal extends IntervalRecordInternal<Nutrit
         mSugar = parcel.readDouble();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mUnsaturatedFat = in.readDouble();
+        mPotassium = in.readDouble();
+        mThiamin = in.readDouble();
+        mMealType = in.readInt();
+        mTransFat = in.readDouble();
+        mManganese = in.readDouble();
+        mEnergyFromFat = in.readDouble();
+        mCaffeine = in.readDouble();
+        mDietaryFiber = in.readDouble();
+        mSelenium = in.readDouble();
+        mVitaminB6 = in.readDouble();
+        mProtein = in.readDouble();
+        mChloride = in.readDouble();
+        mCholesterol = in.readDouble();
+        mCopper = in.readDouble();
+        mIodine = in.readDouble();
+        mVitaminB12 = in.readDouble();
+        mZinc = in.readDouble();
+        mRiboflavin = in.readDouble();
+        mEnergy = in.readDouble();
+        mMolybdenum = in.readDouble();
+        mPhosphorus = in.readDouble();
+        mChromium = in.readDouble();
+        mTotalFat = in.readDouble();
+        mCalcium = in.readDouble();
+        mVitaminC = in.readDouble();
+        mVitaminE = in.readDouble();
+        mBiotin = in.readDouble();
+        mVitaminD = in.readDouble();
+        mNiacin = in.readDouble();
+        mMagnesium = in.readDouble();
+        mTotalCarbohydrate = in.readDouble();
+        mVitaminK = in.readDouble();
+        mPolyunsaturatedFat = in.readDouble();
+        mSaturatedFat = in.readDouble();
+        mSodium = in.readDouble();
+        mFolate = in.readDouble();
+        mMonounsaturatedFat = in.readDouble();
+        mPantothenicAcid = in.readDouble();
+        mMealName = RecordStream.readString(in);
+        mIron = in.readDouble();
+        mVitaminA = in.readDouble();
+        mFolicAcid = in.readDouble();
+        mSugar = in.readDouble();
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mUnsaturatedFat);
@@ -711,4 +764,52 @@ public final class NutritionRecordInternal extends IntervalRecordInternal<Nutrit
         parcel.writeDouble(mFolicAcid);
         parcel.writeDouble(mSugar);
     }
+
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mUnsaturatedFat);
+        out.writeDouble(mPotassium);
+        out.writeDouble(mThiamin);
+        out.writeInt(mMealType);
+        out.writeDouble(mTransFat);
+        out.writeDouble(mManganese);
+        out.writeDouble(mEnergyFromFat);
+        out.writeDouble(mCaffeine);
+        out.writeDouble(mDietaryFiber);
+        out.writeDouble(mSelenium);
+        out.writeDouble(mVitaminB6);
+        out.writeDouble(mProtein);
+        out.writeDouble(mChloride);
+        out.writeDouble(mCholesterol);
+        out.writeDouble(mCopper);
+        out.writeDouble(mIodine);
+        out.writeDouble(mVitaminB12);
+        out.writeDouble(mZinc);
+        out.writeDouble(mRiboflavin);
+        out.writeDouble(mEnergy);
+        out.writeDouble(mMolybdenum);
+        out.writeDouble(mPhosphorus);
+        out.writeDouble(mChromium);
+        out.writeDouble(mTotalFat);
+        out.writeDouble(mCalcium);
+        out.writeDouble(mVitaminC);
+        out.writeDouble(mVitaminE);
+        out.writeDouble(mBiotin);
+        out.writeDouble(mVitaminD);
+        out.writeDouble(mNiacin);
+        out.writeDouble(mMagnesium);
+        out.writeDouble(mTotalCarbohydrate);
+        out.writeDouble(mVitaminK);
+        out.writeDouble(mPolyunsaturatedFat);
+        out.writeDouble(mSaturatedFat);
+        out.writeDouble(mSodium);
+        out.writeDouble(mFolate);
+        out.writeDouble(mMonounsaturatedFat);
+        out.writeDouble(mPantothenicAcid);
+        RecordStream.writeString(out, mMealName);
+        out.writeDouble(mIron);
+        out.writeDouble(mVitaminA);
+        out.writeDouble(mFolicAcid);
+        out.writeDouble(mSugar);
+    }
 }
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.OvulationTestRecord.OvulationTestResult;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see OvulationTestRecord
  * @hide
@@ -55,8 +59,18 @@ public final class OvulationTestRecordInternal extends InstantRecordInternal<Ovu
         mResult = parcel.readInt();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mResult = in.readInt();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mResult);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mResult);
+    }
 }
@@ -21,8 +21,12 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.PowerRecord;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.units.Power;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -48,6 +52,15 @@ public class PowerRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        int size = RecordStream.readSize(in);
+        mPowerRecordSamples = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            mPowerRecordSamples.add(new PowerRecordSample(in.readDouble(), in.readLong()));
+        }
+    }
+
     @Override
     @NonNull
     public Set<PowerRecordSample> getSamples() {
@@ -81,6 +94,15 @@ public class PowerRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mPowerRecordSamples.size());
+        for (PowerRecordSample powerRecordSample : mPowerRecordSamples) {
+            out.writeDouble(powerRecordSample.getPower());
+            out.writeLong(powerRecordSample.getEpochMillis());
+        }
+    }
+
     private List<PowerRecord.PowerRecordSample> getExternalSamples() {
         List<PowerRecord.PowerRecordSample> powerRecords =
                 new ArrayList<>(mPowerRecordSamples.size());
@@ -27,8 +27,12 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.Metadata;
 import android.health.connect.datatypes.Record;
 import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Objects;
@@ -55,6 +59,7 @@ public abstract class RecordInternal<T extends Record> {
     private int mRowId = DEFAULT_INT;
 
     @Metadata.RecordingMethod private int mRecordingMethod;
+    @Nullable private MetadataObjectsPool mMetadataObjectsPool;
 
     RecordInternal() {
         Identifier annotation = this.getClass().getAnnotation(Identifier.class);
@@ -109,6 +114,47 @@ public abstract class RecordInternal<T extends Record> {
         populateRecordTo(parcel);
     }
 
+    /**
+     * Populates self with the fields of a record of a {@link RecordStream}, written by {@link
+     * #writeToStream}.
+     */
+    public final void populateUsing(@NonNull DataInputStream in) throws IOException {
+        String uuidString = RecordStream.readString(in);
+        if (uuidString != null) {
+            mUuid = UUID.fromString(uuidString);
+        }
+        mPackageName = RecordStream.readString(in);
+        mAppName = RecordStream.readString(in);
+        mLastModifiedTime = in.readLong();
+        mClientRecordId = RecordStream.readString(in);
+        mClientRecordVersion = in.readLong();
+        mManufacturer = RecordStream.readString(in);
+        mModel = RecordStream.readString(in);
+        mDeviceType = in.readInt();
+        mRecordingMethod = in.readInt();
+
+        populateRecordFrom(in);
+    }
+
+    /**
+     * Writes the fields of self to a {@link RecordStream}. Unlike {@link #writeToParcel}, the
+     * fields are persisted, {@link RecordStream#VERSION} must be bumped on any change of them.
+     */
+    public final void writeToStream(@NonNull DataOutputStream out) throws IOException {
+        RecordStream.writeString(out, mUuid == null ? null : mUuid.toString());
+        RecordStream.writeString(out, mPackageName);
+        RecordStream.writeString(out, mAppName);
+        out.writeLong(mLastModifiedTime);
+        RecordStream.writeString(out, mClientRecordId);
+        out.writeLong(mClientRecordVersion);
+        RecordStream.writeString(out, mManufacturer);
+        RecordStream.writeString(out, mModel);
+        out.writeInt(mDeviceType);
+        out.writeInt(mRecordingMethod);
+
+        populateRecordTo(out);
+    }
+
     @Nullable
     public UUID getUuid() {
         return mUuid;
@@ -270,21 +316,43 @@ public abstract class RecordInternal<T extends Record> {
     /** Child class must implement this method and return an external record for this record */
     public abstract T toExternalRecord();
 
+    /**
+     * Returns an external record for this record, whose {@link DataOrigin} and {@link Device} are
+     * shared with the other records converted with {@code pool}.
+     */
+    public T toExternalRecord(@NonNull MetadataObjectsPool pool) {
+        mMetadataObjectsPool = pool;
+        try {
+            return toExternalRecord();
+        } finally {
+            mMetadataObjectsPool = null;
+        }
+    }
+
     @NonNull
     Metadata buildMetaData() {
+        DataOrigin dataOrigin;
+        Device device;
+        if (mMetadataObjectsPool != null) {
+            dataOrigin = mMetadataObjectsPool.getDataOrigin(getPackageName());
+            device = mMetadataObjectsPool.getDevice(getManufacturer(), getModel(), getDeviceType());
+        } else {
+            dataOrigin = new DataOrigin.Builder().setPackageName(getPackageName()).build();
+            device =
+                    new Device.Builder()
+                            .setManufacturer(getManufacturer())
+                            .setType(getDeviceType())
+                            .setModel(getModel())
+                            .build();
+        }
         return new Metadata.Builder()
                 .setClientRecordId(getClientRecordId())
                 .setClientRecordVersion(getClientRecordVersion())
-                .setDataOrigin(new DataOrigin.Builder().setPackageName(getPackageName()).build())
+                .setDataOrigin(dataOrigin)
                 .setId(getUuid() == null ? null : getUuid().toString())
                 .setLastModifiedTime(Instant.ofEpochMilli(getLastModifiedTime()))
                 .setRecordingMethod(getRecordingMethod())
-                .setDevice(
-                        new Device.Builder()
-                                .setManufacturer(getManufacturer())
-                                .setType(getDeviceType())
-                                .setModel(getModel())
-                                .build())
+                .setDevice(device)
                 .build();
     }
 
@@ -304,4 +372,10 @@ public abstract class RecordInternal<T extends Record> {
      * bundle}
      */
     abstract void populateRecordFrom(@NonNull Parcel bundle);
+
+    /** Writes the fields of the child class to a {@link RecordStream}. */
+    abstract void populateRecordTo(@NonNull DataOutputStream out) throws IOException;
+
+    /** Populates the fields of the child class from a {@link RecordStream}. */
+    abstract void populateRecordFrom(@NonNull DataInputStream in) throws IOException;
 }
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.SexualActivityRecord;
 import android.health.connect.datatypes.SexualActivityRecord.SexualActivityProtectionUsed;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see SexualActivityRecord
  * @hide
@@ -56,8 +60,18 @@ public final class SexualActivityRecordInternal
         mProtectionUsed = parcel.readInt();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mProtectionUsed = in.readInt();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mProtectionUsed);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mProtectionUsed);
+    }
 }
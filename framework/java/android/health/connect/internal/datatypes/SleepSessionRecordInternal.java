@@ -21,8 +21,12 @@ import android.annotation.Nullable;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.SleepSessionRecord;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -92,6 +96,13 @@ public final class SleepSessionRecordInternal extends IntervalRecordInternal<Sle
         SleepStageInternal.writeStagesToParcel(mStages, parcel);
     }
 
+    @Override
+    public void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        RecordStream.writeString(out, mNotes);
+        RecordStream.writeString(out, mTitle);
+        SleepStageInternal.writeStagesToStream(mStages, out);
+    }
+
     @Override
     public void populateIntervalRecordFrom(@NonNull Parcel parcel) {
         mNotes = parcel.readString();
@@ -99,6 +110,13 @@ public final class SleepSessionRecordInternal extends IntervalRecordInternal<Sle
         mStages = SleepStageInternal.populateStagesFromParcel(parcel);
     }
 
+    @Override
+    public void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mNotes = RecordStream.readString(in);
+        mTitle = RecordStream.readString(in);
+        mStages = SleepStageInternal.populateStagesFromStream(in);
+    }
+
     @NonNull
     @Override
     public SleepSessionRecord toExternalRecord() {
@@ -18,10 +18,14 @@ package android.health.connect.internal.datatypes;
 
 import android.annotation.NonNull;
 import android.health.connect.datatypes.SleepSessionRecord;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
 import com.android.internal.annotations.VisibleForTesting;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -74,6 +78,37 @@ public final class SleepStageInternal {
         stages.forEach((stage) -> stage.writeToParcel(parcel));
     }
 
+    static void writeStagesToStream(List<SleepStageInternal> stages, DataOutputStream out)
+            throws IOException {
+        if (stages == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(stages.size());
+        for (SleepStageInternal stage : stages) {
+            out.writeLong(stage.mStartTime);
+            out.writeLong(stage.mEndTime);
+            out.writeInt(stage.mStageType);
+        }
+    }
+
+    static List<SleepStageInternal> populateStagesFromStream(DataInputStream in)
+            throws IOException {
+        int size = RecordStream.readSize(in);
+        if (size == 0) {
+            return null;
+        }
+        ArrayList<SleepStageInternal> stages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            stages.add(
+                    new SleepStageInternal()
+                            .setStartTime(in.readLong())
+                            .setEndTime(in.readLong())
+                            .setStageType(in.readInt()));
+        }
+        return stages;
+    }
+
     /** Writes record to parcel. */
     @VisibleForTesting
     public void writeToParcel(Parcel parcel) {
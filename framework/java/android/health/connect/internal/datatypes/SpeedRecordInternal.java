@@ -21,8 +21,12 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.SpeedRecord;
 import android.health.connect.datatypes.units.Velocity;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -48,6 +52,15 @@ public class SpeedRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        int size = RecordStream.readSize(in);
+        mSpeedRecordSamples = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            mSpeedRecordSamples.add(new SpeedRecordSample(in.readDouble(), in.readLong()));
+        }
+    }
+
     @Override
     @NonNull
     public Set<SpeedRecordSample> getSamples() {
@@ -81,6 +94,15 @@ public class SpeedRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mSpeedRecordSamples.size());
+        for (SpeedRecordSample speedRecordSample : mSpeedRecordSamples) {
+            out.writeDouble(speedRecordSample.getSpeed());
+            out.writeLong(speedRecordSample.getEpochMillis());
+        }
+    }
+
     private List<SpeedRecord.SpeedRecordSample> getExternalSamples() {
         List<SpeedRecord.SpeedRecordSample> speedRecords =
                 new ArrayList<>(mSpeedRecordSamples.size());
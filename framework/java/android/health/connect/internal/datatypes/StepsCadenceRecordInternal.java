@@ -20,8 +20,12 @@ import android.annotation.NonNull;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.StepsCadenceRecord;
+import android.health.connect.internal.RecordStream;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -73,6 +77,16 @@ public class StepsCadenceRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull DataInputStream in) throws IOException {
+        int size = RecordStream.readSize(in);
+        mStepsCadenceRecordSamples = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            mStepsCadenceRecordSamples.add(
+                    new StepsCadenceRecordSample(in.readDouble(), in.readLong()));
+        }
+    }
+
     private List<StepsCadenceRecord.StepsCadenceRecordSample> getExternalSamples() {
         List<StepsCadenceRecord.StepsCadenceRecordSample> stepsCadenceRecords =
                 new ArrayList<>(mStepsCadenceRecordSamples.size());
@@ -95,6 +109,15 @@ public class StepsCadenceRecordInternal
         }
     }
 
+    @Override
+    void populateIntervalRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mStepsCadenceRecordSamples.size());
+        for (StepsCadenceRecordSample stepsCadenceRecordSample : mStepsCadenceRecordSamples) {
+            out.writeDouble(stepsCadenceRecordSample.getRate());
+            out.writeLong(stepsCadenceRecordSample.getEpochMillis());
+        }
+    }
+
     /**
      * @see StepsCadenceRecord.StepsCadenceRecordSample
      */
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.Vo2MaxRecord;
 import android.health.connect.datatypes.Vo2MaxRecord.Vo2MaxMeasurementMethod;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see Vo2MaxRecord
  * @hide
@@ -73,9 +77,21 @@ public final class Vo2MaxRecordInternal extends InstantRecordInternal<Vo2MaxReco
         mVo2MillilitersPerMinuteKilogram = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mMeasurementMethod = in.readInt();
+        mVo2MillilitersPerMinuteKilogram = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeInt(mMeasurementMethod);
         parcel.writeDouble(mVo2MillilitersPerMinuteKilogram);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(mMeasurementMethod);
+        out.writeDouble(mVo2MillilitersPerMinuteKilogram);
+    }
 }
@@ -22,6 +22,10 @@ import android.health.connect.datatypes.WeightRecord;
 import android.health.connect.datatypes.units.Mass;
 import android.os.Parcel;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * @see WeightRecord
  * @hide
@@ -54,8 +58,18 @@ public final class WeightRecordInternal extends InstantRecordInternal<WeightReco
         mWeight = parcel.readDouble();
     }
 
+    @Override
+    void populateInstantRecordFrom(@NonNull DataInputStream in) throws IOException {
+        mWeight = in.readDouble();
+    }
+
     @Override
     void populateInstantRecordTo(@NonNull Parcel parcel) {
         parcel.writeDouble(mWeight);
     }
+
+    @Override
+    void populateInstantRecordTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeDouble(mWeight);
+    }
 }
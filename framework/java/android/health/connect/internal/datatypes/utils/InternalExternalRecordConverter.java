@@ -19,8 +19,10 @@ package android.health.connect.internal.datatypes.utils;
 import static android.health.connect.datatypes.validation.ValidationUtils.INTDEF_VALIDATION_ERROR_PREFIX;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.datatypes.Record;
 import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.datatypes.MetadataObjectsPool;
 import android.health.connect.internal.datatypes.RecordInternal;
 
 import java.lang.reflect.InvocationTargetException;
@@ -83,17 +85,42 @@ public final class InternalExternalRecordConverter {
         List<Record> externalRecordList = new ArrayList<>(recordInternals.size());
 
         for (RecordInternal<?> recordInternal : recordInternals) {
-            try {
-            externalRecordList.add(recordInternal.toExternalRecord());
-            } catch (IllegalArgumentException illegalArgumentException) {
-                if (!illegalArgumentException
-                        .getMessage()
-                        .contains(INTDEF_VALIDATION_ERROR_PREFIX)) {
-                    throw illegalArgumentException;
-                }
+            Record record = toExternalRecordIfValid(recordInternal, /* pool= */ null);
+            if (record != null) {
+                externalRecordList.add(record);
             }
         }
 
         return externalRecordList;
     }
+
+    /**
+     * Returns the records of {@code recordInternals}, each converted to an external record the
+     * first time it is accessed. Equal data origins and devices are shared between the records.
+     * Conversion failures are thrown by the access which converts the record, see {@link
+     * LazyExternalRecordList}.
+     */
+    @NonNull
+    public List<Record> getLazyExternalRecords(@NonNull List<RecordInternal<?>> recordInternals) {
+        return new LazyExternalRecordList(recordInternals);
+    }
+
+    /**
+     * Returns the external record of {@code recordInternal}, or null if one of its values is not
+     * known to this version of the API.
+     */
+    @Nullable
+    static Record toExternalRecordIfValid(
+            @NonNull RecordInternal<?> recordInternal, @Nullable MetadataObjectsPool pool) {
+        try {
+            return pool == null
+                    ? recordInternal.toExternalRecord()
+                    : recordInternal.toExternalRecord(pool);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            if (!illegalArgumentException.getMessage().contains(INTDEF_VALIDATION_ERROR_PREFIX)) {
+                throw illegalArgumentException;
+            }
+            return null;
+        }
+    }
 }
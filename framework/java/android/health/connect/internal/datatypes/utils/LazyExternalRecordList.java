@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.internal.datatypes.utils;
+
+import android.annotation.NonNull;
+import android.health.connect.datatypes.Record;
+import android.health.connect.internal.datatypes.MetadataObjectsPool;
+import android.health.connect.internal.datatypes.RecordInternal;
+
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A list of the external records of a page of {@link RecordInternal}s, which converts each record
+ * the first time it is accessed.
+ *
+ * <p>Records with values unknown to this version of the API are left out, as in {@link
+ * InternalExternalRecordConverter#getExternalRecords}. The records are hence converted in order:
+ * accessing a record converts the records before it, and {@link #size()} converts all of them.
+ * Iterating converts the records one by one. A converted {@link RecordInternal} is released.
+ *
+ * <p>A record which fails to convert for another reason throws from the access which converts
+ * it, in the thread of the client, rather than from the binder callback which received the page.
+ *
+ * <p>The list is thread safe and can be modified, the first modification converts all the
+ * records.
+ *
+ * @hide
+ */
+final class LazyExternalRecordList extends AbstractList<Record> implements RandomAccess {
+    private final MetadataObjectsPool mMetadataObjectsPool = new MetadataObjectsPool();
+
+    @GuardedBy("this")
+    private final RecordInternal<?>[] mRecordInternals;
+
+    @GuardedBy("this")
+    private final List<Record> mRecords;
+
+    @GuardedBy("this")
+    private int mNextRecordInternal;
+
+    LazyExternalRecordList(@NonNull List<RecordInternal<?>> recordInternals) {
+        mRecordInternals = recordInternals.toArray(new RecordInternal<?>[0]);
+        mRecords = new ArrayList<>(mRecordInternals.length);
+    }
+
+    @Override
+    public synchronized Record get(int index) {
+        convertUntil(index + 1);
+        return mRecords.get(index);
+    }
+
+    @Override
+    public synchronized int size() {
+        convertUntil(Integer.MAX_VALUE);
+        return mRecords.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !hasRecord(0);
+    }
+
+    @Override
+    public synchronized Record set(int index, Record record) {
+        convertUntil(Integer.MAX_VALUE);
+        return mRecords.set(index, record);
+    }
+
+    @Override
+    public synchronized void add(int index, Record record) {
+        convertUntil(Integer.MAX_VALUE);
+        mRecords.add(index, record);
+        modCount++;
+    }
+
+    @Override
+    public synchronized Record remove(int index) {
+        convertUntil(Integer.MAX_VALUE);
+        modCount++;
+        return mRecords.remove(index);
+    }
+
+    @NonNull
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<>() {
+            private int mNext;
+            private int mLastReturned = -1;
+
+            @Override
+            public boolean hasNext() {
+                return hasRecord(mNext);
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                mLastReturned = mNext++;
+                return get(mLastReturned);
+            }
+
+            @Override
+            public void remove() {
+                if (mLastReturned < 0) {
+                    throw new IllegalStateException();
+                }
+                LazyExternalRecordList.this.remove(mLastReturned);
+                mNext = mLastReturned;
+                mLastReturned = -1;
+            }
+        };
+    }
+
+    private synchronized boolean hasRecord(int index) {
+        convertUntil(index + 1);
+        return index < mRecords.size();
+    }
+
+    /** Converts records until {@code count} of them are converted, or all of them are. */
+    @GuardedBy("this")
+    private void convertUntil(int count) {
+        while (mRecords.size() < count && mNextRecordInternal < mRecordInternals.length) {
+            RecordInternal<?> recordInternal = mRecordInternals[mNextRecordInternal];
+            mRecordInternals[mNextRecordInternal++] = null;
+            Record record =
+                    InternalExternalRecordConverter.toExternalRecordIfValid(
+                            recordInternal, mMetadataObjectsPool);
+            if (record != null) {
+                mRecords.add(record);
+            }
+        }
+    }
+}
@@ -83,6 +83,28 @@ public final class RateLimiter {
         }
     }
 
+    /**
+     * Spends {@code numberOfRecords} from the bulk import quota of {@code uid}. Bulk imports are
+     * metered by number of records instead of number of calls, independently of the write quota.
+     */
+    public static void tryAcquireBulkImportQuota(int uid, int numberOfRecords) {
+        sLock.readLock().lock();
+        try {
+            if (!sRateLimiterEnabled) {
+                return;
+            }
+        } finally {
+            sLock.readLock().unlock();
+        }
+        synchronized (getLockObject(uid)) {
+            spendResourcesIfAvailable(
+                    uid,
+                    getAffectedQuotaBuckets(
+                            QuotaCategory.QUOTA_CATEGORY_BULK_IMPORT, /* isInForeground= */ false),
+                    numberOfRecords);
+        }
+    }
+
     public static void checkMaxChunkMemoryUsage(long memoryCost) {
         sLock.readLock().lock();
         try {
@@ -123,6 +145,23 @@ public final class RateLimiter {
         }
     }
 
+    /**
+     * Returns the configured maximum size in bytes of a single record. Unlike {@link
+     * #checkMaxRecordMemoryUsage}, the limit applies even if rate limiting is disabled, so that it
+     * can bound the memory allocated to read a record.
+     */
+    public static int getMaxRecordMemoryUsage() {
+        return getConfiguredMaxApiMemoryQuota(RECORD_SIZE_LIMIT_IN_BYTES);
+    }
+
+    /**
+     * Returns the configured maximum size in bytes of a chunk of records, which applies even if
+     * rate limiting is disabled.
+     */
+    public static int getMaxChunkMemoryUsage() {
+        return getConfiguredMaxApiMemoryQuota(CHUNK_SIZE_LIMIT_IN_BYTES);
+    }
+
     public static void clearCache() {
         sUserIdToQuotasMap.clear();
     }
@@ -229,6 +268,7 @@ public final class RateLimiter {
             case QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_FOREGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_24H_BACKGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_24H_FOREGROUND:
+            case QuotaBucket.QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H:
                 return Duration.ofHours(24);
             case QuotaBucket.QUOTA_BUCKET_WRITES_PER_15M_BACKGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_15M_FOREGROUND:
@@ -280,6 +320,8 @@ public final class RateLimiter {
                             QuotaBucket.QUOTA_BUCKET_WRITES_PER_15M_BACKGROUND,
                             QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_BACKGROUND);
                 }
+            case QuotaCategory.QUOTA_CATEGORY_BULK_IMPORT:
+                return List.of(QuotaBucket.QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H);
             case QuotaCategory.QUOTA_CATEGORY_UNDEFINED:
             case QuotaCategory.QUOTA_CATEGORY_UNMETERED:
                 throw new IllegalArgumentException("Invalid quota category.");
@@ -297,6 +339,7 @@ public final class RateLimiter {
         public static final int QUOTA_BUCKET_WRITES_PER_24H_FOREGROUND = 6;
         public static final int QUOTA_BUCKET_WRITES_PER_15M_BACKGROUND = 7;
         public static final int QUOTA_BUCKET_WRITES_PER_24H_BACKGROUND = 8;
+        public static final int QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H = 9;
 
         private QuotaBucket() {}
 
@@ -311,6 +354,7 @@ public final class RateLimiter {
             QUOTA_BUCKET_WRITES_PER_24H_FOREGROUND,
             QUOTA_BUCKET_WRITES_PER_15M_BACKGROUND,
             QUOTA_BUCKET_WRITES_PER_24H_BACKGROUND,
+            QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H,
         })
         @Retention(RetentionPolicy.SOURCE)
         public @interface Type {}
@@ -321,6 +365,7 @@ public final class RateLimiter {
         public static final int QUOTA_CATEGORY_UNMETERED = 1;
         public static final int QUOTA_CATEGORY_READ = 2;
         public static final int QUOTA_CATEGORY_WRITE = 3;
+        public static final int QUOTA_CATEGORY_BULK_IMPORT = 4;
 
         private QuotaCategory() {}
 
@@ -330,6 +375,7 @@ public final class RateLimiter {
             QUOTA_CATEGORY_UNMETERED,
             QUOTA_CATEGORY_READ,
             QUOTA_CATEGORY_WRITE,
+            QUOTA_CATEGORY_BULK_IMPORT,
         })
         @Retention(RetentionPolicy.SOURCE)
         public @interface Type {}
@@ -61,6 +61,8 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
             "max_write_requests_per_15m_background";
     private static final String MAX_WRITE_CHUNK_SIZE_FLAG = "max_write_chunk_size";
     private static final String MAX_WRITE_SINGLE_RECORD_SIZE_FLAG = "max_write_single_record_size";
+    private static final String MAX_BULK_IMPORT_RECORDS_PER_24H_FLAG =
+            "max_bulk_import_records_per_24h";
 
     // Flag to enable/disable sleep and exercise sessions.
     private static final String SESSION_DATATYPE_FEATURE_FLAG = "session_types_enable";
@@ -109,6 +111,12 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
     public static final String ENABLE_MIGRATION_NOTIFICATIONS_FLAG =
             "enable_migration_notifications";
 
+    @VisibleForTesting
+    public static final String AGGREGATION_PARALLELISM_FLAG = "aggregation_parallelism";
+
+    @VisibleForTesting
+    public static final String ENABLE_TIME_ORDERED_INSERTS_FLAG = "enable_time_ordered_inserts";
+
     private static final boolean SESSION_DATATYPE_DEFAULT_FLAG_VALUE = true;
     private static final boolean EXERCISE_ROUTE_DEFAULT_FLAG_VALUE = true;
     public static final boolean ENABLE_RATE_LIMITER_DEFAULT_FLAG_VALUE = true;
@@ -118,6 +126,7 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
     public static final int QUOTA_BUCKET_PER_24H_BACKGROUND_DEFAULT_FLAG_VALUE = 8000;
     public static final int CHUNK_SIZE_LIMIT_IN_BYTES_DEFAULT_FLAG_VALUE = 5000000;
     public static final int RECORD_SIZE_LIMIT_IN_BYTES_DEFAULT_FLAG_VALUE = 1000000;
+    public static final int QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H_DEFAULT_FLAG_VALUE = 1000000;
 
     @VisibleForTesting
     public static final int MIGRATION_STATE_IN_PROGRESS_COUNT_DEFAULT_FLAG_VALUE = 5;
@@ -148,6 +157,11 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
     @VisibleForTesting
     public static final boolean ENABLE_MIGRATION_NOTIFICATIONS_DEFAULT_FLAG_VALUE = true;
 
+    @VisibleForTesting public static final int AGGREGATION_PARALLELISM_DEFAULT_FLAG_VALUE = 4;
+
+    @VisibleForTesting
+    public static final boolean ENABLE_TIME_ORDERED_INSERTS_DEFAULT_FLAG_VALUE = true;
+
     private static HealthConnectDeviceConfigManager sDeviceConfigManager;
     private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
     private static final String HEALTH_FITNESS_NAMESPACE = DeviceConfig.NAMESPACE_HEALTH_FITNESS;
@@ -250,6 +264,20 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
                     ENABLE_MIGRATION_NOTIFICATIONS_FLAG,
                     ENABLE_MIGRATION_NOTIFICATIONS_DEFAULT_FLAG_VALUE);
 
+    @GuardedBy("mLock")
+    private int mAggregationParallelism =
+            DeviceConfig.getInt(
+                    HEALTH_FITNESS_NAMESPACE,
+                    AGGREGATION_PARALLELISM_FLAG,
+                    AGGREGATION_PARALLELISM_DEFAULT_FLAG_VALUE);
+
+    @GuardedBy("mLock")
+    private boolean mEnableTimeOrderedInserts =
+            DeviceConfig.getBoolean(
+                    HEALTH_FITNESS_NAMESPACE,
+                    ENABLE_TIME_ORDERED_INSERTS_FLAG,
+                    ENABLE_TIME_ORDERED_INSERTS_DEFAULT_FLAG_VALUE);
+
     @NonNull
     @VisibleForTesting(visibility = VisibleForTesting.Visibility.PACKAGE)
     public static void initializeInstance(Context context) {
@@ -286,6 +314,8 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
         sFlagsToTrack.add(ENABLE_PAUSE_STATE_CHANGE_JOBS_FLAG);
         sFlagsToTrack.add(ENABLE_COMPLETE_STATE_CHANGE_JOBS_FLAG);
         sFlagsToTrack.add(ENABLE_MIGRATION_NOTIFICATIONS_FLAG);
+        sFlagsToTrack.add(AGGREGATION_PARALLELISM_FLAG);
+        sFlagsToTrack.add(ENABLE_TIME_ORDERED_INSERTS_FLAG);
     }
 
     /** Returns if operations with exercise route are enabled. */
@@ -447,6 +477,29 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
         }
     }
 
+    /**
+     * Returns the maximum number of aggregation queries of a single request which are run
+     * concurrently.
+     */
+    public int getAggregationParallelism() {
+        mLock.readLock().lock();
+        try {
+            return mAggregationParallelism;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /** Returns if inserts of records in time order are appended without conflict resolution. */
+    public boolean areTimeOrderedInsertsEnabled() {
+        mLock.readLock().lock();
+        try {
+            return mEnableTimeOrderedInserts;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
     /** Updates rate limiting quota values. */
     public void updateRateLimiterValues() {
         Map<Integer, Integer> quotaBucketToMaxApiCallQuotaMap = new HashMap<>();
@@ -499,6 +552,12 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
                         DeviceConfig.NAMESPACE_HEALTH_FITNESS,
                         MAX_WRITE_REQUESTS_PER_15M_BACKGROUND_FLAG,
                         QUOTA_BUCKET_PER_15M_BACKGROUND_DEFAULT_FLAG_VALUE));
+        quotaBucketToMaxApiCallQuotaMap.put(
+                QuotaBucket.QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H,
+                DeviceConfig.getInt(
+                        DeviceConfig.NAMESPACE_HEALTH_FITNESS,
+                        MAX_BULK_IMPORT_RECORDS_PER_24H_FLAG,
+                        QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H_DEFAULT_FLAG_VALUE));
         quotaBucketToMaxMemoryQuotaMap.put(
                 RateLimiter.CHUNK_SIZE_LIMIT_IN_BYTES,
                 DeviceConfig.getInt(
@@ -681,6 +740,26 @@ public class HealthConnectDeviceConfigManager implements DeviceConfig.OnProperti
                 } finally {
                     mLock.writeLock().unlock();
                 }
+            } else if (name.equals(AGGREGATION_PARALLELISM_FLAG)) {
+                mLock.writeLock().lock();
+                try {
+                    mAggregationParallelism =
+                            properties.getInt(
+                                    AGGREGATION_PARALLELISM_FLAG,
+                                    AGGREGATION_PARALLELISM_DEFAULT_FLAG_VALUE);
+                } finally {
+                    mLock.writeLock().unlock();
+                }
+            } else if (name.equals(ENABLE_TIME_ORDERED_INSERTS_FLAG)) {
+                mLock.writeLock().lock();
+                try {
+                    mEnableTimeOrderedInserts =
+                            properties.getBoolean(
+                                    ENABLE_TIME_ORDERED_INSERTS_FLAG,
+                                    ENABLE_TIME_ORDERED_INSERTS_DEFAULT_FLAG_VALUE);
+                } finally {
+                    mLock.writeLock().unlock();
+                }
             }
         }
     }
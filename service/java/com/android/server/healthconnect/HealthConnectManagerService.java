@@ -40,7 +40,9 @@ import com.android.server.healthconnect.permission.HealthConnectPermissionHelper
 import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
 import com.android.server.healthconnect.permission.PermissionPackageChangesOrchestrator;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsRequestHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.DeviceInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
@@ -57,6 +59,7 @@ public class HealthConnectManagerService extends SystemService {
     private static final String TAG = "HealthConnectManagerService";
     private final Context mContext;
     private final PermissionPackageChangesOrchestrator mPermissionPackageChangesOrchestrator;
+    private final FirstGrantTimeManager mFirstGrantTimeManager;
     private final HealthConnectServiceImpl mHealthConnectService;
     private final TransactionManager mTransactionManager;
     private final UserManager mUserManager;
@@ -72,6 +75,7 @@ public class HealthConnectManagerService extends SystemService {
         FirstGrantTimeManager firstGrantTimeManager =
                 new FirstGrantTimeManager(
                         context, permissionIntentTracker, FirstGrantTimeDatastore.createInstance());
+        mFirstGrantTimeManager = firstGrantTimeManager;
         HealthConnectPermissionHelper permissionHelper =
                 new HealthConnectPermissionHelper(
                         context,
@@ -142,10 +146,17 @@ public class HealthConnectManagerService extends SystemService {
         }
 
         HealthConnectThreadScheduler.shutdownThreadPools();
+        // Shutting down the executors drops a scheduled flush of the grant times, which are not
+        // stored in the DB.
+        mFirstGrantTimeManager.flushPendingWrites();
         AppInfoHelper.getInstance().clearCache();
         DeviceInfoHelper.getInstance().clearCache();
         HealthDataCategoryPriorityHelper.getInstance().clearCache();
         PreferenceHelper.getInstance().clearCache();
+        ActivityDateHelper.getInstance().clearCache();
+        // Exception to the note above: the issued tokens must reach the DB of the previous user
+        // before it is closed.
+        ChangeLogsRequestHelper.getInstance().persistPendingTokensAndClearCache();
         mTransactionManager.onUserSwitching();
         RateLimiter.clearCache();
         HealthConnectThreadScheduler.resetThreadPools();
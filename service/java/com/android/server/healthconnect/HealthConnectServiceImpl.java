@@ -24,6 +24,9 @@ import static android.health.connect.HealthConnectException.ERROR_INTERNAL;
 import static android.health.connect.HealthConnectException.ERROR_SECURITY;
 import static android.health.connect.HealthPermissions.MANAGE_HEALTH_DATA_PERMISSION;
 
+import static com.android.server.healthconnect.logging.ApiLatencyStats.PHASE_DATABASE;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.PHASE_PERMISSION_CHECK;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.PHASE_RESPONSE;
 import static com.android.server.healthconnect.logging.HealthConnectServiceLogger.ApiMethods.DELETE_DATA;
 import static com.android.server.healthconnect.logging.HealthConnectServiceLogger.ApiMethods.GET_CHANGES;
 import static com.android.server.healthconnect.logging.HealthConnectServiceLogger.ApiMethods.GET_CHANGES_TOKEN;
@@ -49,12 +52,14 @@ import android.health.connect.HealthConnectManager;
 import android.health.connect.HealthConnectManager.DataDownloadState;
 import android.health.connect.HealthDataCategory;
 import android.health.connect.HealthPermissions;
+import android.health.connect.ImportRecordsRequest;
 import android.health.connect.RecordTypeInfoResponse;
 import android.health.connect.accesslog.AccessLog;
 import android.health.connect.accesslog.AccessLogsResponseParcel;
 import android.health.connect.aidl.ActivityDatesRequestParcel;
 import android.health.connect.aidl.ActivityDatesResponseParcel;
 import android.health.connect.aidl.AggregateDataRequestParcel;
+import android.health.connect.aidl.AggregateDataResponseParcel;
 import android.health.connect.aidl.ApplicationInfoResponseParcel;
 import android.health.connect.aidl.DeleteUsingFiltersRequestParcel;
 import android.health.connect.aidl.GetPriorityResponseParcel;
@@ -66,18 +71,24 @@ import android.health.connect.aidl.IApplicationInfoResponseCallback;
 import android.health.connect.aidl.IChangeLogsResponseCallback;
 import android.health.connect.aidl.IDataStagingFinishedCallback;
 import android.health.connect.aidl.IEmptyResponseCallback;
+import android.health.connect.aidl.IExportRecordsCallback;
 import android.health.connect.aidl.IGetChangeLogTokenCallback;
 import android.health.connect.aidl.IGetHealthConnectDataStateCallback;
 import android.health.connect.aidl.IGetHealthConnectMigrationUiStateCallback;
 import android.health.connect.aidl.IGetPriorityResponseCallback;
 import android.health.connect.aidl.IHealthConnectService;
+import android.health.connect.aidl.IImportRecordsCallback;
 import android.health.connect.aidl.IInsertRecordsResponseCallback;
 import android.health.connect.aidl.IMigrationCallback;
+import android.health.connect.aidl.IReadRecordsForTypesResponseCallback;
 import android.health.connect.aidl.IReadRecordsResponseCallback;
 import android.health.connect.aidl.IRecordTypeInfoResponseCallback;
 import android.health.connect.aidl.InsertRecordsResponseParcel;
+import android.health.connect.aidl.ReadRecordsForTypesRequestParcel;
+import android.health.connect.aidl.ReadRecordsForTypesResponseParcel;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
 import android.health.connect.aidl.ReadRecordsResponseParcel;
+import android.health.connect.aidl.RecordColumnsParcel;
 import android.health.connect.aidl.RecordIdFiltersParcel;
 import android.health.connect.aidl.RecordTypeInfoResponseParcel;
 import android.health.connect.aidl.RecordsParcel;
@@ -90,6 +101,7 @@ import android.health.connect.changelog.ChangeLogsResponse.DeletedLog;
 import android.health.connect.datatypes.AppInfo;
 import android.health.connect.datatypes.DataOrigin;
 import android.health.connect.datatypes.Record;
+import android.health.connect.internal.RecordStream;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.AggregationTypeIdMapper;
 import android.health.connect.internal.datatypes.utils.RecordMapper;
@@ -120,6 +132,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.LocalManagerRegistry;
 import com.android.server.appop.AppOpsManagerLocal;
 import com.android.server.healthconnect.backuprestore.BackupRestore;
+import com.android.server.healthconnect.logging.ApiLatencyStats;
 import com.android.server.healthconnect.logging.HealthConnectServiceLogger;
 import com.android.server.healthconnect.migration.DataMigrationManager;
 import com.android.server.healthconnect.migration.MigrationCleaner;
@@ -130,6 +143,8 @@ import com.android.server.healthconnect.permission.DataPermissionEnforcer;
 import com.android.server.healthconnect.permission.FirstGrantTimeManager;
 import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
 import com.android.server.healthconnect.storage.AutoDeleteService;
+import com.android.server.healthconnect.storage.RecordExporter;
+import com.android.server.healthconnect.storage.RecordImporter;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelper;
@@ -141,15 +156,22 @@ import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCatego
 import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.request.AggregateTransactionRequest;
+import com.android.server.healthconnect.storage.request.AggregationResultCache;
 import com.android.server.healthconnect.storage.request.DeleteTransactionRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -310,6 +332,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -324,11 +347,14 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                         final List<RecordInternal<?>> recordInternals = recordsParcel.getRecords();
                         builder.setNumberOfRecords(recordInternals.size());
                         throwExceptionIfDataSyncInProgress();
+                        builder.beginPhase(PHASE_PERMISSION_CHECK);
                         mDataPermissionEnforcer.enforceRecordsWritePermissions(
                                 recordInternals, attributionSource);
                         boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                        builder.setCallerForegroundState(isInForeground);
                         tryAcquireApiCallQuota(
                                 uid, QuotaCategory.QUOTA_CATEGORY_WRITE, isInForeground, builder);
+                        builder.endPhase(PHASE_PERMISSION_CHECK);
                         Trace.traceBegin(TRACE_TAG_INSERT, TAG_INSERT);
                         UpsertTransactionRequest insertRequest =
                                 new UpsertTransactionRequest(
@@ -339,8 +365,11 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                         mDataPermissionEnforcer
                                                 .collectExtraWritePermissionStateMapping(
                                                         recordInternals, attributionSource));
+                        builder.beginPhase(PHASE_DATABASE);
                         List<String> uuids = mTransactionManager.insertAll(insertRequest);
+                        builder.endPhase(PHASE_DATABASE).beginPhase(PHASE_RESPONSE);
                         tryAndReturnResult(callback, uuids, builder);
+                        builder.endPhase(PHASE_RESPONSE);
 
                         HealthConnectThreadScheduler.scheduleInternalTask(
                                 () -> postInsertTasks(attributionSource, recordsParcel));
@@ -419,6 +448,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -432,8 +462,10 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                             .getApplicableRecordTypeIds());
                         }
 
+                        builder.beginPhase(PHASE_PERMISSION_CHECK);
                         if (!holdsDataManagementPermission) {
                             boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                            builder.setCallerForegroundState(isInForeground);
                             if (!isInForeground) {
                                 throwSecurityException(
                                         attributionSource.getPackageName()
@@ -447,10 +479,14 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                     isInForeground,
                                     builder);
                         }
-                        callback.onResult(
+                        builder.endPhase(PHASE_PERMISSION_CHECK).beginPhase(PHASE_DATABASE);
+                        AggregateDataResponseParcel aggregateDataResponseParcel =
                                 new AggregateTransactionRequest(
                                                 attributionSource.getPackageName(), request)
-                                        .getAggregateDataResponseParcel());
+                                        .getAggregateDataResponseParcel();
+                        builder.endPhase(PHASE_DATABASE).beginPhase(PHASE_RESPONSE);
+                        callback.onResult(aggregateDataResponseParcel);
+                        builder.endPhase(PHASE_RESPONSE);
                         finishDataDeliveryRead(recordTypesToTest, attributionSource);
                         builder.setDataTypesFromRecordTypes(recordTypesToTest)
                                 .setHealthDataServiceApiStatusSuccess();
@@ -509,13 +545,16 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
                         throwExceptionIfDataSyncInProgress();
                         AtomicBoolean enforceSelfRead = new AtomicBoolean();
+                        builder.beginPhase(PHASE_PERMISSION_CHECK);
                         if (!holdsDataManagementPermission) {
                             boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                            builder.setCallerForegroundState(isInForeground);
                             // If requesting app has only write permission allowed but no read
                             // permission for the record type or if app is not in foreground then
                             // allow to read its own records.
@@ -563,27 +602,35 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                     startDateAccess = startInstant.toEpochMilli();
                                 }
                             }
-                            Pair<List<RecordInternal<?>>, Long> readRecordsResponse =
-                                    mTransactionManager.readRecordsAndGetNextToken(
-                                            new ReadTransactionRequest(
-                                                    attributionSource.getPackageName(),
-                                                    request,
-                                                    startDateAccess,
-                                                    enforceSelfRead.get(),
-                                                    extraReadPermsToGrantState));
-                            builder.setNumberOfRecords(readRecordsResponse.first.size());
-                            long pageToken =
-                                    request.getRecordIdFiltersParcel() == null
-                                            ? readRecordsResponse.second
-                                            : DEFAULT_LONG;
-                            if (pageToken != DEFAULT_LONG) {
-                                // pagetoken is used here to store sorting order of the result.
-                                // An even pagetoken indicate ascending and Odd page token indicate
-                                // descending sort order. This detail from page token will be used
-                                // in next read request to have same sort order.
-                                pageToken =
-                                        request.isAscending() ? pageToken * 2 : pageToken * 2 + 1;
+                            builder.endPhase(PHASE_PERMISSION_CHECK).beginPhase(PHASE_DATABASE);
+                            ReadTransactionRequest readTransactionRequest =
+                                    new ReadTransactionRequest(
+                                            attributionSource.getPackageName(),
+                                            request,
+                                            startDateAccess,
+                                            enforceSelfRead.get(),
+                                            extraReadPermsToGrantState);
+                            List<RecordInternal<?>> records;
+                            RecordColumnsParcel recordColumns = null;
+                            long nextPagePosition;
+                            if (request.getProjection() != 0) {
+                                Pair<RecordColumnsParcel, Long> readColumnsResponse =
+                                        mTransactionManager.readRecordColumnsAndGetNextToken(
+                                                readTransactionRequest, request.getProjection());
+                                records = Collections.emptyList();
+                                recordColumns = readColumnsResponse.first;
+                                nextPagePosition = readColumnsResponse.second;
+                            } else {
+                                Pair<List<RecordInternal<?>>, Long> readRecordsResponse =
+                                        mTransactionManager.readRecordsAndGetNextToken(
+                                                readTransactionRequest);
+                                records = readRecordsResponse.first;
+                                nextPagePosition = readRecordsResponse.second;
                             }
+                            builder.endPhase(PHASE_DATABASE);
+                            builder.setNumberOfRecords(
+                                    recordColumns == null ? records.size() : recordColumns.size());
+                            long pageToken = getNextPageToken(request, nextPagePosition);
 
                             if (Constants.DEBUG) {
                                 Slog.d(TAG, "pageToken: " + pageToken);
@@ -604,17 +651,28 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                         .addAccessLog(packageName, recordTypes, READ);
                                 Trace.traceEnd(TRACE_TAG_READ_SUBTASKS);
                             }
+                            builder.beginPhase(PHASE_RESPONSE);
                             callback.onResult(
                                     new ReadRecordsResponseParcel(
-                                            new RecordsParcel(readRecordsResponse.first),
-                                            pageToken));
+                                            new RecordsParcel(records), pageToken, recordColumns));
+                            builder.endPhase(PHASE_RESPONSE);
                             finishDataDeliveryRead(request.getRecordType(), attributionSource);
                             if (requiresLogging) {
-                                logRecordTypeSpecificReadMetrics(
-                                        readRecordsResponse.first, packageName);
+                                if (recordColumns == null) {
+                                    logRecordTypeSpecificReadMetrics(records, packageName);
+                                } else {
+                                    logRecordTypeSpecificReadMetrics(
+                                            request.getRecordType(),
+                                            recordColumns.size(),
+                                            packageName);
+                                }
                             }
-                            builder.setDataTypesFromRecordInternals(readRecordsResponse.first)
-                                    .setHealthDataServiceApiStatusSuccess();
+                            if (recordColumns == null) {
+                                builder.setDataTypesFromRecordInternals(records);
+                            } else {
+                                builder.setDataTypesFromRecordTypes(recordTypes);
+                            }
+                            builder.setHealthDataServiceApiStatusSuccess();
                         } catch (TypeNotPresentException exception) {
                             // All the requested package names are not present, so simply
                             // return an empty list
@@ -629,7 +687,11 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                 callback.onResult(
                                         new ReadRecordsResponseParcel(
                                                 new RecordsParcel(new ArrayList<>()),
-                                                DEFAULT_LONG));
+                                                DEFAULT_LONG,
+                                                request.getProjection() != 0
+                                                        ? new RecordColumnsParcel(
+                                                                0, null, null, null)
+                                                        : null));
                                 builder.setHealthDataServiceApiStatusSuccess();
                             } else {
                                 builder.setHealthDataServiceApiStatusError(
@@ -642,6 +704,221 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                         Slog.e(TAG, "SQLiteException: ", sqLiteException);
                         tryAndThrowException(
                                 callback, sqLiteException, HealthConnectException.ERROR_IO);
+                    } catch (IllegalArgumentException illegalArgumentException) {
+                        builder.setHealthDataServiceApiStatusError(
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
+                        Slog.e(TAG, "IllegalArgumentException: ", illegalArgumentException);
+                        tryAndThrowException(
+                                callback,
+                                illegalArgumentException,
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
+                    } catch (SecurityException securityException) {
+                        builder.setHealthDataServiceApiStatusError(ERROR_SECURITY);
+                        Slog.e(TAG, "SecurityException: ", securityException);
+                        tryAndThrowException(callback, securityException, ERROR_SECURITY);
+                    } catch (IllegalStateException illegalStateException) {
+                        builder.setHealthDataServiceApiStatusError(ERROR_INTERNAL);
+                        Slog.e(TAG, "IllegalStateException: ", illegalStateException);
+                        tryAndThrowException(callback, illegalStateException, ERROR_INTERNAL);
+                    } catch (HealthConnectException healthConnectException) {
+                        builder.setHealthDataServiceApiStatusError(
+                                healthConnectException.getErrorCode());
+                        Slog.e(TAG, "HealthConnectException: ", healthConnectException);
+                        tryAndThrowException(
+                                callback,
+                                healthConnectException,
+                                healthConnectException.getErrorCode());
+                    } catch (Exception e) {
+                        builder.setHealthDataServiceApiStatusError(ERROR_INTERNAL);
+                        Slog.e(TAG, "Exception: ", e);
+                        tryAndThrowException(callback, e, ERROR_INTERNAL);
+                    } finally {
+                        Trace.traceEnd(TRACE_TAG_READ);
+                        builder.build().log();
+                    }
+                },
+                uid,
+                holdsDataManagementPermission);
+    }
+
+    /**
+     * Reads the records of several record types with one call. The records of each type are read
+     * as with {@link #readRecords}, in a single read transaction, and the read is recorded in one
+     * access log.
+     *
+     * @param request read request of each record type.
+     * @param callback Callback to receive result of performing this operation.
+     */
+    @Override
+    public void readRecordsForTypes(
+            @NonNull AttributionSource attributionSource,
+            @NonNull ReadRecordsForTypesRequestParcel request,
+            @NonNull IReadRecordsForTypesResponseCallback callback) {
+        final int uid = Binder.getCallingUid();
+        final int pid = Binder.getCallingPid();
+        final UserHandle userHandle = Binder.getCallingUserHandle();
+        final boolean holdsDataManagementPermission = hasDataManagementPermission(uid, pid);
+        final HealthConnectServiceLogger.Builder builder =
+                new HealthConnectServiceLogger.Builder(holdsDataManagementPermission, READ_DATA)
+                        .setPackageName(attributionSource.getPackageName());
+
+        HealthConnectThreadScheduler.schedule(
+                mContext,
+                () -> {
+                    builder.markTaskStarted();
+                    try {
+                        enforceIsForegroundUser(userHandle);
+                        verifyPackageNameFromUid(uid, attributionSource);
+                        throwExceptionIfDataSyncInProgress();
+                        final List<ReadRecordsRequestParcel> requests = request.getRequests();
+                        final Set<Integer> recordTypes = new ArraySet<>(requests.size());
+                        for (ReadRecordsRequestParcel recordTypeRequest : requests) {
+                            recordTypes.add(recordTypeRequest.getRecordType());
+                        }
+                        final Set<Integer> selfReadRecordTypes = new ArraySet<>();
+                        builder.beginPhase(PHASE_PERMISSION_CHECK);
+                        if (!holdsDataManagementPermission) {
+                            boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                            builder.setCallerForegroundState(isInForeground);
+                            for (int recordType : recordTypes) {
+                                if (mDataPermissionEnforcer.enforceReadAccessAndGetEnforceSelfRead(
+                                                recordType, attributionSource)
+                                        || !isInForeground) {
+                                    selfReadRecordTypes.add(recordType);
+                                }
+                            }
+                            // A single quota is acquired for the whole batch.
+                            tryAcquireApiCallQuota(
+                                    uid,
+                                    QuotaCategory.QUOTA_CATEGORY_READ,
+                                    isInForeground,
+                                    builder);
+                        }
+                        final Map<String, Boolean> extraReadPermsToGrantState =
+                                Collections.unmodifiableMap(
+                                        mDataPermissionEnforcer
+                                                .collectExtraReadPermissionToStateMapping(
+                                                        recordTypes, attributionSource));
+
+                        Trace.traceBegin(TRACE_TAG_READ, TAG_READ);
+                        long startDateAccess = DEFAULT_LONG;
+                        if (!holdsDataManagementPermission) {
+                            Instant startInstant =
+                                    mPermissionHelper.getHealthDataStartDateAccess(
+                                            attributionSource.getPackageName(), userHandle);
+                            if (startInstant == null) {
+                                throwExceptionIncorrectPermissionState();
+                            }
+                            startDateAccess = startInstant.toEpochMilli();
+                        }
+
+                        final String packageName = attributionSource.getPackageName();
+                        List<ReadTransactionRequest> readTransactionRequests = new ArrayList<>();
+                        List<Integer> readRequestIndices = new ArrayList<>();
+                        for (int i = 0; i < requests.size(); i++) {
+                            ReadRecordsRequestParcel recordTypeRequest = requests.get(i);
+                            long requestStartDateAccess = recordTypeRequest.getStartTime();
+                            // Same as readRecords: the start date access is always used for local
+                            // time filters.
+                            if (!holdsDataManagementPermission
+                                    && (recordTypeRequest.usesLocalTimeFilter()
+                                            || startDateAccess > requestStartDateAccess)) {
+                                requestStartDateAccess = startDateAccess;
+                            }
+                            try {
+                                readTransactionRequests.add(
+                                        new ReadTransactionRequest(
+                                                packageName,
+                                                recordTypeRequest,
+                                                requestStartDateAccess,
+                                                selfReadRecordTypes.contains(
+                                                        recordTypeRequest.getRecordType()),
+                                                extraReadPermsToGrantState));
+                                readRequestIndices.add(i);
+                            } catch (TypeNotPresentException exception) {
+                                // None of the requested package names are present, so simply
+                                // return no records for this record type.
+                                if (!ReadTransactionRequest.TYPE_NOT_PRESENT_PACKAGE_NAME.equals(
+                                        exception.typeName())) {
+                                    throw exception;
+                                }
+                            }
+                        }
+                        builder.endPhase(PHASE_PERMISSION_CHECK).beginPhase(PHASE_DATABASE);
+                        List<Pair<List<RecordInternal<?>>, Long>> readRecordsResponses =
+                                mTransactionManager.readRecordsAndGetNextTokens(
+                                        readTransactionRequests);
+                        builder.endPhase(PHASE_DATABASE);
+
+                        List<ReadRecordsResponseParcel> responses =
+                                new ArrayList<>(requests.size());
+                        for (int i = 0; i < requests.size(); i++) {
+                            responses.add(
+                                    new ReadRecordsResponseParcel(
+                                            new RecordsParcel(new ArrayList<>()), DEFAULT_LONG));
+                        }
+                        List<RecordInternal<?>> allRecords = new ArrayList<>();
+                        for (int i = 0; i < readRecordsResponses.size(); i++) {
+                            int requestIndex = readRequestIndices.get(i);
+                            Pair<List<RecordInternal<?>>, Long> readRecordsResponse =
+                                    readRecordsResponses.get(i);
+                            allRecords.addAll(readRecordsResponse.first);
+                            responses.set(
+                                    requestIndex,
+                                    new ReadRecordsResponseParcel(
+                                            new RecordsParcel(readRecordsResponse.first),
+                                            getNextPageToken(
+                                                    requests.get(requestIndex),
+                                                    readRecordsResponse.second)));
+                        }
+                        builder.setNumberOfRecords(allRecords.size());
+
+                        // Calls from controller APK should not be recorded in access logs, nor the
+                        // record types for which the app is reading only its own data. All the
+                        // other record types are recorded in a single access log.
+                        List<Integer> loggedRecordTypes = new ArrayList<>();
+                        if (!holdsDataManagementPermission) {
+                            for (int recordType : recordTypes) {
+                                if (!selfReadRecordTypes.contains(recordType)) {
+                                    loggedRecordTypes.add(recordType);
+                                }
+                            }
+                        }
+                        if (!loggedRecordTypes.isEmpty()) {
+                            Trace.traceBegin(
+                                    TRACE_TAG_READ_SUBTASKS, TAG_READ.concat("AddAccessLog"));
+                            AccessLogsHelper.getInstance()
+                                    .addAccessLog(packageName, loggedRecordTypes, READ);
+                            Trace.traceEnd(TRACE_TAG_READ_SUBTASKS);
+                        }
+                        builder.beginPhase(PHASE_RESPONSE);
+                        callback.onResult(new ReadRecordsForTypesResponseParcel(responses));
+                        builder.endPhase(PHASE_RESPONSE);
+                        finishDataDeliveryRead(new ArrayList<>(recordTypes), attributionSource);
+                        if (!loggedRecordTypes.isEmpty()) {
+                            List<RecordInternal<?>> loggedRecords = new ArrayList<>();
+                            for (RecordInternal<?> record : allRecords) {
+                                if (loggedRecordTypes.contains(record.getRecordType())) {
+                                    loggedRecords.add(record);
+                                }
+                            }
+                            logRecordTypeSpecificReadMetrics(loggedRecords, packageName);
+                        }
+                        builder.setDataTypesFromRecordInternals(allRecords)
+                                .setHealthDataServiceApiStatusSuccess();
+                    } catch (SQLiteException sqLiteException) {
+                        builder.setHealthDataServiceApiStatusError(HealthConnectException.ERROR_IO);
+                        Slog.e(TAG, "SQLiteException: ", sqLiteException);
+                        tryAndThrowException(
+                                callback, sqLiteException, HealthConnectException.ERROR_IO);
+                    } catch (IllegalArgumentException illegalArgumentException) {
+                        builder.setHealthDataServiceApiStatusError(
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
+                        Slog.e(TAG, "IllegalArgumentException: ", illegalArgumentException);
+                        tryAndThrowException(
+                                callback,
+                                illegalArgumentException,
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
                     } catch (SecurityException securityException) {
                         builder.setHealthDataServiceApiStatusError(ERROR_SECURITY);
                         Slog.e(TAG, "SecurityException: ", securityException);
@@ -671,6 +948,241 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 holdsDataManagementPermission);
     }
 
+    /**
+     * @see HealthConnectManager#exportRecords
+     */
+    @Override
+    public void exportRecords(
+            @NonNull AttributionSource attributionSource,
+            @NonNull int[] recordTypes,
+            @NonNull ParcelFileDescriptor pfd,
+            @NonNull IExportRecordsCallback callback) {
+        final int uid = Binder.getCallingUid();
+        final int pid = Binder.getCallingPid();
+        final UserHandle userHandle = Binder.getCallingUserHandle();
+
+        HealthConnectThreadScheduler.scheduleExportTask(
+                () -> {
+                    try (FileOutputStream outputStream =
+                            new FileOutputStream(pfd.getFileDescriptor())) {
+                        enforceIsForegroundUser(userHandle);
+                        verifyPackageNameFromUid(uid, attributionSource);
+                        mContext.enforcePermission(MANAGE_HEALTH_DATA_PERMISSION, pid, uid, null);
+                        throwExceptionIfDataSyncInProgress();
+                        List<Integer> recordTypesToExport =
+                                recordTypes.length != 0
+                                        ? Arrays.stream(recordTypes)
+                                                .boxed()
+                                                .collect(Collectors.toList())
+                                        : new ArrayList<>(
+                                                RecordMapper.getInstance()
+                                                        .getRecordIdToExternalRecordClassMap()
+                                                        .keySet());
+
+                        long numberOfRecords =
+                                new RecordExporter(mTransactionManager)
+                                        .exportRecords(
+                                                recordTypesToExport,
+                                                new RecordStream.Writer(outputStream),
+                                                numberOfRecordsWritten ->
+                                                        tryAndReportProgress(
+                                                                callback, numberOfRecordsWritten));
+                        callback.onResult(numberOfRecords);
+                    } catch (SQLiteException | IOException exception) {
+                        Slog.e(TAG, "Exception: ", exception);
+                        tryAndThrowException(callback, exception, HealthConnectException.ERROR_IO);
+                    } catch (IllegalArgumentException illegalArgumentException) {
+                        Slog.e(TAG, "IllegalArgumentException: ", illegalArgumentException);
+                        tryAndThrowException(
+                                callback,
+                                illegalArgumentException,
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
+                    } catch (SecurityException securityException) {
+                        Slog.e(TAG, "SecurityException: ", securityException);
+                        tryAndThrowException(callback, securityException, ERROR_SECURITY);
+                    } catch (HealthConnectException healthConnectException) {
+                        Slog.e(TAG, "HealthConnectException: ", healthConnectException);
+                        tryAndThrowException(
+                                callback,
+                                healthConnectException,
+                                healthConnectException.getErrorCode());
+                    } catch (Exception exception) {
+                        Slog.e(TAG, "Exception: ", exception);
+                        tryAndThrowException(callback, exception, ERROR_INTERNAL);
+                    } finally {
+                        try {
+                            pfd.close();
+                        } catch (IOException e) {
+                            Slog.e(TAG, "Failed to close the export file descriptor", e);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @see HealthConnectManager#importRecords
+     */
+    @Override
+    public void importRecords(
+            @NonNull AttributionSource attributionSource,
+            @NonNull ParcelFileDescriptor pfd,
+            int commitInterval,
+            int maxErrors,
+            @NonNull IImportRecordsCallback callback) {
+        final int uid = Binder.getCallingUid();
+        final int pid = Binder.getCallingPid();
+        final UserHandle userHandle = Binder.getCallingUserHandle();
+        // Imports are logged as inserts, there is no API method for them in the atom.
+        final HealthConnectServiceLogger.Builder builder =
+                new HealthConnectServiceLogger.Builder(false, INSERT_DATA)
+                        .setPackageName(attributionSource.getPackageName());
+
+        HealthConnectThreadScheduler.schedule(
+                mContext,
+                () -> {
+                    builder.markTaskStarted();
+                    // Types of the imported records.
+                    final ArraySet<Integer> recordTypes = new ArraySet<>();
+                    try (FileInputStream inputStream =
+                            new FileInputStream(pfd.getFileDescriptor())) {
+                        enforceIsForegroundUser(userHandle);
+                        verifyPackageNameFromUid(uid, attributionSource);
+                        if (hasDataManagementPermission(uid, pid)) {
+                            throw new SecurityException(
+                                    "Apps with android.permission.MANAGE_HEALTH_DATA permission are"
+                                            + " not allowed to insert records");
+                        }
+                        throwExceptionIfDataSyncInProgress();
+                        // Validated again as the arguments are not checked on the client side
+                        // when the binder is called directly.
+                        if (commitInterval < 1
+                                || commitInterval > ImportRecordsRequest.MAXIMUM_COMMIT_INTERVAL
+                                || maxErrors < 0
+                                || maxErrors > ImportRecordsRequest.MAXIMUM_MAX_ERRORS) {
+                            throw new IllegalArgumentException(
+                                    "Invalid commit interval "
+                                            + commitInterval
+                                            + " or max errors "
+                                            + maxErrors);
+                        }
+                        // The stream is parsed on the import parser executor while the records are
+                        // written on this thread.
+                        RecordImporter recordImporter =
+                                new RecordImporter(
+                                        HealthConnectThreadScheduler::scheduleImportParserTask,
+                                        commitInterval,
+                                        maxErrors,
+                                        RateLimiter.getMaxRecordMemoryUsage(),
+                                        RateLimiter.getMaxChunkMemoryUsage());
+                        recordImporter.importRecords(
+                                inputStream,
+                                records -> {
+                                    for (RecordInternal<?> record : records) {
+                                        recordTypes.add(record.getRecordType());
+                                    }
+                                    return importRecordsBatch(
+                                            uid, attributionSource, records, builder);
+                                },
+                                numberOfRecords -> tryAndReportProgress(callback, numberOfRecords));
+                        builder.setNumberOfRecords(
+                                (int) recordImporter.getNumberOfRecordsImported());
+                        builder.beginPhase(PHASE_RESPONSE);
+                        callback.onResult(
+                                recordImporter.getNumberOfRecordsImported(),
+                                recordImporter.getNumberOfInvalidRecords(),
+                                recordImporter.getErrors());
+                        builder.endPhase(PHASE_RESPONSE);
+                        builder.setHealthDataServiceApiStatusSuccess();
+                    } catch (SQLiteException | IOException exception) {
+                        builder.setHealthDataServiceApiStatusError(HealthConnectException.ERROR_IO);
+                        Slog.e(TAG, "Exception: ", exception);
+                        tryAndThrowException(callback, exception, HealthConnectException.ERROR_IO);
+                    } catch (IllegalArgumentException illegalArgumentException) {
+                        builder.setHealthDataServiceApiStatusError(
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
+                        Slog.e(TAG, "IllegalArgumentException: ", illegalArgumentException);
+                        tryAndThrowException(
+                                callback,
+                                illegalArgumentException,
+                                HealthConnectException.ERROR_INVALID_ARGUMENT);
+                    } catch (SecurityException securityException) {
+                        builder.setHealthDataServiceApiStatusError(ERROR_SECURITY);
+                        Slog.e(TAG, "SecurityException: ", securityException);
+                        tryAndThrowException(callback, securityException, ERROR_SECURITY);
+                    } catch (HealthConnectException healthConnectException) {
+                        builder.setHealthDataServiceApiStatusError(
+                                healthConnectException.getErrorCode());
+                        Slog.e(TAG, "HealthConnectException: ", healthConnectException);
+                        tryAndThrowException(
+                                callback,
+                                healthConnectException,
+                                healthConnectException.getErrorCode());
+                    } catch (Exception exception) {
+                        builder.setHealthDataServiceApiStatusError(ERROR_INTERNAL);
+                        Slog.e(TAG, "Exception: ", exception);
+                        tryAndThrowException(callback, exception, ERROR_INTERNAL);
+                    } finally {
+                        // Also unblocks the parser if it is still reading the stream.
+                        try {
+                            pfd.close();
+                        } catch (IOException e) {
+                            Slog.e(TAG, "Failed to close the import file descriptor", e);
+                        }
+                        builder.setDataTypesFromRecordTypes(new ArrayList<>(recordTypes));
+                        builder.build().log();
+                    }
+                },
+                uid,
+                false);
+    }
+
+    /**
+     * Inserts a batch of imported records in one transaction, as {@link #insertRecords} does.
+     * Imports are metered by the bulk import quota instead of the write quota and memory limits of
+     * each insert call.
+     *
+     * <p>Unlike inserts, imported records don't replace the existing records they conflict with,
+     * e.g. the records of several apps exported with the same client record ids and imported as
+     * the records of one app.
+     *
+     * <p>The permission checks and the database writes of the batches are summed up in the phases
+     * of {@code builder}.
+     *
+     * @return the positions in {@code recordInternals} of the records which were not inserted.
+     */
+    @NonNull
+    private List<Integer> importRecordsBatch(
+            int uid,
+            @NonNull AttributionSource attributionSource,
+            @NonNull List<RecordInternal<?>> recordInternals,
+            @NonNull HealthConnectServiceLogger.Builder builder) {
+        builder.beginPhase(PHASE_PERMISSION_CHECK);
+        mDataPermissionEnforcer.enforceRecordsWritePermissions(recordInternals, attributionSource);
+        RateLimiter.tryAcquireBulkImportQuota(uid, recordInternals.size());
+        builder.endPhase(PHASE_PERMISSION_CHECK);
+        UpsertTransactionRequest insertRequest =
+                new UpsertTransactionRequest(
+                        attributionSource.getPackageName(),
+                        recordInternals,
+                        mContext,
+                        /* isInsertRequest */ true,
+                        mDataPermissionEnforcer.collectExtraWritePermissionStateMapping(
+                                recordInternals, attributionSource));
+        builder.beginPhase(PHASE_DATABASE);
+        List<Integer> notInserted = mTransactionManager.insertAllWithoutReplace(insertRequest);
+        builder.endPhase(PHASE_DATABASE);
+
+        List<RecordInternal<?>> insertedRecords = new ArrayList<>(recordInternals);
+        for (int i = notInserted.size() - 1; i >= 0; i--) {
+            insertedRecords.remove((int) notInserted.get(i));
+        }
+        RecordsParcel recordsParcel = new RecordsParcel(insertedRecords);
+        HealthConnectThreadScheduler.scheduleInternalTask(
+                () -> postInsertTasks(attributionSource, recordsParcel));
+        finishDataDeliveryWriteRecords(insertedRecords, attributionSource);
+        return notInserted;
+    }
+
     /**
      * Updates {@code recordsParcel} into the HealthConnect database.
      *
@@ -693,6 +1205,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -722,6 +1235,13 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                                 .collectExtraWritePermissionStateMapping(
                                                         recordInternals, attributionSource));
                         mTransactionManager.updateAll(request);
+                        // Updated records may have moved from their days.
+                        ActivityDateHelper.getInstance()
+                                .markDeletedRecords(
+                                        recordInternals.stream()
+                                                .map(RecordInternal::getRecordType)
+                                                .distinct()
+                                                .toList());
                         tryAndReturnResult(callback, builder);
                         finishDataDeliveryWriteRecords(recordInternals, attributionSource);
                         logRecordTypeSpecificUpsertMetrics(
@@ -789,6 +1309,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -867,6 +1388,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -878,9 +1400,11 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                             throw new IllegalArgumentException(
                                     "Requested record types must not be empty.");
                         }
+                        builder.beginPhase(PHASE_PERMISSION_CHECK);
                         mDataPermissionEnforcer.enforceRecordIdsReadPermissions(
                                 changeLogsTokenRequest.getRecordTypes(), attributionSource);
                         boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                        builder.setCallerForegroundState(isInForeground);
                         if (!isInForeground) {
                             throwSecurityException(
                                     attributionSource.getPackageName()
@@ -895,6 +1419,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                             throwExceptionIncorrectPermissionState();
                         }
                         long startDateAccess = startDateInstant.toEpochMilli();
+                        builder.endPhase(PHASE_PERMISSION_CHECK).beginPhase(PHASE_DATABASE);
                         final ChangeLogsHelper.ChangeLogsResponse changeLogsResponse =
                                 ChangeLogsHelper.getInstance()
                                         .getChangeLogs(changeLogsTokenRequest, token);
@@ -919,12 +1444,14 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                 ChangeLogsHelper.getDeletedLogs(
                                         changeLogsResponse.getChangeLogsMap());
 
+                        builder.endPhase(PHASE_DATABASE).beginPhase(PHASE_RESPONSE);
                         callback.onResult(
                                 new ChangeLogsResponse(
                                         new RecordsParcel(recordInternals),
                                         deletedLogs,
                                         changeLogsResponse.getNextPageToken(),
                                         changeLogsResponse.hasMorePages()));
+                        builder.endPhase(PHASE_RESPONSE);
                         finishDataDeliveryRead(
                                 changeLogsTokenRequest.getRecordTypes(), attributionSource);
                         builder.setHealthDataServiceApiStatusSuccess()
@@ -995,6 +1522,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -1088,6 +1616,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    builder.markTaskStarted();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -1162,10 +1691,15 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                         new DeleteTransactionRequest(attributionSource.getPackageName(), request)
                                 .setHasManageHealthDataPermission(
                                         hasDataManagementPermission(uid, pid)));
+        if (numberOfRecordsDeleted > 0) {
+            // Before the response, so that the daily resync checks them if the post delete tasks
+            // are not run.
+            markDeletedRecords(recordTypeIdsToDelete, request);
+        }
         tryAndReturnResult(callback, builder);
         finishDataDeliveryWrite(recordTypeIdsToDelete, attributionSource);
         HealthConnectThreadScheduler.scheduleInternalTask(
-                () -> postDeleteTasks(recordTypeIdsToDelete));
+                () -> postDeleteTasks(recordTypeIdsToDelete, request));
 
         builder.setNumberOfRecords(numberOfRecordsDeleted)
                 .setDataTypesFromRecordTypes(recordTypeIdsToDelete);
@@ -1841,6 +2375,18 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 });
     }
 
+    @Override
+    protected void dump(
+            @NonNull FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        if (mContext.checkCallingOrSelfPermission(Manifest.permission.DUMP)
+                != PERMISSION_GRANTED) {
+            writer.println("Permission Denial: can't dump HealthConnectService");
+            return;
+        }
+        ApiLatencyStats.getInstance().dump(writer);
+        AggregationResultCache.getInstance().dump(writer);
+    }
+
     // Cancel BR timeouts - this might be needed when a user is going into background.
     void cancelBackupRestoreTimeouts() {
         mBackupRestore.cancelAllJobs();
@@ -2019,6 +2565,18 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 == PERMISSION_GRANTED;
     }
 
+    /**
+     * Returns the page token to read the next page of {@code request}, or {@code DEFAULT_LONG} if
+     * there are no more pages.
+     */
+    private static long getNextPageToken(
+            @NonNull ReadRecordsRequestParcel request, long nextPagePosition) {
+        if (request.getRecordIdFiltersParcel() != null) {
+            return DEFAULT_LONG;
+        }
+        return PageTokenUtils.encode(nextPagePosition, request.isAscending());
+    }
+
     private void finishDataDeliveryRead(int recordTypeId, AttributionSource attributionSource) {
         finishDataDeliveryRead(Collections.singletonList(recordTypeId), attributionSource);
     }
@@ -2116,6 +2674,15 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         }
     }
 
+    private void logRecordTypeSpecificReadMetrics(
+            int recordType, int numberOfRecords, @NonNull String packageName) {
+        Objects.requireNonNull(packageName);
+
+        RecordHelperProvider.getInstance()
+                .getRecordHelper(recordType)
+                .logProjectedReadMetrics(numberOfRecords, packageName);
+    }
+
     private Map<Integer, List<RecordInternal<?>>> getRecordTypeToListOfRecords(
             List<RecordInternal<?>> recordInternals) {
 
@@ -2147,16 +2714,44 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         }
     }
 
-    private static void postDeleteTasks(List<Integer> recordTypeIdsToDelete) {
+    private static void postDeleteTasks(
+            List<Integer> recordTypeIdsToDelete, @NonNull DeleteUsingFiltersRequestParcel request) {
         Trace.traceBegin(TRACE_TAG_DELETE_SUBTASKS, TAG_INSERT.concat("PostDeleteTasks"));
         if (recordTypeIdsToDelete != null && !recordTypeIdsToDelete.isEmpty()) {
             AppInfoHelper.getInstance()
                     .syncAppInfoRecordTypesUsed(new HashSet<>(recordTypeIdsToDelete));
-            ActivityDateHelper.getInstance().reSyncByRecordTypeIds(recordTypeIdsToDelete);
+            if (hasTimeRange(request)) {
+                // Only the records in the time range were deleted.
+                ActivityDateHelper.getInstance()
+                        .reSyncByRecordTypeIds(
+                                recordTypeIdsToDelete,
+                                request.getStartTime(),
+                                request.getEndTime());
+            } else {
+                ActivityDateHelper.getInstance().reSyncByRecordTypeIds(recordTypeIdsToDelete);
+            }
         }
         Trace.traceEnd(TRACE_TAG_DELETE_SUBTASKS);
     }
 
+    private static void markDeletedRecords(
+            List<Integer> recordTypeIdsToDelete, @NonNull DeleteUsingFiltersRequestParcel request) {
+        if (recordTypeIdsToDelete == null || recordTypeIdsToDelete.isEmpty()) {
+            return;
+        }
+        if (hasTimeRange(request)) {
+            ActivityDateHelper.getInstance()
+                    .markDeletedRecords(
+                            recordTypeIdsToDelete, request.getStartTime(), request.getEndTime());
+        } else {
+            ActivityDateHelper.getInstance().markDeletedRecords(recordTypeIdsToDelete);
+        }
+    }
+
+    private static boolean hasTimeRange(@NonNull DeleteUsingFiltersRequestParcel request) {
+        return request.getStartTime() != DEFAULT_LONG && request.getEndTime() != DEFAULT_LONG;
+    }
+
     private static void tryAndReturnResult(
             IEmptyResponseCallback callback, HealthConnectServiceLogger.Builder builder) {
         try {
@@ -2181,6 +2776,50 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         }
     }
 
+    private static void tryAndReportProgress(
+            @NonNull IExportRecordsCallback callback, long numberOfRecords) {
+        try {
+            callback.onProgress(numberOfRecords);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Unable to send progress to the callback", e);
+        }
+    }
+
+    private static void tryAndReportProgress(
+            @NonNull IImportRecordsCallback callback, long numberOfRecords) {
+        try {
+            callback.onProgress(numberOfRecords);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Unable to send progress to the callback", e);
+        }
+    }
+
+    private static void tryAndThrowException(
+            @NonNull IImportRecordsCallback callback,
+            @NonNull Exception exception,
+            @HealthConnectException.ErrorCode int errorCode) {
+        try {
+            callback.onError(
+                    new HealthConnectExceptionParcel(
+                            new HealthConnectException(errorCode, exception.toString())));
+        } catch (RemoteException e) {
+            Log.e(TAG, "Unable to send result to the callback", e);
+        }
+    }
+
+    private static void tryAndThrowException(
+            @NonNull IExportRecordsCallback callback,
+            @NonNull Exception exception,
+            @HealthConnectException.ErrorCode int errorCode) {
+        try {
+            callback.onError(
+                    new HealthConnectExceptionParcel(
+                            new HealthConnectException(errorCode, exception.toString())));
+        } catch (RemoteException e) {
+            Log.e(TAG, "Unable to send result to the callback", e);
+        }
+    }
+
     private static void tryAndThrowException(
             @NonNull IInsertRecordsResponseCallback callback,
             @NonNull Exception exception,
@@ -25,7 +25,9 @@ import com.android.internal.annotations.VisibleForTesting;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -43,6 +45,12 @@ public final class HealthConnectThreadScheduler {
     private static final long KEEP_ALIVE_TIME_SHARED = 60L;
     private static final int NUM_EXECUTOR_THREADS_CONTROLLER = 1;
     private static final long KEEP_ALIVE_TIME_CONTROLLER = 60L;
+    private static final int NUM_EXECUTOR_THREADS_AGGREGATION = 3;
+    private static final long KEEP_ALIVE_TIME_AGGREGATION = 60L;
+    private static final int NUM_EXECUTOR_THREADS_IMPORT_PARSER = 1;
+    private static final long KEEP_ALIVE_TIME_IMPORT_PARSER = 60L;
+    private static final int NUM_EXECUTOR_THREADS_EXPORT = 1;
+    private static final long KEEP_ALIVE_TIME_EXPORT = 60L;
 
     // Scheduler to run the tasks in a RR fashion based on client package names.
     private static final HealthConnectRoundRobinScheduler
@@ -86,6 +94,30 @@ public final class HealthConnectThreadScheduler {
                     KEEP_ALIVE_TIME_CONTROLLER,
                     TimeUnit.SECONDS,
                     new LinkedBlockingQueue<>());
+    // Executor to run the aggregation queries of a request concurrently. Tasks are never queued,
+    // they are rejected when all the threads are busy and the caller runs the queries itself.
+    @VisibleForTesting
+    static volatile ThreadPoolExecutor sAggregationExecutor = createAggregationExecutor();
+    // Executor to parse the streams of imports, which can take as long as the imports. Keeps them
+    // from delaying the internal tasks.
+    @VisibleForTesting
+    static volatile ThreadPoolExecutor sImportParserExecutor =
+            new ThreadPoolExecutor(
+                    NUM_EXECUTOR_THREADS_IMPORT_PARSER,
+                    NUM_EXECUTOR_THREADS_IMPORT_PARSER,
+                    KEEP_ALIVE_TIME_IMPORT_PARSER,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>());
+    // Executor to run exports, which read all the records of the database. Keeps them from
+    // delaying the other controller tasks.
+    @VisibleForTesting
+    static volatile ThreadPoolExecutor sExportExecutor =
+            new ThreadPoolExecutor(
+                    NUM_EXECUTOR_THREADS_EXPORT,
+                    NUM_EXECUTOR_THREADS_EXPORT,
+                    KEEP_ALIVE_TIME_EXPORT,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>());
 
     public static void resetThreadPools() {
         sInternalBackgroundExecutor =
@@ -119,6 +151,24 @@ public final class HealthConnectThreadScheduler {
                         KEEP_ALIVE_TIME_CONTROLLER,
                         TimeUnit.SECONDS,
                         new LinkedBlockingQueue<>());
+
+        sAggregationExecutor = createAggregationExecutor();
+
+        sImportParserExecutor =
+                new ThreadPoolExecutor(
+                        NUM_EXECUTOR_THREADS_IMPORT_PARSER,
+                        NUM_EXECUTOR_THREADS_IMPORT_PARSER,
+                        KEEP_ALIVE_TIME_IMPORT_PARSER,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>());
+
+        sExportExecutor =
+                new ThreadPoolExecutor(
+                        NUM_EXECUTOR_THREADS_EXPORT,
+                        NUM_EXECUTOR_THREADS_EXPORT,
+                        KEEP_ALIVE_TIME_EXPORT,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>());
         HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.resume();
     }
 
@@ -129,6 +179,18 @@ public final class HealthConnectThreadScheduler {
         sBackgroundThreadExecutor.shutdownNow();
         sForegroundExecutor.shutdownNow();
         sControllerExecutor.shutdownNow();
+        sAggregationExecutor.shutdownNow();
+        sImportParserExecutor.shutdownNow();
+        sExportExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the executor to run the aggregation queries of a request concurrently. It rejects the
+     * tasks when all its threads are busy.
+     */
+    @NonNull
+    public static ExecutorService getAggregationExecutor() {
+        return sAggregationExecutor;
     }
 
     /** Schedules the task on the executor dedicated for performing internal tasks */
@@ -136,6 +198,16 @@ public final class HealthConnectThreadScheduler {
         sInternalBackgroundExecutor.execute(getSafeRunnable(task));
     }
 
+    /** Schedules the task on the executor dedicated for parsing the streams of imports */
+    public static void scheduleImportParserTask(Runnable task) {
+        sImportParserExecutor.execute(getSafeRunnable(task));
+    }
+
+    /** Schedules the task on the executor dedicated for exporting records */
+    static void scheduleExportTask(Runnable task) {
+        sExportExecutor.execute(getSafeRunnable(task));
+    }
+
     /** Schedules the task on the executor dedicated for performing controller tasks */
     static void scheduleControllerTask(Runnable task) {
         sControllerExecutor.execute(getSafeRunnable(task));
@@ -181,6 +253,15 @@ public final class HealthConnectThreadScheduler {
         }
     }
 
+    private static ThreadPoolExecutor createAggregationExecutor() {
+        return new ThreadPoolExecutor(
+                0,
+                NUM_EXECUTOR_THREADS_AGGREGATION,
+                KEEP_ALIVE_TIME_AGGREGATION,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>());
+    }
+
     private static boolean isUidInForeground(Context context, int uid) {
         ActivityManager activityManager = context.getSystemService(ActivityManager.class);
         Objects.requireNonNull(activityManager);
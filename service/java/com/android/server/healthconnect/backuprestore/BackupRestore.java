@@ -79,6 +79,7 @@ import com.android.server.healthconnect.permission.GrantTimeXmlHelper;
 import com.android.server.healthconnect.permission.UserGrantTimeState;
 import com.android.server.healthconnect.storage.HealthConnectDatabase;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
@@ -86,6 +87,7 @@ import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 import com.android.server.healthconnect.utils.FilesUtil;
 import com.android.server.healthconnect.utils.RunnableWithThrowable;
@@ -1005,11 +1007,9 @@ public final class BackupRestore {
                             true /* skipPackageNameAndLogs */);
             TransactionManager.getInitialisedInstance()
                     .insertAll(upsertTransactionRequest.getUpsertRequests());
+            ActivityDateHelper.getInstance().insertRecordDate(recordsToMergeAndToken.first);
 
-            token = DEFAULT_LONG;
-            if (recordsToMergeAndToken.second != DEFAULT_LONG) {
-                token = recordsToMergeAndToken.second * 2;
-            }
+            token = PageTokenUtils.encode(recordsToMergeAndToken.second, /* isAscending= */ true);
         } while (token != DEFAULT_LONG);
 
         // Once all the records of this type have been merged we can delete the table.
@@ -1051,23 +1051,18 @@ public final class BackupRestore {
                         false,
                         extraReadPermsMapping);
 
-        List<RecordInternal<?>> recordInternalList;
-        long token = DEFAULT_LONG;
+        Pair<List<RecordInternal<?>>, Long> recordsAndToken;
         ReadTableRequest readTableRequest = readTransactionRequest.getReadRequests().get(0);
         try (Cursor cursor = read(readTableRequest)) {
-            recordInternalList =
-                    recordHelper.getInternalRecords(
-                            cursor, readTableRequest.getPageSize(), mStagedPackageNamesByAppIds);
-            String startTimeColumnName = recordHelper.getStartTimeColumnName();
-
-            populateInternalRecordsWithExtraData(recordInternalList, readTableRequest);
-
-            // Get the token for the next read request.
-            if (cursor.moveToNext()) {
-                token = getCursorLong(cursor, startTimeColumnName);
-            }
+            recordsAndToken =
+                    recordHelper.getNextInternalRecordsPageAndToken(
+                            cursor,
+                            readTableRequest.getPageSize(),
+                            readTableRequest.getOffset(),
+                            mStagedPackageNamesByAppIds);
         }
-        return Pair.create(recordInternalList, token);
+        populateInternalRecordsWithExtraData(recordsAndToken.first, readTableRequest);
+        return recordsAndToken;
     }
 
     private Cursor read(ReadTableRequest request) {
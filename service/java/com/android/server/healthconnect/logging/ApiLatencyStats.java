@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.logging;
+
+import android.annotation.IntDef;
+import android.annotation.NonNull;
+import android.util.ArrayMap;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process latency histograms of Health Connect API calls.
+ *
+ * <p>Latencies are recorded per API method, per phase of the call, per data type and per caller
+ * foreground state. Recording is lock-free: each histogram is a fixed array of atomic counters
+ * with exponential millisecond buckets. Only a sample of the calls is recorded so that the stats
+ * can stay enabled on production builds.
+ *
+ * @hide
+ */
+public final class ApiLatencyStats {
+    /** Phases of an API call for which latency is recorded. */
+    public static final int PHASE_TOTAL = 0;
+    /** Time between the binder call and the start of the task on the scheduler. */
+    public static final int PHASE_QUEUE_WAIT = 1;
+    /** Permission, quota and access date checks. */
+    public static final int PHASE_PERMISSION_CHECK = 2;
+    /** Running the queries and decoding the cursors. */
+    public static final int PHASE_DATABASE = 3;
+    /** Writing the response parcel to the callback. */
+    public static final int PHASE_RESPONSE = 4;
+
+    static final int NUM_PHASES = 5;
+
+    @IntDef({
+        PHASE_TOTAL,
+        PHASE_QUEUE_WAIT,
+        PHASE_PERMISSION_CHECK,
+        PHASE_DATABASE,
+        PHASE_RESPONSE,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Phase {}
+
+    /** Caller foreground state was not determined for the call. */
+    public static final int FOREGROUND_STATE_UNKNOWN = 0;
+
+    public static final int FOREGROUND_STATE_FOREGROUND = 1;
+    public static final int FOREGROUND_STATE_BACKGROUND = 2;
+
+    /** One in how many API calls is recorded. */
+    private static final int SAMPLING_RATE = 4;
+
+    /**
+     * Upper bounds in milliseconds of all buckets but the last one: 1, 2, 4, ..., 32768. The last
+     * bucket holds everything above.
+     */
+    private static final int NUM_BUCKETS = 17;
+
+    private static final String[] PHASE_NAMES = {
+        "total", "queue_wait", "permission_check", "database", "response"
+    };
+    private static final String[] FOREGROUND_STATE_NAMES = {"unknown", "foreground", "background"};
+
+    private static final ApiLatencyStats sInstance = new ApiLatencyStats();
+
+    private final ConcurrentHashMap<Long, Histogram> mHistograms = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    public ApiLatencyStats() {}
+
+    @NonNull
+    public static ApiLatencyStats getInstance() {
+        return sInstance;
+    }
+
+    /** Returns whether the API call which is about to start should be recorded. */
+    public static boolean shouldSample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLING_RATE) == 0;
+    }
+
+    /**
+     * Records the durations of a sampled API call once for each of its data types, or once without
+     * data type if none is set.
+     *
+     * @param apiMethod {@link HealthConnectServiceLogger.ApiMethods.ApiMethod} of the call.
+     * @param dataTypes data types of the call, as logged by {@link HealthConnectServiceLogger}.
+     *     Negative values are unset data types.
+     * @param foregroundState foreground state of the caller.
+     * @param phaseDurationsNanos duration of each {@link Phase} in nanoseconds, negative values
+     *     are ignored.
+     */
+    public void record(
+            int apiMethod,
+            @NonNull int[] dataTypes,
+            int foregroundState,
+            @NonNull long[] phaseDurationsNanos) {
+        boolean hasDataType = false;
+        for (int dataType : dataTypes) {
+            if (dataType >= 0) {
+                record(apiMethod, dataType, foregroundState, phaseDurationsNanos);
+                hasDataType = true;
+            }
+        }
+        if (!hasDataType) {
+            record(apiMethod, /* dataType= */ -1, foregroundState, phaseDurationsNanos);
+        }
+    }
+
+    /**
+     * Records the durations of a sampled API call.
+     *
+     * @param apiMethod {@link HealthConnectServiceLogger.ApiMethods.ApiMethod} of the call.
+     * @param dataType main data type of the call, as logged by {@link HealthConnectServiceLogger}.
+     * @param foregroundState foreground state of the caller.
+     * @param phaseDurationsNanos duration of each {@link Phase} in nanoseconds, negative values
+     *     are ignored.
+     */
+    public void record(
+            int apiMethod, int dataType, int foregroundState, @NonNull long[] phaseDurationsNanos) {
+        for (int phase = 0; phase < NUM_PHASES; phase++) {
+            long durationNanos = phaseDurationsNanos[phase];
+            if (durationNanos < 0) {
+                continue;
+            }
+            getOrCreateHistogram(apiMethod, phase, dataType, foregroundState).add(durationNanos);
+        }
+    }
+
+    /** Writes all the non-empty histograms to {@code writer}. */
+    public void dump(@NonNull PrintWriter writer) {
+        writer.println("API latency stats (sampled 1/" + SAMPLING_RATE + ", bucket bounds in ms):");
+        for (Map.Entry<Long, Histogram> entry : snapshot().entrySet()) {
+            // Histograms are kept after a reset, skip the ones empty since then.
+            if (entry.getValue().getCount() > 0) {
+                writer.println("  " + describeKey(entry.getKey()) + " " + entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the histograms recorded since the last reset, and resets them.
+     *
+     * <p>The histograms stay in place and their counters are swapped with zero one by one, so a
+     * duration recorded concurrently is counted either in the copy or after the reset.
+     */
+    @NonNull
+    public Map<String, Histogram> snapshotAndReset() {
+        Map<String, Histogram> result = new ArrayMap<>();
+        for (Map.Entry<Long, Histogram> entry : mHistograms.entrySet()) {
+            Histogram histogram = entry.getValue().getAndReset();
+            if (histogram.getCount() > 0) {
+                result.put(describeKey(entry.getKey()), histogram);
+            }
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    Map<Long, Histogram> snapshot() {
+        return new ArrayMap<>(mHistograms);
+    }
+
+    /** Returns the histogram of the given key, or null if nothing was recorded for it. */
+    @VisibleForTesting
+    public Histogram getHistogram(int apiMethod, int phase, int dataType, int foregroundState) {
+        return mHistograms.get(key(apiMethod, phase, dataType, foregroundState));
+    }
+
+    private Histogram getOrCreateHistogram(
+            int apiMethod, int phase, int dataType, int foregroundState) {
+        long key = key(apiMethod, phase, dataType, foregroundState);
+        Histogram histogram = mHistograms.get(key);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram();
+            histogram = mHistograms.putIfAbsent(key, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    private static long key(int apiMethod, int phase, int dataType, int foregroundState) {
+        return ((long) apiMethod << 40)
+                | ((long) (phase & 0xFF) << 32)
+                | ((long) (foregroundState & 0xFF) << 24)
+                | (dataType & 0xFFFFFF);
+    }
+
+    private static String describeKey(long key) {
+        int apiMethod = (int) (key >>> 40);
+        int phase = (int) ((key >>> 32) & 0xFF);
+        int foregroundState = (int) ((key >>> 24) & 0xFF);
+        int dataType = (int) (key & 0xFFFFFF);
+        if (dataType == 0xFFFFFF) {
+            dataType = -1;
+        }
+        return "api="
+                + apiMethod
+                + " phase="
+                + PHASE_NAMES[phase]
+                + " dataType="
+                + dataType
+                + " caller="
+                + FOREGROUND_STATE_NAMES[foregroundState];
+    }
+
+    /**
+     * Lock-free latency histogram with exponential millisecond buckets.
+     *
+     * @hide
+     */
+    public static final class Histogram {
+        private final AtomicLongArray mCounts = new AtomicLongArray(NUM_BUCKETS);
+        private final AtomicLong mSumNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        void add(long durationNanos) {
+            mCounts.incrementAndGet(getBucket(durationNanos));
+            mSumNanos.addAndGet(durationNanos);
+            long max = mMaxNanos.get();
+            while (durationNanos > max && !mMaxNanos.compareAndSet(max, durationNanos)) {
+                max = mMaxNanos.get();
+            }
+        }
+
+        /** Moves the recorded durations to a new histogram, and resets this one. */
+        Histogram getAndReset() {
+            Histogram histogram = new Histogram();
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                histogram.mCounts.set(i, mCounts.getAndSet(i, 0));
+            }
+            histogram.mSumNanos.set(mSumNanos.getAndSet(0));
+            histogram.mMaxNanos.set(mMaxNanos.getAndSet(0));
+            return histogram;
+        }
+
+        /** Returns the number of recorded durations. */
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                count += mCounts.get(i);
+            }
+            return count;
+        }
+
+        /** Returns the number of recorded durations in the given bucket. */
+        public long getBucketCount(int bucket) {
+            return mCounts.get(bucket);
+        }
+
+        /** Returns the maximum recorded duration in milliseconds. */
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(mMaxNanos.get());
+        }
+
+        /** Returns the mean recorded duration in milliseconds. */
+        public double getMeanMillis() {
+            long count = getCount();
+            return count == 0 ? 0 : mSumNanos.get() / 1e6 / count;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("count=")
+                    .append(getCount())
+                    .append(" mean=")
+                    .append(String.format("%.2f", getMeanMillis()))
+                    .append(" max=")
+                    .append(getMaxMillis())
+                    .append(" buckets=[");
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(mCounts.get(i));
+            }
+            return builder.append(']').toString();
+        }
+
+        /** Returns the bucket of the given duration. */
+        @VisibleForTesting
+        public static int getBucket(long durationNanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+            if (millis <= 1) {
+                return 0;
+            }
+            // Bucket i holds (2^(i-1), 2^i] milliseconds.
+            int bucket = 64 - Long.numberOfLeadingZeros(millis - 1);
+            return Math.min(bucket, NUM_BUCKETS - 1);
+        }
+    }
+}
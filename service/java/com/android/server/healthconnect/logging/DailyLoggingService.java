@@ -21,6 +21,7 @@ import android.content.Context;
 import android.os.UserHandle;
 import android.util.Slog;
 
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -40,6 +41,7 @@ public class DailyLoggingService {
 
         logDatabaseStats(context);
         logUsageStats(context, userHandle);
+        logApiLatencyStats();
     }
 
     private static void logDatabaseStats(@NonNull Context context) {
@@ -57,4 +59,20 @@ public class DailyLoggingService {
             Slog.e(HEALTH_CONNECT_DAILY_LOGGING_SERVICE, "Failed to log usage stats", exception);
         }
     }
+
+    private static void logApiLatencyStats() {
+        try {
+            for (Map.Entry<String, ApiLatencyStats.Histogram> entry :
+                    ApiLatencyStats.getInstance().snapshotAndReset().entrySet()) {
+                Slog.i(
+                        HEALTH_CONNECT_DAILY_LOGGING_SERVICE,
+                        "API latency " + entry.getKey() + " " + entry.getValue());
+            }
+        } catch (Exception exception) {
+            Slog.e(
+                    HEALTH_CONNECT_DAILY_LOGGING_SERVICE,
+                    "Failed to log API latency stats",
+                    exception);
+        }
+    }
 }
@@ -166,6 +166,9 @@ public class HealthConnectServiceLogger {
     private final int mNumberOfRecords;
     private final int[] mRecordTypes;
     private final String mPackageName;
+    private final boolean mRecordLatency;
+    private final int mForegroundState;
+    private final long[] mPhaseDurationsNanos;
     private static final int MAX_NUMBER_OF_LOGGED_DATA_TYPES = 6;
     private static final int RECORD_TYPE_NOT_ASSIGNED_DEFAULT_VALUE = -1;
 
@@ -356,9 +359,22 @@ public class HealthConnectServiceLogger {
         private final boolean mHoldsDataManagementPermission;
         private int[] mRecordTypes;
         private String mPackageName;
+        private final boolean mRecordLatency;
+        private final long mStartTimeNanos;
+        private long[] mPhaseDurationsNanos;
+        private long[] mPhaseStartTimesNanos;
+        private int mForegroundState;
 
         public Builder(boolean holdsDataManagementPermission, @ApiMethods.ApiMethod int apiMethod) {
             mStartTime = System.currentTimeMillis();
+            mRecordLatency = ApiLatencyStats.shouldSample();
+            mStartTimeNanos = mRecordLatency ? System.nanoTime() : 0;
+            if (mRecordLatency) {
+                mPhaseDurationsNanos = new long[ApiLatencyStats.NUM_PHASES];
+                mPhaseStartTimesNanos = new long[ApiLatencyStats.NUM_PHASES];
+                Arrays.fill(mPhaseDurationsNanos, -1);
+            }
+            mForegroundState = ApiLatencyStats.FOREGROUND_STATE_UNKNOWN;
             mHealthDataServiceApiMethod = apiMethod;
             mHealthDataServiceApiStatus = HEALTH_CONNECT_API_CALLED__API_STATUS__STATUS_UNKNOWN;
             mErrorCode = 0; // Means no error
@@ -475,9 +491,59 @@ public class HealthConnectServiceLogger {
             return this;
         }
 
+        /**
+         * Marks the start of the scheduled task of the API call. The time since the builder was
+         * created is recorded as queue wait.
+         */
+        public Builder markTaskStarted() {
+            if (mRecordLatency) {
+                mPhaseDurationsNanos[ApiLatencyStats.PHASE_QUEUE_WAIT] =
+                        System.nanoTime() - mStartTimeNanos;
+            }
+            return this;
+        }
+
+        /** Marks the start of a phase of the API call, see {@link ApiLatencyStats.Phase}. */
+        public Builder beginPhase(@ApiLatencyStats.Phase int phase) {
+            if (mRecordLatency) {
+                mPhaseStartTimesNanos[phase] = System.nanoTime();
+            }
+            return this;
+        }
+
+        /**
+         * Marks the end of a phase started by {@link #beginPhase}. A phase can be entered several
+         * times, its durations are summed up.
+         */
+        public Builder endPhase(@ApiLatencyStats.Phase int phase) {
+            if (mRecordLatency && mPhaseStartTimesNanos[phase] != 0) {
+                long duration = System.nanoTime() - mPhaseStartTimesNanos[phase];
+                mPhaseDurationsNanos[phase] = Math.max(mPhaseDurationsNanos[phase], 0) + duration;
+                mPhaseStartTimesNanos[phase] = 0;
+            }
+            return this;
+        }
+
+        /**
+         * Set whether the caller was in foreground.
+         *
+         * @param isInForeground Foreground state of the caller.
+         */
+        public Builder setCallerForegroundState(boolean isInForeground) {
+            mForegroundState =
+                    isInForeground
+                            ? ApiLatencyStats.FOREGROUND_STATE_FOREGROUND
+                            : ApiLatencyStats.FOREGROUND_STATE_BACKGROUND;
+            return this;
+        }
+
         /** Returns an object of {@link HealthConnectServiceLogger}. */
         public HealthConnectServiceLogger build() {
             mDuration = System.currentTimeMillis() - mStartTime;
+            if (mRecordLatency) {
+                mPhaseDurationsNanos[ApiLatencyStats.PHASE_TOTAL] =
+                        System.nanoTime() - mStartTimeNanos;
+            }
             return new HealthConnectServiceLogger(this);
         }
 
@@ -595,10 +661,23 @@ public class HealthConnectServiceLogger {
         mNumberOfRecords = builder.mNumberOfRecords;
         mRecordTypes = builder.mRecordTypes;
         mPackageName = builder.mPackageName;
+        mRecordLatency = builder.mRecordLatency;
+        mForegroundState = builder.mForegroundState;
+        mPhaseDurationsNanos = builder.mPhaseDurationsNanos;
     }
 
     /** Log to statsd. */
     public void log() {
+        // Latencies of calls made from the controller are recorded too, they are only kept in
+        // memory.
+        if (mRecordLatency) {
+            ApiLatencyStats.getInstance()
+                    .record(
+                            mHealthDataServiceApiMethod,
+                            mRecordTypes,
+                            mForegroundState,
+                            mPhaseDurationsNanos);
+        }
 
         // Do not log API calls made from the controller
         if (mHoldsDataManagementPermission) {
@@ -22,11 +22,12 @@ import android.annotation.NonNull;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.health.connect.HealthConnectManager;
 import android.os.UserHandle;
 
+import com.android.server.healthconnect.permission.HealthAppsIndex;
 import com.android.server.healthconnect.permission.PackageInfoUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -38,17 +39,26 @@ import java.util.Objects;
 final class UsageStatsCollector {
 
     private final Context mContext;
-    private final List<PackageInfo> mAllPackagesInstalledForUser;
+    private final List<PackageInfo> mHealthPackagesInstalledForUser = new ArrayList<>();
 
     UsageStatsCollector(@NonNull Context context, @NonNull UserHandle userHandle) {
         Objects.requireNonNull(userHandle);
         Objects.requireNonNull(context);
 
         mContext = context;
-        mAllPackagesInstalledForUser =
-                context.createContextAsUser(userHandle, /* flag= */ 0)
-                        .getPackageManager()
-                        .getInstalledPackages(PackageManager.PackageInfoFlags.of(GET_PERMISSIONS));
+        PackageManager packageManager =
+                context.createContextAsUser(userHandle, /* flag= */ 0).getPackageManager();
+        for (String packageName :
+                HealthAppsIndex.getInstance()
+                        .getPackagesRequestingHealthPermissions(context, userHandle)) {
+            try {
+                mHealthPackagesInstalledForUser.add(
+                        packageManager.getPackageInfo(
+                                packageName, PackageManager.PackageInfoFlags.of(GET_PERMISSIONS)));
+            } catch (PackageManager.NameNotFoundException e) {
+                // The package has been removed since it was indexed.
+            }
+        }
     }
 
     /**
@@ -61,8 +71,8 @@ final class UsageStatsCollector {
      */
     int getNumberOfAppsCompatibleWithHealthConnect() {
         int numberOfAppsGrantedHealthPermissions = 0;
-        for (PackageInfo info : mAllPackagesInstalledForUser) {
-            if (hasRequestedHealthPermission(info)) {
+        for (PackageInfo info : mHealthPackagesInstalledForUser) {
+            if (PackageInfoUtils.anyHealthPermissionRequested(mContext, info)) {
                 numberOfAppsGrantedHealthPermissions++;
             }
         }
@@ -75,28 +85,13 @@ final class UsageStatsCollector {
      * @return Number of apps that are connected (have read/write) to Health Connect
      */
     int getPackagesHoldingHealthPermissions() {
-        // TODO(b/260707328): replace with getPackagesHoldingPermissions
         int count = 0;
 
-        for (PackageInfo info : mAllPackagesInstalledForUser) {
+        for (PackageInfo info : mHealthPackagesInstalledForUser) {
             if (PackageInfoUtils.anyRequestedHealthPermissionGranted(mContext, info)) {
                 count++;
             }
         }
         return count;
     }
-
-    private boolean hasRequestedHealthPermission(@NonNull PackageInfo packageInfo) {
-        if (packageInfo == null || packageInfo.requestedPermissions == null) {
-            return false;
-        }
-
-        for (int i = 0; i < packageInfo.requestedPermissions.length; i++) {
-            if (HealthConnectManager.isHealthPermission(
-                    mContext, packageInfo.requestedPermissions[i])) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
@@ -113,6 +113,8 @@ public final class DataMigrationManager {
                             }
                         }
                     });
+            // The dates of the migrated records were written to the table directly.
+            mActivityDateHelper.clearCache();
         }
     }
 
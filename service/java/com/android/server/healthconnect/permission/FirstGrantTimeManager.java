@@ -40,11 +40,19 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Manager class of the health permissions first grant time.
  *
+ * <p>Grant times are served from an in-memory map which can be read without taking {@link
+ * #mGrantTimeLock}. Changes to the current state are written behind: each mutation marks the
+ * user as dirty and a single flush task persists the latest state of all dirty users, so a burst
+ * of permission changes results in one file write per user instead of one per change. Pending
+ * writes are flushed before any backup state or file is handed out.
+ *
  * @hide
  */
 public class FirstGrantTimeManager implements PackageManager.OnPermissionsChangedListener {
@@ -62,8 +70,15 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
     @GuardedBy("mGrantTimeLock")
     private final UidToGrantTimeCache mUidToGrantTimeCache;
 
+    private final Set<Integer> mRestoredAndValidatedUsers = ConcurrentHashMap.newKeySet();
+
     @GuardedBy("mGrantTimeLock")
-    private final Set<Integer> mRestoredAndValidatedUsers = new ArraySet<>();
+    private final Set<UserHandle> mUsersWithPendingWrites = new ArraySet<>();
+
+    // Whether a flush task is scheduled. Cleared once a flush ran, even if it failed, so that the
+    // next change schedules a new one.
+    @GuardedBy("mGrantTimeLock")
+    private boolean mFlushScheduled;
 
     private final PackageInfoUtils mPackageInfoHelper;
 
@@ -95,12 +110,12 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
         initAndValidateUserStateIfNeedLocked(user);
 
-        Instant grantTimeDate = getGrantTimeReadLocked(uid);
+        Instant grantTimeDate = getGrantTime(uid);
         if (grantTimeDate == null) {
             // Check and update the state in case health permission has been granted before
             // onPermissionsChanged callback was propagated.
             onPermissionsChanged(mPackageInfoHelper.getPackageUid(packageName, user));
-            grantTimeDate = getGrantTimeReadLocked(uid);
+            grantTimeDate = getGrantTime(uid);
         }
 
         return grantTimeDate;
@@ -122,8 +137,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         mGrantTimeLock.writeLock().lock();
         try {
             mUidToGrantTimeCache.put(uid, time);
-            mDatastore.writeForUser(
-                    mUidToGrantTimeCache.extractUserGrantTimeState(user), user, DATA_TYPE_CURRENT);
+            scheduleWriteForUserLocked(user);
         } finally {
             mGrantTimeLock.writeLock().unlock();
         }
@@ -150,7 +164,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
             boolean anyHealthPermissionGranted =
                     mPackageInfoHelper.hasGrantedHealthPermissions(packageNames, user);
 
-            boolean grantTimeRecorded = (getGrantTimeReadLocked(uid) != null);
+            boolean grantTimeRecorded = (getGrantTime(uid) != null);
             if (grantTimeRecorded != anyHealthPermissionGranted) {
                 if (grantTimeRecorded) {
                     // An app doesn't have health permissions anymore, reset its grant time.
@@ -164,15 +178,18 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
                 } else {
                     // An app got new health permission, set current time as it's first grant
                     // time if we can't update state from the staged data.
-                    if (!tryUpdateGrantTimeFromStagedDataLocked(user, uid)) {
-                        mUidToGrantTimeCache.put(uid, Instant.now());
+                    if (tryUpdateGrantTimeFromStagedDataLocked(user, uid)) {
+                        // The staged file has already been rewritten without this app, persist
+                        // the current state right away so that the restored time is not lost.
+                        scheduleWriteForUserLocked(user);
+                        flushPendingWritesLocked();
+                        return;
                     }
+                    mUidToGrantTimeCache.put(uid, Instant.now());
                 }
 
-                UserGrantTimeState updatedState =
-                        mUidToGrantTimeCache.extractUserGrantTimeState(user);
-                logIfInDebugMode("State after onPermissionsChanged :", updatedState);
-                mDatastore.writeForUser(updatedState, user, DATA_TYPE_CURRENT);
+                logIfInDebugMode("Cache after onPermissionsChanged :", mUidToGrantTimeCache);
+                scheduleWriteForUserLocked(user);
             } else {
                 // Update priority table only if migration is not in progress as it should already
                 // take care of merging permissions
@@ -190,6 +207,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
     /** Returns the state which should be backed up. */
     public UserGrantTimeState createBackupState(UserHandle user) {
         initAndValidateUserStateIfNeedLocked(user);
+        flushPendingWrites();
         return mUidToGrantTimeCache.extractUserBackupGrantTimeState(user);
     }
 
@@ -210,6 +228,8 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
             // Write the state into the disk as staged data so that it can be merged.
             mDatastore.writeForUser(state, userId, DATA_TYPE_STAGED);
             updateGrantTimesWithStagedDataLocked(userId);
+            // Restores are rare, keep the merged state durable before returning.
+            flushPendingWritesLocked();
         } finally {
             mGrantTimeLock.writeLock().unlock();
         }
@@ -217,6 +237,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
     /** Returns file with grant times data. */
     public File getFile(UserHandle userHandle) {
+        flushPendingWrites();
         return mDatastore.getFile(userHandle, DATA_TYPE_CURRENT);
     }
 
@@ -232,28 +253,75 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
         initAndValidateUserStateIfNeedLocked(userHandle);
 
-        if (getGrantTimeReadLocked(removedPackageUid) != null) {
+        if (getGrantTime(removedPackageUid) != null) {
             mGrantTimeLock.writeLock().lock();
             try {
                 mUidToGrantTimeCache.remove(removedPackageUid);
-                UserGrantTimeState updatedState =
-                        mUidToGrantTimeCache.extractUserGrantTimeState(userHandle);
-                logIfInDebugMode("State after package " + packageName + " removed: ", updatedState);
-                mDatastore.writeForUser(updatedState, userHandle, DATA_TYPE_CURRENT);
+                logIfInDebugMode(
+                        "Cache after package " + packageName + " removed: ", mUidToGrantTimeCache);
+                scheduleWriteForUserLocked(userHandle);
             } finally {
                 mGrantTimeLock.writeLock().unlock();
             }
         }
     }
 
+    /**
+     * Returns the recorded grant time for the given uid. The cache is backed by a concurrent map,
+     * so readers never wait for writers or for pending file writes.
+     */
+    private Instant getGrantTime(Integer uid) {
+        return mUidToGrantTimeCache.get(uid);
+    }
+
+    /**
+     * Marks the current state of the given user as dirty and schedules a flush if one is not
+     * already scheduled. Multiple changes made before the flush runs are written once.
+     */
     @GuardedBy("mGrantTimeLock")
-    private Instant getGrantTimeReadLocked(Integer uid) {
-        mGrantTimeLock.readLock().lock();
+    private void scheduleWriteForUserLocked(@NonNull UserHandle user) {
+        mUsersWithPendingWrites.add(user);
+        if (mFlushScheduled) {
+            return;
+        }
+
+        mFlushScheduled = true;
+        try {
+            HealthConnectThreadScheduler.scheduleInternalTask(this::flushPendingWrites);
+        } catch (RejectedExecutionException e) {
+            // The executors are being reset for a user switch, write the state right away.
+            Log.w(TAG, "Could not schedule grant times flush, flushing now", e);
+            mFlushScheduled = false;
+            flushPendingWritesLocked();
+        }
+    }
+
+    /**
+     * Writes the current state of all users with pending changes to the datastore. Also called
+     * synchronously before the executors are shut down, as that drops a scheduled flush.
+     */
+    public void flushPendingWrites() {
+        mGrantTimeLock.writeLock().lock();
         try {
-            return mUidToGrantTimeCache.get(uid);
+            flushPendingWritesLocked();
         } finally {
-            mGrantTimeLock.readLock().unlock();
+            mFlushScheduled = false;
+            mGrantTimeLock.writeLock().unlock();
+        }
+    }
+
+    @GuardedBy("mGrantTimeLock")
+    private void flushPendingWritesLocked() {
+        if (mUsersWithPendingWrites.isEmpty()) {
+            return;
+        }
+
+        for (UserHandle user : mUsersWithPendingWrites) {
+            UserGrantTimeState state = mUidToGrantTimeCache.extractUserGrantTimeState(user);
+            logIfInDebugMode("Flushing state for " + user + ": ", state);
+            mDatastore.writeForUser(state, user, DATA_TYPE_CURRENT);
         }
+        mUsersWithPendingWrites.clear();
     }
 
     @GuardedBy("mGrantTimeLock")
@@ -268,8 +336,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
 
         if (stateChanged) {
-            mDatastore.writeForUser(
-                    mUidToGrantTimeCache.extractUserGrantTimeState(user), user, DATA_TYPE_CURRENT);
+            scheduleWriteForUserLocked(user);
         }
     }
 
@@ -311,13 +378,16 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
     /** Initialize first grant time state for given user. */
     private void initAndValidateUserStateIfNeedLocked(UserHandle user) {
-        if (userStateIsInitializedReadLocked(user)) {
+        if (isUserStateInitialized(user)) {
             // This user state is already inited and validated
             return;
         }
 
         mGrantTimeLock.writeLock().lock();
         try {
+            if (mRestoredAndValidatedUsers.contains(user.getIdentifier())) {
+                return;
+            }
             Log.i(
                     TAG,
                     "State for user: "
@@ -348,13 +418,9 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
     }
 
-    private boolean userStateIsInitializedReadLocked(UserHandle user) {
-        mGrantTimeLock.readLock().lock();
-        try {
-            return mRestoredAndValidatedUsers.contains(user.getIdentifier());
-        } finally {
-            mGrantTimeLock.readLock().unlock();
-        }
+    /** Returns whether the state of the user is initialized, without taking the lock. */
+    private boolean isUserStateInitialized(UserHandle user) {
+        return mRestoredAndValidatedUsers.contains(user.getIdentifier());
     }
 
     @GuardedBy("mGrantTimeLock")
@@ -517,10 +583,11 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
     }
 
     private class UidToGrantTimeCache {
+        // Mutated only under the write lock, read without locking.
         private final Map<Integer, Instant> mUidToGrantTime;
 
         UidToGrantTimeCache() {
-            mUidToGrantTime = new ArrayMap<>();
+            mUidToGrantTime = new ConcurrentHashMap<>();
         }
 
         @Override
@@ -537,7 +604,10 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
 
         @Nullable
-        Instant get(Integer uid) {
+        Instant get(@Nullable Integer uid) {
+            if (uid == null) {
+                return null;
+            }
             return mUidToGrantTime.get(uid);
         }
 
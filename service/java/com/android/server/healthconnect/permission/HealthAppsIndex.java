@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static android.content.pm.PackageManager.GET_PERMISSIONS;
+
+import android.annotation.NonNull;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.UserHandle;
+import android.util.ArraySet;
+import android.util.Slog;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of the packages of each user which request health permissions.
+ *
+ * <p>The packages of a user are scanned once, when the index of the user is first needed, and the
+ * index is then updated from the package changes received by {@link
+ * PermissionPackageChangesOrchestrator}. Looking up the health apps of a user hence costs time
+ * proportional to the number of health apps, instead of to the number of installed packages.
+ *
+ * <p>The package manager is queried without holding the lock of the index. A scan is discarded and
+ * run again if packages changed while it was running, as it may not include the changes.
+ *
+ * @hide
+ */
+public final class HealthAppsIndex {
+    private static final String TAG = "HealthAppsIndex";
+
+    private static final HealthAppsIndex sInstance = new HealthAppsIndex();
+
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private final SparseArray<Set<String>> mUserIdToPackageNames = new SparseArray<>();
+
+    // Number of package changes received, used to tell whether a scan may have missed some.
+    @GuardedBy("mLock")
+    private long mPackageChangesCount;
+
+    @VisibleForTesting
+    public HealthAppsIndex() {}
+
+    @NonNull
+    public static HealthAppsIndex getInstance() {
+        return sInstance;
+    }
+
+    /** Returns the packages of {@code user} which request any health permission. */
+    @NonNull
+    public Set<String> getPackagesRequestingHealthPermissions(
+            @NonNull Context context, @NonNull UserHandle user) {
+        while (true) {
+            long packageChangesCount;
+            synchronized (mLock) {
+                Set<String> packageNames = mUserIdToPackageNames.get(user.getIdentifier());
+                if (packageNames != null) {
+                    return new ArraySet<>(packageNames);
+                }
+                packageChangesCount = mPackageChangesCount;
+            }
+
+            Set<String> scannedPackageNames = scanPackages(context, user);
+            synchronized (mLock) {
+                Set<String> packageNames = mUserIdToPackageNames.get(user.getIdentifier());
+                if (packageNames != null) {
+                    // Another scan of the user completed meanwhile.
+                    return new ArraySet<>(packageNames);
+                }
+                if (packageChangesCount == mPackageChangesCount) {
+                    mUserIdToPackageNames.put(user.getIdentifier(), scannedPackageNames);
+                    return new ArraySet<>(scannedPackageNames);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the index after {@code packageName} has been installed, updated or changed. Does
+     * nothing if the packages of {@code user} have not been scanned yet.
+     */
+    public void onPackageChanged(
+            @NonNull Context context, @NonNull String packageName, @NonNull UserHandle user) {
+        synchronized (mLock) {
+            mPackageChangesCount++;
+            if (mUserIdToPackageNames.get(user.getIdentifier()) == null) {
+                return;
+            }
+        }
+
+        boolean requestsHealthPermissions;
+        try {
+            PackageInfo info =
+                    getPackageManagerAsUser(context, user)
+                            .getPackageInfo(
+                                    packageName,
+                                    PackageManager.PackageInfoFlags.of(GET_PERMISSIONS));
+            requestsHealthPermissions =
+                    PackageInfoUtils.anyHealthPermissionRequested(context, info);
+        } catch (PackageManager.NameNotFoundException e) {
+            requestsHealthPermissions = false;
+        }
+
+        synchronized (mLock) {
+            Set<String> packageNames = mUserIdToPackageNames.get(user.getIdentifier());
+            if (packageNames == null) {
+                return;
+            }
+            if (requestsHealthPermissions) {
+                packageNames.add(packageName);
+            } else {
+                packageNames.remove(packageName);
+            }
+        }
+    }
+
+    /** Removes {@code packageName} from the index after it has been uninstalled for the user. */
+    public void onPackageRemoved(@NonNull String packageName, @NonNull UserHandle user) {
+        synchronized (mLock) {
+            mPackageChangesCount++;
+            Set<String> packageNames = mUserIdToPackageNames.get(user.getIdentifier());
+            if (packageNames != null) {
+                packageNames.remove(packageName);
+            }
+        }
+    }
+
+    /** Clears the index, the packages of each user are scanned again when next needed. */
+    @VisibleForTesting
+    public void clear() {
+        synchronized (mLock) {
+            mUserIdToPackageNames.clear();
+        }
+    }
+
+    @NonNull
+    private static Set<String> scanPackages(
+            @NonNull Context context, @NonNull UserHandle user) {
+        List<PackageInfo> allInfos =
+                getPackageManagerAsUser(context, user)
+                        .getInstalledPackages(PackageManager.PackageInfoFlags.of(GET_PERMISSIONS));
+        Set<String> packageNames = new ArraySet<>();
+        for (PackageInfo info : allInfos) {
+            if (PackageInfoUtils.anyHealthPermissionRequested(context, info)) {
+                packageNames.add(info.packageName);
+            }
+        }
+        Slog.i(TAG, "Indexed " + packageNames.size() + " health apps of user " + user);
+        return packageNames;
+    }
+
+    @NonNull
+    private static PackageManager getPackageManagerAsUser(
+            @NonNull Context context, @NonNull UserHandle user) {
+        return context.createContextAsUser(user, /* flag= */ 0).getPackageManager();
+    }
+}
@@ -73,14 +73,12 @@ public class PackageInfoUtils {
 
     @NonNull
     List<PackageInfo> getPackagesHoldingHealthPermissions(UserHandle user) {
-        // TODO(b/260707328): replace with getPackagesHoldingPermissions
-        List<PackageInfo> allInfos =
-                getPackageManagerAsUser(user)
-                        .getInstalledPackages(PackageManager.PackageInfoFlags.of(GET_PERMISSIONS));
         List<PackageInfo> healthAppsInfos = new ArrayList<>();
-
-        for (PackageInfo info : allInfos) {
-            if (anyRequestedHealthPermissionGranted(mContext, info)) {
+        for (String packageName :
+                HealthAppsIndex.getInstance()
+                        .getPackagesRequestingHealthPermissions(mContext, user)) {
+            PackageInfo info = getPackageInfoWithPermissionsAsUser(packageName, user);
+            if (info != null && anyRequestedHealthPermissionGranted(mContext, info)) {
                 healthAppsInfos.add(info);
             }
         }
@@ -128,6 +126,27 @@ public class PackageInfoUtils {
         return false;
     }
 
+    /**
+     * Checks if the given package requests any health permission, granted or not.
+     *
+     * @param context Context
+     * @param packageInfo Package to check
+     * @return If the given package can be connected to Health Connect.
+     */
+    public static boolean anyHealthPermissionRequested(
+            @NonNull Context context, @Nullable PackageInfo packageInfo) {
+        if (packageInfo == null || packageInfo.requestedPermissions == null) {
+            return false;
+        }
+
+        for (String permission : packageInfo.requestedPermissions) {
+            if (HealthConnectManager.isHealthPermission(context, permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Nullable
     PackageInfo getPackageInfoWithPermissionsAsUser(
             @NonNull String packageName, @NonNull UserHandle user) {
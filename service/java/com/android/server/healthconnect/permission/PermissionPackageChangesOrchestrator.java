@@ -87,12 +87,18 @@ public class PermissionPackageChangesOrchestrator extends BroadcastReceiver {
             return;
         }
 
-        boolean isHealthIntentRemoved =
-                mPermissionIntentTracker.updateStateAndGetIfIntentWasRemoved(
-                        packageName, userHandle);
         boolean isPackageRemoved =
                 intent.getAction().equals(Intent.ACTION_PACKAGE_REMOVED)
                         && !intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+        if (isPackageRemoved) {
+            HealthAppsIndex.getInstance().onPackageRemoved(packageName, userHandle);
+        } else {
+            HealthAppsIndex.getInstance().onPackageChanged(context, packageName, userHandle);
+        }
+
+        boolean isHealthIntentRemoved =
+                mPermissionIntentTracker.updateStateAndGetIfIntentWasRemoved(
+                        packageName, userHandle);
         // If the package was removed, we reset grant time. If the package is present but the health
         // intent support removed we revoke all health permissions and also reset grant time
         // (is done via onPermissionChanged callback)
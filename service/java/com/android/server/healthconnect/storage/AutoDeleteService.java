@@ -27,6 +27,8 @@ import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -62,6 +64,7 @@ public class AutoDeleteService {
             // reasons, such as: User switch, low battery etc.
             deleteStaleRecordEntries();
             deleteStaleChangeLogEntries();
+            compactChangeLogEntries();
             deleteStaleAccessLogEntries();
             // Update the recordTypesUsed by packages if required after the deletion of records.
             AppInfoHelper.getInstance().syncAppInfoRecordTypesUsed();
@@ -96,6 +99,17 @@ public class AutoDeleteService {
             try {
                 TransactionManager.getInitialisedInstance()
                         .deleteWithoutChangeLogs(deleteTableRequests);
+                // The records are deleted from the epoch to the start of the retention period.
+                ActivityDateHelper.getInstance()
+                        .markDeletedRecords(
+                                new ArrayList<>(
+                                        RecordHelperProvider.getInstance()
+                                                .getRecordHelpers()
+                                                .keySet()),
+                                Instant.EPOCH.toEpochMilli(),
+                                Instant.now()
+                                        .minus(recordAutoDeletePeriod, ChronoUnit.DAYS)
+                                        .toEpochMilli());
             } catch (Exception exception) {
                 Slog.e(TAG, "Auto delete for records failed", exception);
                 // Don't rethrow as that will crash system_server
@@ -117,6 +131,15 @@ public class AutoDeleteService {
         }
     }
 
+    private static void compactChangeLogEntries() {
+        try {
+            ChangeLogsHelper.getInstance().compactChangeLogs();
+        } catch (Exception exception) {
+            Slog.e(TAG, "Compaction of Change logs failed", exception);
+            // Don't rethrow as that will crash system_server
+        }
+    }
+
     private static void deleteStaleAccessLogEntries() {
         try {
             TransactionManager.getInitialisedInstance()
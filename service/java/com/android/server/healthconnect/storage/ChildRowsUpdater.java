@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static android.health.connect.Constants.PARENT_KEY;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Updates the child rows of a record, e.g. the samples of a series record or the stages of a
+ * session, to the child rows of an {@link UpsertTableRequest}, writing only the rows which differ.
+ *
+ * <p>Stored rows are matched with the requested rows by value. Stale stored rows are overwritten
+ * with the new rows, and the remaining stale rows are deleted or the remaining new rows inserted.
+ * Updating a session with a few more samples hence only inserts these samples, instead of deleting
+ * and inserting all the samples of the session again. The row ids follow the order of the
+ * requested rows, which is the order the rows are read back in.
+ *
+ * @hide
+ */
+final class ChildRowsUpdater {
+    // Implicit row id of SQLite, the child tables don't declare their own.
+    private static final String ROW_ID = "rowid";
+    private static final long APPENDED = Long.MAX_VALUE;
+
+    private ChildRowsUpdater() {}
+
+    /**
+     * Updates the child rows of the record at {@code rowId} to the child rows of {@code request}.
+     * The child tables which {@link UpsertTableRequest#getAllChildTablesToDelete()} doesn't return
+     * keep their rows, and only get the new rows.
+     */
+    static void update(
+            @NonNull SQLiteDatabase db, @NonNull UpsertTableRequest request, long rowId) {
+        Map<String, List<ContentValues>> tableToRows = new ArrayMap<>();
+        for (UpsertTableRequest childTableRequest : request.getChildTableRequests()) {
+            tableToRows
+                    .computeIfAbsent(childTableRequest.getTable(), table -> new ArrayList<>())
+                    .add(childTableRequest.withParentKey(rowId).getContentValues());
+        }
+
+        for (String childTable : request.getAllChildTablesToDelete()) {
+            List<ContentValues> rows = tableToRows.remove(childTable);
+            updateTable(db, childTable, rowId, rows == null ? Collections.emptyList() : rows);
+        }
+        for (Map.Entry<String, List<ContentValues>> entry : tableToRows.entrySet()) {
+            for (ContentValues row : entry.getValue()) {
+                db.insertOrThrow(entry.getKey(), null, row);
+            }
+        }
+    }
+
+    private static void updateTable(
+            @NonNull SQLiteDatabase db,
+            @NonNull String table,
+            long parentRowId,
+            @NonNull List<ContentValues> newRows) {
+        String parentWhereClause = PARENT_KEY + " = " + parentRowId;
+        if (newRows.isEmpty()) {
+            db.delete(table, parentWhereClause, null);
+            return;
+        }
+
+        Set<String> columnSet = new ArraySet<>();
+        for (ContentValues row : newRows) {
+            columnSet.addAll(row.keySet());
+        }
+        List<String> columns = new ArrayList<>(columnSet);
+        Map<List<Object>, ArrayDeque<Integer>> unmatchedNewRows = new HashMap<>();
+        for (int i = 0; i < newRows.size(); i++) {
+            unmatchedNewRows
+                    .computeIfAbsent(getKey(newRows.get(i), columns), key -> new ArrayDeque<>())
+                    .add(i);
+        }
+
+        // Row id of each new row: of its matched or overwritten stored row, or APPENDED.
+        long[] rowIds = new long[newRows.size()];
+        boolean[] matched = new boolean[newRows.size()];
+        List<Long> staleRowIds = new ArrayList<>();
+        String[] projection = new String[columns.size() + 1];
+        projection[0] = ROW_ID;
+        for (int i = 0; i < columns.size(); i++) {
+            projection[i + 1] = columns.get(i);
+        }
+        try (Cursor cursor =
+                db.query(table, projection, parentWhereClause, null, null, null, ROW_ID)) {
+            while (cursor.moveToNext()) {
+                ArrayDeque<Integer> rows = unmatchedNewRows.get(getKey(cursor));
+                if (rows == null || rows.isEmpty()) {
+                    staleRowIds.add(cursor.getLong(0));
+                } else {
+                    int row = rows.poll();
+                    matched[row] = true;
+                    rowIds[row] = cursor.getLong(0);
+                }
+            }
+        }
+
+        int staleRowIndex = 0;
+        for (int i = 0; i < newRows.size(); i++) {
+            if (!matched[i]) {
+                rowIds[i] =
+                        staleRowIndex < staleRowIds.size()
+                                ? staleRowIds.get(staleRowIndex++)
+                                : APPENDED;
+            }
+        }
+        List<Long> deletedRowIds =
+                new ArrayList<>(staleRowIds.subList(staleRowIndex, staleRowIds.size()));
+        // Child rows are read back in row id order, so the rows from the first one whose row id
+        // is out of order are appended again, e.g. samples inserted before the stored ones.
+        for (int i = 1; i < newRows.size(); i++) {
+            if (rowIds[i] < rowIds[i - 1]) {
+                for (int j = i; j < newRows.size(); j++) {
+                    if (rowIds[j] != APPENDED) {
+                        deletedRowIds.add(rowIds[j]);
+                        rowIds[j] = APPENDED;
+                        matched[j] = false;
+                    }
+                }
+                break;
+            }
+        }
+
+        if (!deletedRowIds.isEmpty()) {
+            db.delete(
+                    table,
+                    ROW_ID + " IN (" + StorageUtils.flattenLongList(deletedRowIds) + ")",
+                    null);
+        }
+        for (int i = 0; i < newRows.size(); i++) {
+            if (matched[i]) {
+                continue;
+            }
+            if (rowIds[i] != APPENDED) {
+                db.update(table, newRows.get(i), ROW_ID + " = " + rowIds[i], null);
+            } else {
+                // Gets a row id larger than the ones of all the kept rows.
+                db.insertOrThrow(table, null, newRows.get(i));
+            }
+        }
+    }
+
+    @NonNull
+    private static List<Object> getKey(@NonNull ContentValues row, @NonNull List<String> columns) {
+        List<Object> key = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            key.add(normalise(row.get(column)));
+        }
+        return key;
+    }
+
+    /** Returns the key of the current row of {@code cursor}, skipping the row id column. */
+    @NonNull
+    private static List<Object> getKey(@NonNull Cursor cursor) {
+        List<Object> key = new ArrayList<>(cursor.getColumnCount() - 1);
+        for (int i = 1; i < cursor.getColumnCount(); i++) {
+            key.add(
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL -> null;
+                        case Cursor.FIELD_TYPE_INTEGER -> cursor.getLong(i);
+                        case Cursor.FIELD_TYPE_FLOAT -> normalise(cursor.getDouble(i));
+                        case Cursor.FIELD_TYPE_BLOB -> ByteBuffer.wrap(cursor.getBlob(i));
+                        default -> cursor.getString(i);
+                    });
+        }
+        return key;
+    }
+
+    /**
+     * Returns {@code value} as it is read back from the database, so that equal values have equal
+     * keys whatever the affinity of their column.
+     */
+    @Nullable
+    private static Object normalise(@Nullable Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        }
+        if (value instanceof Float || value instanceof Double) {
+            double doubleValue = ((Number) value).doubleValue();
+            long longValue = (long) doubleValue;
+            return longValue == doubleValue ? (Object) longValue : (Object) doubleValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        return value;
+    }
+}
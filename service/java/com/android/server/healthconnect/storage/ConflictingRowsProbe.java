@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Pair;
+
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the existing rows which a batch of {@link UpsertTableRequest}s conflicts with, with a
+ * single query per table, so that the conflicts are known before writing the rows.
+ *
+ * <p>A row conflicts with a request when one of the unique columns of the request has the same
+ * value, e.g. the same UUID or dedupe hash for records.
+ *
+ * @hide
+ */
+final class ConflictingRowsProbe implements AutoCloseable {
+    private final Map<String, TableRows> mTableRows = new ArrayMap<>();
+
+    private ConflictingRowsProbe() {}
+
+    /** Reads the rows which {@code upsertRequests} conflict with. */
+    @NonNull
+    static ConflictingRowsProbe read(
+            @NonNull SQLiteDatabase db, @NonNull List<UpsertTableRequest> upsertRequests) {
+        Map<String, List<UpsertTableRequest>> tableToRequests = new ArrayMap<>();
+        for (UpsertTableRequest upsertRequest : upsertRequests) {
+            tableToRequests
+                    .computeIfAbsent(upsertRequest.getTable(), table -> new ArrayList<>())
+                    .add(upsertRequest);
+        }
+
+        ConflictingRowsProbe probe = new ConflictingRowsProbe();
+        try {
+            for (Map.Entry<String, List<UpsertTableRequest>> entry : tableToRequests.entrySet()) {
+                if (entry.getValue().get(0).getUniqueColumnsCount() > 0) {
+                    probe.mTableRows.put(entry.getKey(), TableRows.read(db, entry.getValue()));
+                }
+            }
+        } catch (RuntimeException e) {
+            probe.close();
+            throw e;
+        }
+        return probe;
+    }
+
+    /**
+     * Moves the cursor of the table of {@code upsertRequest} to the row it conflicts with.
+     *
+     * <p>Each row is returned only once, as it may be modified by the caller, the rows conflicting
+     * with several requests must be read again.
+     *
+     * @return the cursor positioned at the conflicting row, or null if there is no such row or if
+     *     it has already been returned.
+     */
+    @Nullable
+    Cursor moveToConflictingRow(@NonNull UpsertTableRequest upsertRequest) {
+        TableRows tableRows = mTableRows.get(upsertRequest.getTable());
+        return tableRows == null ? null : tableRows.moveToConflictingRow(upsertRequest);
+    }
+
+    @Override
+    public void close() {
+        for (TableRows tableRows : mTableRows.values()) {
+            tableRows.mCursor.close();
+        }
+        mTableRows.clear();
+    }
+
+    /** The rows of a table conflicting with the requests, and their position by unique value. */
+    private static final class TableRows {
+        private final Cursor mCursor;
+        private final List<Map<Object, Integer>> mPositionsByValue;
+        private final Set<Integer> mReturnedPositions = new ArraySet<>();
+
+        private TableRows(
+                @NonNull Cursor cursor, @NonNull List<Map<Object, Integer>> positionsByValue) {
+            mCursor = cursor;
+            mPositionsByValue = positionsByValue;
+        }
+
+        @NonNull
+        static TableRows read(
+                @NonNull SQLiteDatabase db, @NonNull List<UpsertTableRequest> upsertRequests) {
+            String table = upsertRequests.get(0).getTable();
+            List<Pair<String, Integer>> uniqueColumns = upsertRequests.get(0).getUniqueColumns();
+
+            StringBuilder query = new StringBuilder("SELECT * FROM ").append(table);
+            for (int i = 0; i < uniqueColumns.size(); i++) {
+                List<String> values = new ArrayList<>();
+                for (UpsertTableRequest upsertRequest : upsertRequests) {
+                    String value = getSqlValue(upsertRequest, uniqueColumns.get(i));
+                    if (value != null) {
+                        values.add(value);
+                    }
+                }
+                query.append(i == 0 ? " WHERE " : " OR ")
+                        .append(uniqueColumns.get(i).first)
+                        .append(" IN (")
+                        .append(String.join(", ", values))
+                        .append(')');
+            }
+
+            // The rows are copied, as the writes of the caller may change the result of the query.
+            Cursor cursor;
+            try (Cursor queryCursor = db.rawQuery(query.toString(), null)) {
+                cursor = copyRows(queryCursor);
+            }
+            List<Map<Object, Integer>> positionsByValue = new ArrayList<>();
+            for (Pair<String, Integer> uniqueColumn : uniqueColumns) {
+                Map<Object, Integer> positions = new ArrayMap<>();
+                int columnIndex = cursor.getColumnIndex(uniqueColumn.first);
+                for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    Object value = getCursorValue(cursor, columnIndex, uniqueColumn.second);
+                    if (value != null) {
+                        positions.putIfAbsent(value, cursor.getPosition());
+                    }
+                }
+                positionsByValue.add(positions);
+            }
+            return new TableRows(cursor, positionsByValue);
+        }
+
+        @Nullable
+        Cursor moveToConflictingRow(@NonNull UpsertTableRequest upsertRequest) {
+            List<Pair<String, Integer>> uniqueColumns = upsertRequest.getUniqueColumns();
+            int position = Integer.MAX_VALUE;
+            for (int i = 0; i < uniqueColumns.size(); i++) {
+                Object value = getRequestValue(upsertRequest, uniqueColumns.get(i));
+                Integer valuePosition = value == null ? null : mPositionsByValue.get(i).get(value);
+                if (valuePosition != null) {
+                    position = Math.min(position, valuePosition);
+                }
+            }
+
+            if (position == Integer.MAX_VALUE || !mReturnedPositions.add(position)) {
+                return null;
+            }
+            mCursor.moveToPosition(position);
+            return mCursor;
+        }
+
+        @NonNull
+        private static Cursor copyRows(@NonNull Cursor cursor) {
+            MatrixCursor rows = new MatrixCursor(cursor.getColumnNames(), cursor.getCount());
+            Object[] row = new Object[cursor.getColumnCount()];
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] =
+                            switch (cursor.getType(i)) {
+                                case Cursor.FIELD_TYPE_NULL -> null;
+                                case Cursor.FIELD_TYPE_INTEGER -> cursor.getLong(i);
+                                case Cursor.FIELD_TYPE_FLOAT -> cursor.getDouble(i);
+                                case Cursor.FIELD_TYPE_BLOB -> cursor.getBlob(i);
+                                default -> cursor.getString(i);
+                            };
+                }
+                rows.addRow(row);
+            }
+            return rows;
+        }
+
+        @Nullable
+        private static String getSqlValue(
+                @NonNull UpsertTableRequest upsertRequest,
+                @NonNull Pair<String, Integer> uniqueColumn) {
+            Object value = getRequestValue(upsertRequest, uniqueColumn);
+            if (value == null) {
+                return null;
+            }
+            return value instanceof ByteBuffer
+                    ? StorageUtils.getHexString(((ByteBuffer) value).array())
+                    : StorageUtils.getNormalisedString((String) value);
+        }
+
+        /** Returns the value of a unique column in a form which can be compared with equals. */
+        @Nullable
+        private static Object getRequestValue(
+                @NonNull UpsertTableRequest upsertRequest,
+                @NonNull Pair<String, Integer> uniqueColumn) {
+            switch (uniqueColumn.second) {
+                case UpsertTableRequest.TYPE_BLOB -> {
+                    byte[] value =
+                            upsertRequest.getContentValues().getAsByteArray(uniqueColumn.first);
+                    return value == null ? null : ByteBuffer.wrap(value);
+                }
+                case UpsertTableRequest.TYPE_STRING -> {
+                    return upsertRequest.getContentValues().getAsString(uniqueColumn.first);
+                }
+                default -> throw new UnsupportedOperationException(
+                        "Unable to find type: " + uniqueColumn.second);
+            }
+        }
+
+        @Nullable
+        private static Object getCursorValue(
+                @NonNull Cursor cursor, int columnIndex, int columnType) {
+            if (cursor.isNull(columnIndex)) {
+                return null;
+            }
+            return columnType == UpsertTableRequest.TYPE_BLOB
+                    ? ByteBuffer.wrap(cursor.getBlob(columnIndex))
+                    : cursor.getString(columnIndex);
+        }
+    }
+}
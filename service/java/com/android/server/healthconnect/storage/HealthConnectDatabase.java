@@ -33,6 +33,7 @@ import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCatego
 import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.TableRowCountsHelper;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.utils.DropTableRequest;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
@@ -52,14 +53,27 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
     public static final int DB_VERSION_UUID_BLOB = 9;
 
     public static final int DB_VERSION_GENERATED_LOCAL_TIME = 10;
+
+    public static final int DB_VERSION_TABLE_ROW_COUNTS = 11;
+
+    public static final int DB_VERSION_EXERCISE_ROUTE_BLOCKS = 12;
+
+    public static final int DB_VERSION_APP_DEVICE_START_TIME_INDEX = 13;
+
+    // Clears the legacy exercise route table. DATABASE_VERSION must only be raised to it once the
+    // module can no longer be rolled back to a version below DB_VERSION_EXERCISE_ROUTE_BLOCKS,
+    // which reads the routes from the legacy table.
+    public static final int DB_VERSION_LEGACY_EXERCISE_ROUTES_CLEARED = 14;
     private static final String TAG = "HealthConnectDatabase";
-    private static final int DATABASE_VERSION = 10;
+    private static final int DATABASE_VERSION = 13;
     private static final String DATABASE_NAME = "healthconnect.db";
     @NonNull private final Collection<RecordHelper<?>> mRecordHelpers;
     private final Context mContext;
 
     public HealthConnectDatabase(@NonNull Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Gives the database a pool of read connections, so that reads can run concurrently.
+        setWriteAheadLoggingEnabled(true);
         mRecordHelpers = RecordHelperProvider.getInstance().getRecordHelpers().values();
         mContext = context;
     }
@@ -69,6 +83,7 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
         for (CreateTableRequest createTableRequest : getCreateTableRequests()) {
             createTable(db, createTableRequest);
         }
+        TableRowCountsHelper.getInstance().onCreate(db);
     }
 
     @Override
@@ -90,6 +105,7 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
         PriorityMigrationHelper.getInstance().onUpgrade(oldVersion, newVersion, db);
         PreferenceHelper.getInstance().onUpgrade(oldVersion, newVersion, db);
         AccessLogsHelper.getInstance().onUpgrade(oldVersion, newVersion, db);
+        TableRowCountsHelper.getInstance().onUpgrade(oldVersion, newVersion, db);
     }
 
     @Override
@@ -97,6 +113,8 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
         // Enforce FK constraints for DB writes as we want to enforce FK constraints on DB write.
         // This is also required for when we delete entries, for cascade to work
         db.setForeignKeyConstraintsEnabled(true);
+        // Required for the row count triggers to also fire for rows deleted by INSERT OR REPLACE
+        db.execSQL("PRAGMA recursive_triggers = ON;");
     }
 
     @Override
@@ -134,6 +152,7 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
         addCreateRequestsFor(MigrationEntityHelper.getInstance().getCreateTableRequest(), requests);
         addCreateRequestsFor(
                 PriorityMigrationHelper.getInstance().getCreateTableRequest(), requests);
+        addCreateRequestsFor(TableRowCountsHelper.getInstance().getCreateTableRequest(), requests);
 
         return requests;
     }
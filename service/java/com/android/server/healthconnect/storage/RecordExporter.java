@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+import static android.health.connect.Constants.DEFAULT_PAGE_SIZE;
+
+import android.annotation.NonNull;
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.aidl.ReadRecordsRequestParcel;
+import android.health.connect.datatypes.Record;
+import android.health.connect.internal.RecordStream;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.utils.RecordMapper;
+import android.util.ArrayMap;
+import android.util.Pair;
+
+import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * Writes all the records of a set of record types to a {@link RecordStream}.
+ *
+ * <p>The records of each type are read page by page in ascending start time, so that only a page
+ * of records is held in memory however many records are exported. Each page is read by a single
+ * query, and no transaction is held between pages so that writes are not blocked for the duration
+ * of the export. A record present for the whole export is written exactly once.
+ *
+ * @hide
+ */
+public final class RecordExporter {
+    private static final int EXPORT_PAGE_SIZE = DEFAULT_PAGE_SIZE;
+
+    private final TransactionManager mTransactionManager;
+
+    public RecordExporter(@NonNull TransactionManager transactionManager) {
+        Objects.requireNonNull(transactionManager);
+        mTransactionManager = transactionManager;
+    }
+
+    /**
+     * Writes all the records of {@code recordTypes} to {@code writer} and finishes the stream.
+     *
+     * @param progressListener receives the number of records written so far after each page.
+     * @return the number of records written.
+     * @throws IllegalArgumentException if a record type is unknown.
+     */
+    public long exportRecords(
+            @NonNull List<Integer> recordTypes,
+            @NonNull RecordStream.Writer writer,
+            @NonNull LongConsumer progressListener)
+            throws IOException {
+        Map<Integer, Class<? extends Record>> recordClasses =
+                RecordMapper.getInstance().getRecordIdToExternalRecordClassMap();
+        for (int recordType : recordTypes) {
+            if (!recordClasses.containsKey(recordType)) {
+                throw new IllegalArgumentException("Unknown record type: " + recordType);
+            }
+        }
+
+        long numberOfRecords = 0;
+        for (int recordType : recordTypes) {
+            Map<String, Boolean> extraReadPermsMapping = new ArrayMap<>();
+            for (String extraReadPerm :
+                    RecordHelperProvider.getInstance()
+                            .getRecordHelper(recordType)
+                            .getExtraReadPermissions()) {
+                extraReadPermsMapping.put(extraReadPerm, true);
+            }
+
+            long pageToken = DEFAULT_LONG;
+            do {
+                // Working with startDateAccess of -1 and no package name, as all the records of
+                // all the apps are exported.
+                ReadTransactionRequest readTransactionRequest =
+                        new ReadTransactionRequest(
+                                null /* packageName */,
+                                getPageRequest(recordClasses.get(recordType), pageToken),
+                                DEFAULT_LONG /* startDateAccess */,
+                                false /* enforceSelfRead */,
+                                extraReadPermsMapping);
+                Pair<List<RecordInternal<?>>, Long> recordsAndToken =
+                        mTransactionManager.readRecordsAndGetNextToken(readTransactionRequest);
+                for (RecordInternal<?> recordInternal : recordsAndToken.first) {
+                    writer.writeRecord(recordInternal);
+                }
+                numberOfRecords += recordsAndToken.first.size();
+                progressListener.accept(numberOfRecords);
+
+                pageToken =
+                        PageTokenUtils.encode(recordsAndToken.second, /* isAscending= */ true);
+            } while (pageToken != DEFAULT_LONG);
+        }
+        writer.finish();
+        return numberOfRecords;
+    }
+
+    private static <T extends Record> ReadRecordsRequestParcel getPageRequest(
+            @NonNull Class<T> recordClass, long pageToken) {
+        // Records are read in ascending start time by default, the order can't be set along with
+        // a page token.
+        return new ReadRecordsRequestUsingFilters.Builder<>(recordClass)
+                .setPageSize(EXPORT_PAGE_SIZE)
+                .setPageToken(pageToken)
+                .build()
+                .toReadRecordsRequestParcel();
+    }
+}
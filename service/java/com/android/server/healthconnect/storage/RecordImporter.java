@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.internal.RecordStream;
+import android.health.connect.internal.datatypes.MetadataObjectsPool;
+import android.health.connect.internal.datatypes.RecordInternal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Imports the records of a {@link RecordStream} in batches.
+ *
+ * <p>The stream is parsed and the records are validated on a thread of the parser executor, while
+ * the calling thread writes the previous batches. A batch ends after the commit interval, or
+ * before its records exceed the maximum batch size, and each batch is written by a single call of
+ * the {@link BatchWriter}. At most {@link #MAX_PENDING_BATCHES} parsed batches wait to be written,
+ * so that memory stays bounded however long the stream is.
+ *
+ * <p>Records failing validation, and records the {@link BatchWriter} doesn't write as they conflict
+ * with existing records, are skipped and the first of them are reported in {@link #getErrors}. A
+ * malformed stream or a failure of the parser or of the {@link BatchWriter} stops the import, the
+ * batches written before are kept.
+ *
+ * @hide
+ */
+public final class RecordImporter {
+    /** Writes a batch of valid records. */
+    public interface BatchWriter {
+        /**
+         * Writes the records of {@code records} which don't conflict with existing records.
+         *
+         * @return the positions in {@code records} of the records which were not written.
+         */
+        @NonNull
+        List<Integer> writeBatch(@NonNull List<RecordInternal<?>> records);
+    }
+
+    private static final int MAX_PENDING_BATCHES = 2;
+    // How often the parser is checked while waiting for a batch, in case it failed without
+    // reporting it, e.g. on OutOfMemoryError.
+    private static final long PARSER_CHECK_INTERVAL_MILLIS = 1000;
+    private static final String CONFLICT_ERROR =
+            "Conflicts with an existing record, or an earlier record of the stream";
+
+    private final Executor mParserExecutor;
+    private final int mCommitInterval;
+    private final int mMaxErrors;
+    private final int mMaxRecordSize;
+    private final long mMaxBatchSize;
+
+    private long mNumberOfRecordsImported;
+    private long mNumberOfInvalidRecords;
+    private List<String> mErrors = Collections.emptyList();
+
+    /**
+     * @param parserExecutor executor to parse the stream on.
+     * @param commitInterval maximum number of records of a batch.
+     * @param maxErrors maximum number of invalid records reported in {@link #getErrors}.
+     * @param maxRecordSize maximum size in bytes of a record of the stream.
+     * @param maxBatchSize maximum size in bytes of the records of a batch, a record larger than it
+     *     is written in its own batch.
+     */
+    public RecordImporter(
+            @NonNull Executor parserExecutor,
+            int commitInterval,
+            int maxErrors,
+            int maxRecordSize,
+            long maxBatchSize) {
+        Objects.requireNonNull(parserExecutor);
+        if (commitInterval < 1 || maxErrors < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid commit interval " + commitInterval + " or max errors " + maxErrors);
+        }
+        mParserExecutor = parserExecutor;
+        mCommitInterval = commitInterval;
+        mMaxErrors = maxErrors;
+        mMaxRecordSize = maxRecordSize;
+        mMaxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Imports all the records of {@code inputStream}, and returns once they are all written.
+     *
+     * @param progressListener receives the number of records imported so far after each batch.
+     * @throws IOException if the stream is malformed or can't be read.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a batch.
+     */
+    public void importRecords(
+            @NonNull InputStream inputStream,
+            @NonNull BatchWriter batchWriter,
+            @NonNull LongConsumer progressListener)
+            throws IOException, InterruptedException {
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+        FutureTask<Void> parser =
+                new FutureTask<>(
+                        () -> {
+                            parse(inputStream, batches);
+                            return null;
+                        });
+        mParserExecutor.execute(parser);
+        long numberOfConflicts = 0;
+        Map<Long, String> conflictErrors = new TreeMap<>();
+        try {
+            while (true) {
+                Batch batch = takeBatch(batches, parser);
+                if (batch.mFailure instanceof IOException) {
+                    throw (IOException) batch.mFailure;
+                } else if (batch.mFailure instanceof Error) {
+                    throw (Error) batch.mFailure;
+                } else if (batch.mFailure instanceof RuntimeException) {
+                    throw (RuntimeException) batch.mFailure;
+                } else if (batch.mFailure != null) {
+                    throw new IOException(batch.mFailure);
+                }
+
+                if (!batch.mRecords.isEmpty()) {
+                    List<Integer> notWritten = batchWriter.writeBatch(batch.mRecords);
+                    for (int position : notWritten) {
+                        if (conflictErrors.size() < mMaxErrors) {
+                            conflictErrors.put(batch.mRecordIndices.get(position), CONFLICT_ERROR);
+                        }
+                    }
+                    numberOfConflicts += notWritten.size();
+                    mNumberOfRecordsImported += batch.mRecords.size() - notWritten.size();
+                    progressListener.accept(mNumberOfRecordsImported);
+                }
+                if (batch.mErrors != null) {
+                    mNumberOfInvalidRecords = batch.mNumberOfInvalidRecords + numberOfConflicts;
+                    mErrors = getFirstErrors(batch.mErrors, conflictErrors);
+                    return;
+                }
+            }
+        } finally {
+            // Stops the parser if the import failed, it is done otherwise.
+            parser.cancel(/* mayInterruptIfRunning= */ true);
+        }
+    }
+
+    /** Returns the number of records written. */
+    public long getNumberOfRecordsImported() {
+        return mNumberOfRecordsImported;
+    }
+
+    /**
+     * Returns the number of records of the stream which failed validation or were not written as
+     * they conflict with existing records.
+     */
+    public long getNumberOfInvalidRecords() {
+        return mNumberOfInvalidRecords;
+    }
+
+    /** Returns why the first invalid records of the stream were skipped. */
+    @NonNull
+    public List<String> getErrors() {
+        return mErrors;
+    }
+
+    /**
+     * Returns the next batch of the parser, or its failure if it stopped without reporting it.
+     *
+     * @throws IOException if the parser stopped without reporting a failure.
+     */
+    @NonNull
+    private static Batch takeBatch(
+            @NonNull BlockingQueue<Batch> batches, @NonNull FutureTask<Void> parser)
+            throws IOException, InterruptedException {
+        while (true) {
+            Batch batch = batches.poll(PARSER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                return batch;
+            }
+            if (parser.isDone()) {
+                // The parser may have put its last batch since the poll.
+                batch = batches.poll();
+                if (batch != null) {
+                    return batch;
+                }
+                try {
+                    parser.get();
+                } catch (ExecutionException e) {
+                    return new Batch(e.getCause());
+                }
+                throw new IOException("Parser stopped before the end of the stream");
+            }
+        }
+    }
+
+    /** Returns the first {@link #mMaxErrors} errors, in the order of the records of the stream. */
+    @NonNull
+    private List<String> getFirstErrors(
+            @NonNull Map<Long, String> parserErrors, @NonNull Map<Long, String> conflictErrors) {
+        Map<Long, String> allErrors = new TreeMap<>(parserErrors);
+        allErrors.putAll(conflictErrors);
+        List<String> errors = new ArrayList<>();
+        for (Map.Entry<Long, String> error : allErrors.entrySet()) {
+            if (errors.size() == mMaxErrors) {
+                break;
+            }
+            errors.add("Record " + error.getKey() + ": " + error.getValue());
+        }
+        return errors;
+    }
+
+    private void parse(@NonNull InputStream inputStream, @NonNull BlockingQueue<Batch> batches)
+            throws InterruptedException {
+        // Errors by index of their record in the stream.
+        Map<Long, String> errors = new TreeMap<>();
+        long numberOfInvalidRecords = 0;
+        List<RecordInternal<?>> records = new ArrayList<>();
+        List<Long> recordIndices = new ArrayList<>();
+        long batchSize = 0;
+        // Renewed with each batch, so that it only holds the app and devices of a few records.
+        MetadataObjectsPool metadataObjectsPool = new MetadataObjectsPool();
+        try {
+            RecordStream.Reader reader = new RecordStream.Reader(inputStream, mMaxRecordSize);
+            RecordInternal<?> recordInternal;
+            for (long index = 0; (recordInternal = reader.readRecord()) != null; index++) {
+                String error = validate(recordInternal, metadataObjectsPool);
+                if (error != null) {
+                    numberOfInvalidRecords++;
+                    if (errors.size() < mMaxErrors) {
+                        errors.put(index, error);
+                    }
+                    continue;
+                }
+
+                int recordSize = reader.getLastRecordSize();
+                if (!records.isEmpty()
+                        && (records.size() == mCommitInterval
+                                || batchSize + recordSize > mMaxBatchSize)) {
+                    batches.put(new Batch(records, recordIndices));
+                    records = new ArrayList<>();
+                    recordIndices = new ArrayList<>();
+                    batchSize = 0;
+                    metadataObjectsPool = new MetadataObjectsPool();
+                }
+                records.add(recordInternal);
+                recordIndices.add(index);
+                batchSize += recordSize;
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Throwable e) {
+            // Also reports errors, so that the import stops instead of waiting for a batch.
+            batches.put(new Batch(e));
+            return;
+        }
+        batches.put(new Batch(records, recordIndices, numberOfInvalidRecords, errors));
+    }
+
+    /**
+     * Returns why {@code recordInternal} is invalid, or null if it is valid.
+     *
+     * <p>Records are validated when they are built, as they are by the apps inserting them. The
+     * data origin and device of the built record are taken from {@code metadataObjectsPool}, as
+     * the records of a stream share a few of them, so that only the fields of the record itself
+     * are built for each record.
+     */
+    @Nullable
+    private static String validate(
+            @NonNull RecordInternal<?> recordInternal,
+            @NonNull MetadataObjectsPool metadataObjectsPool) {
+        try {
+            recordInternal.toExternalRecord(metadataObjectsPool);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+    }
+
+    /** Records parsed from the stream, or the failure of the parser. */
+    private static final class Batch {
+        @NonNull private final List<RecordInternal<?>> mRecords;
+        // Index in the stream of each record of the batch.
+        @NonNull private final List<Long> mRecordIndices;
+        // Set for the last batch of the stream only.
+        @Nullable private final Map<Long, String> mErrors;
+        private final long mNumberOfInvalidRecords;
+        @Nullable private final Throwable mFailure;
+
+        Batch(@NonNull List<RecordInternal<?>> records, @NonNull List<Long> recordIndices) {
+            this(records, recordIndices, 0, null, null);
+        }
+
+        Batch(
+                @NonNull List<RecordInternal<?>> records,
+                @NonNull List<Long> recordIndices,
+                long numberOfInvalidRecords,
+                @NonNull Map<Long, String> errors) {
+            this(records, recordIndices, numberOfInvalidRecords, errors, null);
+        }
+
+        Batch(@NonNull Throwable failure) {
+            this(Collections.emptyList(), Collections.emptyList(), 0, null, failure);
+        }
+
+        private Batch(
+                @NonNull List<RecordInternal<?>> records,
+                @NonNull List<Long> recordIndices,
+                long numberOfInvalidRecords,
+                @Nullable Map<Long, String> errors,
+                @Nullable Throwable failure) {
+            mRecords = records;
+            mRecordIndices = recordIndices;
+            mNumberOfInvalidRecords = numberOfInvalidRecords;
+            mErrors = errors;
+            mFailure = failure;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.DEVICE_INFO_ID_COLUMN_NAME;
+
+import android.annotation.NonNull;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.util.ArrayMap;
+
+import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Appends records which are inserted in time order, e.g. by a wearable syncing its samples.
+ *
+ * <p>A record without client record id can only conflict with an existing record of the same app
+ * and device starting at the same time, as its dedupe hash is computed from these and its UUID is
+ * random. A record starting after all the records of its app and device is then inserted with a
+ * cached statement, skipping the conflict resolution of the generic insert path. The latest start
+ * time of an app and device is read once per table, and then kept up to date with the appended
+ * records.
+ *
+ * <p>Must be used and closed inside a single transaction.
+ *
+ * @hide
+ */
+final class TimeOrderedInserter implements AutoCloseable {
+    private final SQLiteDatabase mDb;
+    private final Map<String, InsertStatement> mInsertStatements = new ArrayMap<>();
+    private final Map<String, Long> mLatestStartTimes = new ArrayMap<>();
+
+    TimeOrderedInserter(@NonNull SQLiteDatabase db) {
+        Objects.requireNonNull(db);
+        mDb = db;
+    }
+
+    /**
+     * Inserts the record of {@code request} if it starts after all the records of its app and
+     * device.
+     *
+     * @return the row id of the inserted record, or -1 if it may conflict with an existing record
+     *     and was not inserted.
+     */
+    long tryAppend(@NonNull UpsertTableRequest request) {
+        RecordInternal<?> recordInternal = request.getRecordInternal();
+        RecordHelper<?> recordHelper =
+                RecordHelperProvider.getInstance().getRecordHelper(recordInternal.getRecordType());
+        String tailKey =
+                request.getTable()
+                        + ':'
+                        + recordInternal.getAppInfoId()
+                        + ':'
+                        + recordInternal.getDeviceInfoId();
+        Long latestStartTime = mLatestStartTimes.get(tailKey);
+        if (latestStartTime == null) {
+            latestStartTime = readLatestStartTime(request.getTable(), recordHelper, recordInternal);
+        }
+
+        long startTime = StorageUtils.getStartTimeInMillis(recordInternal);
+        if (startTime <= latestStartTime) {
+            mLatestStartTimes.put(tailKey, latestStartTime);
+            return -1;
+        }
+
+        long rowId;
+        try {
+            rowId = insert(request.getTable(), request.getContentValues());
+        } catch (SQLiteConstraintException e) {
+            // Unlikely UUID collision, the latest start time is read again for the next record.
+            mLatestStartTimes.remove(tailKey);
+            return -1;
+        }
+        for (UpsertTableRequest childRequest : request.getChildTableRequests()) {
+            insert(childRequest.getTable(), childRequest.withParentKey(rowId).getContentValues());
+        }
+        mLatestStartTimes.put(tailKey, startTime);
+        return rowId;
+    }
+
+    @Override
+    public void close() {
+        for (InsertStatement insertStatement : mInsertStatements.values()) {
+            insertStatement.close();
+        }
+        mInsertStatements.clear();
+    }
+
+    private long readLatestStartTime(
+            @NonNull String table,
+            @NonNull RecordHelper<?> recordHelper,
+            @NonNull RecordInternal<?> recordInternal) {
+        // Seeks to the end of the app, device and start time index instead of scanning the records
+        // of the app.
+        String startTimeColumn = recordHelper.getStartTimeColumnName();
+        try (Cursor cursor =
+                mDb.rawQuery(
+                        "SELECT "
+                                + startTimeColumn
+                                + " FROM "
+                                + table
+                                + " WHERE "
+                                + APP_INFO_ID_COLUMN_NAME
+                                + " = "
+                                + recordInternal.getAppInfoId()
+                                + " AND "
+                                + DEVICE_INFO_ID_COLUMN_NAME
+                                + " = "
+                                + recordInternal.getDeviceInfoId()
+                                + " ORDER BY "
+                                + startTimeColumn
+                                + " DESC LIMIT 1",
+                        null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : Long.MIN_VALUE;
+        }
+    }
+
+    private long insert(@NonNull String table, @NonNull ContentValues contentValues) {
+        InsertStatement insertStatement = mInsertStatements.get(table);
+        if (insertStatement == null || !insertStatement.hasColumns(contentValues.keySet())) {
+            if (insertStatement != null) {
+                insertStatement.close();
+            }
+            insertStatement = new InsertStatement(mDb, table, contentValues.keySet());
+            mInsertStatements.put(table, insertStatement);
+        }
+        return insertStatement.insert(contentValues);
+    }
+
+    /** A compiled insert statement for a fixed set of columns of a table. */
+    private static final class InsertStatement {
+        private final String[] mColumns;
+        private final Set<String> mColumnSet;
+        private final SQLiteStatement mStatement;
+
+        InsertStatement(
+                @NonNull SQLiteDatabase db, @NonNull String table, @NonNull Set<String> columns) {
+            mColumns = columns.toArray(new String[0]);
+            mColumnSet = Set.of(mColumns);
+            StringBuilder sql =
+                    new StringBuilder("INSERT INTO ")
+                            .append(table)
+                            .append(" (")
+                            .append(String.join(", ", mColumns))
+                            .append(") VALUES (");
+            for (int i = 0; i < mColumns.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            mStatement = db.compileStatement(sql.append(')').toString());
+        }
+
+        boolean hasColumns(@NonNull Set<String> columns) {
+            return mColumnSet.equals(columns);
+        }
+
+        long insert(@NonNull ContentValues contentValues) {
+            mStatement.clearBindings();
+            for (int i = 0; i < mColumns.length; i++) {
+                DatabaseUtils.bindObjectToProgram(
+                        mStatement, i + 1, contentValues.get(mColumns[i]));
+            }
+            return mStatement.executeInsert();
+        }
+
+        void close() {
+            mStatement.close();
+        }
+    }
+}
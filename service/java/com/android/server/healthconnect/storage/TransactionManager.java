@@ -18,39 +18,48 @@ package com.android.server.healthconnect.storage;
 
 import static android.health.connect.Constants.DEFAULT_LONG;
 import static android.health.connect.Constants.DEFAULT_PAGE_SIZE;
-import static android.health.connect.Constants.PARENT_KEY;
 import static android.health.connect.HealthConnectException.ERROR_INTERNAL;
 
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 
 import android.annotation.NonNull;
 import android.content.Context;
+import android.database.AbstractWindowedCursor;
 import android.database.Cursor;
+import android.database.CursorWindow;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.Constants;
 import android.health.connect.HealthConnectException;
+import android.health.connect.aidl.RecordColumnsParcel;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.os.UserHandle;
 import android.util.Pair;
 import android.util.Slog;
 
+import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
+import com.android.server.healthconnect.HealthConnectThreadScheduler;
 import com.android.server.healthconnect.HealthConnectUserContext;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.TableRowCountsHelper;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
+import com.android.server.healthconnect.storage.request.AggregationPlan;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTransactionRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
+import com.android.server.healthconnect.storage.utils.TableWriteGenerations;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -71,6 +80,8 @@ import java.util.function.BiConsumer;
  */
 public final class TransactionManager {
     private static final String TAG = "HealthConnectTransactionMan";
+    private static final int DELETE_CHUNK_SIZE = 5000;
+    private static final int UPSERT_PROBE_CHUNK_SIZE = 500;
     private static final ConcurrentHashMap<UserHandle, HealthConnectDatabase>
             mUserHandleToDatabaseMap = new ConcurrentHashMap<>();
     private static volatile TransactionManager sTransactionManager;
@@ -91,6 +102,7 @@ public final class TransactionManager {
 
         mHealthConnectDatabase =
                 mUserHandleToDatabaseMap.get(healthConnectUserContext.getCurrentUserHandle());
+        TableWriteGenerations.getInstance().bumpAll();
     }
 
     /**
@@ -107,14 +119,26 @@ public final class TransactionManager {
         }
 
         final SQLiteDatabase db = getWritableDb();
+        long latestChangeLogRowId = DEFAULT_LONG;
         db.beginTransaction();
         try {
-            for (UpsertTableRequest upsertRequest : request.getUpsertRequests()) {
-                insertOrReplaceRecord(db, upsertRequest);
+            if (request.isTimeOrdered()
+                    && HealthConnectDeviceConfigManager.getInitialisedInstance()
+                            .areTimeOrderedInsertsEnabled()) {
+                try (TimeOrderedInserter inserter = new TimeOrderedInserter(db)) {
+                    for (UpsertTableRequest upsertRequest : request.getUpsertRequests()) {
+                        if (inserter.tryAppend(upsertRequest) == -1) {
+                            insertOrReplaceRecord(db, upsertRequest);
+                        }
+                    }
+                }
+            } else {
+                upsertRecords(db, request.getUpsertRequests());
             }
             for (UpsertTableRequest insertRequestsForChangeLog :
                     request.getInsertRequestsForChangeLogs()) {
-                insertRecord(db, insertRequestsForChangeLog);
+                long rowId = insertRecord(db, insertRequestsForChangeLog);
+                latestChangeLogRowId = Math.max(latestChangeLogRowId, rowId);
             }
 
             for (UpsertTableRequest insertRequestsForAccessLogs : request.getAccessLogs()) {
@@ -125,10 +149,56 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        onTablesWritten(request.getUpsertRequests());
+        ChangeLogsHelper.getInstance().onChangeLogsCommitted(latestChangeLogRowId);
 
         return request.getUUIdsInOrder();
     }
 
+    /**
+     * Inserts the {@link RecordInternal} in {@code request} which don't conflict with an existing
+     * record, e.g. with the same client record id or dedupe hash, instead of replacing it.
+     *
+     * @param request an insert request.
+     * @return the positions in {@code request} of the records which were not inserted.
+     */
+    @NonNull
+    public List<Integer> insertAllWithoutReplace(@NonNull UpsertTransactionRequest request)
+            throws SQLiteException {
+        final SQLiteDatabase db = getWritableDb();
+        List<UpsertTableRequest> insertedRequests = new ArrayList<>();
+        List<Integer> conflictingPositions = new ArrayList<>();
+        long latestChangeLogRowId = DEFAULT_LONG;
+        db.beginTransaction();
+        try {
+            List<UpsertTableRequest> upsertRequests = request.getUpsertRequests();
+            for (int i = 0; i < upsertRequests.size(); i++) {
+                if (insertOrIgnore(db, upsertRequests.get(i)) == -1) {
+                    conflictingPositions.add(i);
+                } else {
+                    insertedRequests.add(upsertRequests.get(i));
+                }
+            }
+            for (UpsertTableRequest insertRequestsForChangeLog :
+                    request.getInsertRequestsForChangeLogs(insertedRequests)) {
+                long rowId = insertRecord(db, insertRequestsForChangeLog);
+                latestChangeLogRowId = Math.max(latestChangeLogRowId, rowId);
+            }
+
+            for (UpsertTableRequest insertRequestsForAccessLogs : request.getAccessLogs()) {
+                insertRecord(db, insertRequestsForAccessLogs);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        onTablesWritten(insertedRequests);
+        ChangeLogsHelper.getInstance().onChangeLogsCommitted(latestChangeLogRowId);
+
+        return conflictingPositions;
+    }
+
     /** Ignores if a record is already present. */
     public void insertAll(@NonNull List<UpsertTableRequest> requests) throws SQLiteException {
         final SQLiteDatabase db = getWritableDb();
@@ -141,6 +211,16 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        onTablesWritten(requests);
+    }
+
+    /**
+     * Inserts all the {@link UpsertTableRequest} into the HealthConnect database, fails if a record
+     * is already present.
+     */
+    public void insertAllOrThrow(@NonNull List<UpsertTableRequest> requests)
+            throws SQLiteException {
+        insertAll(requests, this::insertRecord);
     }
 
     /**
@@ -169,6 +249,7 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        onTablesWritten(upsertTableRequests);
     }
 
     /**
@@ -181,11 +262,19 @@ public final class TransactionManager {
      */
     public int deleteAll(@NonNull DeleteTransactionRequest request) throws SQLiteException {
         final SQLiteDatabase db = getWritableDb();
+        long latestChangeLogRowId = DEFAULT_LONG;
         db.beginTransaction();
         int numberOfRecordsDeleted = 0;
         try {
             for (DeleteTableRequest deleteTableRequest : request.getDeleteTableRequests()) {
-                if (deleteTableRequest.requiresRead()) {
+                if (deleteTableRequest.requiresPackageCheck() && request.requiresPackageCheck()) {
+                    enforcePackageCheck(db, request, deleteTableRequest);
+                }
+
+                if (!deleteTableRequest.requiresRead()) {
+                    numberOfRecordsDeleted += deleteTableRequest.getTotalNumberOfRecordsDeleted();
+                    db.execSQL(deleteTableRequest.getDeleteCommand());
+                } else if (request.requiresChangeLogs()) {
                     /*
                     Delete request needs UUID before the entry can be
                     deleted, fetch and set it in {@code request}
@@ -194,13 +283,6 @@ public final class TransactionManager {
                         int numberOfUuidsToDelete = 0;
                         while (cursor.moveToNext()) {
                             numberOfUuidsToDelete++;
-                            if (deleteTableRequest.requiresPackageCheck()) {
-                                request.enforcePackageCheck(
-                                        StorageUtils.getCursorUUID(
-                                                cursor, deleteTableRequest.getIdColumnName()),
-                                        StorageUtils.getCursorLong(
-                                                cursor, deleteTableRequest.getPackageColumnName()));
-                            }
                             request.onRecordFetched(
                                     deleteTableRequest.getRecordType(),
                                     StorageUtils.getCursorLong(
@@ -210,18 +292,29 @@ public final class TransactionManager {
                         }
                         deleteTableRequest.setNumberOfUuidsToDelete(numberOfUuidsToDelete);
                     }
+                    numberOfRecordsDeleted += deleteTableRequest.getTotalNumberOfRecordsDeleted();
+                    db.execSQL(deleteTableRequest.getDeleteCommand());
+                } else {
+                    // Only the number of deleted records is needed, don't read them.
+                    deleteTableRequest.setNumberOfUuidsToDelete(
+                            deleteInChunks(db, deleteTableRequest));
+                    numberOfRecordsDeleted += deleteTableRequest.getTotalNumberOfRecordsDeleted();
                 }
-                numberOfRecordsDeleted += deleteTableRequest.getTotalNumberOfRecordsDeleted();
-                db.execSQL(deleteTableRequest.getDeleteCommand());
             }
 
-            request.getChangeLogUpsertRequests()
-                    .forEach((insertRequest) -> insertRecord(db, insertRequest));
+            for (UpsertTableRequest insertRequest : request.getChangeLogUpsertRequests()) {
+                latestChangeLogRowId =
+                        Math.max(latestChangeLogRowId, insertRecord(db, insertRequest));
+            }
 
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
+        for (DeleteTableRequest deleteTableRequest : request.getDeleteTableRequests()) {
+            TableWriteGenerations.getInstance().bump(deleteTableRequest.getTableName());
+        }
+        ChangeLogsHelper.getInstance().onChangeLogsCommitted(latestChangeLogRowId);
         return numberOfRecordsDeleted;
     }
 
@@ -244,6 +337,22 @@ public final class TransactionManager {
         }
     }
 
+    /**
+     * Handles all the aggregation requests of {@code aggregationPlan}, sharing the queries of the
+     * requests which read the same rows and running the independent queries concurrently.
+     *
+     * @param aggregationPlan planned aggregate requests.
+     */
+    public void populateWithAggregation(@NonNull AggregationPlan aggregationPlan) {
+        final SQLiteDatabase db = getReadableDb();
+        aggregationPlan.populateAggregationResults(
+                db,
+                HealthConnectThreadScheduler.getAggregationExecutor(),
+                HealthConnectDeviceConfigManager.getInitialisedInstance()
+                        .getAggregationParallelism());
+        aggregationPlan.populateDataOrigins(db);
+    }
+
     /**
      * Reads the records {@link RecordInternal} stored in the HealthConnect database.
      *
@@ -276,11 +385,11 @@ public final class TransactionManager {
 
     /**
      * Reads the records {@link RecordInternal} stored in the HealthConnect database and returns the
-     * max row_id as next page token.
+     * position of the next page, see {@link PageTokenUtils}.
      *
      * @param request a read request.
-     * @return Pair containing records list read {@link RecordInternal} from the table and a next
-     *     page token for pagination
+     * @return Pair containing records list read {@link RecordInternal} from the table and the
+     *     position of the next page for pagination
      */
     public Pair<List<RecordInternal<?>>, Long> readRecordsAndGetNextToken(
             @NonNull ReadTransactionRequest request) throws SQLiteException {
@@ -289,26 +398,69 @@ public final class TransactionManager {
         if (request.getReadRequests().size() != 1) {
             throw new IllegalArgumentException("Read requested is not for a single record type");
         }
-        List<RecordInternal<?>> recordInternalList;
-        long token = DEFAULT_LONG;
         ReadTableRequest readTableRequest = request.getReadRequests().get(0);
         RecordHelper<?> helper = readTableRequest.getRecordHelper();
         Objects.requireNonNull(helper);
         if (!helper.isRecordOperationsEnabled()) {
-            recordInternalList = new ArrayList<>(0);
-            return Pair.create(recordInternalList, token);
+            return Pair.create(new ArrayList<>(0), DEFAULT_LONG);
         }
 
+        Pair<List<RecordInternal<?>>, Long> recordsAndToken;
         try (Cursor cursor = read(readTableRequest)) {
-            recordInternalList = helper.getInternalRecords(cursor, readTableRequest.getPageSize());
-            String startTimeColumnName = helper.getStartTimeColumnName();
+            recordsAndToken =
+                    helper.getNextInternalRecordsPageAndToken(
+                            cursor,
+                            readTableRequest.getPageSize(),
+                            readTableRequest.getOffset(),
+                            /* packageNamesByAppIds= */ null);
+        }
+        populateInternalRecordsWithExtraData(recordsAndToken.first, readTableRequest);
+        return recordsAndToken;
+    }
 
-            populateInternalRecordsWithExtraData(recordInternalList, readTableRequest);
-            if (cursor.moveToNext()) {
-                token = getCursorLong(cursor, startTimeColumnName);
-            }
+    /**
+     * Reads the columns of the records of a request with a projection, and returns them with the
+     * next page token. The columns are read from the main table only, no {@link RecordInternal} is
+     * built.
+     *
+     * @param request a read request with a projection.
+     * @param projection the projection of the request.
+     */
+    public Pair<RecordColumnsParcel, Long> readRecordColumnsAndGetNextToken(
+            @NonNull ReadTransactionRequest request, int projection) throws SQLiteException {
+        if (request.getReadRequests().size() != 1) {
+            throw new IllegalArgumentException("Read requested is not for a single record type");
+        }
+        ReadTableRequest readTableRequest = request.getReadRequests().get(0);
+        RecordHelper<?> helper = readTableRequest.getRecordHelper();
+        Objects.requireNonNull(helper);
+        if (!helper.isRecordOperationsEnabled()) {
+            return Pair.create(new RecordColumnsParcel(0, null, null, null), DEFAULT_LONG);
+        }
+
+        // The rows are narrow, the default cursor window fits a page of them.
+        try (Cursor cursor = getReadableDb().rawQuery(readTableRequest.getReadCommand(), null)) {
+            return helper.getNextRecordColumnsPageAndToken(
+                    cursor,
+                    readTableRequest.getPageSize(),
+                    readTableRequest.getOffset(),
+                    projection);
+        }
+    }
+
+    /**
+     * Reads the records of each request and returns them with their next page token, as {@link
+     * #readRecordsAndGetNextToken}. Each request is read by its own queries, without a
+     * transaction: the record types are paged independently, so they don't need to be read from the
+     * same state of the database, and the reads don't take the database write lock.
+     */
+    public List<Pair<List<RecordInternal<?>>, Long>> readRecordsAndGetNextTokens(
+            @NonNull List<ReadTransactionRequest> requests) throws SQLiteException {
+        List<Pair<List<RecordInternal<?>>, Long>> responses = new ArrayList<>(requests.size());
+        for (ReadTransactionRequest request : requests) {
+            responses.add(readRecordsAndGetNextToken(request));
         }
-        return Pair.create(recordInternalList, token);
+        return responses;
     }
 
     /**
@@ -326,7 +478,9 @@ public final class TransactionManager {
      */
     public long insert(@NonNull UpsertTableRequest request) {
         final SQLiteDatabase db = getWritableDb();
-        return insertRecord(db, request);
+        long rowId = insertRecord(db, request);
+        TableWriteGenerations.getInstance().bump(request.getTable());
+        return rowId;
     }
 
     /**
@@ -344,6 +498,7 @@ public final class TransactionManager {
     public void update(@NonNull UpsertTableRequest request) {
         final SQLiteDatabase db = getWritableDb();
         updateRecord(db, request);
+        TableWriteGenerations.getInstance().bump(request.getTable());
     }
 
     /**
@@ -363,7 +518,9 @@ public final class TransactionManager {
      */
     public long insertOrReplace(@NonNull UpsertTableRequest request) {
         final SQLiteDatabase db = getWritableDb();
-        return insertOrReplaceRecord(db, request);
+        long rowId = insertOrReplaceRecord(db, request);
+        TableWriteGenerations.getInstance().bump(request.getTable());
+        return rowId;
     }
 
     /** Note: It is the responsibility of the caller to close the returned cursor */
@@ -372,7 +529,16 @@ public final class TransactionManager {
         if (Constants.DEBUG) {
             Slog.d(TAG, "Read query: " + request.getReadCommand());
         }
-        return getReadableDb().rawQuery(request.getReadCommand(), null);
+        Cursor cursor = getReadableDb().rawQuery(request.getReadCommand(), null);
+        RecordHelper<?> helper = request.getRecordHelper();
+        long cursorWindowSizeBytes =
+                helper == null ? 0 : helper.getCursorWindowSizeBytes(request.getPageSize());
+        if (cursorWindowSizeBytes > 0 && cursor instanceof AbstractWindowedCursor) {
+            // The cursor fills its window on the first move, the window can still be replaced.
+            ((AbstractWindowedCursor) cursor)
+                    .setWindow(new CursorWindow(helper.getMainTableName(), cursorWindowSizeBytes));
+        }
+        return cursor;
     }
 
     public long getLastRowIdFor(String tableName) {
@@ -386,11 +552,22 @@ public final class TransactionManager {
     /**
      * Get number of entries in the given table.
      *
+     * <p>For record and change log tables the number is read from the counts maintained by {@link
+     * TableRowCountsHelper}, other tables are counted.
+     *
      * @param tableName Name of table
      * @return Number of entries in the given table
      */
     public long getNumberOfEntriesInTheTable(@NonNull String tableName) {
         Objects.requireNonNull(tableName);
+        TableRowCountsHelper tableRowCountsHelper = TableRowCountsHelper.getInstance();
+        if (tableRowCountsHelper.isCounted(tableName)) {
+            Long rowCount = tableRowCountsHelper.readRowCount(getReadableDb(), tableName);
+            // A missing count is computed and stored once, which needs a writable database.
+            return rowCount != null
+                    ? rowCount
+                    : tableRowCountsHelper.getRowCount(getWritableDb(), tableName);
+        }
         return DatabaseUtils.queryNumEntries(getReadableDb(), tableName);
     }
 
@@ -408,6 +585,7 @@ public final class TransactionManager {
     public void delete(DeleteTableRequest request) {
         final SQLiteDatabase db = getWritableDb();
         db.execSQL(request.getDeleteCommand());
+        TableWriteGenerations.getInstance().bump(request.getTableName());
     }
 
     /**
@@ -417,6 +595,7 @@ public final class TransactionManager {
      */
     public void updateAll(@NonNull UpsertTransactionRequest request) {
         final SQLiteDatabase db = getWritableDb();
+        long latestChangeLogRowId = DEFAULT_LONG;
         db.beginTransaction();
         try {
             for (UpsertTableRequest upsertRequest : request.getUpsertRequests()) {
@@ -424,7 +603,8 @@ public final class TransactionManager {
             }
             for (UpsertTableRequest insertRequestsForChangeLog :
                     request.getInsertRequestsForChangeLogs()) {
-                insertRecord(db, insertRequestsForChangeLog);
+                long rowId = insertRecord(db, insertRequestsForChangeLog);
+                latestChangeLogRowId = Math.max(latestChangeLogRowId, rowId);
             }
             for (UpsertTableRequest insertRequestsForAccessLogs : request.getAccessLogs()) {
                 insertRecord(db, insertRequestsForAccessLogs);
@@ -433,6 +613,8 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        onTablesWritten(request.getUpsertRequests());
+        ChangeLogsHelper.getInstance().onChangeLogsCommitted(latestChangeLogRowId);
     }
 
     /**
@@ -491,10 +673,14 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        for (DeleteTableRequest deleteTableRequest : deleteTableRequests) {
+            TableWriteGenerations.getInstance().bump(deleteTableRequest.getTableName());
+        }
     }
 
     public void onUserSwitching() {
         mHealthConnectDatabase.close();
+        TableWriteGenerations.getInstance().bumpAll();
     }
 
     private void insertAll(
@@ -509,6 +695,7 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        onTablesWritten(upsertTableRequests);
     }
 
     public <E extends Throwable> void runAsTransaction(TransactionRunnable<E> task) throws E {
@@ -520,6 +707,22 @@ public final class TransactionManager {
         } finally {
             db.endTransaction();
         }
+        // The tables written by the task are not known.
+        TableWriteGenerations.getInstance().bumpAll();
+    }
+
+    /** Runs {@code task} in a transaction which writes only to {@code tableName}. */
+    public <E extends Throwable> void runAsTransaction(
+            @NonNull String tableName, @NonNull TransactionRunnable<E> task) throws E {
+        final SQLiteDatabase db = getWritableDb();
+        db.beginTransaction();
+        try {
+            task.run(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        TableWriteGenerations.getInstance().bump(tableName);
     }
 
     /** Assumes that caller will be closing {@code db} and handling the transaction if required */
@@ -587,6 +790,7 @@ public final class TransactionManager {
                         upsertTableRequest.getContentValues(),
                         upsertTableRequest.getUpdateWhereClauses().get(false),
                         null);
+        TableWriteGenerations.getInstance().bump(upsertTableRequest.getTable());
     }
 
     public int getDatabaseVersion() {
@@ -632,8 +836,7 @@ public final class TransactionManager {
                         ERROR_INTERNAL, "Expected to read an entry for update, but none found");
             }
             final long rowId = StorageUtils.getCursorLong(cursor, request.getRowIdColName());
-            deleteChildTableRequest(request, rowId, db);
-            insertChildTableRequest(request, rowId, db);
+            ChildRowsUpdater.update(db, request, rowId);
         }
     }
 
@@ -688,6 +891,30 @@ public final class TransactionManager {
         }
     }
 
+    /**
+     * Inserts the records of {@code upsertRequests}, or updates the existing records they conflict
+     * with. The conflicting records are read up front with one query per table and chunk of
+     * requests, instead of failing an insert and reading the existing record for each conflict.
+     */
+    private void upsertRecords(
+            @NonNull SQLiteDatabase db, @NonNull List<UpsertTableRequest> upsertRequests) {
+        for (int start = 0; start < upsertRequests.size(); start += UPSERT_PROBE_CHUNK_SIZE) {
+            int end = Math.min(upsertRequests.size(), start + UPSERT_PROBE_CHUNK_SIZE);
+            List<UpsertTableRequest> chunk = upsertRequests.subList(start, end);
+            try (ConflictingRowsProbe probe = ConflictingRowsProbe.read(db, chunk)) {
+                for (UpsertTableRequest upsertRequest : chunk) {
+                    Cursor cursor = probe.moveToConflictingRow(upsertRequest);
+                    if (cursor == null) {
+                        // Conflicts between the requests of the chunk are still resolved on insert.
+                        insertOrReplaceRecord(db, upsertRequest);
+                    } else {
+                        updateEntriesIfRequired(db, upsertRequest, cursor);
+                    }
+                }
+            }
+        }
+    }
+
     private long updateEntriesIfRequired(
             SQLiteDatabase db, UpsertTableRequest request, Cursor cursor) {
         if (!request.requiresUpdate(cursor, request)) {
@@ -707,18 +934,58 @@ public final class TransactionManager {
             return -1;
         }
         final long rowId = StorageUtils.getCursorLong(cursor, request.getRowIdColName());
-        deleteChildTableRequest(request, rowId, db);
-        insertChildTableRequest(request, rowId, db);
+        ChildRowsUpdater.update(db, request, rowId);
 
         return rowId;
     }
 
-    private void deleteChildTableRequest(
-            UpsertTableRequest request, long rowId, SQLiteDatabase db) {
-        for (String childTable : request.getAllChildTablesToDelete()) {
-            DeleteTableRequest deleteTableRequest =
-                    new DeleteTableRequest(childTable).setId(PARENT_KEY, String.valueOf(rowId));
-            db.execSQL(deleteTableRequest.getDeleteCommand());
+    /**
+     * Checks that all the rows to delete belong to the caller with a single query, instead of
+     * checking the rows one by one.
+     */
+    private static void enforcePackageCheck(
+            @NonNull SQLiteDatabase db,
+            @NonNull DeleteTransactionRequest request,
+            @NonNull DeleteTableRequest deleteTableRequest) {
+        try (Cursor cursor =
+                db.rawQuery(
+                        deleteTableRequest.getReadCommandForRowNotOwnedBy(
+                                request.getRequestingPackageNameId()),
+                        null)) {
+            if (cursor.moveToFirst()) {
+                request.enforcePackageCheck(
+                        StorageUtils.getCursorUUID(cursor, deleteTableRequest.getIdColumnName()),
+                        StorageUtils.getCursorLong(
+                                cursor, deleteTableRequest.getPackageColumnName()));
+            }
+        }
+    }
+
+    /**
+     * Deletes the rows of {@code deleteTableRequest} in chunks of {@link #DELETE_CHUNK_SIZE}
+     * rows, so that memory use doesn't grow with the number of deleted rows.
+     *
+     * @return the number of deleted rows.
+     */
+    private static int deleteInChunks(
+            @NonNull SQLiteDatabase db, @NonNull DeleteTableRequest deleteTableRequest) {
+        int numberOfRowsDeleted = 0;
+        try (SQLiteStatement statement =
+                db.compileStatement(deleteTableRequest.getDeleteChunkCommand(DELETE_CHUNK_SIZE))) {
+            int numberOfRowsInChunk;
+            do {
+                numberOfRowsInChunk = statement.executeUpdateDelete();
+                numberOfRowsDeleted += numberOfRowsInChunk;
+            } while (numberOfRowsInChunk == DELETE_CHUNK_SIZE);
+        }
+        return numberOfRowsDeleted;
+    }
+
+    /** Bumps the write generations of the tables of committed upserts. */
+    private static void onTablesWritten(@NonNull List<UpsertTableRequest> upsertTableRequests) {
+        TableWriteGenerations tableWriteGenerations = TableWriteGenerations.getInstance();
+        for (UpsertTableRequest upsertTableRequest : upsertTableRequests) {
+            tableWriteGenerations.bump(upsertTableRequest.getTable());
         }
     }
 
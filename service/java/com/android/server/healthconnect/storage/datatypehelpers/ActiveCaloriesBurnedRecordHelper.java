@@ -71,6 +71,11 @@ public final class ActiveCaloriesBurnedRecordHelper
         return ACTIVE_CALORIES_BURNED_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return ENERGY_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         switch (aggregateRequest.getAggregationTypeIdentifier()) {
@@ -18,9 +18,11 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY_AUTOINCREMENT;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -28,36 +30,56 @@ import android.health.connect.datatypes.Record;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.RecordMapper;
 import android.util.Pair;
+import android.util.SparseArray;
 
+import com.android.internal.annotations.GuardedBy;
+import com.android.server.healthconnect.storage.AutoDeleteService;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.EpochDayBitmap;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Helper for Activity Date Table. The table maps a record to a date on which there was a db write
  * for that record
  *
+ * <p>The dates of each record type are also kept in memory as a bitmap of days, loaded from the
+ * table the first time they are needed. Writes update the bitmaps and the table together, and only
+ * store the dates which are not known yet.
+ *
  * @hide
  */
 public final class ActivityDateHelper {
     private static final String TABLE_NAME = "activity_date_table";
     private static final String EPOCH_DAYS_COLUMN_NAME = "epoch_days";
     private static final String RECORD_TYPE_ID_COLUMN_NAME = "record_type_id";
+    private static final long DAY_IN_MILLIS = Duration.ofDays(1).toMillis();
+    // Days with deleted records to check again in the daily resync, see #addDeletedDays.
+    private static final String DELETED_DAYS_KEY = "activity_dates_deleted_days_key";
+    // Beyond this number of ranges, the deleted days of a record type are merged in one range.
+    private static final int MAX_DELETED_DAY_RANGES_PER_TYPE = 16;
     private static volatile ActivityDateHelper sActivityDateHelper;
 
+    private final Object mLock = new Object();
+
+    /** Dates of each record type id, or null if they haven't been loaded from the table yet. */
+    @GuardedBy("mLock")
+    @Nullable
+    private SparseArray<EpochDayBitmap> mRecordTypeIdToEpochDays;
+
     private ActivityDateHelper() {}
 
     /**
@@ -74,8 +96,19 @@ public final class ActivityDateHelper {
     public void onUpgrade(int oldVersion, int newVersion, @NonNull SQLiteDatabase db) {}
 
     /** Deletes all entries from the database and clears the cache. */
-    public synchronized void clearData(TransactionManager transactionManager) {
-        transactionManager.delete(new DeleteTableRequest(TABLE_NAME));
+    public void clearData(TransactionManager transactionManager) {
+        synchronized (mLock) {
+            transactionManager.delete(new DeleteTableRequest(TABLE_NAME));
+            mRecordTypeIdToEpochDays = null;
+            PreferenceHelper.getInstance().removeKey(DELETED_DAYS_KEY);
+        }
+    }
+
+    /** Clears the in-memory dates, they are loaded again from the table when needed. */
+    public void clearCache() {
+        synchronized (mLock) {
+            mRecordTypeIdToEpochDays = null;
+        }
     }
 
     /** Insert a new activity dates for the given records */
@@ -85,66 +118,285 @@ public final class ActivityDateHelper {
 
         final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
 
-        List<UpsertTableRequest> upsertTableRequests = new ArrayList<>();
-        recordInternals.forEach(
-                (recordInternal) -> upsertTableRequests.add(getUpsertTableRequest(recordInternal)));
+        synchronized (mLock) {
+            SparseArray<EpochDayBitmap> recordTypeIdToEpochDays = getRecordTypeIdToEpochDays();
+            List<UpsertTableRequest> upsertTableRequests = new ArrayList<>();
+            for (RecordInternal<?> recordInternal : recordInternals) {
+                int recordTypeId = recordInternal.getRecordType();
+                long epochDay = getEpochDay(recordInternal);
+                if (getOrCreateEpochDays(recordTypeIdToEpochDays, recordTypeId).add(epochDay)) {
+                    upsertTableRequests.add(getUpsertTableRequest(recordTypeId, epochDay));
+                }
+            }
 
-        transactionManager.insertOrIgnoreOnConflict(upsertTableRequests);
+            if (upsertTableRequests.isEmpty()) {
+                return;
+            }
+            try {
+                transactionManager.insertOrIgnoreOnConflict(upsertTableRequests);
+            } catch (RuntimeException e) {
+                // The new dates may not be in the table, load them again when needed.
+                mRecordTypeIdToEpochDays = null;
+                throw e;
+            }
+        }
     }
 
     /** Returns a list of all dates with database writes for the given record types */
     @NonNull
     public List<LocalDate> getActivityDates(@NonNull List<Class<? extends Record>> recordTypes) {
         RecordMapper recordMapper = RecordMapper.getInstance();
-        List<Integer> recordTypeIds =
-                recordTypes.stream().map(recordMapper::getRecordType).collect(Collectors.toList());
+        EpochDayBitmap activityDays = new EpochDayBitmap();
+        synchronized (mLock) {
+            SparseArray<EpochDayBitmap> recordTypeIdToEpochDays = getRecordTypeIdToEpochDays();
+            for (Class<? extends Record> recordType : recordTypes) {
+                EpochDayBitmap epochDays =
+                        recordTypeIdToEpochDays.get(recordMapper.getRecordType(recordType));
+                if (epochDays != null) {
+                    activityDays.or(epochDays);
+                }
+            }
+        }
 
-        return readDates(
-                new ReadTableRequest(TABLE_NAME)
-                        .setWhereClause(
-                                new WhereClauses()
-                                        .addWhereInIntsClause(
-                                                RECORD_TYPE_ID_COLUMN_NAME, recordTypeIds))
-                        .setColumnNames(List.of(EPOCH_DAYS_COLUMN_NAME))
-                        .setDistinctClause(true));
+        long[] epochDays = activityDays.toArray();
+        List<LocalDate> dates = new ArrayList<>(epochDays.length);
+        for (long epochDay : epochDays) {
+            dates.add(LocalDate.ofEpochDay(epochDay));
+        }
+        return dates;
     }
 
+    /**
+     * Checks again the days on which records were deleted since the last run, see {@link
+     * #markDeletedRecords}, and forgets them.
+     *
+     * <p>Run daily by {@link AutoDeleteService}: this removes the dates of the records deleted
+     * automatically, and repairs the dates of any resync after a deletion by a user which was not
+     * run, e.g. because its task was dropped.
+     */
     public void reSyncForAllRecords() {
-        List<Integer> recordTypeIds =
-                RecordMapper.getInstance().getRecordIdToExternalRecordClassMap().keySet().stream()
-                        .toList();
+        synchronized (mLock) {
+            SparseArray<List<long[]>> recordTypeIdToDeletedDays = readDeletedDays();
+            for (int i = 0; i < recordTypeIdToDeletedDays.size(); i++) {
+                List<Integer> recordTypeIds = List.of(recordTypeIdToDeletedDays.keyAt(i));
+                for (long[] range : recordTypeIdToDeletedDays.valueAt(i)) {
+                    reSync(recordTypeIds, range[0], range[1]);
+                }
+            }
+            // Not reached if a resync fails, so that the next run checks the days again.
+            PreferenceHelper.getInstance().removeKey(DELETED_DAYS_KEY);
+        }
+    }
 
-        reSyncByRecordTypeIds(recordTypeIds);
+    /**
+     * Records that records of the given types were deleted between {@code startTimeMillis} and
+     * {@code endTimeMillis}, so that their days are checked again by {@link #reSyncForAllRecords}.
+     * Called once the records are deleted.
+     */
+    public void markDeletedRecords(
+            @NonNull List<Integer> recordTypeIds, long startTimeMillis, long endTimeMillis) {
+        addDeletedDays(
+                recordTypeIds, getFirstEpochDay(startTimeMillis), getLastEpochDay(endTimeMillis));
+    }
+
+    /**
+     * Records that records of the given types were deleted on any day, so that all their dates are
+     * checked again by {@link #reSyncForAllRecords}. Called once the records are deleted.
+     */
+    public void markDeletedRecords(@NonNull List<Integer> recordTypeIds) {
+        addDeletedDays(recordTypeIds, Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
+    /** Checks again all the dates of the given record types against their records. */
     public void reSyncByRecordTypeIds(List<Integer> recordTypeIds) {
-        List<UpsertTableRequest> upsertTableRequests = new ArrayList<>();
+        reSync(recordTypeIds, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Checks again the dates of the given record types after their records between {@code
+     * startTimeMillis} and {@code endTimeMillis} were deleted. Only the days of the deleted records
+     * are checked.
+     */
+    public void reSyncByRecordTypeIds(
+            @NonNull List<Integer> recordTypeIds, long startTimeMillis, long endTimeMillis) {
+        reSync(recordTypeIds, getFirstEpochDay(startTimeMillis), getLastEpochDay(endTimeMillis));
+    }
+
+    /**
+     * Checks again the dates from {@code firstEpochDay} to {@code lastEpochDay} of the given record
+     * types, and only writes the dates which changed.
+     */
+    private void reSync(
+            @NonNull List<Integer> recordTypeIds, long firstEpochDay, long lastEpochDay) {
+        boolean isAllDays = firstEpochDay == Long.MIN_VALUE && lastEpochDay == Long.MAX_VALUE;
         final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
 
-        DeleteTableRequest deleteTableRequest =
-                new DeleteTableRequest(TABLE_NAME)
-                        .setIds(
-                                RECORD_TYPE_ID_COLUMN_NAME,
-                                recordTypeIds.stream().map(String::valueOf).toList());
+        synchronized (mLock) {
+            SparseArray<EpochDayBitmap> recordTypeIdToEpochDays = getRecordTypeIdToEpochDays();
+            List<String> deleteCommands = new ArrayList<>();
+            List<UpsertTableRequest> upsertTableRequests = new ArrayList<>();
+            for (int recordTypeId : recordTypeIds) {
+                EpochDayBitmap epochDays =
+                        getOrCreateEpochDays(recordTypeIdToEpochDays, recordTypeId);
+                long[] knownEpochDays = epochDays.toArray();
+                if (!isAllDays
+                        && Arrays.stream(knownEpochDays)
+                                .noneMatch(
+                                        epochDay ->
+                                                epochDay >= firstEpochDay
+                                                        && epochDay <= lastEpochDay)) {
+                    // Records were only deleted on these days: none of the known dates can have
+                    // lost its records.
+                    continue;
+                }
+
+                EpochDayBitmap currentEpochDays =
+                        fetchEpochDays(
+                                recordTypeId, firstEpochDay, lastEpochDay, transactionManager);
+                List<Long> removedEpochDays = new ArrayList<>();
+                for (long epochDay : knownEpochDays) {
+                    if (epochDay >= firstEpochDay
+                            && epochDay <= lastEpochDay
+                            && !currentEpochDays.contains(epochDay)) {
+                        removedEpochDays.add(epochDay);
+                        epochDays.remove(epochDay);
+                    }
+                }
+                for (long epochDay : currentEpochDays.toArray()) {
+                    if (epochDays.add(epochDay)) {
+                        upsertTableRequests.add(getUpsertTableRequest(recordTypeId, epochDay));
+                    }
+                }
+                if (!removedEpochDays.isEmpty()) {
+                    deleteCommands.add(getDeleteCommand(recordTypeId, removedEpochDays));
+                }
+            }
+
+            if (deleteCommands.isEmpty() && upsertTableRequests.isEmpty()) {
+                return;
+            }
+            try {
+                transactionManager.runAsTransaction(
+                        db -> {
+                            deleteCommands.forEach(db::execSQL);
+                            upsertTableRequests.forEach(
+                                    upsertTableRequest ->
+                                            transactionManager.insertOrIgnore(
+                                                    db, upsertTableRequest));
+                        });
+            } catch (RuntimeException e) {
+                mRecordTypeIdToEpochDays = null;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Adds the days from {@code firstEpochDay} to {@code lastEpochDay} of the given record types to
+     * the persisted deleted days, merged with the ranges they overlap or touch.
+     */
+    private void addDeletedDays(
+            @NonNull List<Integer> recordTypeIds, long firstEpochDay, long lastEpochDay) {
+        synchronized (mLock) {
+            SparseArray<List<long[]>> recordTypeIdToDeletedDays = readDeletedDays();
+            for (int recordTypeId : recordTypeIds) {
+                List<long[]> ranges = new ArrayList<>();
+                List<long[]> knownRanges = recordTypeIdToDeletedDays.get(recordTypeId);
+                if (knownRanges != null) {
+                    ranges.addAll(knownRanges);
+                }
+                ranges.add(new long[] {firstEpochDay, lastEpochDay});
+                recordTypeIdToDeletedDays.put(recordTypeId, mergeRanges(ranges));
+            }
+            PreferenceHelper.getInstance()
+                    .insertOrReplacePreference(
+                            DELETED_DAYS_KEY, toDeletedDaysString(recordTypeIdToDeletedDays));
+        }
+    }
+
+    /**
+     * Returns the deleted days of each record type as ranges of epoch days, read from the string
+     * of {@link #toDeletedDaysString}.
+     */
+    @NonNull
+    private static SparseArray<List<long[]>> readDeletedDays() {
+        SparseArray<List<long[]>> recordTypeIdToDeletedDays = new SparseArray<>();
+        String deletedDays = PreferenceHelper.getInstance().getPreference(DELETED_DAYS_KEY);
+        if (deletedDays == null || deletedDays.isEmpty()) {
+            return recordTypeIdToDeletedDays;
+        }
+        for (String entry : deletedDays.split(",")) {
+            String[] values = entry.split(":");
+            int recordTypeId = Integer.parseInt(values[0]);
+            List<long[]> ranges = recordTypeIdToDeletedDays.get(recordTypeId);
+            if (ranges == null) {
+                ranges = new ArrayList<>();
+                recordTypeIdToDeletedDays.put(recordTypeId, ranges);
+            }
+            ranges.add(new long[] {Long.parseLong(values[1]), Long.parseLong(values[2])});
+        }
+        return recordTypeIdToDeletedDays;
+    }
+
+    /**
+     * Returns the deleted days as comma separated ranges of epoch days, each as {@code
+     * recordTypeId:firstEpochDay:lastEpochDay}.
+     */
+    @NonNull
+    private static String toDeletedDaysString(
+            @NonNull SparseArray<List<long[]>> recordTypeIdToDeletedDays) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < recordTypeIdToDeletedDays.size(); i++) {
+            for (long[] range : recordTypeIdToDeletedDays.valueAt(i)) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(recordTypeIdToDeletedDays.keyAt(i))
+                        .append(':')
+                        .append(range[0])
+                        .append(':')
+                        .append(range[1]);
+            }
+        }
+        return builder.toString();
+    }
 
-        // Fetch updated dates from respective record table and update the activity dates cache.
-        HashMap<Integer, List<Long>> recordTypeIdToEpochDays =
-                fetchUpdatedDates(recordTypeIds, transactionManager);
+    /**
+     * Returns {@code ranges} sorted, with the ranges which overlap or touch merged. Beyond {@link
+     * #MAX_DELETED_DAY_RANGES_PER_TYPE} ranges, returns a single range spanning all of them.
+     */
+    @NonNull
+    private static List<long[]> mergeRanges(@NonNull List<long[]> ranges) {
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> mergedRanges = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] lastRange =
+                    mergedRanges.isEmpty() ? null : mergedRanges.get(mergedRanges.size() - 1);
+            if (lastRange != null
+                    && (lastRange[1] == Long.MAX_VALUE || range[0] <= lastRange[1] + 1)) {
+                lastRange[1] = Math.max(lastRange[1], range[1]);
+            } else {
+                mergedRanges.add(new long[] {range[0], range[1]});
+            }
+        }
+        if (mergedRanges.size() > MAX_DELETED_DAY_RANGES_PER_TYPE) {
+            long firstEpochDay = mergedRanges.get(0)[0];
+            long lastEpochDay = mergedRanges.get(mergedRanges.size() - 1)[1];
+            mergedRanges.clear();
+            mergedRanges.add(new long[] {firstEpochDay, lastEpochDay});
+        }
+        return mergedRanges;
+    }
 
-        recordTypeIdToEpochDays.forEach(
-                (recordTypeId, epochDays) ->
-                        epochDays.forEach(
-                                (epochDay) ->
-                                        upsertTableRequests.add(
-                                                getUpsertTableRequest(recordTypeId, epochDay))));
+    /** Returns the first day a record starting at {@code startTimeMillis} or after can be on. */
+    private static long getFirstEpochDay(long startTimeMillis) {
+        // The local date of a record can be a day away from the UTC date of its time.
+        return Math.floorDiv(startTimeMillis, DAY_IN_MILLIS) - 1;
+    }
 
-        transactionManager.runAsTransaction(
-                db -> {
-                    db.execSQL(deleteTableRequest.getDeleteCommand());
-                    upsertTableRequests.forEach(
-                            upsertTableRequest ->
-                                    transactionManager.insertOrIgnore(db, upsertTableRequest));
-                });
+    /** Returns the last day a record starting at {@code endTimeMillis} or before can be on. */
+    private static long getLastEpochDay(long endTimeMillis) {
+        return Math.floorDiv(endTimeMillis, DAY_IN_MILLIS) + 1;
     }
 
     @NonNull
@@ -155,31 +407,89 @@ public final class ActivityDateHelper {
                 new Pair<>(RECORD_TYPE_ID_COLUMN_NAME, INTEGER_NOT_NULL));
     }
 
-    private HashMap<Integer, List<Long>> fetchUpdatedDates(
-            List<Integer> recordTypeIds, TransactionManager transactionManager) {
-
-        ReadTableRequest request;
-        RecordHelper<?> recordHelper;
-        HashMap<Integer, List<Long>> recordTypeIdToEpochDays = new HashMap<>();
-        for (int recordTypeId : recordTypeIds) {
-            recordHelper = RecordHelperProvider.getInstance().getRecordHelper(recordTypeId);
-            request =
-                    new ReadTableRequest(recordHelper.getMainTableName())
-                            .setColumnNames(List.of(recordHelper.getPeriodGroupByColumnName()))
-                            .setDistinctClause(true);
-            try (Cursor cursor = transactionManager.read(request)) {
-                List<Long> distinctDates = new ArrayList<>();
-                while (cursor.moveToNext()) {
-                    long epochDay =
-                            getCursorLong(cursor, recordHelper.getPeriodGroupByColumnName());
-                    distinctDates.add(epochDay);
-                }
-                recordTypeIdToEpochDays.put(recordTypeId, distinctDates);
+    /**
+     * Returns the dates of the records of the given type, from {@code firstEpochDay} to {@code
+     * lastEpochDay}.
+     */
+    @NonNull
+    private static EpochDayBitmap fetchEpochDays(
+            int recordTypeId,
+            long firstEpochDay,
+            long lastEpochDay,
+            @NonNull TransactionManager transactionManager) {
+        RecordHelper<?> recordHelper =
+                RecordHelperProvider.getInstance().getRecordHelper(recordTypeId);
+        String epochDayColumnName = recordHelper.getPeriodGroupByColumnName();
+        ReadTableRequest request =
+                new ReadTableRequest(recordHelper.getMainTableName())
+                        .setColumnNames(List.of(epochDayColumnName))
+                        .setDistinctClause(true);
+        if (firstEpochDay != Long.MIN_VALUE || lastEpochDay != Long.MAX_VALUE) {
+            request.setWhereClause(
+                    new WhereClauses()
+                            .addWhereBetweenClause(
+                                    epochDayColumnName, firstEpochDay, lastEpochDay));
+        }
+
+        EpochDayBitmap epochDays = new EpochDayBitmap();
+        try (Cursor cursor = transactionManager.read(request)) {
+            while (cursor.moveToNext()) {
+                epochDays.add(getCursorLong(cursor, epochDayColumnName));
             }
         }
+        return epochDays;
+    }
+
+    /** Returns the dates of each record type, loading them from the table if needed. */
+    @GuardedBy("mLock")
+    @NonNull
+    private SparseArray<EpochDayBitmap> getRecordTypeIdToEpochDays() {
+        if (mRecordTypeIdToEpochDays != null) {
+            return mRecordTypeIdToEpochDays;
+        }
+
+        SparseArray<EpochDayBitmap> recordTypeIdToEpochDays = new SparseArray<>();
+        ReadTableRequest request =
+                new ReadTableRequest(TABLE_NAME)
+                        .setColumnNames(
+                                List.of(RECORD_TYPE_ID_COLUMN_NAME, EPOCH_DAYS_COLUMN_NAME));
+        try (Cursor cursor = TransactionManager.getInitialisedInstance().read(request)) {
+            while (cursor.moveToNext()) {
+                getOrCreateEpochDays(
+                                recordTypeIdToEpochDays,
+                                getCursorInt(cursor, RECORD_TYPE_ID_COLUMN_NAME))
+                        .add(getCursorLong(cursor, EPOCH_DAYS_COLUMN_NAME));
+            }
+        }
+        mRecordTypeIdToEpochDays = recordTypeIdToEpochDays;
         return recordTypeIdToEpochDays;
     }
 
+    @NonNull
+    private static EpochDayBitmap getOrCreateEpochDays(
+            @NonNull SparseArray<EpochDayBitmap> recordTypeIdToEpochDays, int recordTypeId) {
+        EpochDayBitmap epochDays = recordTypeIdToEpochDays.get(recordTypeId);
+        if (epochDays == null) {
+            epochDays = new EpochDayBitmap();
+            recordTypeIdToEpochDays.put(recordTypeId, epochDays);
+        }
+        return epochDays;
+    }
+
+    @NonNull
+    private static String getDeleteCommand(int recordTypeId, @NonNull List<Long> epochDays) {
+        return "DELETE FROM "
+                + TABLE_NAME
+                + new WhereClauses()
+                        .addWhereInIntsClause(RECORD_TYPE_ID_COLUMN_NAME, List.of(recordTypeId))
+                        .addWhereInLongsClause(EPOCH_DAYS_COLUMN_NAME, epochDays)
+                        .get(/* withWhereKeyword= */ true);
+    }
+
+    private static long getEpochDay(@NonNull RecordInternal<?> recordInternal) {
+        return ChronoUnit.DAYS.between(LocalDate.EPOCH, recordInternal.getLocalDate());
+    }
+
     @NonNull
     private ContentValues getContentValues(int recordTypeId, long epochDays) {
         ContentValues contentValues = new ContentValues();
@@ -189,24 +499,6 @@ public final class ActivityDateHelper {
         return contentValues;
     }
 
-    /**
-     * Reads the dates stored in the HealthConnect database.
-     *
-     * @param request a read request.
-     * @return Cursor from table based on ids.
-     */
-    private List<LocalDate> readDates(@NonNull ReadTableRequest request) {
-        final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
-        try (Cursor cursor = transactionManager.read(request)) {
-            List<LocalDate> dates = new ArrayList<>();
-            while (cursor.moveToNext()) {
-                long epochDay = getCursorLong(cursor, EPOCH_DAYS_COLUMN_NAME);
-                dates.add(LocalDate.ofEpochDay(epochDay));
-            }
-            return dates;
-        }
-    }
-
     /** Returns an instance of this class */
     public static synchronized ActivityDateHelper getInstance() {
         if (sActivityDateHelper == null) {
@@ -223,8 +515,6 @@ public final class ActivityDateHelper {
 
     /** Creates UpsertTableRequest to insert into activity_date_table table from recordInternal. */
     public UpsertTableRequest getUpsertTableRequest(RecordInternal<?> recordInternal) {
-        return getUpsertTableRequest(
-                recordInternal.getRecordType(),
-                ChronoUnit.DAYS.between(LocalDate.EPOCH, recordInternal.getLocalDate()));
+        return getUpsertTableRequest(recordInternal.getRecordType(), getEpochDay(recordInternal));
     }
 }
@@ -100,6 +100,16 @@ public final class BasalMetabolicRateRecordHelper
         return deriveBasalCaloriesBurnedHelper.getBasalCaloriesBurned(groupIntervals);
     }
 
+    @Override
+    @NonNull
+    public List<String> getAggregationSourceTableNames() {
+        return List.of(
+                BASAL_METABOLIC_RATE_RECORD_TABLE_NAME,
+                LeanBodyMassRecordHelper.LEAN_BODY_MASS_RECORD_TABLE_NAME,
+                HeightRecordHelper.HEIGHT_RECORD_TABLE_NAME,
+                WeightRecordHelper.WEIGHT_RECORD_TABLE_NAME);
+    }
+
     @Override
     protected void populateSpecificRecordValue(
             @NonNull Cursor cursor, @NonNull BasalMetabolicRateRecordInternal recordInternal) {
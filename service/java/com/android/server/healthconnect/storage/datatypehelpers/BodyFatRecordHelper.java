@@ -47,6 +47,11 @@ public final class BodyFatRecordHelper extends InstantRecordHelper<BodyFatRecord
         return BODY_FAT_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return PERCENTAGE_COLUMN_NAME;
+    }
+
     @Override
     void populateSpecificRecordValue(
             @NonNull Cursor cursor, @NonNull BodyFatRecordInternal bodyFatRecord) {
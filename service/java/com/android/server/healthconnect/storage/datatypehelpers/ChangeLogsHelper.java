@@ -39,21 +39,27 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.util.ArrayMap;
 import android.util.Pair;
 
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
+import com.android.server.healthconnect.storage.utils.TableWriteGenerations;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -70,8 +76,20 @@ public final class ChangeLogsHelper {
     private static final String OPERATION_TYPE_COLUMN_NAME = "operation_type";
     private static final String TIME_COLUMN_NAME = "time";
     private static final int NUM_COLS = 5;
+    @VisibleForTesting static final int COMPACTION_CHUNK_SIZE = 500;
+    // Bounds the memory used by a compaction, older change logs are left as they are.
+    private static final int MAX_COMPACTION_SEEN_UUIDS = 100_000;
     private static volatile ChangeLogsHelper sChangeLogsHelper;
 
+    private final Object mLatestRowIdLock = new Object();
+
+    @GuardedBy("mLatestRowIdLock")
+    private long mLatestRowId = DEFAULT_LONG;
+
+    // Write generation of the table when mLatestRowId was read from it.
+    @GuardedBy("mLatestRowIdLock")
+    private long mLatestRowIdGeneration;
+
     private ChangeLogsHelper() {}
 
     public DeleteTableRequest getDeleteRequestForAutoDelete() {
@@ -121,7 +139,7 @@ public final class ChangeLogsHelper {
         final ReadTableRequest readTableRequest =
                 new ReadTableRequest(TABLE_NAME).setWhereClause(whereClause).setLimit(pageSize);
 
-        Map<Integer, ChangeLogs> operationToChangeLogMap = new ArrayMap<>();
+        List<ChangeLogRow> changeLogRows = new ArrayList<>();
         TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
         long nextChangesToken = DEFAULT_LONG;
         boolean hasMoreRecords = false;
@@ -132,10 +150,13 @@ public final class ChangeLogsHelper {
                     hasMoreRecords = true;
                     break;
                 }
-                count += addChangeLogs(cursor, operationToChangeLogMap);
-                nextChangesToken = getCursorInt(cursor, PRIMARY_COLUMN_NAME);
+                ChangeLogRow changeLogRow = new ChangeLogRow(cursor);
+                changeLogRows.add(changeLogRow);
+                count += changeLogRow.mUuids.size();
+                nextChangesToken = changeLogRow.mRowId;
             }
         }
+        Map<Integer, ChangeLogs> operationToChangeLogMap = getCompactedChangeLogs(changeLogRows);
 
         String nextToken =
                 nextChangesToken != DEFAULT_LONG
@@ -146,22 +167,124 @@ public final class ChangeLogsHelper {
         return new ChangeLogsResponse(operationToChangeLogMap, nextToken, hasMoreRecords);
     }
 
+    /**
+     * Returns the row id of the latest change log.
+     *
+     * <p>The row id is kept in memory and maintained by {@link #onChangeLogsCommitted}. It is read
+     * from the table again only after writes to the table which didn't go through it, e.g. auto
+     * delete or migration.
+     */
     public long getLatestRowId() {
-        return TransactionManager.getInitialisedInstance().getLastRowIdFor(TABLE_NAME);
+        TableWriteGenerations tableWriteGenerations = TableWriteGenerations.getInstance();
+        long generation = tableWriteGenerations.getGeneration(TABLE_NAME);
+        synchronized (mLatestRowIdLock) {
+            if (mLatestRowId != DEFAULT_LONG && mLatestRowIdGeneration == generation) {
+                return mLatestRowId;
+            }
+        }
+
+        long latestRowId = TransactionManager.getInitialisedInstance().getLastRowIdFor(TABLE_NAME);
+        synchronized (mLatestRowIdLock) {
+            if (mLatestRowIdGeneration == generation) {
+                latestRowId = Math.max(latestRowId, mLatestRowId);
+            }
+            mLatestRowId = latestRowId;
+            mLatestRowIdGeneration = generation;
+        }
+        return latestRowId;
+    }
+
+    /**
+     * Updates the latest row id after change logs up to {@code rowId} were committed. Row ids of
+     * the change logs are never reused, so the latest row id only grows.
+     */
+    public void onChangeLogsCommitted(long rowId) {
+        synchronized (mLatestRowIdLock) {
+            if (mLatestRowId != DEFAULT_LONG) {
+                mLatestRowId = Math.max(mLatestRowId, rowId);
+            }
+        }
     }
 
-    private int addChangeLogs(Cursor cursor, Map<Integer, ChangeLogs> changeLogs) {
-        @RecordTypeIdentifier.RecordType
-        int recordType = getCursorInt(cursor, RECORD_TYPE_COLUMN_NAME);
-        @OperationType.OperationTypes
-        int operationType = getCursorInt(cursor, OPERATION_TYPE_COLUMN_NAME);
-        List<UUID> uuidList = StorageUtils.getCursorUUIDList(cursor, UUIDS_COLUMN_NAME);
-        long appId = getCursorLong(cursor, APP_ID_COLUMN_NAME);
-        changeLogs.putIfAbsent(
-                operationType,
-                new ChangeLogs(operationType, getCursorLong(cursor, TIME_COLUMN_NAME)));
-        changeLogs.get(operationType).addUUIDs(recordType, appId, uuidList);
-        return uuidList.size();
+    /**
+     * Removes from the change logs the UUIDs which are superseded by a later change log of the same
+     * record, e.g. upserts of a record which was deleted afterwards, and deletes the change logs
+     * which are left empty.
+     *
+     * <p>Row ids of the remaining change logs are unchanged, so that existing tokens stay valid: a
+     * client reading from any token still gets the latest operation of every record changed after
+     * it.
+     *
+     * <p>Change logs are compacted from the newest to the oldest, in chunks of {@link
+     * #COMPACTION_CHUNK_SIZE} rows which are each written in their own transaction. Only the change
+     * log table is written, so data cached from the record tables stays valid.
+     */
+    public void compactChangeLogs() {
+        TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
+        ChangeLogsCompaction compaction = new ChangeLogsCompaction();
+        while (!compaction.mIsDone) {
+            transactionManager.runAsTransaction(TABLE_NAME, compaction::compactNextChunk);
+        }
+    }
+
+    /**
+     * Compacts the change logs in {@code db}. Assumes that caller is handling the transaction.
+     *
+     * @return the number of change logs updated or deleted.
+     */
+    @VisibleForTesting
+    public int compactChangeLogs(@NonNull SQLiteDatabase db) {
+        ChangeLogsCompaction compaction = new ChangeLogsCompaction();
+        while (!compaction.mIsDone) {
+            compaction.compactNextChunk(db);
+        }
+        return compaction.mNumberOfCompactedRows;
+    }
+
+    /** Writes the compacted change logs of a chunk to {@code db}. */
+    private static void writeCompactedRows(
+            @NonNull SQLiteDatabase db, @NonNull List<ChangeLogRow> compactedRows) {
+        for (ChangeLogRow changeLogRow : compactedRows) {
+            String[] whereArgs = new String[] {String.valueOf(changeLogRow.mRowId)};
+            if (changeLogRow.mUuids.isEmpty()) {
+                db.delete(TABLE_NAME, PRIMARY_COLUMN_NAME + " = ?", whereArgs);
+            } else {
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(
+                        UUIDS_COLUMN_NAME, StorageUtils.getSingleByteArray(changeLogRow.mUuids));
+                db.update(TABLE_NAME, contentValues, PRIMARY_COLUMN_NAME + " = ?", whereArgs);
+            }
+        }
+    }
+
+    /**
+     * Returns the change logs of {@code changeLogRows}, sorted by row id, keeping only the latest
+     * operation of each record.
+     */
+    private static Map<Integer, ChangeLogs> getCompactedChangeLogs(
+            @NonNull List<ChangeLogRow> changeLogRows) {
+        List<List<UUID>> latestUuidsPerRow = new ArrayList<>(changeLogRows.size());
+        LatestChangesFilter latestChangesFilter = new LatestChangesFilter();
+        for (int i = changeLogRows.size() - 1; i >= 0; i--) {
+            latestUuidsPerRow.add(latestChangesFilter.retainLatest(changeLogRows.get(i)));
+        }
+        Collections.reverse(latestUuidsPerRow);
+
+        Map<Integer, ChangeLogs> changeLogs = new ArrayMap<>();
+        for (int i = 0; i < changeLogRows.size(); i++) {
+            ChangeLogRow changeLogRow = changeLogRows.get(i);
+            List<UUID> latestUuids = latestUuidsPerRow.get(i);
+            if (latestUuids.isEmpty()) {
+                continue;
+            }
+            changeLogs.putIfAbsent(
+                    changeLogRow.mOperationType,
+                    new ChangeLogs(changeLogRow.mOperationType, changeLogRow.mTime));
+            changeLogs
+                    .get(changeLogRow.mOperationType)
+                    .addUUIDs(changeLogRow.mRecordType, changeLogRow.mAppId, latestUuids);
+        }
+        return changeLogs;
     }
 
     @NonNull
@@ -359,6 +482,114 @@ public final class ChangeLogsHelper {
         }
     }
 
+    /** A row of the change logs table. */
+    private static final class ChangeLogRow {
+        private final long mRowId;
+        @RecordTypeIdentifier.RecordType private final int mRecordType;
+        private final long mAppId;
+        @OperationType.OperationTypes private final int mOperationType;
+        private final long mTime;
+        private final List<UUID> mUuids;
+
+        private ChangeLogRow(@NonNull Cursor cursor) {
+            this(
+                    getCursorLong(cursor, PRIMARY_COLUMN_NAME),
+                    getCursorInt(cursor, RECORD_TYPE_COLUMN_NAME),
+                    getCursorLong(cursor, APP_ID_COLUMN_NAME),
+                    getCursorInt(cursor, OPERATION_TYPE_COLUMN_NAME),
+                    getCursorLong(cursor, TIME_COLUMN_NAME),
+                    StorageUtils.getCursorUUIDList(cursor, UUIDS_COLUMN_NAME));
+        }
+
+        private ChangeLogRow(
+                long rowId,
+                int recordType,
+                long appId,
+                int operationType,
+                long time,
+                @NonNull List<UUID> uuids) {
+            mRowId = rowId;
+            mRecordType = recordType;
+            mAppId = appId;
+            mOperationType = operationType;
+            mTime = time;
+            mUuids = uuids;
+        }
+
+        private ChangeLogRow withUuids(@NonNull List<UUID> uuids) {
+            return new ChangeLogRow(mRowId, mRecordType, mAppId, mOperationType, mTime, uuids);
+        }
+    }
+
+    /**
+     * A compaction of the change logs, which reads them by chunks from the newest to the oldest.
+     * The records seen in the previous chunks are kept, so that their older changes are removed.
+     */
+    private static final class ChangeLogsCompaction {
+        private final LatestChangesFilter mLatestChangesFilter = new LatestChangesFilter();
+        private long mLastReadRowId = Long.MAX_VALUE;
+        private int mNumberOfCompactedRows;
+        private boolean mIsDone;
+
+        /** Compacts the next chunk of change logs, older than the ones already compacted. */
+        private void compactNextChunk(@NonNull SQLiteDatabase db) {
+            List<ChangeLogRow> compactedRows = new ArrayList<>();
+            int numberOfReadRows = 0;
+            try (Cursor cursor =
+                    db.query(
+                            TABLE_NAME,
+                            null,
+                            PRIMARY_COLUMN_NAME + " < ?",
+                            new String[] {String.valueOf(mLastReadRowId)},
+                            null,
+                            null,
+                            PRIMARY_COLUMN_NAME + " DESC",
+                            String.valueOf(COMPACTION_CHUNK_SIZE))) {
+                while (cursor.moveToNext()) {
+                    ChangeLogRow changeLogRow = new ChangeLogRow(cursor);
+                    List<UUID> latestUuids = mLatestChangesFilter.retainLatest(changeLogRow);
+                    if (latestUuids.size() != changeLogRow.mUuids.size()) {
+                        compactedRows.add(changeLogRow.withUuids(latestUuids));
+                    }
+                    mLastReadRowId = changeLogRow.mRowId;
+                    numberOfReadRows++;
+                }
+            }
+
+            // Rows are updated once the cursor is closed, as they would otherwise shift its window.
+            writeCompactedRows(db, compactedRows);
+            mNumberOfCompactedRows += compactedRows.size();
+            mIsDone =
+                    numberOfReadRows < COMPACTION_CHUNK_SIZE
+                            || mLatestChangesFilter.mNumberOfSeenUuids
+                                    >= MAX_COMPACTION_SEEN_UUIDS;
+        }
+    }
+
+    /**
+     * Keeps track of the records already seen while iterating change logs from the newest to the
+     * oldest, so that only the latest change of each record is kept.
+     */
+    private static final class LatestChangesFilter {
+        private final Map<Integer, Set<UUID>> mRecordTypeToSeenUuids = new ArrayMap<>();
+        private int mNumberOfSeenUuids;
+
+        /** Returns the UUIDs of {@code changeLogRow} which have not been seen in a later row. */
+        private List<UUID> retainLatest(@NonNull ChangeLogRow changeLogRow) {
+            Set<UUID> seenUuids =
+                    mRecordTypeToSeenUuids.computeIfAbsent(
+                            changeLogRow.mRecordType, recordType -> new HashSet<>());
+            List<UUID> latestUuids = new ArrayList<>(changeLogRow.mUuids.size());
+            for (UUID uuid : changeLogRow.mUuids) {
+                if (seenUuids.add(uuid)) {
+                    latestUuids.add(uuid);
+                    mNumberOfSeenUuids++;
+                }
+            }
+            return latestUuids;
+        }
+    }
+
     /** A class to represent the token for pagination for the change logs response */
     public static final class ChangeLogsResponse {
         private final Map<Integer, ChangeLogsHelper.ChangeLogs> mChangeLogsMap;
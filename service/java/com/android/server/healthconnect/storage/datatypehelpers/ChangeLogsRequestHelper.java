@@ -16,6 +16,8 @@
 
 package com.android.server.healthconnect.storage.datatypehelpers;
 
+import static android.health.connect.Constants.DEFAULT_LONG;
+
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.DELIMITER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
@@ -28,12 +30,18 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.getCur
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorStringList;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.changelog.ChangeLogTokenRequest;
+import android.util.LongSparseArray;
+import android.util.LruCache;
 import android.util.Pair;
+import android.util.Slog;
 
+import com.android.internal.annotations.GuardedBy;
+import com.android.server.healthconnect.HealthConnectThreadScheduler;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
@@ -54,18 +62,47 @@ import java.util.List;
  * <p>This class returns the row_id of the change_log_request_table as a token, that can later be
  * used to recreate the request.
  *
+ * <p>Tokens are issued from memory: their row ids are allocated from a counter and their rows are
+ * persisted in batches by an internal task, without blocking the caller on a database write.
+ * Requests of recently issued tokens are also served from memory.
+ *
+ * <p>The row ids are reserved in blocks, by storing the last reserved id in the preferences before
+ * any id of the block is issued. Tokens which were not persisted are lost if the process dies, but
+ * their ids are never issued again for another request.
+ *
  * @hide
  */
 public final class ChangeLogsRequestHelper {
     static final int DEFAULT_CHANGE_LOG_TIME_PERIOD_IN_DAYS = 32;
+    private static final String TAG = "HealthConnectChangeLogsRequestHelper";
     private static final String TABLE_NAME = "change_log_request_table";
     private static final String PACKAGES_TO_FILTERS_COLUMN_NAME = "packages_to_filter";
     private static final String RECORD_TYPES_COLUMN_NAME = "record_types";
     private static final String PACKAGE_NAME_COLUMN_NAME = "package_name";
     private static final String ROW_ID_CHANGE_LOGS_TABLE_COLUMN_NAME = "row_id_change_logs_table";
     private static final String TIME_COLUMN_NAME = "time";
+    private static final int MAX_CACHED_TOKENS = 1000;
+    private static final int TOKENS_RESERVED_AT_ONCE = 1000;
+    private static final String LAST_RESERVED_TOKEN_KEY = "change_log_last_reserved_token_key";
     private static volatile ChangeLogsRequestHelper sChangeLogsRequestHelper;
 
+    private final Object mTokensLock = new Object();
+
+    @GuardedBy("mTokensLock")
+    private long mLastToken = DEFAULT_LONG;
+
+    @GuardedBy("mTokensLock")
+    private long mLastReservedToken = DEFAULT_LONG;
+
+    // Tokens which are issued but not persisted yet.
+    @GuardedBy("mTokensLock")
+    private final LongSparseArray<TokenEntry> mPendingTokens = new LongSparseArray<>();
+
+    @GuardedBy("mTokensLock")
+    private boolean mIsPersistScheduled;
+
+    private final LruCache<Long, TokenEntry> mCachedTokens = new LruCache<>(MAX_CACHED_TOKENS);
+
     private ChangeLogsRequestHelper() {}
 
     // Called on DB update.
@@ -78,28 +115,34 @@ public final class ChangeLogsRequestHelper {
 
     @NonNull
     public String getToken(@NonNull String packageName, @NonNull ChangeLogTokenRequest request) {
-        ContentValues contentValues = new ContentValues();
-
         /**
          * Store package names here as a package name and not as {@link AppInfoHelper.AppInfo#mId}
          * as ID might not be available right now but might become available when the actual request
          * for this token comes
          */
-        contentValues.put(
-                PACKAGES_TO_FILTERS_COLUMN_NAME,
-                String.join(DELIMITER, request.getPackageNamesToFilter()));
-        contentValues.put(
-                RECORD_TYPES_COLUMN_NAME,
-                StorageUtils.flattenIntArray(request.getRecordTypesArray()));
-        contentValues.put(PACKAGE_NAME_COLUMN_NAME, packageName);
-        contentValues.put(
-                ROW_ID_CHANGE_LOGS_TABLE_COLUMN_NAME,
-                ChangeLogsHelper.getInstance().getLatestRowId());
-        contentValues.put(TIME_COLUMN_NAME, Instant.now().toEpochMilli());
-
-        return String.valueOf(
-                TransactionManager.getInitialisedInstance()
-                        .insert(new UpsertTableRequest(TABLE_NAME, contentValues)));
+        TokenRequest tokenRequest =
+                new TokenRequest(
+                        List.copyOf(request.getPackageNamesToFilter()),
+                        List.copyOf(request.getRecordTypesList()),
+                        packageName,
+                        ChangeLogsHelper.getInstance().getLatestRowId());
+        return String.valueOf(issueToken(tokenRequest, Instant.now().toEpochMilli()));
+    }
+
+    /**
+     * Persists the tokens which are not persisted yet and clears the tokens kept in memory. Must be
+     * called before the database of the user is closed.
+     */
+    public void persistPendingTokensAndClearCache() {
+        persistPendingTokens();
+        synchronized (mTokensLock) {
+            // Tokens which failed to persist are dropped, they belong to the database of this user.
+            mPendingTokens.clear();
+            mIsPersistScheduled = false;
+            mLastToken = DEFAULT_LONG;
+            mLastReservedToken = DEFAULT_LONG;
+        }
+        mCachedTokens.evictAll();
     }
 
     public DeleteTableRequest getDeleteRequestForAutoDelete() {
@@ -136,6 +179,126 @@ public final class ChangeLogsRequestHelper {
 
     @NonNull
     public static TokenRequest getRequest(@NonNull String packageName, @NonNull String token) {
+        return getInstance().getTokenRequest(packageName, token);
+    }
+
+    @NonNull
+    public static String getNextPageToken(TokenRequest changeLogTokenRequest, long nextRowId) {
+        TokenRequest tokenRequest =
+                new TokenRequest(
+                        changeLogTokenRequest.getPackageNamesToFilter(),
+                        changeLogTokenRequest.getRecordTypes(),
+                        changeLogTokenRequest.getRequestingPackageName(),
+                        nextRowId);
+        return String.valueOf(getInstance().issueToken(tokenRequest, /* time= */ null));
+    }
+
+    @NonNull
+    private TokenRequest getTokenRequest(@NonNull String packageName, @NonNull String token) {
+        long tokenId;
+        try {
+            tokenId = Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+
+        TokenEntry tokenEntry;
+        synchronized (mTokensLock) {
+            tokenEntry = mPendingTokens.get(tokenId);
+        }
+        if (tokenEntry == null) {
+            tokenEntry = mCachedTokens.get(tokenId);
+        }
+        if (tokenEntry != null) {
+            if (!tokenEntry.mTokenRequest.getRequestingPackageName().equals(packageName)
+                    || tokenEntry.isExpired()) {
+                throw new IllegalArgumentException("Invalid token");
+            }
+            return tokenEntry.mTokenRequest;
+        }
+
+        return readTokenRequest(packageName, token);
+    }
+
+    private long issueToken(@NonNull TokenRequest tokenRequest, @Nullable Long time) {
+        TokenEntry tokenEntry = new TokenEntry(tokenRequest, time);
+        long token;
+        boolean schedulePersist;
+        synchronized (mTokensLock) {
+            if (mLastToken == DEFAULT_LONG) {
+                mLastToken = readLastIssuedToken();
+                mLastReservedToken = mLastToken;
+            }
+            if (mLastToken == mLastReservedToken) {
+                long lastReservedToken = mLastReservedToken + TOKENS_RESERVED_AT_ONCE;
+                PreferenceHelper.getInstance()
+                        .insertOrReplacePreference(
+                                LAST_RESERVED_TOKEN_KEY, String.valueOf(lastReservedToken));
+                mLastReservedToken = lastReservedToken;
+            }
+            token = ++mLastToken;
+            mPendingTokens.put(token, tokenEntry);
+            schedulePersist = !mIsPersistScheduled;
+            mIsPersistScheduled = true;
+        }
+
+        if (schedulePersist) {
+            HealthConnectThreadScheduler.scheduleInternalTask(this::persistPendingTokens);
+        }
+        return token;
+    }
+
+    /**
+     * Returns the last token which may have been issued: the last persisted one, or the last
+     * reserved one if tokens were issued but not persisted before the process died.
+     */
+    private static long readLastIssuedToken() {
+        long lastToken = TransactionManager.getInitialisedInstance().getLastRowIdFor(TABLE_NAME);
+        String lastReservedToken =
+                PreferenceHelper.getInstance().getPreference(LAST_RESERVED_TOKEN_KEY);
+        if (lastReservedToken != null) {
+            lastToken = Math.max(lastToken, Long.parseLong(lastReservedToken));
+        }
+        return lastToken;
+    }
+
+    /** Persists all the pending tokens in a single transaction. */
+    private void persistPendingTokens() {
+        LongSparseArray<TokenEntry> tokens;
+        synchronized (mTokensLock) {
+            // Tokens issued from now on are persisted by another task.
+            mIsPersistScheduled = false;
+            if (mPendingTokens.size() == 0) {
+                return;
+            }
+            tokens = mPendingTokens.clone();
+        }
+
+        List<UpsertTableRequest> upsertTableRequests = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            upsertTableRequests.add(
+                    new UpsertTableRequest(
+                            TABLE_NAME, tokens.valueAt(i).getContentValues(tokens.keyAt(i))));
+        }
+        try {
+            TransactionManager.getInitialisedInstance().insertAllOrThrow(upsertTableRequests);
+        } catch (Exception e) {
+            // The tokens stay pending, they are persisted with the next ones.
+            Slog.e(TAG, "Failed to persist change log tokens", e);
+            return;
+        }
+
+        synchronized (mTokensLock) {
+            for (int i = 0; i < tokens.size(); i++) {
+                mCachedTokens.put(tokens.keyAt(i), tokens.valueAt(i));
+                mPendingTokens.remove(tokens.keyAt(i));
+            }
+        }
+    }
+
+    @NonNull
+    private static TokenRequest readTokenRequest(
+            @NonNull String packageName, @NonNull String token) {
         ReadTableRequest readTableRequest =
                 new ReadTableRequest(TABLE_NAME)
                         .setWhereClause(
@@ -157,22 +320,43 @@ public final class ChangeLogsRequestHelper {
         }
     }
 
-    @NonNull
-    public static String getNextPageToken(TokenRequest changeLogTokenRequest, long nextRowId) {
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(
-                PACKAGES_TO_FILTERS_COLUMN_NAME,
-                String.join(DELIMITER, changeLogTokenRequest.getPackageNamesToFilter()));
-        contentValues.put(
-                RECORD_TYPES_COLUMN_NAME,
-                StorageUtils.flattenIntList(changeLogTokenRequest.getRecordTypes()));
-        contentValues.put(
-                PACKAGE_NAME_COLUMN_NAME, changeLogTokenRequest.getRequestingPackageName());
-        contentValues.put(ROW_ID_CHANGE_LOGS_TABLE_COLUMN_NAME, nextRowId);
-
-        return String.valueOf(
-                TransactionManager.getInitialisedInstance()
-                        .insert(new UpsertTableRequest(TABLE_NAME, contentValues)));
+    /** A token which was issued, with its request and its issue time if it expires. */
+    private static final class TokenEntry {
+        private final TokenRequest mTokenRequest;
+        @Nullable private final Long mTime;
+
+        TokenEntry(@NonNull TokenRequest tokenRequest, @Nullable Long time) {
+            mTokenRequest = tokenRequest;
+            mTime = time;
+        }
+
+        /** Returns whether the row of this token is removed by auto delete. */
+        boolean isExpired() {
+            return mTime != null
+                    && mTime
+                            < Instant.now()
+                                    .minus(DEFAULT_CHANGE_LOG_TIME_PERIOD_IN_DAYS, ChronoUnit.DAYS)
+                                    .toEpochMilli();
+        }
+
+        @NonNull
+        ContentValues getContentValues(long token) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(PRIMARY_COLUMN_NAME, token);
+            contentValues.put(
+                    PACKAGES_TO_FILTERS_COLUMN_NAME,
+                    String.join(DELIMITER, mTokenRequest.getPackageNamesToFilter()));
+            contentValues.put(
+                    RECORD_TYPES_COLUMN_NAME,
+                    StorageUtils.flattenIntList(mTokenRequest.getRecordTypes()));
+            contentValues.put(PACKAGE_NAME_COLUMN_NAME, mTokenRequest.getRequestingPackageName());
+            contentValues.put(
+                    ROW_ID_CHANGE_LOGS_TABLE_COLUMN_NAME, mTokenRequest.getRowIdChangeLogs());
+            if (mTime != null) {
+                contentValues.put(TIME_COLUMN_NAME, mTime);
+            }
+            return contentValues;
+        }
     }
 
     /** A class to represent the request corresponding to a token */
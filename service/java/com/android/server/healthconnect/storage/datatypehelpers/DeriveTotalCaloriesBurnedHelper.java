@@ -30,11 +30,12 @@ import android.database.Cursor;
 import android.util.Pair;
 
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -48,7 +49,7 @@ import java.util.Objects;
 public final class DeriveTotalCaloriesBurnedHelper {
     private final long mStartTime;
     private final long mEndTime;
-    private final List<Long> mPriority;
+    private final AppIdPrioritySnapshot mPrioritySnapshot;
     private Cursor mActiveCaloriesBurnedCursor;
     private Cursor mBasalCaloriesBurnedCursor;
     private MergeDataHelper mMergeDataHelper;
@@ -61,11 +62,14 @@ public final class DeriveTotalCaloriesBurnedHelper {
     private boolean mUseLocalTime;
 
     public DeriveTotalCaloriesBurnedHelper(
-            long startTime, long endTime, @NonNull List<Long> priorityList, boolean useLocaleTime) {
-        Objects.requireNonNull(priorityList);
+            long startTime,
+            long endTime,
+            @NonNull AppIdPrioritySnapshot prioritySnapshot,
+            boolean useLocaleTime) {
+        Objects.requireNonNull(prioritySnapshot);
         mStartTime = startTime;
         mEndTime = endTime;
-        mPriority = priorityList;
+        mPrioritySnapshot = prioritySnapshot;
         mUseLocalTime = useLocaleTime;
         if (useLocaleTime) {
             mInstantRecordTimeColumnName = LOCAL_DATE_TIME_COLUMN_NAME;
@@ -108,7 +112,7 @@ public final class DeriveTotalCaloriesBurnedHelper {
         mMergeDataHelper =
                 new MergeDataHelper(
                         mActiveCaloriesBurnedCursor,
-                        mPriority,
+                        mPrioritySnapshot,
                         ENERGY_COLUMN_NAME,
                         Double.class,
                         mUseLocalTime);
@@ -130,19 +134,32 @@ public final class DeriveTotalCaloriesBurnedHelper {
     }
 
     /**
-     * Calculates and returns total derived calories for the empty interval time gaps where there is
-     * no entry in {@link android.health.connect.datatypes.TotalCaloriesBurnedRecord}
+     * Calculates and returns total derived calories of each group for the empty interval time gaps
+     * where there is no entry in {@link android.health.connect.datatypes.TotalCaloriesBurnedRecord}
+     *
+     * @param emptyIntervalsPerGroup sorted empty intervals of each group, as returned by {@link
+     *     MergeDataHelper#getEmptyIntervals()}.
      */
-    public double getDerivedCalories(List<Pair<Instant, Instant>> emptyIntervalList) {
-        double totalDerivedCalories = 0.0;
-        for (Pair<Instant, Instant> instantInstantPair : emptyIntervalList) {
-            long intervalStartTime = instantInstantPair.first.toEpochMilli();
-            long intervalEndTime = instantInstantPair.second.toEpochMilli();
-            totalDerivedCalories +=
-                    mMergeDataHelper.readCursor(intervalStartTime, intervalEndTime)
-                            + mBasalCaloriesBurnedHelper.getBasalCaloriesBurned(
-                                    intervalStartTime, intervalEndTime);
+    @NonNull
+    public double[] getDerivedCalories(
+            @NonNull List<List<Pair<Long, Long>>> emptyIntervalsPerGroup) {
+        List<Pair<Long, Long>> emptyIntervals = new ArrayList<>();
+        for (List<Pair<Long, Long>> groupEmptyIntervals : emptyIntervalsPerGroup) {
+            emptyIntervals.addAll(groupEmptyIntervals);
         }
-        return totalDerivedCalories;
+        // Active calories of all the empty intervals are merged in a single pass over the cursor.
+        double[] activeCaloriesBurned = mMergeDataHelper.readCursor(emptyIntervals);
+
+        double[] derivedCalories = new double[emptyIntervalsPerGroup.size()];
+        int index = 0;
+        for (int group = 0; group < emptyIntervalsPerGroup.size(); group++) {
+            for (Pair<Long, Long> emptyInterval : emptyIntervalsPerGroup.get(group)) {
+                derivedCalories[group] +=
+                        activeCaloriesBurned[index++]
+                                + mBasalCaloriesBurnedHelper.getBasalCaloriesBurned(
+                                        emptyInterval.first, emptyInterval.second);
+            }
+        }
+        return derivedCalories;
     }
 }
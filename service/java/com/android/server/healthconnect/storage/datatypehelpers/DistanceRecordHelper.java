@@ -53,6 +53,11 @@ public final class DistanceRecordHelper extends IntervalRecordHelper<DistanceRec
         return DISTANCE_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return DISTANCE_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         switch (aggregateRequest.getAggregationTypeIdentifier()) {
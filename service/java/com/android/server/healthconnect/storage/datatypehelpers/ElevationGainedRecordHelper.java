@@ -56,6 +56,11 @@ public final class ElevationGainedRecordHelper
         return ELEVATION_GAINED_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return ELEVATION_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         switch (aggregateRequest.getAggregationTypeIdentifier()) {
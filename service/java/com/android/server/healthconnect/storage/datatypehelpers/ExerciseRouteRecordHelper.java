@@ -16,29 +16,57 @@
 
 package com.android.server.healthconnect.storage.datatypehelpers;
 
+import static android.health.connect.Constants.DEFAULT_LONG;
+
 import static com.android.server.healthconnect.storage.datatypehelpers.SeriesRecordHelper.PARENT_KEY_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_NON_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL_NOT_NULL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorBlob;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.internal.datatypes.ExerciseRouteInternal;
+import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
 import android.util.Pair;
+import android.util.Slog;
 
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Stores the locations of exercise routes.
+ *
+ * <p>The locations of a route are stored in blocks of up to {@link #LOCATIONS_PER_BLOCK}
+ * locations, one row per block. Each field of a location is stored as the difference with the
+ * same field of the previous location, as a zigzag varint. Doubles are stored by their bits, so
+ * that the locations read back are exactly the written ones.
+ */
 class ExerciseRouteRecordHelper {
+    static final String EXERCISE_ROUTE_BLOCKS_TABLE_NAME = "exercise_route_blocks_table";
+    static final String ROUTE_BLOCK_INDEX_COLUMN_NAME = "block_index";
+    static final String ROUTE_BLOCK_LOCATIONS_COUNT_COLUMN_NAME = "locations_count";
+    static final String ROUTE_BLOCK_LOCATIONS_COLUMN_NAME = "locations";
+
+    // One row per location, replaced by the blocks table in DB_VERSION_EXERCISE_ROUTE_BLOCKS. The
+    // table is no longer written, but is kept so that a rolled back module can still read the
+    // routes written before the upgrade. Its rows are deleted by the upgrade to
+    // DB_VERSION_LEGACY_EXERCISE_ROUTES_CLEARED.
     static final String EXERCISE_ROUTE_RECORD_TABLE_NAME = "exercise_route_table";
 
-    // Route locations columns names
+    // Route locations columns names of EXERCISE_ROUTE_RECORD_TABLE_NAME
     static final String ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME = "timestamp_millis";
     static final String ROUTE_LOCATION_LATITUDE_COLUMN_NAME = "latitude";
     static final String ROUTE_LOCATION_LONGITUDE_COLUMN_NAME = "longitude";
@@ -46,22 +74,35 @@ class ExerciseRouteRecordHelper {
     static final String ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME = "horizontal_accuracy";
     static final String ROUTE_LOCATION_ALTITUDE_COLUMN_NAME = "altitude";
 
-    static ExerciseRouteInternal.LocationInternal populateLocation(@NonNull Cursor cursor) {
-        return new ExerciseRouteInternal.LocationInternal()
-                .setTime(getCursorLong(cursor, ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME))
-                .setLatitude(getCursorDouble(cursor, ROUTE_LOCATION_LATITUDE_COLUMN_NAME))
-                .setLongitude(getCursorDouble(cursor, ROUTE_LOCATION_LONGITUDE_COLUMN_NAME))
-                .setHorizontalAccuracy(
-                        getCursorDouble(cursor, ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME))
-                .setVerticalAccuracy(
-                        getCursorDouble(cursor, ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME))
-                .setAltitude(getCursorDouble(cursor, ROUTE_LOCATION_ALTITUDE_COLUMN_NAME));
+    // Keeps blocks well below the size of a cursor window.
+    @VisibleForTesting static final int LOCATIONS_PER_BLOCK = 1024;
+    private static final int FIELDS_PER_LOCATION = 6;
+    private static final String TAG = "HealthConnectRoute";
+
+    /** Adds the locations of the current block of {@code cursor} to {@code record}. */
+    static void populateLocations(
+            @NonNull Cursor cursor, @NonNull ExerciseSessionRecordInternal record) {
+        decodeLocations(
+                getCursorBlob(cursor, ROUTE_BLOCK_LOCATIONS_COLUMN_NAME),
+                getCursorInt(cursor, ROUTE_BLOCK_LOCATIONS_COUNT_COLUMN_NAME),
+                record::addRouteLocation);
+    }
+
+    static CreateTableRequest getCreateRouteBlocksTableRequest(String parentTableName) {
+        return new CreateTableRequest(
+                        EXERCISE_ROUTE_BLOCKS_TABLE_NAME,
+                        ExerciseRouteRecordHelper.getRouteBlocksTableColumnInfo())
+                .addForeignKey(
+                        parentTableName,
+                        Collections.singletonList(PARENT_KEY_COLUMN_NAME),
+                        Collections.singletonList(RecordHelper.PRIMARY_COLUMN_NAME));
     }
 
-    static CreateTableRequest getCreateRouteTableRequest(String parentTableName) {
+    /** Returns the request to create the legacy table with one row per route location. */
+    static CreateTableRequest getCreateLegacyRouteTableRequest(String parentTableName) {
         return new CreateTableRequest(
                         EXERCISE_ROUTE_RECORD_TABLE_NAME,
-                        ExerciseRouteRecordHelper.getRouteTableColumnInfo())
+                        ExerciseRouteRecordHelper.getLegacyRouteTableColumnInfo())
                 .addForeignKey(
                         parentTableName,
                         Collections.singletonList(PARENT_KEY_COLUMN_NAME),
@@ -69,21 +110,173 @@ class ExerciseRouteRecordHelper {
     }
 
     static List<UpsertTableRequest> getRouteUpsertRequests(ExerciseRouteInternal route) {
-        List<UpsertTableRequest> requests = new ArrayList<>(route.getRouteLocations().size());
-        route.getRouteLocations()
-                .forEach(
-                        (sample -> {
-                            ContentValues contentValues = new ContentValues();
-                            populateRouteLocationTo(contentValues, sample);
-                            requests.add(
-                                    new UpsertTableRequest(
-                                                    EXERCISE_ROUTE_RECORD_TABLE_NAME, contentValues)
-                                            .setParentColumnForChildTables(PARENT_KEY_COLUMN_NAME));
-                        }));
+        List<ExerciseRouteInternal.LocationInternal> locations = route.getRouteLocations();
+        List<UpsertTableRequest> requests = new ArrayList<>();
+        for (int start = 0; start < locations.size(); start += LOCATIONS_PER_BLOCK) {
+            int end = Math.min(locations.size(), start + LOCATIONS_PER_BLOCK);
+            List<ExerciseRouteInternal.LocationInternal> block = locations.subList(start, end);
+            requests.add(
+                    new UpsertTableRequest(
+                                    EXERCISE_ROUTE_BLOCKS_TABLE_NAME,
+                                    getRouteBlockContentValues(start / LOCATIONS_PER_BLOCK, block))
+                            .setParentColumnForChildTables(PARENT_KEY_COLUMN_NAME));
+        }
         return requests;
     }
 
-    private static List<Pair<String, String>> getRouteTableColumnInfo() {
+    /**
+     * Copies the locations of {@link #EXERCISE_ROUTE_RECORD_TABLE_NAME} to blocks. The locations of
+     * each route are read in the order they were written in. The legacy table is left as is, and
+     * routes which already have blocks are skipped, as after a rollback followed by an upgrade.
+     */
+    static void migrateRouteLocationsToBlocks(@NonNull SQLiteDatabase db) {
+        int numberOfRoutes = 0;
+        try (Cursor cursor =
+                db.rawQuery(
+                        "SELECT * FROM "
+                                + EXERCISE_ROUTE_RECORD_TABLE_NAME
+                                + " WHERE "
+                                + PARENT_KEY_COLUMN_NAME
+                                + " NOT IN (SELECT "
+                                + PARENT_KEY_COLUMN_NAME
+                                + " FROM "
+                                + EXERCISE_ROUTE_BLOCKS_TABLE_NAME
+                                + ") ORDER BY "
+                                + PARENT_KEY_COLUMN_NAME
+                                + ", rowid",
+                        null)) {
+            List<ExerciseRouteInternal.LocationInternal> locations = new ArrayList<>();
+            long parentKey = DEFAULT_LONG;
+            while (cursor.moveToNext()) {
+                long rowParentKey = getCursorLong(cursor, PARENT_KEY_COLUMN_NAME);
+                if (rowParentKey != parentKey && !locations.isEmpty()) {
+                    insertRouteBlocks(db, parentKey, locations);
+                    locations.clear();
+                    numberOfRoutes++;
+                }
+                parentKey = rowParentKey;
+                locations.add(populateLocation(cursor));
+            }
+            if (!locations.isEmpty()) {
+                insertRouteBlocks(db, parentKey, locations);
+                numberOfRoutes++;
+            }
+        }
+        Slog.i(TAG, "Migrated " + numberOfRoutes + " routes to blocks");
+    }
+
+    /**
+     * Deletes the locations of {@link #EXERCISE_ROUTE_RECORD_TABLE_NAME} which have been copied to
+     * blocks. The table itself is kept, as tables are never removed.
+     */
+    static void clearLegacyRouteLocations(@NonNull SQLiteDatabase db) {
+        int numberOfLocations =
+                db.delete(
+                        EXERCISE_ROUTE_RECORD_TABLE_NAME,
+                        PARENT_KEY_COLUMN_NAME
+                                + " IN (SELECT "
+                                + PARENT_KEY_COLUMN_NAME
+                                + " FROM "
+                                + EXERCISE_ROUTE_BLOCKS_TABLE_NAME
+                                + ")",
+                        null);
+        Slog.i(TAG, "Cleared " + numberOfLocations + " legacy route locations");
+    }
+
+    @VisibleForTesting
+    static byte[] encodeLocations(@NonNull List<ExerciseRouteInternal.LocationInternal> locations) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(locations.size() * 16);
+        long[] previousFields = new long[FIELDS_PER_LOCATION];
+        long[] fields = new long[FIELDS_PER_LOCATION];
+        for (ExerciseRouteInternal.LocationInternal location : locations) {
+            fields[0] = location.getTime();
+            fields[1] = Double.doubleToRawLongBits(location.getLatitude());
+            fields[2] = Double.doubleToRawLongBits(location.getLongitude());
+            fields[3] = Double.doubleToRawLongBits(location.getHorizontalAccuracy());
+            fields[4] = Double.doubleToRawLongBits(location.getVerticalAccuracy());
+            fields[5] = Double.doubleToRawLongBits(location.getAltitude());
+            for (int i = 0; i < FIELDS_PER_LOCATION; i++) {
+                long delta = fields[i] - previousFields[i];
+                writeVarint(out, (delta << 1) ^ (delta >> 63));
+                previousFields[i] = fields[i];
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @VisibleForTesting
+    static void decodeLocations(
+            @NonNull byte[] encodedLocations,
+            int numberOfLocations,
+            @NonNull Consumer<ExerciseRouteInternal.LocationInternal> consumer) {
+        long[] fields = new long[FIELDS_PER_LOCATION];
+        int offset = 0;
+        for (int location = 0; location < numberOfLocations; location++) {
+            for (int i = 0; i < FIELDS_PER_LOCATION; i++) {
+                long zigzag = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = encodedLocations[offset++];
+                    zigzag |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                fields[i] += (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            consumer.accept(
+                    new ExerciseRouteInternal.LocationInternal()
+                            .setTime(fields[0])
+                            .setLatitude(Double.longBitsToDouble(fields[1]))
+                            .setLongitude(Double.longBitsToDouble(fields[2]))
+                            .setHorizontalAccuracy(Double.longBitsToDouble(fields[3]))
+                            .setVerticalAccuracy(Double.longBitsToDouble(fields[4]))
+                            .setAltitude(Double.longBitsToDouble(fields[5])));
+        }
+    }
+
+    private static void writeVarint(@NonNull ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static ContentValues getRouteBlockContentValues(
+            int blockIndex, List<ExerciseRouteInternal.LocationInternal> locations) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ROUTE_BLOCK_INDEX_COLUMN_NAME, blockIndex);
+        contentValues.put(ROUTE_BLOCK_LOCATIONS_COUNT_COLUMN_NAME, locations.size());
+        contentValues.put(ROUTE_BLOCK_LOCATIONS_COLUMN_NAME, encodeLocations(locations));
+        return contentValues;
+    }
+
+    private static void insertRouteBlocks(
+            SQLiteDatabase db,
+            long parentKey,
+            List<ExerciseRouteInternal.LocationInternal> locations) {
+        for (UpsertTableRequest request :
+                getRouteUpsertRequests(new ExerciseRouteInternal(locations))) {
+            db.insertOrThrow(
+                    request.getTable(),
+                    null,
+                    request.withParentKey(parentKey).getContentValues());
+        }
+    }
+
+    private static ExerciseRouteInternal.LocationInternal populateLocation(@NonNull Cursor cursor) {
+        return new ExerciseRouteInternal.LocationInternal()
+                .setTime(getCursorLong(cursor, ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME))
+                .setLatitude(getCursorDouble(cursor, ROUTE_LOCATION_LATITUDE_COLUMN_NAME))
+                .setLongitude(getCursorDouble(cursor, ROUTE_LOCATION_LONGITUDE_COLUMN_NAME))
+                .setHorizontalAccuracy(
+                        getCursorDouble(cursor, ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME))
+                .setVerticalAccuracy(
+                        getCursorDouble(cursor, ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME))
+                .setAltitude(getCursorDouble(cursor, ROUTE_LOCATION_ALTITUDE_COLUMN_NAME));
+    }
+
+    private static List<Pair<String, String>> getLegacyRouteTableColumnInfo() {
         List<Pair<String, String>> columnInfo = new ArrayList<>();
         columnInfo.add(new Pair<>(PARENT_KEY_COLUMN_NAME, INTEGER_NOT_NULL));
         columnInfo.add(new Pair<>(ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME, INTEGER_NOT_NULL));
@@ -95,15 +288,12 @@ class ExerciseRouteRecordHelper {
         return columnInfo;
     }
 
-    private static void populateRouteLocationTo(
-            ContentValues contentValues, ExerciseRouteInternal.LocationInternal location) {
-        contentValues.put(ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME, location.getTime());
-        contentValues.put(ROUTE_LOCATION_LONGITUDE_COLUMN_NAME, location.getLongitude());
-        contentValues.put(ROUTE_LOCATION_LATITUDE_COLUMN_NAME, location.getLatitude());
-        contentValues.put(
-                ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME, location.getHorizontalAccuracy());
-        contentValues.put(
-                ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME, location.getVerticalAccuracy());
-        contentValues.put(ROUTE_LOCATION_ALTITUDE_COLUMN_NAME, location.getAltitude());
+    private static List<Pair<String, String>> getRouteBlocksTableColumnInfo() {
+        List<Pair<String, String>> columnInfo = new ArrayList<>();
+        columnInfo.add(new Pair<>(PARENT_KEY_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(ROUTE_BLOCK_INDEX_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(ROUTE_BLOCK_LOCATIONS_COUNT_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(ROUTE_BLOCK_LOCATIONS_COLUMN_NAME, BLOB_NON_NULL));
+        return columnInfo;
     }
 }
@@ -22,8 +22,12 @@ import static android.health.connect.HealthPermissions.READ_EXERCISE_ROUTE;
 import static android.health.connect.HealthPermissions.WRITE_EXERCISE_ROUTE;
 import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.EXERCISE_SESSION_DURATION_TOTAL;
 
+import static com.android.server.healthconnect.storage.HealthConnectDatabase.DB_VERSION_EXERCISE_ROUTE_BLOCKS;
+import static com.android.server.healthconnect.storage.HealthConnectDatabase.DB_VERSION_LEGACY_EXERCISE_ROUTES_CLEARED;
 import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseLapRecordHelper.EXERCISE_LAPS_RECORD_TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.EXERCISE_ROUTE_BLOCKS_TABLE_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.EXERCISE_ROUTE_RECORD_TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.ROUTE_BLOCK_INDEX_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseSegmentRecordHelper.EXERCISE_SEGMENT_RECORD_TABLE_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.SeriesRecordHelper.PARENT_KEY_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.BOOLEAN_FALSE_VALUE;
@@ -38,6 +42,7 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.getInt
 import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.HealthConnectException;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
 import android.health.connect.datatypes.AggregationType;
@@ -55,10 +60,12 @@ import androidx.annotation.Nullable;
 import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
 import com.android.server.healthconnect.logging.ExerciseRoutesLogger;
 import com.android.server.healthconnect.logging.ExerciseRoutesLogger.Operations;
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
 import com.android.server.healthconnect.storage.request.AggregateParams;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
@@ -169,11 +176,30 @@ public final class ExerciseSessionRecordHelper
     @Override
     List<CreateTableRequest> getChildTableCreateRequests() {
         return List.of(
-                ExerciseRouteRecordHelper.getCreateRouteTableRequest(getMainTableName()),
+                ExerciseRouteRecordHelper.getCreateRouteBlocksTableRequest(getMainTableName()),
+                ExerciseRouteRecordHelper.getCreateLegacyRouteTableRequest(getMainTableName()),
                 ExerciseLapRecordHelper.getCreateLapsTableRequest(getMainTableName()),
                 ExerciseSegmentRecordHelper.getCreateSegmentsTableRequest(getMainTableName()));
     }
 
+    @Override
+    public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+        super.onUpgrade(db, oldVersion, newVersion);
+        if (oldVersion < DB_VERSION_EXERCISE_ROUTE_BLOCKS) {
+            HealthConnectDatabase.createTable(
+                    db,
+                    ExerciseRouteRecordHelper.getCreateRouteBlocksTableRequest(getMainTableName()));
+            HealthConnectDatabase.createTable(
+                    db,
+                    ExerciseRouteRecordHelper.getCreateLegacyRouteTableRequest(getMainTableName()));
+            ExerciseRouteRecordHelper.migrateRouteLocationsToBlocks(db);
+        }
+        if (oldVersion < DB_VERSION_LEGACY_EXERCISE_ROUTES_CLEARED
+                && newVersion >= DB_VERSION_LEGACY_EXERCISE_ROUTES_CLEARED) {
+            ExerciseRouteRecordHelper.clearLegacyRouteLocations(db);
+        }
+    }
+
     @Override
     List<UpsertTableRequest> getChildTableUpsertRequests(
             @NonNull ExerciseSessionRecordInternal record) {
@@ -206,6 +232,9 @@ public final class ExerciseSessionRecordHelper
 
         // If on session update app doesn't have granted write_route, then we leave the route as is.
         if (canWriteExerciseRoute(extraWritePermissionToState)) {
+            childTablesToDelete.add(EXERCISE_ROUTE_BLOCKS_TABLE_NAME);
+            // Clears the route the session had before the upgrade, so that a rolled back module
+            // doesn't read it.
             childTablesToDelete.add(EXERCISE_ROUTE_RECORD_TABLE_NAME);
         }
         return childTablesToDelete;
@@ -352,7 +381,7 @@ public final class ExerciseSessionRecordHelper
             ExerciseSessionRecordInternal record =
                     internalRecords.get(
                             mapping.get(getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME)));
-            record.addRouteLocation(ExerciseRouteRecordHelper.populateLocation(cursorExtraData));
+            ExerciseRouteRecordHelper.populateLocations(cursorExtraData, record);
         }
     }
 
@@ -384,6 +413,12 @@ public final class ExerciseSessionRecordHelper
                 getNumberOfRecordsWithExerciseRoutes(recordInternals));
     }
 
+    @Override
+    public void logProjectedReadMetrics(int numberOfRecords, @NonNull String packageName) {
+        // Routes are never projected, so none of the records is read with its route.
+        ExerciseRoutesLogger.log(Operations.READ, packageName, 0);
+    }
+
     private boolean canWriteExerciseRoute(ArrayMap<String, Boolean> extraWritePermissionToState) {
         return extraWritePermissionToState != null
                 && Boolean.TRUE.equals(extraWritePermissionToState.get(WRITE_EXERCISE_ROUTE));
@@ -406,7 +441,7 @@ public final class ExerciseSessionRecordHelper
     }
 
     private ReadTableRequest getRouteReadRequest(WhereClauses clauseToFilterSessionIds) {
-        ReadTableRequest routeReadRequest = new ReadTableRequest(EXERCISE_ROUTE_RECORD_TABLE_NAME);
+        ReadTableRequest routeReadRequest = new ReadTableRequest(EXERCISE_ROUTE_BLOCKS_TABLE_NAME);
 
         ReadTableRequest sessionsIdsRequest = new ReadTableRequest(getMainTableName());
         sessionsIdsRequest.setColumnNames(List.of(PRIMARY_COLUMN_NAME));
@@ -415,6 +450,11 @@ public final class ExerciseSessionRecordHelper
         WhereClauses inClause = new WhereClauses();
         inClause.addWhereInSQLRequestClause(PARENT_KEY_COLUMN_NAME, sessionsIdsRequest);
         routeReadRequest.setWhereClause(inClause);
+        // The blocks of a route are read in order, so that its locations are added in order.
+        routeReadRequest.setOrderBy(
+                new OrderByClause()
+                        .addOrderByClause(PARENT_KEY_COLUMN_NAME, /* isAscending= */ true)
+                        .addOrderByClause(ROUTE_BLOCK_INDEX_COLUMN_NAME, /* isAscending= */ true));
         return routeReadRequest;
     }
 
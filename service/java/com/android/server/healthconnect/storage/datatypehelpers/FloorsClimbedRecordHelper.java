@@ -55,6 +55,11 @@ public final class FloorsClimbedRecordHelper
         return FLOORS_CLIMBED_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return FLOORS_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         switch (aggregateRequest.getAggregationTypeIdentifier()) {
@@ -33,12 +33,14 @@ import android.health.connect.HealthConnectManager;
 import android.health.connect.HealthDataCategory;
 import android.health.connect.HealthPermissions;
 import android.os.UserHandle;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Pair;
 import android.util.Slog;
 
 import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
@@ -76,6 +78,16 @@ public class HealthDataCategoryPriorityHelper {
      */
     private volatile ConcurrentHashMap<Integer, List<Long>> mHealthDataCategoryToAppIdPriorityMap;
 
+    /**
+     * Map of {@link HealthDataCategory} to the snapshot of its priority list used by aggregations.
+     * Snapshots are built on first use after a change and the map is replaced, never modified.
+     */
+    private volatile Map<Integer, AppIdPrioritySnapshot> mPrioritySnapshots =
+            Collections.emptyMap();
+
+    /** Incremented on every change of a priority list. */
+    private volatile long mPriorityVersion;
+
     private HealthDataCategoryPriorityHelper() {}
 
     // Called on DB update.
@@ -187,6 +199,25 @@ public class HealthDataCategoryPriorityHelper {
         return packageIds;
     }
 
+    /**
+     * Returns the priorities of the apps for the input {@link HealthDataCategory}, as an immutable
+     * snapshot which is only rebuilt after the priority order changes.
+     */
+    @NonNull
+    public AppIdPrioritySnapshot getAppIdPrioritySnapshot(@HealthDataCategory.Type int type) {
+        AppIdPrioritySnapshot snapshot = mPrioritySnapshots.get(type);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        return buildAppIdPrioritySnapshot(type);
+    }
+
+    /** Returns the version of the priority lists, which changes whenever any of them changes. */
+    public long getPriorityVersion() {
+        return mPriorityVersion;
+    }
+
     public void setPriorityOrder(int dataCategory, @NonNull List<String> packagePriorityOrder) {
         List<Long> currentPriorityOrder =
                 getHealthDataCategoryToAppIdPriorityMap()
@@ -220,6 +251,7 @@ public class HealthDataCategoryPriorityHelper {
 
     public synchronized void clearCache() {
         mHealthDataCategoryToAppIdPriorityMap = null;
+        invalidatePrioritySnapshots();
     }
 
     private Map<Integer, List<Long>> getHealthDataCategoryToAppIdPriorityMap() {
@@ -265,6 +297,7 @@ public class HealthDataCategoryPriorityHelper {
         try {
             TransactionManager.getInitialisedInstance().insertOrReplace(request);
             getHealthDataCategoryToAppIdPriorityMap().put(dataCategory, newList);
+            invalidatePrioritySnapshots();
         } catch (Exception e) {
             Slog.e(TAG, "Priority update failed", e);
             throw e;
@@ -276,12 +309,32 @@ public class HealthDataCategoryPriorityHelper {
         try {
             TransactionManager.getInitialisedInstance().delete(request);
             getHealthDataCategoryToAppIdPriorityMap().remove(dataCategory);
+            invalidatePrioritySnapshots();
         } catch (Exception e) {
             Slog.e(TAG, "Delete from priority DB failed: ", e);
             throw e;
         }
     }
 
+    private synchronized AppIdPrioritySnapshot buildAppIdPrioritySnapshot(
+            @HealthDataCategory.Type int type) {
+        AppIdPrioritySnapshot snapshot = mPrioritySnapshots.get(type);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        snapshot = new AppIdPrioritySnapshot(getAppIdPriorityOrder(type), mPriorityVersion);
+        Map<Integer, AppIdPrioritySnapshot> prioritySnapshots = new ArrayMap<>(mPrioritySnapshots);
+        prioritySnapshots.put(type, snapshot);
+        mPrioritySnapshots = prioritySnapshots;
+        return snapshot;
+    }
+
+    private synchronized void invalidatePrioritySnapshots() {
+        mPriorityVersion++;
+        mPrioritySnapshots = Collections.emptyMap();
+    }
+
     private ContentValues getContentValuesFor(
             @HealthDataCategory.Type int dataCategory, List<Long> priorityList) {
         ContentValues contentValues = new ContentValues();
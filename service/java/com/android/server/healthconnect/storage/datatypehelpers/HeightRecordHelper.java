@@ -73,6 +73,11 @@ public final class HeightRecordHelper extends InstantRecordHelper<HeightRecordIn
         return HEIGHT_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return HEIGHT_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         List<String> columnNames;
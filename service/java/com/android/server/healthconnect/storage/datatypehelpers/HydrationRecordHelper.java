@@ -67,6 +67,11 @@ public final class HydrationRecordHelper extends IntervalRecordHelper<HydrationR
         return HYDRATION_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return VOLUME_COLUMN_NAME;
+    }
+
     @Override
     void populateSpecificRecordValue(
             @NonNull Cursor cursor, @NonNull HydrationRecordInternal hydrationRecord) {
@@ -89,6 +89,7 @@ public abstract class IntervalRecordHelper<T extends IntervalRecordInternal<?>>
 
     @Override
     public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+        super.onUpgrade(db, oldVersion, newVersion);
         try {
             if (oldVersion < DB_VERSION_GENERATED_LOCAL_TIME) {
                 db.execSQL(
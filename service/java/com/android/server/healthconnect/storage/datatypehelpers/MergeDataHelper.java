@@ -26,110 +26,85 @@ import static com.android.server.healthconnect.storage.datatypehelpers.RecordHel
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.LAST_MODIFIED_TIME_COLUMN_NAME;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.database.Cursor;
 import android.util.Pair;
 
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
-import com.android.server.healthconnect.storage.utils.TimeUtils;
 
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.TreeSet;
+import java.util.PriorityQueue;
 
 /**
  * A helper class to merge records from multiple apps with overlapping time interval based on app
  * priority for the record type.
  *
+ * <p>The records of the cursor must be sorted by start time. All the target intervals are merged
+ * in a single forward pass over the cursor.
+ *
  * @hide
  */
 public final class MergeDataHelper {
-    /** Class to hold cursor entry for the Tree buffer window */
-    public static final class RecordData {
-        private final Instant mStartTime;
-        private final Instant mEndTime;
-        private final long mAppId;
+    /** Class to hold a cursor entry which overlaps the merged time range. */
+    private static final class RecordData {
+        private final long mStartTime;
+        private final long mEndTime;
+        private final int mPriority;
         private final long mLastModifiedTime;
         private final double mValue;
 
-        public Instant getStartTime() {
-            return mStartTime;
-        }
-
-        public Instant getEndTime() {
-            return mEndTime;
-        }
-
-        public long getAppId() {
-            return mAppId;
-        }
-
-        public double getValue() {
-            return mValue;
-        }
-
-        public long getLastModifiedTime() {
-            return mLastModifiedTime;
-        }
-
         private RecordData(
-                Instant startTime,
-                Instant endTime,
-                long appId,
-                long lastModifiedTime,
-                double value) {
+                long startTime, long endTime, int priority, long lastModifiedTime, double value) {
             mStartTime = startTime;
             mEndTime = endTime;
-            mAppId = appId;
+            mPriority = priority;
             mLastModifiedTime = lastModifiedTime;
             mValue = value;
         }
+
+        /** Returns the value of the record for the part of it between startTime and endTime. */
+        private double getValue(long startTime, long endTime) {
+            return mValue * (endTime - startTime) / (mEndTime - mStartTime);
+        }
     }
 
-    private final Comparator<RecordData> mRecordDataComparator;
-    private TreeSet<RecordData> mBufferWindow;
-    private final List<RecordData> mRecordDataList = new ArrayList<>();
+    private final PriorityQueue<RecordData> mActiveRecords =
+            new PriorityQueue<>(MergeDataHelper::compareByPriority);
     private final Cursor mCursor;
-    private final List<Long> mReversedPriorityList;
-    private Instant mStartTime;
-    private Instant mEndTime;
+    private final AppIdPrioritySnapshot mPrioritySnapshot;
     private final String mColumnNameToMerge;
     private final Class<?> mValueColumnType;
-
     private final boolean mUseLocalTime;
 
+    private long[] mIntervalStartTimes = new long[0];
+    private long[] mIntervalEndTimes = new long[0];
+    private int mIntervalIndex;
+    private double[] mTotals = new double[0];
+    private List<List<Pair<Long, Long>>> mEmptyIntervals = new ArrayList<>();
+
     public MergeDataHelper(
             @NonNull Cursor cursor,
-            @NonNull List<Long> priorityList,
+            @NonNull AppIdPrioritySnapshot prioritySnapshot,
             @NonNull String columnNameToMerge,
             @NonNull Class<?> valueColumnType,
             boolean useLocalTime) {
         Objects.requireNonNull(cursor);
-        Objects.requireNonNull(priorityList);
+        Objects.requireNonNull(prioritySnapshot);
         Objects.requireNonNull(columnNameToMerge);
         Objects.requireNonNull(valueColumnType);
         mCursor = cursor;
-        // In priority list, the first element has the highest priority. To make it easier to
-        // understand and code, reverse the list and use index as data points' priorities
-        mReversedPriorityList = new ArrayList<>(priorityList);
-        Collections.reverse(mReversedPriorityList);
+        mPrioritySnapshot = prioritySnapshot;
         mColumnNameToMerge = columnNameToMerge;
         mValueColumnType = valueColumnType;
         mUseLocalTime = useLocalTime;
-        mRecordDataComparator =
-                Comparator.comparing(RecordData::getStartTime)
-                        .thenComparing((a, b) -> compare(b, a));
-        mBufferWindow = new TreeSet<>(mRecordDataComparator);
     }
 
     /**
-     * Returns the aggregate sum for the records by iterating the cursor to form a buffer window by
-     * eliminating overlapping records between the interval based on App priority
+     * Returns the aggregate sum of each interval, by iterating the cursor once and eliminating
+     * overlapping records based on App priority. The intervals must be sorted and must not overlap.
      *
      * <p>Example: App1 > App2 > App3 Before:App1 : T1-T2 -> value1, App2 : T1-T3 -> value2 , App3 :
      * T2-T4 -> value3
@@ -139,243 +114,135 @@ public final class MergeDataHelper {
      * <p>App1 : T1-T2 -> value1, App2 : T2-T3 -> value2*(T3-T2)/(T3-T1), App3 : T3-T4 ->
      * value3*(T4-T3)/(T4-T2)
      */
-    public double readCursor(long startTime, long endTime) {
-        mStartTime = Instant.ofEpochMilli(startTime);
-        mEndTime = Instant.ofEpochMilli(endTime);
-        mRecordDataList.clear();
-        mBufferWindow.clear();
+    @NonNull
+    public double[] readCursor(@NonNull List<Pair<Long, Long>> intervals) {
+        Objects.requireNonNull(intervals);
+        initIntervals(intervals);
+        mActiveRecords.clear();
+        if (intervals.isEmpty()) {
+            return mTotals;
+        }
+
+        long rangeStartTime = mIntervalStartTimes[0];
+        long rangeEndTime = mIntervalEndTimes[mIntervalEndTimes.length - 1];
         mCursor.moveToPosition(-1);
-        while (true) {
-            if (!mBufferWindow.isEmpty()) {
-                mRecordDataList.add(mBufferWindow.pollFirst());
+        RecordData nextRecord = readNextRecord(rangeStartTime, rangeEndTime);
+        long currentTime = rangeStartTime;
+        while (currentTime < rangeEndTime) {
+            while (nextRecord != null && nextRecord.mStartTime <= currentTime) {
+                mActiveRecords.add(nextRecord);
+                nextRecord = readNextRecord(rangeStartTime, rangeEndTime);
             }
-            // Fill window with any raw data that overlaps with the first element of the
-            // bufferWindow, in other words until window.first.end < window.last.start.
-            while ((mBufferWindow.size() < 2
-                            || mBufferWindow
-                                    .last()
-                                    .getStartTime()
-                                    .isBefore(mBufferWindow.first().getEndTime()))
-                    && mCursor.moveToNext()) {
-                if (cursorOutOfRange()) {
-                    continue;
-                }
-                RecordData recordData = getRecordData(mCursor);
-                if (recordData != null) {
-                    mBufferWindow.add(recordData);
-                }
+            // Records below the head are dropped lazily, once they reach the head.
+            while (!mActiveRecords.isEmpty() && mActiveRecords.peek().mEndTime <= currentTime) {
+                mActiveRecords.poll();
             }
 
-            // End of the cursor and there is no data to process so exit
-            if (mBufferWindow.isEmpty()) {
-                break;
+            // The highest priority record is taken until it ends or another record starts.
+            RecordData winner = mActiveRecords.peek();
+            long segmentEndTime =
+                    nextRecord == null
+                            ? rangeEndTime
+                            : Math.min(nextRecord.mStartTime, rangeEndTime);
+            if (winner != null) {
+                segmentEndTime = Math.min(segmentEndTime, winner.mEndTime);
             }
-            // Trim window so window.first.end <= window.second.start.
-            mBufferWindow = eliminateEarliestRecordOverlaps(mBufferWindow);
+            addSegment(currentTime, segmentEndTime, winner);
+            currentTime = segmentEndTime;
         }
-        return getTotal();
-    }
-
-    private boolean cursorOutOfRange() {
-        long cursorStartTime = StorageUtils.getCursorLong(mCursor, getStartTimeColumnName());
-        long cursorEndTime = StorageUtils.getCursorLong(mCursor, getEndTimeColumnName());
-        return (cursorStartTime < mStartTime.toEpochMilli()
-                        && cursorEndTime <= mStartTime.toEpochMilli())
-                || (cursorStartTime > mEndTime.toEpochMilli()
-                        && cursorEndTime > mEndTime.toEpochMilli());
-    }
-
-    private String getStartTimeColumnName() {
-        return mUseLocalTime ? LOCAL_DATE_TIME_START_TIME_COLUMN_NAME : START_TIME_COLUMN_NAME;
+        return mTotals;
     }
 
-    private String getEndTimeColumnName() {
-        return mUseLocalTime ? LOCAL_DATE_TIME_END_TIME_COLUMN_NAME : END_TIME_COLUMN_NAME;
+    /**
+     * Returns, for each interval of the last {@link #readCursor} call, the list of empty intervals
+     * where there are gaps without any record data in the final merge used to calculate aggregate.
+     */
+    @NonNull
+    public List<List<Pair<Long, Long>>> getEmptyIntervals() {
+        return mEmptyIntervals;
     }
 
-    /** Returns sum of the values from Buffer window */
-    private double getTotal() {
-        double sum = 0;
-        for (RecordData item : mRecordDataList) {
-            sum += item.getValue();
+    private void initIntervals(@NonNull List<Pair<Long, Long>> intervals) {
+        int size = intervals.size();
+        mIntervalStartTimes = new long[size];
+        mIntervalEndTimes = new long[size];
+        mIntervalIndex = 0;
+        mTotals = new double[size];
+        mEmptyIntervals = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            mIntervalStartTimes[i] = intervals.get(i).first;
+            mIntervalEndTimes[i] = intervals.get(i).second;
+            if (mIntervalStartTimes[i] > mIntervalEndTimes[i]
+                    || (i > 0 && mIntervalStartTimes[i] < mIntervalEndTimes[i - 1])) {
+                throw new IllegalArgumentException(
+                        "Intervals must be sorted and must not overlap: " + intervals);
+            }
+            mEmptyIntervals.add(new ArrayList<>());
         }
-        return sum;
     }
 
     /**
-     * Returns list of empty intervals where there are gaps without any record data in the final
-     * merge used to calculate aggregate
+     * Adds the part of {@code record} between startTime and endTime to the intervals it overlaps,
+     * or records it as an empty interval if {@code record} is null.
      */
-    public List<Pair<Instant, Instant>> getEmptyIntervals(Instant startTime, Instant endTime) {
-        List<Pair<Instant, Instant>> emptyIntervals = new ArrayList<>();
-        if (mRecordDataList.size() == 0) {
-            if (!startTime.equals(endTime)) {
-                emptyIntervals.add(new Pair<>(startTime, endTime));
-            }
-            return emptyIntervals;
-        }
-
-        if (startTime.isBefore(mRecordDataList.get(0).getStartTime())) {
-            emptyIntervals.add(new Pair<>(startTime, mRecordDataList.get(0).getStartTime()));
+    private void addSegment(long startTime, long endTime, @Nullable RecordData record) {
+        while (mIntervalIndex < mIntervalEndTimes.length
+                && mIntervalEndTimes[mIntervalIndex] <= startTime) {
+            mIntervalIndex++;
         }
-
-        for (int i = 0; i < mRecordDataList.size() - 1; i++) {
-            Instant currentEnd = mRecordDataList.get(i).getEndTime();
-            Instant nextStart = mRecordDataList.get(i + 1).getStartTime();
-            if (nextStart.isAfter(currentEnd)) {
-                emptyIntervals.add(new Pair<>(currentEnd, nextStart));
+        for (int i = mIntervalIndex;
+                i < mIntervalStartTimes.length && mIntervalStartTimes[i] < endTime;
+                i++) {
+            long overlapStartTime = Math.max(startTime, mIntervalStartTimes[i]);
+            long overlapEndTime = Math.min(endTime, mIntervalEndTimes[i]);
+            if (overlapEndTime <= overlapStartTime) {
+                continue;
             }
-        }
-
-        if (endTime.isAfter(mRecordDataList.get(mRecordDataList.size() - 1).getEndTime())) {
-            emptyIntervals.add(
-                    new Pair<>(
-                            mRecordDataList.get(mRecordDataList.size() - 1).getEndTime(), endTime));
-        }
-
-        return emptyIntervals;
-    }
-
-    private TreeSet<RecordData> eliminateEarliestRecordOverlaps(TreeSet<RecordData> bufferWindow) {
-        RecordData firstBufferData = bufferWindow.pollFirst();
-        if (firstBufferData == null) {
-            return null;
-        }
-        TreeSet<RecordData> newBuffer = new TreeSet<>(mRecordDataComparator);
-        Iterator<RecordData> bufferIterator = bufferWindow.iterator();
-        // Iterate until a higher priority data trims firstBufferData or bufferIterator ends.
-        while (bufferIterator.hasNext()) {
-            RecordData bufferData = bufferIterator.next();
-            // BufferData has lower priority.
-            if (compare(firstBufferData, bufferData) > 0) {
-                if (bufferData.getEndTime().isAfter(firstBufferData.getEndTime())) {
-                    RecordData trimmed =
-                            trimRecordData(
-                                    bufferData,
-                                    TimeUtils.latest(
-                                            firstBufferData.getEndTime(),
-                                            bufferData.getStartTime()),
-                                    bufferData.getEndTime());
-                    if (trimmed != null) {
-                        newBuffer.add(trimmed);
-                    }
-                }
-            } else { // BufferData has higher priority.
-                // The comparator guarantees that firstBufferData is never fully trimmed by
-                // bufferData.
-                newBuffer.add(bufferData);
-                if (firstBufferData.getEndTime().isAfter(bufferData.getEndTime())) {
-                    RecordData trimmed =
-                            trimRecordData(
-                                    firstBufferData,
-                                    bufferData.getEndTime(),
-                                    firstBufferData.getEndTime());
-                    if (trimmed != null) {
-                        newBuffer.add(trimmed);
-                    }
-                }
-                firstBufferData =
-                        trimRecordData(
-                                firstBufferData,
-                                firstBufferData.getStartTime(),
-                                TimeUtils.earliest(
-                                        firstBufferData.getEndTime(), bufferData.getStartTime()));
-                break;
+            if (record != null) {
+                mTotals[i] += record.getValue(overlapStartTime, overlapEndTime);
+            } else {
+                addEmptyInterval(mEmptyIntervals.get(i), overlapStartTime, overlapEndTime);
             }
         }
-        if (firstBufferData != null) {
-            newBuffer.add(firstBufferData);
-        }
-
-        // Put all remaining points into the new buffer window for the next iteration.
-        addAll(newBuffer, bufferIterator);
-        return newBuffer;
     }
 
-    /**
-     * Adds all elements in {@code iterator} to {@code collection}. The iterator will be left
-     * exhausted: its {@code hasNext()} method will return {@code false}.
-     */
-    @SuppressWarnings("ExtendsObject")
-    private static <T extends Object> void addAll(
-            @NonNull Collection<T> addTo, @NonNull Iterator<? extends T> iterator) {
-        Objects.requireNonNull(addTo);
-        Objects.requireNonNull(iterator);
-        while (iterator.hasNext()) {
-            addTo.add(iterator.next());
+    private static void addEmptyInterval(
+            @NonNull List<Pair<Long, Long>> emptyIntervals, long startTime, long endTime) {
+        int lastIndex = emptyIntervals.size() - 1;
+        if (lastIndex >= 0 && emptyIntervals.get(lastIndex).second == startTime) {
+            emptyIntervals.set(
+                    lastIndex, new Pair<>(emptyIntervals.get(lastIndex).first, endTime));
+        } else {
+            emptyIntervals.add(new Pair<>(startTime, endTime));
         }
     }
 
-    private RecordData getRecordData(Cursor cursor) {
-        if (cursor != null) {
-            double factor = 1;
-            Instant startTime =
-                    Instant.ofEpochMilli(
-                            StorageUtils.getCursorLong(cursor, getStartTimeColumnName()));
-            Instant endTime =
-                    Instant.ofEpochMilli(
-                            StorageUtils.getCursorLong(cursor, getEndTimeColumnName()));
-            Instant currentStartTime = TimeUtils.latest(startTime, mStartTime);
-            Instant currentEndTime = TimeUtils.earliest(endTime, mEndTime);
-            double aggregateData = getDataToAggregate(cursor);
-            if (currentStartTime.equals(mStartTime) || currentEndTime.equals(mEndTime)) {
-                // If either startTime or endTime of current cursor was outside the range of
-                // current group, then calculate factor of value for the time range that is within
-                // the group.
-                factor =
-                        (double) TimeUtils.getDurationInMillis(currentStartTime, currentEndTime)
-                                / TimeUtils.getDurationInMillis(startTime, endTime);
-                aggregateData *= factor;
-            }
-
-            if (!currentEndTime.isAfter(currentStartTime)) {
-                return null;
+    /** Returns the next record of the cursor which overlaps the range, or null at the end. */
+    @Nullable
+    private RecordData readNextRecord(long rangeStartTime, long rangeEndTime) {
+        while (mCursor.moveToNext()) {
+            long startTime = StorageUtils.getCursorLong(mCursor, getStartTimeColumnName());
+            long endTime = StorageUtils.getCursorLong(mCursor, getEndTimeColumnName());
+            if (endTime <= startTime || endTime <= rangeStartTime || startTime >= rangeEndTime) {
+                continue;
             }
             return new RecordData(
-                    currentStartTime,
-                    currentEndTime,
-                    StorageUtils.getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME),
-                    StorageUtils.getCursorLong(cursor, LAST_MODIFIED_TIME_COLUMN_NAME),
-                    aggregateData);
+                    startTime,
+                    endTime,
+                    mPrioritySnapshot.getPriority(
+                            StorageUtils.getCursorLong(mCursor, APP_INFO_ID_COLUMN_NAME)),
+                    StorageUtils.getCursorLong(mCursor, LAST_MODIFIED_TIME_COLUMN_NAME),
+                    getDataToAggregate(mCursor));
         }
         return null;
     }
 
-    /**
-     * Trims an input record if needed for the overlapping time interval and returns a trimmed
-     * non-overlapping record having updated interval between startTime and endTime. It also updates
-     * the data column value based on a multiplying factor calculated for the duration of
-     * non-overlapping time interval. This data will be added to form a new buffer window.
-     */
-    private RecordData trimRecordData(RecordData data, Instant startTime, Instant endTime) {
-        if (startTime.isAfter(data.getEndTime())) {
-            // throw new IllegalArgumentException("startTime must be before data.endTime to trim.");
-            return null;
-        }
-        if (!endTime.isAfter(startTime)) {
-            // throw new IllegalArgumentException("startTime must be before endTime to trim.");
-            return null;
-        }
-        if (endTime.isBefore(data.getStartTime())) {
-            // throw new IllegalArgumentException("endTime must be after data.startTime to trim.");
-            return null;
-        }
-        startTime = startTime.isBefore(data.getStartTime()) ? data.getStartTime() : startTime;
-        endTime = endTime.isAfter(data.getEndTime()) ? data.getEndTime() : endTime;
-        double factor =
-                (double) TimeUtils.getDurationInMillis(startTime, endTime)
-                        / getDurationInMillis(data);
-
-        if (!endTime.isAfter(startTime)) {
-            return null;
-        }
+    private String getStartTimeColumnName() {
+        return mUseLocalTime ? LOCAL_DATE_TIME_START_TIME_COLUMN_NAME : START_TIME_COLUMN_NAME;
+    }
 
-        return new RecordData(
-                startTime,
-                endTime,
-                data.getAppId(),
-                data.getLastModifiedTime(),
-                data.getValue() * factor);
+    private String getEndTimeColumnName() {
+        return mUseLocalTime ? LOCAL_DATE_TIME_END_TIME_COLUMN_NAME : END_TIME_COLUMN_NAME;
     }
 
     private double getDataToAggregate(Cursor cursor) {
@@ -387,20 +254,12 @@ public final class MergeDataHelper {
         return DEFAULT_DOUBLE;
     }
 
-    private int compare(RecordData data1, RecordData data2) {
-
-        int priority1 = mReversedPriorityList.indexOf(data1.getAppId());
-        int priority2 = mReversedPriorityList.indexOf(data2.getAppId());
-
-        return (priority1 != priority2) ? (priority1 - priority2) : getRecentUpdated(data1, data2);
-    }
-
-    private int getRecentUpdated(RecordData data1, RecordData data2) {
+    /** Orders records from the highest to the lowest priority. */
+    private static int compareByPriority(RecordData data1, RecordData data2) {
+        if (data1.mPriority != data2.mPriority) {
+            return Integer.compare(data2.mPriority, data1.mPriority);
+        }
         // data1 and data2 are from the same app, or they are both absent from priority list
-        return data1.getLastModifiedTime() > data2.getLastModifiedTime() ? 1 : -1;
-    }
-
-    private static long getDurationInMillis(RecordData data) {
-        return TimeUtils.getDurationInMillis(data.getStartTime(), data.getEndTime());
+        return Long.compare(data2.mLastModifiedTime, data1.mLastModifiedTime);
     }
 }
@@ -19,7 +19,11 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 import static android.health.connect.Constants.DEFAULT_INT;
 import static android.health.connect.Constants.DEFAULT_LONG;
 import static android.health.connect.Constants.MAXIMUM_PAGE_SIZE;
+import static android.health.connect.ReadRecordsRequestUsingFilters.PROJECTION_END_TIME;
+import static android.health.connect.ReadRecordsRequestUsingFilters.PROJECTION_START_TIME;
+import static android.health.connect.ReadRecordsRequestUsingFilters.PROJECTION_VALUE;
 
+import static com.android.server.healthconnect.storage.HealthConnectDatabase.DB_VERSION_APP_DEVICE_START_TIME_INDEX;
 import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.END_TIME_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.request.ReadTransactionRequest.TYPE_NOT_PRESENT_PACKAGE_NAME;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_UNIQUE_NON_NULL;
@@ -37,9 +41,11 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.suppor
 import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.AggregateResult;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
+import android.health.connect.aidl.RecordColumnsParcel;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
@@ -52,11 +58,13 @@ import androidx.annotation.Nullable;
 
 import com.android.server.healthconnect.storage.request.AggregateParams;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
+import com.android.server.healthconnect.storage.request.CreateIndexRequest;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
@@ -84,8 +92,8 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     public static final String CLIENT_RECORD_ID_COLUMN_NAME = "client_record_id";
     public static final String APP_INFO_ID_COLUMN_NAME = "app_info_id";
     public static final String LAST_MODIFIED_TIME_COLUMN_NAME = "last_modified_time";
+    public static final String DEVICE_INFO_ID_COLUMN_NAME = "device_info_id";
     private static final String CLIENT_RECORD_VERSION_COLUMN_NAME = "client_record_version";
-    private static final String DEVICE_INFO_ID_COLUMN_NAME = "device_info_id";
     private static final String RECORDING_METHOD_COLUMN_NAME = "recording_method";
     private static final String DEDUPE_HASH_COLUMN_NAME = "dedupe_hash";
     private static final List<Pair<String, Integer>> UNIQUE_COLUMNS_INFO =
@@ -120,7 +128,16 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
      * or tables.
      */
     public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
-        // empty
+        if (oldVersion < DB_VERSION_APP_DEVICE_START_TIME_INDEX) {
+            try {
+                db.execSQL(getAppDeviceStartTimeIndexRequest().getCommand());
+            } catch (SQLException sqlException) {
+                // Ignore this means the index exists. This is possible via module rollback followed
+                // by an upgrade
+            }
+            // The app foreign key is served by the new index, which starts with its column.
+            getCreateTableRequest().getDropCoveredForeignKeyIndexStatements().forEach(db::execSQL);
+        }
     }
 
     /**
@@ -187,6 +204,15 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         return null;
     }
 
+    /**
+     * Returns the tables read to compute the aggregations of this record type, including the
+     * tables of the other record types used by {@link #deriveAggregate}.
+     */
+    @NonNull
+    public List<String> getAggregationSourceTableNames() {
+        return Collections.singletonList(getMainTableName());
+    }
+
     /**
      * Returns a requests representing the tables that should be created corresponding to this
      * helper
@@ -202,10 +228,28 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                         AppInfoHelper.TABLE_NAME,
                         Collections.singletonList(APP_INFO_ID_COLUMN_NAME),
                         Collections.singletonList(PRIMARY_COLUMN_NAME))
+                .addIndex(getAppDeviceStartTimeIndexRequest())
                 .setChildTableRequests(getChildTableCreateRequests())
                 .setGeneratedColumnInfo(getGeneratedColumnInfo());
     }
 
+    /**
+     * Returns the index used to find the latest record of an app and device, e.g. before
+     * appending time ordered records. It also serves the app foreign key, which is not indexed
+     * separately, so that the number of indexes updated by each write doesn't change.
+     */
+    @NonNull
+    private CreateIndexRequest getAppDeviceStartTimeIndexRequest() {
+        return new CreateIndexRequest(
+                getMainTableName(),
+                "idx_" + getMainTableName() + "_app_device_start_time",
+                /* isUnique= */ false,
+                List.of(
+                        APP_INFO_ID_COLUMN_NAME,
+                        DEVICE_INFO_ID_COLUMN_NAME,
+                        getStartTimeColumnName()));
+    }
+
     public UpsertTableRequest getUpsertTableRequest(RecordInternal<?> recordInternal) {
         return getUpsertTableRequest(recordInternal, null);
     }
@@ -312,12 +356,64 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                                 request, packageName, enforceSelfRead, startDateAccess))
                 .setOrderBy(getOrderByClause(request))
                 .setLimit(getLimitSize(request))
+                .setOffset(getPageOffset(request))
                 .setRecordHelper(this)
                 .setExtraReadRequests(
                         getExtraDataReadRequests(
                                 request, packageName, startDateAccess, extraPermsState));
     }
 
+    /**
+     * Returns ReadTableRequest reading only the columns of the projection of {@code request}, from
+     * the main table only. The records are filtered and ordered as with {@link
+     * #getReadTableRequest}.
+     *
+     * @throws IllegalArgumentException if the projection has a value and records of this type
+     *     have none.
+     */
+    public ReadTableRequest getReadColumnsTableRequest(
+            ReadRecordsRequestParcel request,
+            String packageName,
+            boolean enforceSelfRead,
+            long startDateAccess) {
+        // The start time is always read, it decides the position of the next page.
+        List<String> columnNames = new ArrayList<>(List.of(getStartTimeColumnName()));
+        if ((request.getProjection() & PROJECTION_END_TIME) != 0
+                && !columnNames.contains(getProjectionEndTimeColumnName())) {
+            columnNames.add(getProjectionEndTimeColumnName());
+        }
+        if ((request.getProjection() & PROJECTION_VALUE) != 0) {
+            if (getProjectionValueColumnName() == null) {
+                throw new IllegalArgumentException(
+                        "Records of type " + mRecordIdentifier + " have no value to project");
+            }
+            columnNames.add(getProjectionValueColumnName());
+        }
+        return new ReadTableRequest(getMainTableName())
+                .setColumnNames(columnNames)
+                .setWhereClause(
+                        getReadTableWhereClause(
+                                request, packageName, enforceSelfRead, startDateAccess))
+                .setOrderBy(getOrderByClause(request))
+                .setLimit(getLimitSize(request))
+                .setOffset(getPageOffset(request))
+                .setRecordHelper(this);
+    }
+
+    /**
+     * Returns the column read as value by projections of {@link ReadRecordsRequestParcel}, or null
+     * if records of this type have no single value.
+     */
+    @Nullable
+    public String getProjectionValueColumnName() {
+        return null;
+    }
+
+    /** Returns the column projected as end time, the time of instant records. */
+    private String getProjectionEndTimeColumnName() {
+        return getEndTimeColumnName() == null ? getStartTimeColumnName() : getEndTimeColumnName();
+    }
+
     /**
      * Logs metrics specific to a record type's insertion/update.
      *
@@ -340,6 +436,16 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         // Do nothing, implement in record specific helpers
     }
 
+    /**
+     * Logs metrics specific to a record type's read of projected columns.
+     *
+     * @param numberOfRecords Number of records being read
+     * @param packageName Caller package name
+     */
+    public void logProjectedReadMetrics(int numberOfRecords, @NonNull String packageName) {
+        // Do nothing, implement in record specific helpers
+    }
+
     /** Returns ReadTableRequest for {@code uuids} */
     public ReadTableRequest getReadTableRequest(
             String packageName,
@@ -395,112 +501,140 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     }
 
     /** Returns List of Internal records from the cursor */
-    @SuppressWarnings("unchecked")
     public List<RecordInternal<?>> getInternalRecords(Cursor cursor, int requestSize) {
         return getInternalRecords(cursor, requestSize, null);
     }
 
     /** Returns List of Internal records from the cursor */
-    @SuppressWarnings("unchecked")
     public List<RecordInternal<?>> getInternalRecords(
             Cursor cursor, int requestSize, Map<Long, String> packageNamesByAppIds) {
         Trace.traceBegin(TRACE_TAG_RECORD_HELPER, TAG_RECORD_HELPER.concat("GetInternalRecords"));
         List<RecordInternal<?>> recordInternalList = new ArrayList<>();
+        while (recordInternalList.size() < requestSize && cursor.moveToNext()) {
+            recordInternalList.add(getInternalRecord(cursor, packageNamesByAppIds));
+        }
+        Trace.traceEnd(TRACE_TAG_RECORD_HELPER);
+        return recordInternalList;
+    }
 
-        int count = 0;
-        long prevStartTime = DEFAULT_LONG;
-        long currentStartTime = DEFAULT_LONG;
-        int tempCount = 0;
-        List<RecordInternal<?>> tempList = new ArrayList<>();
+    /**
+     * Returns the next page of internal records from the cursor, and the position of the first
+     * record after the page as next page token, or {@code DEFAULT_LONG} if there is no such record.
+     *
+     * <p>The cursor is read with {@link ReadTableRequest#setLimit} of {@code requestSize} and
+     * {@link ReadTableRequest#setOffset} of {@code offset}, so the page is cut at exactly {@code
+     * requestSize} records, and the row after them is the first record of the next page. Its
+     * position counts the records with its start time before it, including the {@code offset}
+     * records before the page if the whole page has that start time.
+     *
+     * @see PageTokenUtils#getPosition
+     */
+    public Pair<List<RecordInternal<?>>, Long> getNextInternalRecordsPageAndToken(
+            Cursor cursor, int requestSize, int offset, Map<Long, String> packageNamesByAppIds) {
+        Trace.traceBegin(TRACE_TAG_RECORD_HELPER, TAG_RECORD_HELPER.concat("GetInternalRecords"));
+        List<RecordInternal<?>> recordInternalList = new ArrayList<>();
+        NextPagePosition nextPagePosition = new NextPagePosition(offset);
         while (cursor.moveToNext()) {
-            try {
-                T record =
-                        (T)
-                                RecordMapper.getInstance()
-                                        .getRecordIdToInternalRecordClassMap()
-                                        .get(getRecordIdentifier())
-                                        .getConstructor()
-                                        .newInstance();
-                record.setUuid(getCursorUUID(cursor, UUID_COLUMN_NAME));
-                record.setLastModifiedTime(getCursorLong(cursor, LAST_MODIFIED_TIME_COLUMN_NAME));
-                record.setClientRecordId(getCursorString(cursor, CLIENT_RECORD_ID_COLUMN_NAME));
-                record.setClientRecordVersion(
-                        getCursorLong(cursor, CLIENT_RECORD_VERSION_COLUMN_NAME));
-                record.setRecordingMethod(getCursorInt(cursor, RECORDING_METHOD_COLUMN_NAME));
-                record.setRowId(getCursorInt(cursor, PRIMARY_COLUMN_NAME));
-                long deviceInfoId = getCursorLong(cursor, DEVICE_INFO_ID_COLUMN_NAME);
-                DeviceInfoHelper.getInstance().populateRecordWithValue(deviceInfoId, record);
-                long appInfoId = getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME);
-                AppInfoHelper.getInstance()
-                        .populateRecordWithValue(appInfoId, record, packageNamesByAppIds);
-                populateRecordValue(cursor, record);
-
-                prevStartTime = currentStartTime;
-                currentStartTime = getCursorLong(cursor, getStartTimeColumnName());
-                if (prevStartTime == DEFAULT_LONG || prevStartTime == currentStartTime) {
-                    // Fetch and add records with same startTime to tempList
-                    tempList.add(record);
-                    tempCount++;
-                } else {
-                    if (count == 0) {
-                        // items in tempList having startTime same as the first record from cursor
-                        // is added to final list.
-                        // This makes sure that we return at least 1 record if the count of
-                        // records with startTime same as second record exceeds requestSize.
-                        recordInternalList.addAll(tempList);
-                        count = tempCount;
-                        tempList.clear();
-                        tempCount = 0;
-                        if (count >= requestSize) {
-                            // startTime of current record should be fetched for pageToken
-                            cursor.moveToPrevious();
-                            break;
-                        }
-                        tempList.add(record);
-                        tempCount = 1;
-                    } else if (tempCount + count <= requestSize) {
-                        // Makes sure after adding records in tempList with same starTime
-                        // the count does not exceed requestSize
-                        recordInternalList.addAll(tempList);
-                        count += tempCount;
-                        tempList.clear();
-                        tempCount = 0;
-                        if (count >= requestSize) {
-                            // After adding records if count is equal to requestSize then startTime
-                            // of current fetched record should be the next page token.
-                            cursor.moveToPrevious();
-                            break;
-                        }
-                        tempList.add(record);
-                        tempCount = 1;
-                    } else {
-                        // If adding records in tempList makes count > requestSize, then ignore temp
-                        // list and startTime of records in temp list should be the next page token.
-                        tempList.clear();
-                        int lastposition = cursor.getPosition();
-                        cursor.moveToPosition(lastposition - 2);
-                        break;
-                    }
-                }
-            } catch (InstantiationException
-                    | IllegalAccessException
-                    | NoSuchMethodException
-                    | InvocationTargetException exception) {
-                throw new IllegalArgumentException(exception);
+            long startTime = getCursorLong(cursor, getStartTimeColumnName());
+            if (recordInternalList.size() == requestSize) {
+                Trace.traceEnd(TRACE_TAG_RECORD_HELPER);
+                return Pair.create(recordInternalList, nextPagePosition.get(startTime));
             }
+            nextPagePosition.add(startTime);
+            recordInternalList.add(getInternalRecord(cursor, packageNamesByAppIds));
         }
-        if (!tempList.isEmpty()) {
-            if (tempCount + count <= requestSize) {
-                // If reached end of cursor while fetching records then add it to final list
-                recordInternalList.addAll(tempList);
-            } else {
-                // If reached end of cursor while fetching and adding it will exceed requestSize
-                // then ignore them,startTime of the last record will be pageToken for next read.
-                cursor.moveToPosition(cursor.getCount() - 2);
+        Trace.traceEnd(TRACE_TAG_RECORD_HELPER);
+        return Pair.create(recordInternalList, DEFAULT_LONG);
+    }
+
+    /**
+     * Returns the columns of the next page of records from a cursor of {@link
+     * #getReadColumnsTableRequest}, and the next page token. Pages end where they end with {@link
+     * #getNextInternalRecordsPageAndToken}, the rows are written to the columns as they are read.
+     */
+    public Pair<RecordColumnsParcel, Long> getNextRecordColumnsPageAndToken(
+            Cursor cursor, int requestSize, int offset, int projection) {
+        boolean readEndTimes = (projection & PROJECTION_END_TIME) != 0;
+        boolean readValues = (projection & PROJECTION_VALUE) != 0;
+        int startTimeIndex = cursor.getColumnIndexOrThrow(getStartTimeColumnName());
+        int endTimeIndex =
+                readEndTimes ? cursor.getColumnIndexOrThrow(getProjectionEndTimeColumnName()) : 0;
+        int valueIndex =
+                readValues ? cursor.getColumnIndexOrThrow(getProjectionValueColumnName()) : 0;
+        int capacity = Math.min(requestSize, cursor.getCount());
+        long[] startTimes = new long[capacity];
+        long[] endTimes = readEndTimes ? new long[capacity] : null;
+        double[] values = readValues ? new double[capacity] : null;
+        NextPagePosition nextPagePosition = new NextPagePosition(offset);
+        int pageSize = 0;
+        long nextPageToken = DEFAULT_LONG;
+        while (cursor.moveToNext()) {
+            long startTime = cursor.getLong(startTimeIndex);
+            if (pageSize == requestSize) {
+                nextPageToken = nextPagePosition.get(startTime);
+                break;
+            }
+            nextPagePosition.add(startTime);
+            startTimes[pageSize] = startTime;
+            if (readEndTimes) {
+                endTimes[pageSize] = cursor.getLong(endTimeIndex);
+            }
+            if (readValues) {
+                values[pageSize] = cursor.getDouble(valueIndex);
             }
+            pageSize++;
+        }
+
+        return Pair.create(
+                new RecordColumnsParcel(
+                        pageSize,
+                        (projection & PROJECTION_START_TIME) != 0
+                                ? Arrays.copyOf(startTimes, pageSize)
+                                : null,
+                        readEndTimes ? Arrays.copyOf(endTimes, pageSize) : null,
+                        readValues ? Arrays.copyOf(values, pageSize) : null),
+                nextPageToken);
+    }
+
+    /**
+     * Returns the size in bytes of the cursor window to read a page of {@code pageSize} records of
+     * this type with, or 0 to use the default size. Record types read with several rows per record
+     * can use a larger window, so that a page of records is read without refilling the window.
+     */
+    public long getCursorWindowSizeBytes(int pageSize) {
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getInternalRecord(Cursor cursor, Map<Long, String> packageNamesByAppIds) {
+        try {
+            T record =
+                    (T)
+                            RecordMapper.getInstance()
+                                    .getRecordIdToInternalRecordClassMap()
+                                    .get(getRecordIdentifier())
+                                    .getConstructor()
+                                    .newInstance();
+            record.setUuid(getCursorUUID(cursor, UUID_COLUMN_NAME));
+            record.setLastModifiedTime(getCursorLong(cursor, LAST_MODIFIED_TIME_COLUMN_NAME));
+            record.setClientRecordId(getCursorString(cursor, CLIENT_RECORD_ID_COLUMN_NAME));
+            record.setClientRecordVersion(getCursorLong(cursor, CLIENT_RECORD_VERSION_COLUMN_NAME));
+            record.setRecordingMethod(getCursorInt(cursor, RECORDING_METHOD_COLUMN_NAME));
+            record.setRowId(getCursorInt(cursor, PRIMARY_COLUMN_NAME));
+            long deviceInfoId = getCursorLong(cursor, DEVICE_INFO_ID_COLUMN_NAME);
+            DeviceInfoHelper.getInstance().populateRecordWithValue(deviceInfoId, record);
+            long appInfoId = getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME);
+            AppInfoHelper.getInstance()
+                    .populateRecordWithValue(appInfoId, record, packageNamesByAppIds);
+            // Moves the cursor to the last row of the record, for records read with several rows.
+            populateRecordValue(cursor, record);
+            return record;
+        } catch (InstantiationException
+                | IllegalAccessException
+                | NoSuchMethodException
+                | InvocationTargetException exception) {
+            throw new IllegalArgumentException(exception);
         }
-        Trace.traceEnd(TRACE_TAG_RECORD_HELPER);
-        return recordInternalList;
     }
 
     /** Returns is the read of this record type is enabled */
@@ -614,6 +748,14 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         }
     }
 
+    private static int getPageOffset(ReadRecordsRequestParcel request) {
+        if (request.getRecordIdFiltersParcel() != null
+                || request.getPageToken() == DEFAULT_LONG) {
+            return 0;
+        }
+        return PageTokenUtils.decodeOffset(request.getPageToken());
+    }
+
     WhereClauses getReadTableWhereClause(
             ReadRecordsRequestParcel request,
             String packageName,
@@ -637,14 +779,12 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                     new WhereClauses().addWhereInLongsClause(APP_INFO_ID_COLUMN_NAME, appIds);
 
             if (request.getPageToken() != DEFAULT_LONG) {
-                // Since pageToken passed contains detail of sort order. Actual token value for read
-                // is calculated back from the requested pageToken based on sort order.
+                long pageStartTime = PageTokenUtils.decodeStartTime(request.getPageToken());
                 if (request.isAscending()) {
                     clauses.addWhereGreaterThanOrEqualClause(
-                            getStartTimeColumnName(), request.getPageToken() / 2);
+                            getStartTimeColumnName(), pageStartTime);
                 } else {
-                    clauses.addWhereLessThanOrEqualClause(
-                            getStartTimeColumnName(), (request.getPageToken() - 1) / 2);
+                    clauses.addWhereLessThanOrEqualClause(getStartTimeColumnName(), pageStartTime);
                 }
             }
 
@@ -692,7 +832,10 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     private OrderByClause getOrderByClause(ReadRecordsRequestParcel request) {
         OrderByClause orderByClause = new OrderByClause();
         if (request.getRecordIdFiltersParcel() == null) {
-            orderByClause.addOrderByClause(getStartTimeColumnName(), request.isAscending());
+            // Records with the same start time are paged in row id order.
+            orderByClause
+                    .addOrderByClause(getStartTimeColumnName(), request.isAscending())
+                    .addOrderByClause(PRIMARY_COLUMN_NAME, request.isAscending());
         }
         return orderByClause;
     }
@@ -761,4 +904,31 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     public List<String> getRequiredExtraWritePermissions(RecordInternal<?> recordInternal) {
         return Collections.emptyList();
     }
+
+    /** Counts the last records of a page which have the same start time, to position the next. */
+    private static final class NextPagePosition {
+        private boolean mHasRecords;
+        private long mLastStartTime;
+        private int mLastStartTimeCount;
+
+        /** {@code offset} records with the start time of the first record precede the page. */
+        NextPagePosition(int offset) {
+            mLastStartTimeCount = offset;
+        }
+
+        void add(long startTime) {
+            if (mHasRecords && startTime != mLastStartTime) {
+                mLastStartTimeCount = 0;
+            }
+            mHasRecords = true;
+            mLastStartTime = startTime;
+            mLastStartTimeCount++;
+        }
+
+        /** Returns the position of the record after the page, which starts at {@code startTime}. */
+        long get(long startTime) {
+            int offset = mHasRecords && startTime == mLastStartTime ? mLastStartTimeCount : 0;
+            return PageTokenUtils.getPosition(startTime, offset);
+        }
+    }
 }
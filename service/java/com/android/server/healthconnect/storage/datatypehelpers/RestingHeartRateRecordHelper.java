@@ -75,6 +75,11 @@ public final class RestingHeartRateRecordHelper
         return RESTING_HEART_RATE_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return BEATS_PER_MINUTE_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         List<String> columnNames;
@@ -40,6 +40,13 @@ abstract class SeriesRecordHelper<
                 T extends SeriesRecordInternal<?, ?>, U extends SeriesRecordInternal.Sample>
         extends IntervalRecordHelper<T> {
     protected static final String PARENT_KEY_COLUMN_NAME = PARENT_KEY;
+    // Series records are read with one row per sample, the main table columns repeated in each.
+    // A record of a few dozen samples takes about 4 KB of window.
+    private static final long ESTIMATED_RECORD_SIZE_BYTES = 4 * 1024;
+    // The default window size of the platform, smaller windows are not worth allocating.
+    private static final long DEFAULT_CURSOR_WINDOW_SIZE_BYTES = 2 * 1024 * 1024;
+    // Larger pages refill the window rather than take more of the system server memory.
+    private static final long MAX_CURSOR_WINDOW_SIZE_BYTES = 8 * 1024 * 1024;
 
     SeriesRecordHelper(@RecordTypeIdentifier.RecordType int recordIdentifier) {
         super(recordIdentifier);
@@ -72,6 +79,13 @@ abstract class SeriesRecordHelper<
         return requests;
     }
 
+    @Override
+    public final long getCursorWindowSizeBytes(int pageSize) {
+        long windowSizeBytes =
+                Math.min(pageSize * ESTIMATED_RECORD_SIZE_BYTES, MAX_CURSOR_WINDOW_SIZE_BYTES);
+        return windowSizeBytes > DEFAULT_CURSOR_WINDOW_SIZE_BYTES ? windowSizeBytes : 0;
+    }
+
     /** Returns the INNER JOIN clause for querying from the table for series datatype */
     @Override
     final SqlJoin getJoinForReadRequest() {
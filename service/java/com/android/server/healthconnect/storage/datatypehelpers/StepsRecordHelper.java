@@ -56,6 +56,11 @@ public final class StepsRecordHelper extends IntervalRecordHelper<StepsRecordInt
         return STEPS_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return COUNT_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         switch (aggregateRequest.getAggregationTypeIdentifier()) {
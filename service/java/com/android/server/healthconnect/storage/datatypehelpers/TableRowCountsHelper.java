@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static com.android.server.healthconnect.storage.HealthConnectDatabase.DB_VERSION_TABLE_ROW_COUNTS;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NOT_NULL_UNIQUE;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.ArraySet;
+import android.util.Pair;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.request.CreateTableRequest;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A class to maintain the number of rows of the record and change log tables, so that stats can be
+ * collected without counting all the rows of these tables.
+ *
+ * <p>The counts are updated by triggers on the counted tables, in the same transaction as the
+ * insert or delete. A missing count is computed with a full count the first time it is requested,
+ * e.g. after the table was added to an existing database.
+ *
+ * @hide
+ */
+public final class TableRowCountsHelper {
+    @VisibleForTesting public static final String TABLE_NAME = "table_row_counts";
+    private static final String TABLE_NAME_COLUMN_NAME = "table_name";
+    private static final String ROW_COUNT_COLUMN_NAME = "row_count";
+    private static final String TRIGGER_PREFIX = "row_count_";
+    private static final Object sGetInstanceLock = new Object();
+
+    private static volatile TableRowCountsHelper sInstance;
+
+    private final Set<String> mCountedTables;
+
+    private TableRowCountsHelper() {
+        mCountedTables = new ArraySet<>();
+        for (RecordHelper<?> recordHelper :
+                RecordHelperProvider.getInstance().getRecordHelpers().values()) {
+            mCountedTables.add(recordHelper.getMainTableName());
+        }
+        mCountedTables.add(ChangeLogsHelper.TABLE_NAME);
+    }
+
+    /** Returns a request to create a table for this helper. */
+    @NonNull
+    public CreateTableRequest getCreateTableRequest() {
+        return new CreateTableRequest(
+                TABLE_NAME,
+                List.of(
+                        new Pair<>(PRIMARY_COLUMN_NAME, PRIMARY),
+                        new Pair<>(TABLE_NAME_COLUMN_NAME, TEXT_NOT_NULL_UNIQUE),
+                        new Pair<>(ROW_COUNT_COLUMN_NAME, INTEGER_NOT_NULL)));
+    }
+
+    /**
+     * Creates the counting triggers on a newly created database. All the counted tables are empty,
+     * so their counts start at zero.
+     */
+    public void onCreate(@NonNull SQLiteDatabase db) {
+        for (String tableName : mCountedTables) {
+            createTriggers(db, tableName);
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(TABLE_NAME_COLUMN_NAME, tableName);
+            contentValues.put(ROW_COUNT_COLUMN_NAME, 0);
+            db.insertOrThrow(TABLE_NAME, null, contentValues);
+        }
+    }
+
+    /** Upgrades the database to the latest version. */
+    public void onUpgrade(int oldVersion, int newVersion, @NonNull SQLiteDatabase db) {
+        if (oldVersion < DB_VERSION_TABLE_ROW_COUNTS) {
+            // The counts are left empty and computed lazily, so that the upgrade stays cheap.
+            HealthConnectDatabase.createTable(db, getCreateTableRequest());
+            for (String tableName : mCountedTables) {
+                createTriggers(db, tableName);
+            }
+        }
+    }
+
+    /** Returns whether the rows of {@code tableName} are counted by this helper. */
+    public boolean isCounted(@NonNull String tableName) {
+        return mCountedTables.contains(tableName);
+    }
+
+    /**
+     * Returns the number of rows in {@code tableName}, which must be a counted table.
+     *
+     * <p>Falls back to a full count of the table when its count is not known yet, and stores it.
+     */
+    public long getRowCount(@NonNull SQLiteDatabase db, @NonNull String tableName) {
+        Objects.requireNonNull(tableName);
+        Long rowCount = readRowCount(db, tableName);
+        if (rowCount != null) {
+            return rowCount;
+        }
+
+        db.beginTransaction();
+        try {
+            // Read again inside the transaction in case another thread computed it meanwhile.
+            rowCount = readRowCount(db, tableName);
+            if (rowCount == null) {
+                rowCount = DatabaseUtils.queryNumEntries(db, tableName);
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(TABLE_NAME_COLUMN_NAME, tableName);
+                contentValues.put(ROW_COUNT_COLUMN_NAME, rowCount);
+                db.insertOrThrow(TABLE_NAME, null, contentValues);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return rowCount;
+    }
+
+    /**
+     * Returns the stored number of rows in {@code tableName}, or null if it is not known yet. Only
+     * reads from {@code db}.
+     */
+    @Nullable
+    public Long readRowCount(@NonNull SQLiteDatabase db, @NonNull String tableName) {
+        try (Cursor cursor =
+                db.query(
+                        TABLE_NAME,
+                        new String[] {ROW_COUNT_COLUMN_NAME},
+                        TABLE_NAME_COLUMN_NAME + " = ?",
+                        new String[] {tableName},
+                        null,
+                        null,
+                        null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        }
+    }
+
+    private static void createTriggers(@NonNull SQLiteDatabase db, @NonNull String tableName) {
+        db.execSQL(getCreateTriggerCommand(tableName, "INSERT", "+ 1"));
+        db.execSQL(getCreateTriggerCommand(tableName, "DELETE", "- 1"));
+    }
+
+    private static String getCreateTriggerCommand(
+            @NonNull String tableName, @NonNull String event, @NonNull String delta) {
+        return "CREATE TRIGGER IF NOT EXISTS "
+                + TRIGGER_PREFIX
+                + event.toLowerCase(Locale.ROOT)
+                + "_"
+                + tableName
+                + " AFTER "
+                + event
+                + " ON "
+                + tableName
+                + " BEGIN UPDATE "
+                + TABLE_NAME
+                + " SET "
+                + ROW_COUNT_COLUMN_NAME
+                + " = "
+                + ROW_COUNT_COLUMN_NAME
+                + " "
+                + delta
+                + " WHERE "
+                + TABLE_NAME_COLUMN_NAME
+                + " = '"
+                + tableName
+                + "'; END";
+    }
+
+    /** Returns a shared instance of {@link TableRowCountsHelper}. */
+    @NonNull
+    public static TableRowCountsHelper getInstance() {
+        if (sInstance == null) {
+            synchronized (sGetInstanceLock) {
+                if (sInstance == null) {
+                    sInstance = new TableRowCountsHelper();
+                }
+            }
+        }
+
+        return sInstance;
+    }
+}
@@ -31,11 +31,11 @@ import android.health.connect.internal.datatypes.TotalCaloriesBurnedRecordIntern
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.request.AggregateParams;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 
-import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -78,6 +78,11 @@ public final class TotalCaloriesBurnedRecordHelper
         return TOTAL_CALORIES_BURNED_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return ENERGY_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         switch (aggregateRequest.getAggregationTypeIdentifier()) {
@@ -100,15 +105,14 @@ public final class TotalCaloriesBurnedRecordHelper
 
     @Override
     public double[] deriveAggregate(Cursor cursor, AggregateTableRequest request) {
-        int index = 0;
         List<Pair<Long, Long>> groupIntervals = request.getGroupSplitIntervals();
 
-        List<Long> priorityList =
-                StorageUtils.getAppIdPriorityList(RECORD_TYPE_TOTAL_CALORIES_BURNED);
+        AppIdPrioritySnapshot prioritySnapshot =
+                StorageUtils.getAppIdPrioritySnapshot(RECORD_TYPE_TOTAL_CALORIES_BURNED);
         MergeDataHelper mergeDataHelper =
                 new MergeDataHelper(
                         cursor,
-                        priorityList,
+                        prioritySnapshot,
                         ENERGY_COLUMN_NAME,
                         Double.class,
                         request.getUseLocalTime());
@@ -116,31 +120,35 @@ public final class TotalCaloriesBurnedRecordHelper
                 new DeriveTotalCaloriesBurnedHelper(
                         groupIntervals.get(0).first,
                         groupIntervals.get(groupIntervals.size() - 1).second,
-                        priorityList,
+                        prioritySnapshot,
                         request.getUseLocalTime());
-        double[] totalCaloriesBurnedArray = new double[groupIntervals.size()];
-        for (Pair<Long, Long> groupInterval : groupIntervals) {
-            long groupStartTime = groupInterval.first;
-            long groupEndTime = groupInterval.second;
-            // Based on the number of groups calculate aggregate for each group by calling
-            // MergeDataHelper by eliminate duplicate for overlapping time interval
-            double total = mergeDataHelper.readCursor(groupStartTime, groupEndTime);
-            // For only TotalCaloriesBurned aggregate request we derive data from
-            // ActiveCaloriesRecord and BasalMetabolicRateRecord for empty intervals
-            List<Pair<Instant, Instant>> emptyIntervalList =
-                    mergeDataHelper.getEmptyIntervals(
-                            Instant.ofEpochMilli(groupStartTime),
-                            Instant.ofEpochMilli(groupEndTime));
-            if (emptyIntervalList.size() > 0) {
-                total += deriveTotalCaloriesBurnedHelper.getDerivedCalories(emptyIntervalList);
-            }
-
-            totalCaloriesBurnedArray[index++] = total;
+        // Calculate aggregate for all the groups in a single pass of MergeDataHelper by
+        // eliminating duplicates for overlapping time intervals
+        double[] totalCaloriesBurnedArray = mergeDataHelper.readCursor(groupIntervals);
+        // For only TotalCaloriesBurned aggregate request we derive data from
+        // ActiveCaloriesRecord and BasalMetabolicRateRecord for empty intervals
+        double[] derivedCaloriesArray =
+                deriveTotalCaloriesBurnedHelper.getDerivedCalories(
+                        mergeDataHelper.getEmptyIntervals());
+        for (int i = 0; i < totalCaloriesBurnedArray.length; i++) {
+            totalCaloriesBurnedArray[i] += derivedCaloriesArray[i];
         }
         deriveTotalCaloriesBurnedHelper.closeCursors();
         return totalCaloriesBurnedArray;
     }
 
+    @Override
+    @NonNull
+    public List<String> getAggregationSourceTableNames() {
+        return List.of(
+                TOTAL_CALORIES_BURNED_RECORD_TABLE_NAME,
+                ActiveCaloriesBurnedRecordHelper.ACTIVE_CALORIES_BURNED_RECORD_TABLE_NAME,
+                BasalMetabolicRateRecordHelper.BASAL_METABOLIC_RATE_RECORD_TABLE_NAME,
+                LeanBodyMassRecordHelper.LEAN_BODY_MASS_RECORD_TABLE_NAME,
+                HeightRecordHelper.HEIGHT_RECORD_TABLE_NAME,
+                WeightRecordHelper.WEIGHT_RECORD_TABLE_NAME);
+    }
+
     @Override
     void populateSpecificContentValues(
             @NonNull ContentValues contentValues,
@@ -72,6 +72,11 @@ public final class WeightRecordHelper extends InstantRecordHelper<WeightRecordIn
         return WEIGHT_RECORD_TABLE_NAME;
     }
 
+    @Override
+    public String getProjectionValueColumnName() {
+        return WEIGHT_COLUMN_NAME;
+    }
+
     @Override
     AggregateParams getAggregateParams(AggregationType<?> aggregateRequest) {
         List<String> columnNames;
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers.aggregation;
+
+import android.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable priorities of the apps of one data category, indexed by app info id.
+ *
+ * <p>App info ids are row ids of the app info table, so they are small and dense enough to be used
+ * as array indices. Looking up the priority of a record is then an array access.
+ *
+ * @hide
+ */
+public final class AppIdPrioritySnapshot {
+    /** Priority of the apps which are not in the priority list. */
+    public static final int NO_PRIORITY = Integer.MIN_VALUE;
+
+    public static final AppIdPrioritySnapshot EMPTY =
+            new AppIdPrioritySnapshot(Collections.emptyList(), /* version= */ 0);
+
+    private final int[] mPriorities;
+    private final List<Long> mAppIdPriorityList;
+    private final long mVersion;
+
+    /**
+     * @param appIdPriorityList app info ids, from the highest to the lowest priority.
+     * @param version version of the priority list the snapshot was built from.
+     */
+    public AppIdPrioritySnapshot(@NonNull List<Long> appIdPriorityList, long version) {
+        mAppIdPriorityList = List.copyOf(appIdPriorityList);
+        mVersion = version;
+        long maxAppId = -1;
+        for (long appId : mAppIdPriorityList) {
+            maxAppId = Math.max(maxAppId, appId);
+        }
+        mPriorities = new int[(int) (maxAppId + 1)];
+        Arrays.fill(mPriorities, NO_PRIORITY);
+        for (int i = 0; i < mAppIdPriorityList.size(); i++) {
+            // Apps with higher priority have a higher value.
+            mPriorities[mAppIdPriorityList.get(i).intValue()] = mAppIdPriorityList.size() - i;
+        }
+    }
+
+    /** Returns the priority of the app, or {@link #NO_PRIORITY} if it isn't in the list. */
+    public int getPriority(long appId) {
+        return appId >= 0 && appId < mPriorities.length ? mPriorities[(int) appId] : NO_PRIORITY;
+    }
+
+    /** Returns the app info ids, from the highest to the lowest priority. */
+    @NonNull
+    public List<Long> getAppIdPriorityList() {
+        return mAppIdPriorityList;
+    }
+
+    /** Returns the version of the priority list this snapshot was built from. */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    @Override
+    public String toString() {
+        return mAppIdPriorityList.toString();
+    }
+}
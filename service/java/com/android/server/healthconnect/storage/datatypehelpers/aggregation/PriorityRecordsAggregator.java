@@ -48,7 +48,7 @@ public class PriorityRecordsAggregator {
     static final String TAG = "HealthPriorityRecordsAggregator";
 
     private final List<Long> mGroupSplits;
-    private final Map<Long, Integer> mAppIdToPriority;
+    private final AppIdPrioritySnapshot mAppIdPriorities;
     private final Map<Integer, Double> mGroupToAggregationResult;
     private final Map<Integer, ZoneOffset> mGroupToFirstZoneOffset;
     private final int mNumberOfGroups;
@@ -69,14 +69,24 @@ public class PriorityRecordsAggregator {
             @AggregationType.AggregationTypeIdentifier int aggregationType,
             AggregateParams.PriorityAggregationExtraParams extraParams,
             boolean useLocalTime) {
+        this(
+                groupSplits,
+                new AppIdPrioritySnapshot(appIdPriorityList, /* version= */ 0),
+                aggregationType,
+                extraParams,
+                useLocalTime);
+    }
+
+    public PriorityRecordsAggregator(
+            List<Long> groupSplits,
+            AppIdPrioritySnapshot appIdPriorities,
+            @AggregationType.AggregationTypeIdentifier int aggregationType,
+            AggregateParams.PriorityAggregationExtraParams extraParams,
+            boolean useLocalTime) {
         mGroupSplits = groupSplits;
         mAggregationType = aggregationType;
         mExtraParams = extraParams;
-        mAppIdToPriority = new ArrayMap<>();
-        for (int i = 0; i < appIdPriorityList.size(); i++) {
-            // Add to the map with -index, so app with higher priority has higher value in the map.
-            mAppIdToPriority.put(appIdPriorityList.get(i), appIdPriorityList.size() - i);
-        }
+        mAppIdPriorities = appIdPriorities;
         mUseLocalTime = useLocalTime;
         mTimestampsBuffer = new TreeSet<>();
         mNumberOfGroups = mGroupSplits.size() - 1;
@@ -90,7 +100,7 @@ public class PriorityRecordsAggregator {
                     "Aggregation request for splits: "
                             + mGroupSplits
                             + " with priorities: "
-                            + appIdPriorityList);
+                            + appIdPriorities);
         }
     }
 
@@ -181,7 +191,7 @@ public class PriorityRecordsAggregator {
     @VisibleForTesting
     AggregationRecordData readNewData(Cursor cursor) {
         AggregationRecordData data = createAggregationRecordData();
-        data.populateAggregationData(cursor, mUseLocalTime, mAppIdToPriority);
+        data.populateAggregationData(cursor, mUseLocalTime, mAppIdPriorities);
         return data;
     }
 
@@ -25,7 +25,9 @@ import static android.health.connect.datatypes.AggregationType.SUM;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.health.connect.AggregateResult;
 import android.health.connect.Constants;
 import android.health.connect.LocalTimeRangeFilter;
@@ -39,6 +41,7 @@ import android.util.Slog;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.datatypehelpers.aggregation.PriorityRecordsAggregator;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
@@ -154,37 +157,59 @@ public class AggregateTableRequest {
     @NonNull
     public String getAggregationCommand() {
         final StringBuilder builder = new StringBuilder("SELECT ");
-        String aggCommand;
-        boolean usingPriority =
-                StorageUtils.supportsPriority(
-                                mRecordHelper.getRecordIdentifier(),
-                                mAggregationType.getAggregateOperationType())
-                        || StorageUtils.isDerivedType(mRecordHelper.getRecordIdentifier());
+        boolean usingPriority = isUsingPriority();
         if (usingPriority) {
             for (String columnName : mColumnNamesToAggregate) {
                 builder.append(columnName).append(", ");
             }
         } else {
-            aggCommand = getSqlCommandFor(mAggregationType.getAggregateOperationType());
+            appendAggregatedColumns(builder, /* aliasSuffix= */ "");
+        }
 
-            for (String columnName : mColumnNamesToAggregate) {
-                builder.append(aggCommand)
-                        .append("(")
-                        .append(columnName)
-                        .append(")")
-                        .append(" as ")
-                        .append(columnName)
-                        .append(", ");
-            }
+        appendAdditionalColumns(builder);
+        return appendAggregateCommand(builder, usingPriority);
+    }
+
+    /**
+     * Returns a key identifying the rows and groups this request aggregates, or null if the
+     * request can't share its aggregation query with other requests.
+     *
+     * <p>Requests with the same key differ only by their aggregated columns, so they can be
+     * computed by a single query, see {@link #getFusedAggregationCommand}. Priority and derived
+     * aggregations are computed from the rows, not in SQL. MIN and MAX take the zone offset from
+     * the row holding the extremum, which isn't the case anymore once they share a query, so they
+     * keep their own query too.
+     */
+    @Nullable
+    public String getFusionKey() {
+        if (isUsingPriority()) {
+            return null;
+        }
+        int operationType = mAggregationType.getAggregateOperationType();
+        if (operationType == MIN || operationType == MAX) {
+            return null;
         }
 
-        if (mAdditionalColumnsToFetch != null) {
-            for (String additionalColumnToFetch : mAdditionalColumnsToFetch) {
-                builder.append(additionalColumnToFetch).append(", ");
-            }
+        StringBuilder builder = new StringBuilder();
+        appendAdditionalColumns(builder);
+        return appendAggregateCommand(builder, /* isMetadata= */ false);
+    }
+
+    /**
+     * Returns SQL statement to perform the aggregation operations of all {@code requests} in one
+     * query. All requests must have the same non-null {@link #getFusionKey()}.
+     */
+    @NonNull
+    public static String getFusedAggregationCommand(
+            @NonNull List<AggregateTableRequest> requests) {
+        final StringBuilder builder = new StringBuilder("SELECT ");
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).appendAggregatedColumns(builder, getFusedColumnAliasSuffix(i));
         }
 
-        return appendAggregateCommand(builder, usingPriority);
+        AggregateTableRequest firstRequest = requests.get(0);
+        firstRequest.appendAdditionalColumns(builder);
+        return firstRequest.appendAggregateCommand(builder, /* isMetadata= */ false);
     }
 
     public AggregateTableRequest setPackageFilter(
@@ -233,6 +258,12 @@ public class AggregateTableRequest {
     }
 
     public void onResultsFetched(Cursor cursor, Cursor metaDataCursor) {
+        onAggregationResultsFetched(cursor);
+        onDataOriginsFetched(readDataOriginPackageNames(metaDataCursor));
+    }
+
+    /** Computes the results of this request from the cursor of {@link #getAggregationCommand}. */
+    public void onAggregationResultsFetched(Cursor cursor) {
         if (StorageUtils.isDerivedType(mRecordHelper.getRecordIdentifier())) {
             deriveAggregate(cursor);
         } else if (StorageUtils.supportsPriority(
@@ -242,17 +273,77 @@ public class AggregateTableRequest {
         } else {
             processNoPrioritiesRequest(cursor);
         }
+    }
 
-        updateResultWithDataOriginPackageNames(metaDataCursor);
+    /**
+     * Computes the results of this request from the cursor of {@link #getFusedAggregationCommand},
+     * where this request was at position {@code indexInFusedRequests}.
+     */
+    public void onFusedAggregationResultsFetched(Cursor fusedCursor, int indexInFusedRequests) {
+        Map<String, String> columnAliases = new ArrayMap<>(mColumnNamesToAggregate.size());
+        String aliasSuffix = getFusedColumnAliasSuffix(indexInFusedRequests);
+        for (String columnName : mColumnNamesToAggregate) {
+            columnAliases.put(columnName, columnName + aliasSuffix);
+        }
+        fusedCursor.moveToPosition(-1);
+        onAggregationResultsFetched(new AliasedColumnsCursor(fusedCursor, columnAliases));
+    }
+
+    /** Sets the data origins of the results, must be called after the results were computed. */
+    public void onDataOriginsFetched(List<String> packageNames) {
+        mAggregateResults.replaceAll(
+                (n, v) -> mAggregateResults.get(n).setDataOrigins(packageNames));
+    }
+
+    /** Reads the package names from the cursor of {@link #getCommandToFetchAggregateMetadata}. */
+    public static List<String> readDataOriginPackageNames(Cursor metaDataCursor) {
+        List<Long> packageIds = new ArrayList<>();
+        while (metaDataCursor.moveToNext()) {
+            packageIds.add(StorageUtils.getCursorLong(metaDataCursor, APP_INFO_ID_COLUMN_NAME));
+        }
+        return AppInfoHelper.getInstance().getPackageNames(packageIds);
+    }
+
+    private boolean isUsingPriority() {
+        return StorageUtils.supportsPriority(
+                        mRecordHelper.getRecordIdentifier(),
+                        mAggregationType.getAggregateOperationType())
+                || StorageUtils.isDerivedType(mRecordHelper.getRecordIdentifier());
+    }
+
+    private void appendAggregatedColumns(StringBuilder builder, String aliasSuffix) {
+        String aggCommand = getSqlCommandFor(mAggregationType.getAggregateOperationType());
+        for (String columnName : mColumnNamesToAggregate) {
+            builder.append(aggCommand)
+                    .append("(")
+                    .append(columnName)
+                    .append(")")
+                    .append(" as ")
+                    .append(columnName)
+                    .append(aliasSuffix)
+                    .append(", ");
+        }
+    }
+
+    private void appendAdditionalColumns(StringBuilder builder) {
+        if (mAdditionalColumnsToFetch != null) {
+            for (String additionalColumnToFetch : mAdditionalColumnsToFetch) {
+                builder.append(additionalColumnToFetch).append(", ");
+            }
+        }
+    }
+
+    private static String getFusedColumnAliasSuffix(int indexInFusedRequests) {
+        return "_" + indexInFusedRequests;
     }
 
     private void processPriorityRequest(Cursor cursor) {
-        List<Long> priorityList =
-                StorageUtils.getAppIdPriorityList(mRecordHelper.getRecordIdentifier());
+        AppIdPrioritySnapshot appIdPriorities =
+                StorageUtils.getAppIdPrioritySnapshot(mRecordHelper.getRecordIdentifier());
         PriorityRecordsAggregator aggregator =
                 new PriorityRecordsAggregator(
                         mTimeSplits,
-                        priorityList,
+                        appIdPriorities,
                         mAggregationType.getAggregationTypeIdentifier(),
                         mPriorityParams,
                         mUseLocalTime);
@@ -359,17 +450,6 @@ public class AggregateTableRequest {
         return whereClauses.get(/* withWhereKeyword= */ true);
     }
 
-    private void updateResultWithDataOriginPackageNames(Cursor metaDataCursor) {
-        List<Long> packageIds = new ArrayList<>();
-        while (metaDataCursor.moveToNext()) {
-            packageIds.add(StorageUtils.getCursorLong(metaDataCursor, APP_INFO_ID_COLUMN_NAME));
-        }
-        List<String> packageNames = AppInfoHelper.getInstance().getPackageNames(packageIds);
-
-        mAggregateResults.replaceAll(
-                (n, v) -> mAggregateResults.get(n).setDataOrigins(packageNames));
-    }
-
     public List<Pair<Long, Long>> getGroupSplitIntervals() {
         List<Pair<Long, Long>> groupIntervals = new ArrayList<>();
         long previous = mTimeSplits.get(0);
@@ -433,4 +513,24 @@ public class AggregateTableRequest {
             index++;
         }
     }
+
+    /** Exposes the aliased aggregated columns of a fused query under their original names. */
+    private static final class AliasedColumnsCursor extends CursorWrapper {
+        private final Map<String, String> mColumnAliases;
+
+        AliasedColumnsCursor(Cursor cursor, Map<String, String> columnAliases) {
+            super(cursor);
+            mColumnAliases = columnAliases;
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            return super.getColumnIndex(mColumnAliases.getOrDefault(columnName, columnName));
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            return super.getColumnIndexOrThrow(mColumnAliases.getOrDefault(columnName, columnName));
+        }
+    }
 }
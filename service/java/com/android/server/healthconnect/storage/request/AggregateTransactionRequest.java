@@ -26,10 +26,13 @@ import android.health.connect.aidl.AggregateDataResponseParcel;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.internal.datatypes.utils.AggregationTypeIdMapper;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+import com.android.server.healthconnect.storage.utils.TableWriteGenerations;
 
 import java.time.Duration;
 import java.time.Period;
@@ -37,6 +40,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Refines aggregate request from what the client sent to a format that makes the most sense for the
@@ -50,6 +54,7 @@ public final class AggregateTransactionRequest {
     private final Period mPeriod;
     private final Duration mDuration;
     private final TimeRangeFilter mTimeRangeFilter;
+    private final AggregateDataRequestParcel mRequest;
 
     public AggregateTransactionRequest(
             @NonNull String packageName, @NonNull AggregateDataRequestParcel request) {
@@ -58,6 +63,7 @@ public final class AggregateTransactionRequest {
         mPeriod = request.getPeriod();
         mDuration = request.getDuration();
         mTimeRangeFilter = request.getTimeRangeFilter();
+        mRequest = request;
 
         final AggregationTypeIdMapper aggregationTypeIdMapper =
                 AggregationTypeIdMapper.getInstance();
@@ -96,14 +102,52 @@ public final class AggregateTransactionRequest {
     }
 
     /**
-     * @return Compute and return aggregations
+     * @return Compute and return aggregations, or the cached ones if their data is unchanged
      */
     public AggregateDataResponseParcel getAggregateDataResponseParcel() {
+        AggregationResultCache cache = AggregationResultCache.getInstance();
+        long priorityVersion = HealthDataCategoryPriorityHelper.getInstance().getPriorityVersion();
+        AggregationResultCache.Key cacheKey =
+                new AggregationResultCache.Key(mRequest, priorityVersion);
+        List<AggregateRecordsResponse<?>> aggregateRecordsResponses = cache.get(cacheKey);
+        if (aggregateRecordsResponses == null) {
+            // Read the generations before the queries, so that concurrent writes make it stale
+            List<String> sourceTableNames = getSourceTableNames();
+            long[] generations =
+                    TableWriteGenerations.getInstance().getGenerations(sourceTableNames);
+            aggregateRecordsResponses = computeAggregateRecordsResponses();
+            cache.put(cacheKey, sourceTableNames, generations, aggregateRecordsResponses);
+        }
+
+        // Create and return parcel
+        AggregateDataResponseParcel aggregateDataResponseParcel =
+                new AggregateDataResponseParcel(aggregateRecordsResponses);
+        if (mPeriod != null) {
+            aggregateDataResponseParcel.setPeriod(mPeriod, mTimeRangeFilter);
+        } else if (mDuration != null) {
+            aggregateDataResponseParcel.setDuration(mDuration, mTimeRangeFilter);
+        }
+
+        return aggregateDataResponseParcel;
+    }
+
+    @NonNull
+    private List<String> getSourceTableNames() {
+        Set<String> tableNames = new ArraySet<>();
+        for (AggregateTableRequest aggregateTableRequest : mAggregateTableRequests) {
+            tableNames.addAll(
+                    aggregateTableRequest.getRecordHelper().getAggregationSourceTableNames());
+        }
+        return new ArrayList<>(tableNames);
+    }
+
+    @NonNull
+    private List<AggregateRecordsResponse<?>> computeAggregateRecordsResponses() {
+        // Compute aggregations, requests over the same rows share their queries
+        TransactionManager.getInitialisedInstance()
+                .populateWithAggregation(new AggregationPlan(mAggregateTableRequests));
         Map<AggregationType<?>, List<AggregateResult<?>>> results = new ArrayMap<>();
         for (AggregateTableRequest aggregateTableRequest : mAggregateTableRequests) {
-            // Compute aggregations
-            TransactionManager.getInitialisedInstance()
-                    .populateWithAggregation(aggregateTableRequest);
             results.put(
                     aggregateTableRequest.getAggregationType(),
                     aggregateTableRequest.getAggregateResults());
@@ -124,16 +168,6 @@ public final class AggregateTransactionRequest {
             }
             aggregateRecordsResponses.add(new AggregateRecordsResponse<>(aggregateResultMap));
         }
-
-        // Create and return parcel
-        AggregateDataResponseParcel aggregateDataResponseParcel =
-                new AggregateDataResponseParcel(aggregateRecordsResponses);
-        if (mPeriod != null) {
-            aggregateDataResponseParcel.setPeriod(mPeriod, mTimeRangeFilter);
-        } else if (mDuration != null) {
-            aggregateDataResponseParcel.setDuration(mDuration, mTimeRangeFilter);
-        }
-
-        return aggregateDataResponseParcel;
+        return aggregateRecordsResponses;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import android.annotation.NonNull;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plans the queries of a set of {@link AggregateTableRequest}s, so that requests reading the same
+ * rows share their queries.
+ *
+ * <p>Requests with the same {@link AggregateTableRequest#getFusionKey()} are computed by a single
+ * aggregation query, e.g. the average and the count of the heart rate samples. Data origins are
+ * fetched once per distinct metadata query.
+ *
+ * @hide
+ */
+public final class AggregationPlan {
+    private final List<List<AggregateTableRequest>> mAggregationQueries = new ArrayList<>();
+    private final Map<String, List<AggregateTableRequest>> mMetadataQueries = new ArrayMap<>();
+
+    public AggregationPlan(@NonNull List<AggregateTableRequest> aggregateTableRequests) {
+        Map<String, List<AggregateTableRequest>> fusedRequests = new ArrayMap<>();
+        for (AggregateTableRequest request : aggregateTableRequests) {
+            if (!request.getRecordHelper().isRecordOperationsEnabled()) {
+                continue;
+            }
+
+            String fusionKey = request.getFusionKey();
+            if (fusionKey == null) {
+                mAggregationQueries.add(List.of(request));
+            } else {
+                List<AggregateTableRequest> requests = fusedRequests.get(fusionKey);
+                if (requests == null) {
+                    requests = new ArrayList<>();
+                    fusedRequests.put(fusionKey, requests);
+                    mAggregationQueries.add(requests);
+                }
+                requests.add(request);
+            }
+
+            mMetadataQueries
+                    .computeIfAbsent(
+                            request.getCommandToFetchAggregateMetadata(), k -> new ArrayList<>())
+                    .add(request);
+        }
+    }
+
+    /** Returns the requests computed by each aggregation query. */
+    @NonNull
+    public List<List<AggregateTableRequest>> getAggregationQueries() {
+        return mAggregationQueries;
+    }
+
+    /** Returns the number of queries needed to compute all the requests of this plan. */
+    public int getNumberOfQueries() {
+        return mAggregationQueries.size() + mMetadataQueries.size();
+    }
+
+    /** Runs the aggregation queries and computes the results of all the requests. */
+    public void populateAggregationResults(@NonNull SQLiteDatabase db) {
+        for (List<AggregateTableRequest> requests : mAggregationQueries) {
+            runAggregationQuery(db, requests);
+        }
+    }
+
+    /**
+     * Runs the aggregation queries concurrently and computes the results of all the requests.
+     *
+     * <p>The queries are independent, each of them reads its own table on a read connection of
+     * {@code db}. The calling thread runs queries too, and up to {@code maxParallelism - 1}
+     * threads of {@code executor} help it. Threads which {@code executor} can't start right away
+     * are not waited for, the queries are then shared between fewer threads.
+     *
+     * @param executor executor which rejects the tasks it can't start right away.
+     * @param maxParallelism maximum number of queries running at the same time.
+     */
+    public void populateAggregationResults(
+            @NonNull SQLiteDatabase db, @NonNull ExecutorService executor, int maxParallelism) {
+        int numberOfHelpers = Math.min(maxParallelism, mAggregationQueries.size()) - 1;
+        if (numberOfHelpers <= 0) {
+            populateAggregationResults(db);
+            return;
+        }
+
+        AtomicInteger nextQuery = new AtomicInteger();
+        Runnable runQueries =
+                () -> {
+                    int query;
+                    while ((query = nextQuery.getAndIncrement()) < mAggregationQueries.size()) {
+                        runAggregationQuery(db, mAggregationQueries.get(query));
+                    }
+                };
+        List<Future<?>> helpers = new ArrayList<>(numberOfHelpers);
+        for (int i = 0; i < numberOfHelpers; i++) {
+            try {
+                helpers.add(executor.submit(runQueries));
+            } catch (RejectedExecutionException e) {
+                // All the threads are busy, run the remaining queries with fewer threads
+                break;
+            }
+        }
+
+        try {
+            runQueries.run();
+        } finally {
+            // Stop the helpers from starting new queries if this thread failed, and never return
+            // while they are still populating the results of this plan.
+            nextQuery.set(mAggregationQueries.size());
+            for (Future<?> helper : helpers) {
+                awaitHelper(helper);
+            }
+        }
+    }
+
+    private static void runAggregationQuery(
+            @NonNull SQLiteDatabase db, @NonNull List<AggregateTableRequest> requests) {
+        if (requests.size() == 1) {
+            AggregateTableRequest request = requests.get(0);
+            try (Cursor cursor = db.rawQuery(request.getAggregationCommand(), null)) {
+                request.onAggregationResultsFetched(cursor);
+            }
+            return;
+        }
+
+        try (Cursor cursor =
+                db.rawQuery(AggregateTableRequest.getFusedAggregationCommand(requests), null)) {
+            for (int i = 0; i < requests.size(); i++) {
+                requests.get(i).onFusedAggregationResultsFetched(cursor, i);
+            }
+        }
+    }
+
+    private static void awaitHelper(@NonNull Future<?> helper) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    helper.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs the metadata queries and sets the data origins of the results. Must be called after
+     * {@link #populateAggregationResults}.
+     */
+    public void populateDataOrigins(@NonNull SQLiteDatabase db) {
+        for (Map.Entry<String, List<AggregateTableRequest>> entry : mMetadataQueries.entrySet()) {
+            List<String> packageNames;
+            try (Cursor metaDataCursor = db.rawQuery(entry.getKey(), null)) {
+                packageNames = AggregateTableRequest.readDataOriginPackageNames(metaDataCursor);
+            }
+            for (AggregateTableRequest request : entry.getValue()) {
+                request.onDataOriginsFetched(packageNames);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.AggregateRecordsResponse;
+import android.health.connect.TimeRangeFilterHelper;
+import android.health.connect.aidl.AggregateDataRequestParcel;
+import android.util.LruCache;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.storage.utils.TableWriteGenerations;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory LRU cache of aggregation results, so that dashboards polling the same aggregations
+ * don't recompute them while their data is unchanged.
+ *
+ * <p>Entries are keyed by the aggregation request and the version of the priority lists. Each entry
+ * is stamped with the {@link TableWriteGenerations} of the tables it was computed from, read before
+ * running the queries. An entry is only served while none of these tables was written since, so
+ * inserts, updates and deletes of the aggregated record types invalidate it. The cache is bounded
+ * by the total number of cached aggregate results.
+ *
+ * @hide
+ */
+public final class AggregationResultCache {
+    private static final int MAX_CACHED_RESULTS = 20_000;
+    private static final AggregationResultCache sInstance =
+            new AggregationResultCache(MAX_CACHED_RESULTS);
+
+    private final LruCache<Key, Entry> mEntries;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mStaleCount = new AtomicLong();
+
+    @VisibleForTesting
+    public AggregationResultCache(int maxCachedResults) {
+        mEntries =
+                new LruCache<Key, Entry>(maxCachedResults) {
+                    @Override
+                    protected int sizeOf(Key key, Entry entry) {
+                        return entry.getSize();
+                    }
+                };
+    }
+
+    @NonNull
+    public static AggregationResultCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached responses of {@code key}, or null if there are none or if any of the
+     * tables they were computed from has been written since.
+     */
+    @Nullable
+    public List<AggregateRecordsResponse<?>> get(@NonNull Key key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+
+        if (!Arrays.equals(
+                entry.mGenerations,
+                TableWriteGenerations.getInstance().getGenerations(entry.mTableNames))) {
+            mEntries.remove(key);
+            mStaleCount.incrementAndGet();
+            mMissCount.incrementAndGet();
+            return null;
+        }
+
+        mHitCount.incrementAndGet();
+        return entry.mResponses;
+    }
+
+    /**
+     * Caches the responses of {@code key}.
+     *
+     * @param tableNames tables the responses were computed from.
+     * @param generations generations of {@code tableNames}, read before computing the responses.
+     */
+    public void put(
+            @NonNull Key key,
+            @NonNull List<String> tableNames,
+            @NonNull long[] generations,
+            @NonNull List<AggregateRecordsResponse<?>> responses) {
+        int size = Math.max(1, responses.size() * key.getNumberOfAggregations());
+        mEntries.put(key, new Entry(tableNames, generations, responses, size));
+    }
+
+    /** Removes all the cached responses. */
+    public void clear() {
+        mEntries.evictAll();
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /** Writes the size and the hit rate of the cache to {@code writer}. */
+    public void dump(@NonNull PrintWriter writer) {
+        long hits = mHitCount.get();
+        long lookups = hits + mMissCount.get();
+        writer.println(
+                "Aggregation result cache: entries="
+                        + mEntries.snapshot().size()
+                        + " results="
+                        + mEntries.size()
+                        + "/"
+                        + mEntries.maxSize()
+                        + " hits="
+                        + hits
+                        + " lookups="
+                        + lookups
+                        + " hitRate="
+                        + (lookups == 0 ? 0 : hits * 100 / lookups)
+                        + "% stale="
+                        + mStaleCount.get()
+                        + " evictions="
+                        + mEntries.evictionCount());
+    }
+
+    /**
+     * Key of the cached responses of an aggregation request.
+     *
+     * @hide
+     */
+    public static final class Key {
+        private final long mStartTime;
+        private final long mEndTime;
+        private final boolean mLocalTimeFilter;
+        private final int[] mAggregateIds;
+        private final List<String> mPackageFilters;
+        @Nullable private final Period mPeriod;
+        @Nullable private final Duration mDuration;
+        private final long mPriorityVersion;
+
+        /**
+         * @param request the aggregation request.
+         * @param priorityVersion version of the priority lists the responses are computed with.
+         */
+        public Key(@NonNull AggregateDataRequestParcel request, long priorityVersion) {
+            mStartTime = request.getStartTime();
+            mEndTime = request.getEndTime();
+            mLocalTimeFilter =
+                    TimeRangeFilterHelper.isLocalTimeFilter(request.getTimeRangeFilter());
+            // The order of the aggregations and of the package filters doesn't change the result.
+            mAggregateIds = request.getAggregateIds().clone();
+            Arrays.sort(mAggregateIds);
+            List<String> packageFilters = new ArrayList<>(request.getPackageFilters());
+            Collections.sort(packageFilters);
+            mPackageFilters = packageFilters;
+            mPeriod = request.getPeriod();
+            mDuration = request.getDuration();
+            mPriorityVersion = priorityVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return mStartTime == that.mStartTime
+                    && mEndTime == that.mEndTime
+                    && mLocalTimeFilter == that.mLocalTimeFilter
+                    && mPriorityVersion == that.mPriorityVersion
+                    && Arrays.equals(mAggregateIds, that.mAggregateIds)
+                    && mPackageFilters.equals(that.mPackageFilters)
+                    && Objects.equals(mPeriod, that.mPeriod)
+                    && Objects.equals(mDuration, that.mDuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                    mStartTime,
+                    mEndTime,
+                    mLocalTimeFilter,
+                    mPriorityVersion,
+                    Arrays.hashCode(mAggregateIds),
+                    mPackageFilters,
+                    mPeriod,
+                    mDuration);
+        }
+
+        private int getNumberOfAggregations() {
+            return mAggregateIds.length;
+        }
+    }
+
+    private static final class Entry {
+        private final List<String> mTableNames;
+        private final long[] mGenerations;
+        private final List<AggregateRecordsResponse<?>> mResponses;
+        private final int mSize;
+
+        Entry(
+                @NonNull List<String> tableNames,
+                @NonNull long[] generations,
+                @NonNull List<AggregateRecordsResponse<?>> responses,
+                int size) {
+            mTableNames = tableNames;
+            mGenerations = generations;
+            mResponses = responses;
+            mSize = size;
+        }
+
+        int getSize() {
+            return mSize;
+        }
+    }
+}
@@ -43,6 +43,12 @@ public final class CreateIndexRequest {
         mColumnNames = columnNames;
     }
 
+    /** Returns the indexed columns, in index order. */
+    @NonNull
+    public List<String> getColumnNames() {
+        return mColumnNames;
+    }
+
     /** Returns a ready-for-use SQL command. */
     @NonNull
     public String getCommand() {
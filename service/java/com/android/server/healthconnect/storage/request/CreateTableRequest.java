@@ -45,6 +45,7 @@ public final class CreateTableRequest {
     private final String mTableName;
     private final List<Pair<String, String>> mColumnInfo;
     private final List<String> mColumnsToIndex = new ArrayList<>();
+    private final List<CreateIndexRequest> mIndexRequests = new ArrayList<>();
     private final List<List<String>> mUniqueColumns = new ArrayList<>();
     private List<ForeignKey> mForeignKeys = new ArrayList<>();
     private List<CreateTableRequest> mChildTableRequests = Collections.emptyList();
@@ -76,6 +77,15 @@ public final class CreateTableRequest {
         return this;
     }
 
+    /** Adds an index, e.g. on multiple columns, to create along with the table. */
+    @NonNull
+    public CreateTableRequest addIndex(@NonNull CreateIndexRequest indexRequest) {
+        Objects.requireNonNull(indexRequest);
+
+        mIndexRequests.add(indexRequest);
+        return this;
+    }
+
     @NonNull
     public List<CreateTableRequest> getChildTableRequests() {
         return mChildTableRequests;
@@ -149,7 +159,11 @@ public final class CreateTableRequest {
         if (mForeignKeys != null) {
             int index = 0;
             for (ForeignKey foreignKey : mForeignKeys) {
-                result.add(foreignKey.getFkIndexStatement(index++));
+                // Foreign keys covered by an added index are not indexed separately.
+                if (!isCoveredByIndex(foreignKey.mColumnNames)) {
+                    result.add(foreignKey.getFkIndexStatement(index));
+                }
+                index++;
             }
         }
 
@@ -159,9 +173,44 @@ public final class CreateTableRequest {
             }
         }
 
+        for (CreateIndexRequest indexRequest : mIndexRequests) {
+            result.add(indexRequest.getCommand());
+        }
+
         return result;
     }
 
+    /**
+     * Returns the commands to drop the indexes of the foreign keys which are covered by an added
+     * index, e.g. when upgrading a table created before the added index.
+     */
+    @NonNull
+    public List<String> getDropCoveredForeignKeyIndexStatements() {
+        List<String> result = new ArrayList<>();
+        if (mForeignKeys != null) {
+            int index = 0;
+            for (ForeignKey foreignKey : mForeignKeys) {
+                if (isCoveredByIndex(foreignKey.mColumnNames)) {
+                    result.add("DROP INDEX IF EXISTS idx_" + foreignKey.getFkIndexName(index));
+                }
+                index++;
+            }
+        }
+        return result;
+    }
+
+    /** Returns whether an added index starts with {@code columnNames}, so it can serve them. */
+    private boolean isCoveredByIndex(@NonNull List<String> columnNames) {
+        for (CreateIndexRequest indexRequest : mIndexRequests) {
+            List<String> indexColumnNames = indexRequest.getColumnNames();
+            if (indexColumnNames.size() >= columnNames.size()
+                    && indexColumnNames.subList(0, columnNames.size()).equals(columnNames)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public CreateTableRequest setGeneratedColumnInfo(
             @NonNull List<GeneratedColumnInfo> generatedColumnInfo) {
         Objects.requireNonNull(generatedColumnInfo);
@@ -247,7 +296,11 @@ public final class CreateTableRequest {
         }
 
         String getFkIndexStatement(int fkNumber) {
-            return getCreateIndexCommand(mTableName + "_" + fkNumber, mColumnNames);
+            return getCreateIndexCommand(getFkIndexName(fkNumber), mColumnNames);
+        }
+
+        String getFkIndexName(int fkNumber) {
+            return mTableName + "_" + fkNumber;
         }
     }
 }
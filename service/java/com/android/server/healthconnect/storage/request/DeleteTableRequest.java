@@ -25,6 +25,7 @@ import android.health.connect.Constants;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.util.Slog;
 
+import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
@@ -158,6 +159,46 @@ public class DeleteTableRequest {
                 + getWhereCommand();
     }
 
+    /**
+     * Returns a query for the id and the package of one of the rows to delete which doesn't belong
+     * to {@code appInfoId}, so that ownership of all the rows is checked with a single query.
+     */
+    @NonNull
+    public String getReadCommandForRowNotOwnedBy(long appInfoId) {
+        return "SELECT "
+                + mIdColumnName
+                + ", "
+                + mPackageColumnName
+                + " FROM ("
+                + getReadCommand()
+                + ") WHERE "
+                + mPackageColumnName
+                + " != "
+                + appInfoId
+                + " LIMIT 1";
+    }
+
+    /**
+     * Returns a command deleting at most {@code chunkSize} of the rows to delete. Running it until
+     * it deletes less than {@code chunkSize} rows deletes all of them, without SQLite collecting
+     * the row ids of all the matching rows at once.
+     */
+    @NonNull
+    public String getDeleteChunkCommand(int chunkSize) {
+        return "DELETE FROM "
+                + mTableName
+                + " WHERE "
+                + RecordHelper.PRIMARY_COLUMN_NAME
+                + " IN (SELECT "
+                + RecordHelper.PRIMARY_COLUMN_NAME
+                + " FROM "
+                + mTableName
+                + getWhereCommand()
+                + " LIMIT "
+                + chunkSize
+                + ")";
+    }
+
     public String getWhereCommand() {
         WhereClauses whereClauses =
                 Objects.isNull(mCustomWhereClauses) ? new WhereClauses() : mCustomWhereClauses;
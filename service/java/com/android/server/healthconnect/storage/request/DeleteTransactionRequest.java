@@ -133,6 +133,14 @@ public final class DeleteTransactionRequest {
         mChangeLogs.addUUID(recordType, appId, uuid);
     }
 
+    /**
+     * Returns whether the UUIDs of the deleted records are needed for the change logs. Otherwise
+     * the records are deleted without being read.
+     */
+    public boolean requiresChangeLogs() {
+        return mChangeLogs != null;
+    }
+
     @NonNull
     public List<UpsertTableRequest> getChangeLogUpsertRequests() {
         if (mChangeLogs == null) {
@@ -142,6 +150,15 @@ public final class DeleteTransactionRequest {
         return mChangeLogs.getUpsertTableRequests();
     }
 
+    /** Returns whether the caller may only delete its own records. */
+    public boolean requiresPackageCheck() {
+        return !mHasHealthDataManagementPermission;
+    }
+
+    public long getRequestingPackageNameId() {
+        return mRequestingPackageNameId;
+    }
+
     public void enforcePackageCheck(UUID uuid, long appInfoId) {
         if (mHasHealthDataManagementPermission) {
             // Skip this check if the caller has data management permission
@@ -54,6 +54,7 @@ public class ReadTableRequest {
     private OrderByClause mOrderByClause = new OrderByClause();
     private String mLimitClause = "";
     private int mPageSize = DEFAULT_PAGE_SIZE;
+    private int mOffset;
     private List<ReadTableRequest> mExtraReadRequests;
     private List<ReadTableRequest> mUnionReadRequests;
 
@@ -119,6 +120,9 @@ public class ReadTableRequest {
         builder.append(mWhereClauses.get(/* withWhereKeyword */ true));
         builder.append(mOrderByClause.getOrderBy());
         builder.append(mLimitClause);
+        if (mOffset > 0) {
+            builder.append(" OFFSET ").append(mOffset);
+        }
 
         String readQuery = builder.toString();
         if (mJoinClause != null) {
@@ -186,6 +190,21 @@ public class ReadTableRequest {
         return mPageSize;
     }
 
+    /**
+     * Sets the number of rows to skip before the rows read, e.g. the records of a page token's
+     * start time which are before its page. Only applies along with {@link #setLimit}.
+     */
+    @NonNull
+    public ReadTableRequest setOffset(int offset) {
+        mOffset = offset;
+        return this;
+    }
+
+    /** Returns the number of rows skipped before the rows read */
+    public int getOffset() {
+        return mOffset;
+    }
+
     private String getColumnsToFetch() {
         if (mColumnNames == null || mColumnNames.isEmpty()) {
             return "*";
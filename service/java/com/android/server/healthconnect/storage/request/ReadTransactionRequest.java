@@ -50,12 +50,15 @@ public class ReadTransactionRequest {
                 RecordHelperProvider.getInstance().getRecordHelper(request.getRecordType());
         mReadTableRequests =
                 Collections.singletonList(
-                        recordHelper.getReadTableRequest(
-                                request,
-                                packageName,
-                                enforceSelfRead,
-                                startDateAccess,
-                                extraPermsState));
+                        request.getProjection() != 0
+                                ? recordHelper.getReadColumnsTableRequest(
+                                        request, packageName, enforceSelfRead, startDateAccess)
+                                : recordHelper.getReadTableRequest(
+                                        request,
+                                        packageName,
+                                        enforceSelfRead,
+                                        startDateAccess,
+                                        extraPermsState));
     }
 
     public ReadTransactionRequest(
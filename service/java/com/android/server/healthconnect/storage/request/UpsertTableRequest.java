@@ -79,6 +79,12 @@ public class UpsertTableRequest {
         return mUniqueColumns.size();
     }
 
+    /** Returns the unique columns of the table, with their {@link ColumnType}. */
+    @NonNull
+    public List<Pair<String, Integer>> getUniqueColumns() {
+        return mUniqueColumns;
+    }
+
     @NonNull
     public UpsertTableRequest withParentKey(long rowId) {
         mRowId = rowId;
@@ -23,6 +23,7 @@ import android.annotation.Nullable;
 import android.content.Context;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
+import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Slog;
@@ -64,6 +65,7 @@ public class UpsertTransactionRequest {
     @RecordTypeIdentifier.RecordType Set<Integer> mRecordTypes = new ArraySet<>();
 
     private ArrayMap<String, Boolean> mExtraWritePermissionsToState;
+    private boolean mIsTimeOrdered;
 
     public UpsertTransactionRequest(
             @Nullable String packageName,
@@ -109,6 +111,9 @@ public class UpsertTransactionRequest {
             mExtraWritePermissionsToState.putAll(extraPermsStateMap);
         }
 
+        // Start time of the last record of each type, to check the order of the records once.
+        ArrayMap<Integer, Long> lastStartTimes = isInsertRequest ? new ArrayMap<>() : null;
+        mIsTimeOrdered = isInsertRequest;
         for (RecordInternal<?> recordInternal : recordInternals) {
             if (!mSkipPackageNameAndLogs) {
                 StorageUtils.addPackageNameTo(recordInternal, packageName);
@@ -129,6 +134,10 @@ public class UpsertTransactionRequest {
             }
             recordInternal.setLastModifiedTime(Instant.now().toEpochMilli());
             addRequest(recordInternal, isInsertRequest);
+
+            if (mIsTimeOrdered) {
+                mIsTimeOrdered = isInTimeOrder(recordInternal, lastStartTimes);
+            }
         }
 
         if (!mRecordTypes.isEmpty()) {
@@ -148,19 +157,35 @@ public class UpsertTransactionRequest {
         }
     }
 
+    /**
+     * Returns whether this is an insert of records without client record ids, whose records of
+     * each type are sorted by start time. Such records are usually appended after the existing
+     * records of their app and device.
+     */
+    public boolean isTimeOrdered() {
+        return mIsTimeOrdered;
+    }
+
     public List<UpsertTableRequest> getAccessLogs() {
         return mAccessLogs;
     }
 
     @NonNull
     public List<UpsertTableRequest> getInsertRequestsForChangeLogs() {
+        return getInsertRequestsForChangeLogs(mUpsertRequests);
+    }
+
+    /** Returns the change logs of {@code upsertRequests}, the written requests of this. */
+    @NonNull
+    public List<UpsertTableRequest> getInsertRequestsForChangeLogs(
+            @NonNull List<UpsertTableRequest> upsertRequests) {
         if (mSkipPackageNameAndLogs) {
             return Collections.emptyList();
         }
         long currentTime = Instant.now().toEpochMilli();
         ChangeLogsHelper.ChangeLogs insertChangeLogs =
                 new ChangeLogsHelper.ChangeLogs(UPSERT, mPackageName, currentTime);
-        for (UpsertTableRequest upsertRequest : mUpsertRequests) {
+        for (UpsertTableRequest upsertRequest : upsertRequests) {
             insertChangeLogs.addUUID(
                     upsertRequest.getRecordInternal().getRecordType(),
                     upsertRequest.getRecordInternal().getAppInfoId(),
@@ -182,6 +207,18 @@ public class UpsertTransactionRequest {
                 .collect(Collectors.toList());
     }
 
+    private static boolean isInTimeOrder(
+            @NonNull RecordInternal<?> recordInternal, @NonNull Map<Integer, Long> lastStartTimes) {
+        if (!TextUtils.isEmpty(recordInternal.getClientRecordId())) {
+            // Records with a client record id can replace existing records at any time.
+            return false;
+        }
+
+        long startTime = StorageUtils.getStartTimeInMillis(recordInternal);
+        Long lastStartTime = lastStartTimes.put(recordInternal.getRecordType(), startTime);
+        return lastStartTime == null || lastStartTime <= startTime;
+    }
+
     private WhereClauses generateWhereClausesForUpdate(@NonNull RecordInternal<?> recordInternal) {
         WhereClauses whereClauseForUpdateRequest = new WhereClauses();
         whereClauseForUpdateRequest.addWhereEqualsClause(
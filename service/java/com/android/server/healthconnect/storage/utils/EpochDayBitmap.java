@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import android.annotation.NonNull;
+
+import java.util.BitSet;
+
+/**
+ * A set of days since the epoch, stored as a bitmap starting at the earliest day of the set.
+ *
+ * <p>Years of days take a few hundred bytes. The first day of the bitmap is aligned to a multiple
+ * of 64, so that bitmaps can be combined word by word.
+ *
+ * @hide
+ */
+public final class EpochDayBitmap {
+    private long mFirstDay;
+    private BitSet mDays = new BitSet();
+
+    /**
+     * Adds {@code epochDay} to the set.
+     *
+     * @return whether the day was not in the set already.
+     */
+    public boolean add(long epochDay) {
+        extendTo(epochDay);
+        int index = (int) (epochDay - mFirstDay);
+        if (mDays.get(index)) {
+            return false;
+        }
+        mDays.set(index);
+        return true;
+    }
+
+    /**
+     * Removes {@code epochDay} from the set.
+     *
+     * @return whether the day was in the set.
+     */
+    public boolean remove(long epochDay) {
+        if (!contains(epochDay)) {
+            return false;
+        }
+        mDays.clear((int) (epochDay - mFirstDay));
+        return true;
+    }
+
+    /** Returns whether {@code epochDay} is in the set. */
+    public boolean contains(long epochDay) {
+        long index = epochDay - mFirstDay;
+        return index >= 0 && index < mDays.length() && mDays.get((int) index);
+    }
+
+    /** Returns whether the set has no days. */
+    public boolean isEmpty() {
+        return mDays.isEmpty();
+    }
+
+    /** Adds all the days of {@code other} to this set. */
+    public void or(@NonNull EpochDayBitmap other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        extendTo(other.mFirstDay);
+        mDays.or(toBitSet(other.mDays.toLongArray(), (other.mFirstDay - mFirstDay) / Long.SIZE));
+    }
+
+    /** Returns the days of the set, in ascending order. */
+    @NonNull
+    public long[] toArray() {
+        long[] days = new long[mDays.cardinality()];
+        int i = 0;
+        for (int index = mDays.nextSetBit(0); index >= 0; index = mDays.nextSetBit(index + 1)) {
+            days[i++] = mFirstDay + index;
+        }
+        return days;
+    }
+
+    /** Makes sure that {@code epochDay} is not before the first day of the bitmap. */
+    private void extendTo(long epochDay) {
+        long firstDay = Math.floorDiv(epochDay, Long.SIZE) * Long.SIZE;
+        if (mDays.isEmpty()) {
+            mFirstDay = firstDay;
+        } else if (firstDay < mFirstDay) {
+            mDays = toBitSet(mDays.toLongArray(), (mFirstDay - firstDay) / Long.SIZE);
+            mFirstDay = firstDay;
+        }
+    }
+
+    /** Returns a bitmap of {@code words}, shifted by {@code wordOffset} words. */
+    private static BitSet toBitSet(@NonNull long[] words, long wordOffset) {
+        long[] shiftedWords = new long[(int) wordOffset + words.length];
+        System.arraycopy(words, 0, shiftedWords, (int) wordOffset, words.length);
+        return BitSet.valueOf(shiftedWords);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import android.annotation.NonNull;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Generates the name based UUIDs of records with a client record id, without allocating per
+ * record.
+ *
+ * <p>The UUIDs are the same as {@link UUID#nameUUIDFromBytes} of the package name bytes, the
+ * record type id for UUIDs and the client record id bytes. Each thread has its own generator, which
+ * reuses its MD5 digest and its buffers for all the UUIDs it generates.
+ *
+ * @hide
+ */
+final class NameBasedUuidGenerator {
+    private static final ThreadLocal<NameBasedUuidGenerator> sGenerators =
+            ThreadLocal.withInitial(NameBasedUuidGenerator::new);
+    private static final int MD5_BYTE_SIZE = 16;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4096;
+
+    private final MessageDigest mMd5;
+    private final byte[] mHash = new byte[MD5_BYTE_SIZE];
+    private byte[] mName = new byte[INITIAL_BUFFER_SIZE];
+    private int mNameLength;
+
+    private NameBasedUuidGenerator() {
+        try {
+            mMd5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("MD5 not supported", e);
+        }
+    }
+
+    /** Returns the generator of the calling thread. */
+    @NonNull
+    static NameBasedUuidGenerator getInstance() {
+        return sGenerators.get();
+    }
+
+    /** Returns the UUID of a record with a client record id. */
+    @NonNull
+    UUID generate(
+            @NonNull String packageName, @NonNull String clientRecordId, int recordTypeIdForUuid) {
+        mNameLength = 0;
+        appendString(packageName);
+        appendInt(recordTypeIdForUuid);
+        appendString(clientRecordId);
+
+        mMd5.update(mName, 0, mNameLength);
+        try {
+            mMd5.digest(mHash, 0, MD5_BYTE_SIZE);
+        } catch (DigestException e) {
+            throw new InternalError("MD5 digest failed", e);
+        }
+        if (mName.length > MAX_RETAINED_BUFFER_SIZE) {
+            // Don't keep the buffer of an unusually long name for the lifetime of the thread.
+            mName = new byte[INITIAL_BUFFER_SIZE];
+        }
+
+        // Set the version to 3 and the variant to IETF, as UUID.nameUUIDFromBytes does.
+        mHash[6] &= 0x0f;
+        mHash[6] |= 0x30;
+        mHash[8] &= 0x3f;
+        mHash[8] |= (byte) 0x80;
+        return new UUID(StorageUtils.getLong(mHash, 0), StorageUtils.getLong(mHash, Long.BYTES));
+    }
+
+    /** Appends the bytes of {@code value} in the default charset, as {@link String#getBytes()}. */
+    private void appendString(@NonNull String value) {
+        if (!Charset.defaultCharset().equals(StandardCharsets.UTF_8) || !isAscii(value)) {
+            byte[] bytes = value.getBytes();
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, mName, mNameLength, bytes.length);
+            mNameLength += bytes.length;
+            return;
+        }
+
+        // ASCII characters are encoded as a single byte of the same value in UTF-8.
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            mName[mNameLength++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void appendInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            mName[mNameLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void ensureCapacity(int extraBytes) {
+        if (mNameLength + extraBytes > mName.length) {
+            byte[] name = new byte[Math.max(mName.length * 2, mNameLength + extraBytes)];
+            System.arraycopy(mName, 0, name, 0, mNameLength);
+            mName = name;
+        }
+    }
+
+    private static boolean isAscii(@NonNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+
+/**
+ * Encodes the page tokens of record reads. Records are paged in the order of their start time then
+ * row id. A page token holds the position of the first record of the next page: its start time,
+ * and the number of records with that start time before it, so that a page can end between records
+ * with the same start time. It also holds the sort order of the read so that the next page is read
+ * in the same order: an even page token is ascending, an odd one descending.
+ *
+ * @hide
+ */
+public final class PageTokenUtils {
+    // Bits of the number of records with the start time of a position before it.
+    private static final int OFFSET_BITS = 16;
+    // Offsets stay below this mask, so that no position is DEFAULT_LONG.
+    private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+    // Bounds of the start times of positions, so that page tokens don't overflow. They are about
+    // 2230 years away from the epoch.
+    private static final long MIN_START_TIME = Long.MIN_VALUE >> (OFFSET_BITS + 1);
+    private static final long MAX_START_TIME = Long.MAX_VALUE >> (OFFSET_BITS + 1);
+
+    private PageTokenUtils() {}
+
+    /**
+     * Returns the position of the record after the first {@code offset} records with {@code
+     * startTime}.
+     *
+     * @throws IllegalArgumentException if the position can't be held by a page token.
+     */
+    public static long getPosition(long startTime, int offset) {
+        if (startTime < MIN_START_TIME
+                || startTime > MAX_START_TIME
+                || offset < 0
+                || offset >= OFFSET_MASK) {
+            throw new IllegalArgumentException(
+                    "Can't page from record "
+                            + offset
+                            + " of the records starting at "
+                            + startTime);
+        }
+        return (startTime << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * Returns the page token of the page starting at {@code position}, or {@code DEFAULT_LONG} if
+     * {@code position} is {@code DEFAULT_LONG}, i.e. there is no next page.
+     */
+    public static long encode(long position, boolean isAscending) {
+        if (position == DEFAULT_LONG) {
+            return DEFAULT_LONG;
+        }
+        return isAscending ? position * 2 : position * 2 + 1;
+    }
+
+    /** Returns the start time of the first record of the page of {@code pageToken}. */
+    public static long decodeStartTime(long pageToken) {
+        return Math.floorDiv(pageToken, 2) >> OFFSET_BITS;
+    }
+
+    /**
+     * Returns the number of records with the start time of the page of {@code pageToken} which are
+     * before the page.
+     */
+    public static int decodeOffset(long pageToken) {
+        return (int) (Math.floorDiv(pageToken, 2) & OFFSET_MASK);
+    }
+}
@@ -46,8 +46,8 @@ import android.health.connect.internal.datatypes.utils.RecordTypeRecordCategoryM
 import android.util.Slog;
 
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
 
-import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Period;
 import java.time.ZoneOffset;
@@ -297,11 +297,11 @@ public final class StorageUtils {
 
     @NonNull
     private static byte[] getDedupeByteBuffer(@NonNull InstantRecordInternal<?> record) {
-        return ByteBuffer.allocate(Long.BYTES * 3)
-                .putLong(record.getAppInfoId())
-                .putLong(record.getDeviceInfoId())
-                .putLong(record.getTimeInMillis())
-                .array();
+        byte[] dedupeHash = new byte[Long.BYTES * 3];
+        putLong(dedupeHash, 0, record.getAppInfoId());
+        putLong(dedupeHash, Long.BYTES, record.getDeviceInfoId());
+        putLong(dedupeHash, Long.BYTES * 2, record.getTimeInMillis());
+        return dedupeHash;
     }
 
     @Nullable
@@ -311,30 +311,32 @@ public final class StorageUtils {
             return null; // Some records are exempt from deduplication
         }
 
-        return ByteBuffer.allocate(Long.BYTES * 4)
-                .putLong(record.getAppInfoId())
-                .putLong(record.getDeviceInfoId())
-                .putLong(record.getStartTimeInMillis())
-                .putLong(record.getEndTimeInMillis())
-                .array();
+        byte[] dedupeHash = new byte[Long.BYTES * 4];
+        putLong(dedupeHash, 0, record.getAppInfoId());
+        putLong(dedupeHash, Long.BYTES, record.getDeviceInfoId());
+        putLong(dedupeHash, Long.BYTES * 2, record.getStartTimeInMillis());
+        putLong(dedupeHash, Long.BYTES * 3, record.getEndTimeInMillis());
+        return dedupeHash;
+    }
+
+    /** Returns the time of an instant record, or the start time of an interval record. */
+    public static long getStartTimeInMillis(@NonNull RecordInternal<?> record) {
+        if (record instanceof InstantRecordInternal<?>) {
+            return ((InstantRecordInternal<?>) record).getTimeInMillis();
+        }
+
+        if (record instanceof IntervalRecordInternal<?>) {
+            return ((IntervalRecordInternal<?>) record).getStartTimeInMillis();
+        }
+
+        throw new IllegalArgumentException("Unexpected record type: " + record);
     }
 
     /** Returns a UUID for the given package name, client record id and record type id. */
     private static UUID getUUID(
             @NonNull String packageName, @NonNull String clientRecordId, int recordTypeId) {
-        final byte[] packageNameBytes = packageName.getBytes();
-        final byte[] clientRecordIdBytes = clientRecordId.getBytes();
-
-        byte[] bytes =
-                ByteBuffer.allocate(
-                                packageNameBytes.length
-                                        + Integer.BYTES
-                                        + clientRecordIdBytes.length)
-                        .put(packageNameBytes)
-                        .putInt(getRecordTypeIdForUuid(recordTypeId))
-                        .put(clientRecordIdBytes)
-                        .array();
-        return UUID.nameUUIDFromBytes(bytes);
+        return NameBasedUuidGenerator.getInstance()
+                .generate(packageName, clientRecordId, getRecordTypeIdForUuid(recordTypeId));
     }
 
     /**
@@ -359,6 +361,13 @@ public final class StorageUtils {
                         RecordTypeRecordCategoryMapper.getRecordCategoryForRecordType(recordType));
     }
 
+    /** Returns the priority snapshot of the data category of the given record type. */
+    public static AppIdPrioritySnapshot getAppIdPrioritySnapshot(int recordType) {
+        return HealthDataCategoryPriorityHelper.getInstance()
+                .getAppIdPrioritySnapshot(
+                        RecordTypeRecordCategoryMapper.getRecordCategoryForRecordType(recordType));
+    }
+
     /** Returns if derivation needs to be done to calculate aggregate */
     public static boolean isDerivedType(int recordType) {
         return recordType == RECORD_TYPE_BASAL_METABOLIC_RATE
@@ -366,17 +375,13 @@ public final class StorageUtils {
     }
 
     public static UUID convertBytesToUUID(byte[] bytes) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        long high = byteBuffer.getLong();
-        long low = byteBuffer.getLong();
-        return new UUID(high, low);
+        return getUUID(bytes, 0);
     }
 
     public static byte[] convertUUIDToBytes(UUID uuid) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[16]);
-        byteBuffer.putLong(uuid.getMostSignificantBits());
-        byteBuffer.putLong(uuid.getLeastSignificantBits());
-        return byteBuffer.array();
+        byte[] bytes = new byte[UUID_BYTE_SIZE];
+        putUUID(bytes, 0, uuid);
+        return bytes;
     }
 
     public static String getHexString(byte[] value) {
@@ -409,28 +414,55 @@ public final class StorageUtils {
     public static byte[] getSingleByteArray(List<UUID> uuids) {
         byte[] allByteArray = new byte[UUID_BYTE_SIZE * uuids.size()];
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(allByteArray);
+        int offset = 0;
         for (UUID uuid : uuids) {
-            byteBuffer.put(convertUUIDToBytes(uuid));
+            putUUID(allByteArray, offset, uuid);
+            offset += UUID_BYTE_SIZE;
         }
 
-        return byteBuffer.array();
+        return allByteArray;
     }
 
     public static List<UUID> getCursorUUIDList(Cursor cursor, String columnName) {
         byte[] bytes = cursor.getBlob(cursor.getColumnIndex(columnName));
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
 
-        List<UUID> uuidList = new ArrayList<>();
-        while (byteBuffer.hasRemaining()) {
-            long high = byteBuffer.getLong();
-            long low = byteBuffer.getLong();
-            uuidList.add(new UUID(high, low));
+        List<UUID> uuidList = new ArrayList<>(bytes.length / UUID_BYTE_SIZE);
+        for (int offset = 0; offset < bytes.length; offset += UUID_BYTE_SIZE) {
+            uuidList.add(getUUID(bytes, offset));
         }
 
         return uuidList;
     }
 
+    /** Writes {@code uuid} at {@code offset} of {@code bytes}, in big-endian order. */
+    public static void putUUID(@NonNull byte[] bytes, int offset, @NonNull UUID uuid) {
+        putLong(bytes, offset, uuid.getMostSignificantBits());
+        putLong(bytes, offset + Long.BYTES, uuid.getLeastSignificantBits());
+    }
+
+    /** Reads a UUID written by {@link #putUUID} at {@code offset} of {@code bytes}. */
+    @NonNull
+    public static UUID getUUID(@NonNull byte[] bytes, int offset) {
+        return new UUID(getLong(bytes, offset), getLong(bytes, offset + Long.BYTES));
+    }
+
+    /** Writes {@code value} at {@code offset} of {@code bytes}, in big-endian order. */
+    static void putLong(@NonNull byte[] bytes, int offset, long value) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= Byte.SIZE;
+        }
+    }
+
+    /** Reads a long written by {@link #putLong} at {@code offset} of {@code bytes}. */
+    static long getLong(@NonNull byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << Byte.SIZE) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
     /**
      * Returns a quoted id if {@code id} is not quoted. Following examples show the expected return
      * values,
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import android.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory write generations of the database tables, used to tell whether data computed from a
+ * table is still up to date.
+ *
+ * <p>The generation of a table is bumped by {@link
+ * com.android.server.healthconnect.storage.TransactionManager} after each committed write to it.
+ * Writes whose tables are not known bump the global generation, which is part of the generation of
+ * every table. Generations only live in memory, they start again from zero after a restart.
+ *
+ * @hide
+ */
+public final class TableWriteGenerations {
+    private static final TableWriteGenerations sInstance = new TableWriteGenerations();
+
+    private final ConcurrentHashMap<String, AtomicLong> mGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong mGlobalGeneration = new AtomicLong();
+
+    private TableWriteGenerations() {}
+
+    @NonNull
+    public static TableWriteGenerations getInstance() {
+        return sInstance;
+    }
+
+    /** Returns the current generation of {@code tableName}. */
+    public long getGeneration(@NonNull String tableName) {
+        AtomicLong generation = mGenerations.get(tableName);
+        // The global generation is bumped rarely, keep it in the high bits.
+        return (mGlobalGeneration.get() << 40) + (generation == null ? 0 : generation.get());
+    }
+
+    /** Returns the current generations of {@code tableNames}, in the same order. */
+    @NonNull
+    public long[] getGenerations(@NonNull Collection<String> tableNames) {
+        long[] generations = new long[tableNames.size()];
+        int i = 0;
+        for (String tableName : tableNames) {
+            generations[i++] = getGeneration(tableName);
+        }
+        return generations;
+    }
+
+    /** Bumps the generation of {@code tableName}, after a write to it was committed. */
+    public void bump(@NonNull String tableName) {
+        mGenerations.computeIfAbsent(tableName, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /** Bumps the generation of all the tables, after writes to unknown tables were committed. */
+    public void bumpAll() {
+        mGlobalGeneration.incrementAndGet();
+    }
+}
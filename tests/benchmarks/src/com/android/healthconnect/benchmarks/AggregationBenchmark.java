@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.AggregateRecordsRequest;
+import android.health.connect.HealthConnectManager;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Measures grouped aggregations over the synthetic datasets with 1, 24 and 8760 buckets, which
+ * correspond to the "today", "hourly chart" and "year of hours" queries made by clients.
+ */
+public class AggregationBenchmark {
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private static HealthConnectManager sService;
+    private static Instant sEndTime;
+
+    @BeforeClass
+    public static void setUpDataset() {
+        sService = HealthConnectBenchmarkUtils.getHealthConnectManager();
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, StepsRecord.class);
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, HeartRateRecord.class);
+
+        BenchmarkDataGenerator generator = new BenchmarkDataGenerator();
+        insertInBatches(generator.stepsDataset(BenchmarkDataGenerator.getStepsYears()));
+        insertInBatches(generator.heartRateDataset(BenchmarkDataGenerator.getHeartRateDays()));
+        sEndTime = generator.getEndTime();
+    }
+
+    @AfterClass
+    public static void tearDownDataset() {
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, StepsRecord.class);
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, HeartRateRecord.class);
+    }
+
+    @Test
+    public void stepsTotal_1Bucket() {
+        aggregateSteps(Duration.ofDays(1), Duration.ofDays(1), 1);
+    }
+
+    @Test
+    public void stepsTotal_24Buckets() {
+        aggregateSteps(Duration.ofDays(1), Duration.ofHours(1), 24);
+    }
+
+    @Test
+    public void stepsTotal_8760Buckets() {
+        aggregateSteps(Duration.ofDays(365), Duration.ofHours(1), 8760);
+    }
+
+    @Test
+    public void heartRateMinMaxAvg_24Buckets() {
+        AggregateRecordsRequest<Long> request =
+                new AggregateRecordsRequest.Builder<Long>(filter(Duration.ofDays(1)))
+                        .addAggregationType(HeartRateRecord.BPM_MIN)
+                        .addAggregationType(HeartRateRecord.BPM_MAX)
+                        .addAggregationType(HeartRateRecord.BPM_AVG)
+                        .build();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.aggregateGroupByDuration(
+                    sService, request, Duration.ofHours(1));
+        }
+    }
+
+    private void aggregateSteps(Duration range, Duration bucket, int expectedBuckets) {
+        AggregateRecordsRequest<Long> request =
+                new AggregateRecordsRequest.Builder<Long>(filter(range))
+                        .addAggregationType(StepsRecord.STEPS_COUNT_TOTAL)
+                        .build();
+        assertThat(HealthConnectBenchmarkUtils.aggregateGroupByDuration(sService, request, bucket))
+                .hasSize(expectedBuckets);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.aggregateGroupByDuration(sService, request, bucket);
+        }
+    }
+
+    private static TimeInstantRangeFilter filter(Duration range) {
+        return new TimeInstantRangeFilter.Builder()
+                .setStartTime(sEndTime.minus(range))
+                .setEndTime(sEndTime)
+                .build();
+    }
+
+    private static void insertInBatches(List<Record> records) {
+        for (List<Record> batch : BenchmarkDataGenerator.batches(records)) {
+            HealthConnectBenchmarkUtils.insertRecords(sService, batch);
+        }
+    }
+}
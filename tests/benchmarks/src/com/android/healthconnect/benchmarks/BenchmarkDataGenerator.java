@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import android.health.connect.datatypes.ActiveCaloriesBurnedRecord;
+import android.health.connect.datatypes.DataOrigin;
+import android.health.connect.datatypes.Device;
+import android.health.connect.datatypes.DistanceRecord;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Metadata;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.datatypes.units.Energy;
+import android.health.connect.datatypes.units.Length;
+import android.os.Bundle;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates deterministic synthetic datasets for the benchmarks.
+ *
+ * <p>Dataset sizes can be configured with instrumentation arguments:
+ *
+ * <ul>
+ *   <li>{@code heartRateDays} - days of 1 Hz heart rate, stored as one record per hour.
+ *   <li>{@code stepsYears} - years of steps, stored as one record per 15 minutes.
+ * </ul>
+ */
+final class BenchmarkDataGenerator {
+    static final String ARG_HEART_RATE_DAYS = "heartRateDays";
+    static final String ARG_STEPS_YEARS = "stepsYears";
+
+    /** Number of records sent in one insert call when populating a dataset. */
+    static final int INSERT_BATCH_SIZE = 500;
+
+    private static final Duration STEPS_RECORD_DURATION = Duration.ofMinutes(15);
+    private static final Duration HEART_RATE_RECORD_DURATION = Duration.ofHours(1);
+    private static final long RANDOM_SEED = 42;
+
+    private final Random mRandom = new Random(RANDOM_SEED);
+    private final Metadata mMetadata;
+    private final Instant mEnd;
+
+    BenchmarkDataGenerator() {
+        Device device =
+                new Device.Builder()
+                        .setManufacturer("benchmark")
+                        .setModel("synthetic")
+                        .setType(Device.DEVICE_TYPE_WATCH)
+                        .build();
+        DataOrigin dataOrigin =
+                new DataOrigin.Builder()
+                        .setPackageName(
+                                InstrumentationRegistry.getInstrumentation()
+                                        .getContext()
+                                        .getPackageName())
+                        .build();
+        mMetadata = new Metadata.Builder().setDevice(device).setDataOrigin(dataOrigin).build();
+        // Align to the hour so that grouped aggregations produce stable bucket boundaries.
+        mEnd = Instant.now().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    static int getHeartRateDays() {
+        return getIntArgument(ARG_HEART_RATE_DAYS, 1);
+    }
+
+    static int getStepsYears() {
+        return getIntArgument(ARG_STEPS_YEARS, 1);
+    }
+
+    /** Returns the exclusive end of every generated dataset. */
+    Instant getEndTime() {
+        return mEnd;
+    }
+
+    /** Returns {@code days} of 1 Hz heart rate data ending at {@link #getEndTime()}. */
+    List<Record> heartRateDataset(int days) {
+        int count =
+                (int) (Duration.ofDays(days).toMillis() / HEART_RATE_RECORD_DURATION.toMillis());
+        Instant start = mEnd.minus(Duration.ofDays(days));
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(heartRateRecord(start.plus(HEART_RATE_RECORD_DURATION.multipliedBy(i))));
+        }
+        return records;
+    }
+
+    /** Returns {@code years} of steps data ending at {@link #getEndTime()}. */
+    List<Record> stepsDataset(int years) {
+        Instant start = mEnd.minus(Duration.ofDays(365L * years));
+        int count =
+                (int) (Duration.between(start, mEnd).toMillis() / STEPS_RECORD_DURATION.toMillis());
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(stepsRecord(start.plus(STEPS_RECORD_DURATION.multipliedBy(i))));
+        }
+        return records;
+    }
+
+    /** Returns {@code count} consecutive records of the given type ending at the dataset end. */
+    List<Record> records(Class<? extends Record> type, int count) {
+        Instant start = mEnd.minus(STEPS_RECORD_DURATION.multipliedBy(count));
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Instant time = start.plus(STEPS_RECORD_DURATION.multipliedBy(i));
+            if (type == StepsRecord.class) {
+                records.add(stepsRecord(time));
+            } else if (type == DistanceRecord.class) {
+                records.add(distanceRecord(time));
+            } else if (type == ActiveCaloriesBurnedRecord.class) {
+                records.add(activeCaloriesRecord(time));
+            } else if (type == HeartRateRecord.class) {
+                records.add(heartRateRecord(time, STEPS_RECORD_DURATION));
+            } else {
+                throw new IllegalArgumentException("Unsupported record type: " + type);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns {@code count} consecutive steps records of {@code period} each, starting at {@code
+     * start}, as written by a device sampling at {@code 1 / period}.
+     */
+    List<Record> stepsStream(Instant start, Duration period, int count) {
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Instant time = start.plus(period.multipliedBy(i));
+            records.add(
+                    new StepsRecord.Builder(mMetadata, time, time.plus(period), mRandom.nextInt(5))
+                            .build());
+        }
+        return records;
+    }
+
+    /** Splits {@code records} into lists of at most {@link #INSERT_BATCH_SIZE} records. */
+    static List<List<Record>> batches(List<Record> records) {
+        List<List<Record>> batches = new ArrayList<>();
+        for (int i = 0; i < records.size(); i += INSERT_BATCH_SIZE) {
+            batches.add(records.subList(i, Math.min(records.size(), i + INSERT_BATCH_SIZE)));
+        }
+        return batches;
+    }
+
+    private StepsRecord stepsRecord(Instant start) {
+        return new StepsRecord.Builder(
+                        mMetadata, start, start.plus(STEPS_RECORD_DURATION), mRandom.nextInt(2000))
+                .build();
+    }
+
+    private DistanceRecord distanceRecord(Instant start) {
+        return new DistanceRecord.Builder(
+                        mMetadata,
+                        start,
+                        start.plus(STEPS_RECORD_DURATION),
+                        Length.fromMeters(mRandom.nextInt(1500)))
+                .build();
+    }
+
+    private ActiveCaloriesBurnedRecord activeCaloriesRecord(Instant start) {
+        return new ActiveCaloriesBurnedRecord.Builder(
+                        mMetadata,
+                        start,
+                        start.plus(STEPS_RECORD_DURATION),
+                        Energy.fromCalories(mRandom.nextInt(100_000)))
+                .build();
+    }
+
+    private HeartRateRecord heartRateRecord(Instant start) {
+        return heartRateRecord(start, HEART_RATE_RECORD_DURATION);
+    }
+
+    private HeartRateRecord heartRateRecord(Instant start, Duration duration) {
+        int sampleCount = (int) duration.getSeconds();
+        List<HeartRateRecord.HeartRateSample> samples = new ArrayList<>(sampleCount);
+        for (int i = 0; i < sampleCount; i++) {
+            samples.add(
+                    new HeartRateRecord.HeartRateSample(
+                            60 + mRandom.nextInt(100), start.plusSeconds(i)));
+        }
+        return new HeartRateRecord.Builder(mMetadata, start, start.plus(duration), samples)
+                .build();
+    }
+
+    private static int getIntArgument(String key, int defaultValue) {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String value = arguments.getString(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import android.health.connect.HealthConnectManager;
+import android.health.connect.changelog.ChangeLogTokenRequest;
+import android.health.connect.changelog.ChangeLogsRequest;
+import android.health.connect.changelog.ChangeLogsResponse;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+
+/** Measures change log token issuance and polling, as done by sync clients. */
+public class ChangeLogsBenchmark {
+    private static final int CHANGED_RECORDS = 1000;
+    private static final int PAGE_SIZE = 1000;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private HealthConnectManager mService;
+    private ChangeLogTokenRequest mTokenRequest;
+
+    @Before
+    public void setUp() {
+        mService = HealthConnectBenchmarkUtils.getHealthConnectManager();
+        HealthConnectBenchmarkUtils.deleteAllRecords(mService, StepsRecord.class);
+        mTokenRequest =
+                new ChangeLogTokenRequest.Builder().addRecordType(StepsRecord.class).build();
+    }
+
+    @After
+    public void tearDown() {
+        HealthConnectBenchmarkUtils.deleteAllRecords(mService, StepsRecord.class);
+    }
+
+    @Test
+    public void getChangeLogToken() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.getChangeLogToken(mService, mTokenRequest);
+        }
+    }
+
+    /** Polls a token with no pending changes, the common case for a frequently syncing client. */
+    @Test
+    public void getChangeLogs_noChanges() {
+        String token = HealthConnectBenchmarkUtils.getChangeLogToken(mService, mTokenRequest);
+        ChangeLogsRequest request = new ChangeLogsRequest.Builder(token).build();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.getChangeLogs(mService, request);
+        }
+    }
+
+    /** Drains all the pages of changes produced by {@link #CHANGED_RECORDS} upserts. */
+    @Test
+    public void getChangeLogs_upserts() {
+        String token = HealthConnectBenchmarkUtils.getChangeLogToken(mService, mTokenRequest);
+        List<Record> records =
+                new BenchmarkDataGenerator().records(StepsRecord.class, CHANGED_RECORDS);
+        for (List<Record> batch : BenchmarkDataGenerator.batches(records)) {
+            HealthConnectBenchmarkUtils.insertRecords(mService, batch);
+        }
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            String pageToken = token;
+            ChangeLogsResponse response;
+            do {
+                response =
+                        HealthConnectBenchmarkUtils.getChangeLogs(
+                                mService,
+                                new ChangeLogsRequest.Builder(pageToken)
+                                        .setPageSize(PAGE_SIZE)
+                                        .build());
+                pageToken = response.getNextChangesToken();
+            } while (response.hasMorePages());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.health.connect.AggregateRecordsGroupedByDurationResponse;
+import android.health.connect.AggregateRecordsRequest;
+import android.health.connect.HealthConnectException;
+import android.health.connect.HealthConnectManager;
+import android.health.connect.InsertRecordsResponse;
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.ReadRecordsResponse;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.changelog.ChangeLogTokenRequest;
+import android.health.connect.changelog.ChangeLogTokenResponse;
+import android.health.connect.changelog.ChangeLogsRequest;
+import android.health.connect.changelog.ChangeLogsResponse;
+import android.health.connect.datatypes.Record;
+import android.os.OutcomeReceiver;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/** Blocking wrappers around {@link HealthConnectManager} APIs used by the benchmarks. */
+final class HealthConnectBenchmarkUtils {
+    private static final long TIMEOUT_SECONDS = 120;
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private HealthConnectBenchmarkUtils() {}
+
+    static HealthConnectManager getHealthConnectManager() {
+        Context context = ApplicationProvider.getApplicationContext();
+        HealthConnectManager service = context.getSystemService(HealthConnectManager.class);
+        assertThat(service).isNotNull();
+        return service;
+    }
+
+    static List<Record> insertRecords(HealthConnectManager service, List<Record> records) {
+        InsertRecordsResponse response =
+                await(callback -> service.insertRecords(records, EXECUTOR, callback));
+        return response.getRecords();
+    }
+
+    static <T extends Record> ReadRecordsResponse<T> readRecords(
+            HealthConnectManager service, ReadRecordsRequestUsingFilters<T> request) {
+        return await(callback -> service.readRecords(request, EXECUTOR, callback));
+    }
+
+    static <T> List<AggregateRecordsGroupedByDurationResponse<T>> aggregateGroupByDuration(
+            HealthConnectManager service, AggregateRecordsRequest<T> request, Duration duration) {
+        return await(
+                callback ->
+                        service.aggregateGroupByDuration(request, duration, EXECUTOR, callback));
+    }
+
+    static String getChangeLogToken(HealthConnectManager service, ChangeLogTokenRequest request) {
+        ChangeLogTokenResponse response =
+                await(callback -> service.getChangeLogToken(request, EXECUTOR, callback));
+        return response.getToken();
+    }
+
+    static ChangeLogsResponse getChangeLogs(
+            HealthConnectManager service, ChangeLogsRequest request) {
+        return await(callback -> service.getChangeLogs(request, EXECUTOR, callback));
+    }
+
+    /** Deletes all the records of the given type written by the benchmark app. */
+    static void deleteAllRecords(HealthConnectManager service, Class<? extends Record> type) {
+        TimeInstantRangeFilter filter =
+                new TimeInstantRangeFilter.Builder()
+                        .setStartTime(Instant.EPOCH)
+                        .setEndTime(Instant.now().plus(Duration.ofDays(1)))
+                        .build();
+        HealthConnectBenchmarkUtils.<Void>await(
+                callback -> service.deleteRecords(type, filter, EXECUTOR, callback));
+    }
+
+    private static <T> T await(Consumer<OutcomeReceiver<T, HealthConnectException>> call) {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<HealthConnectException> error = new AtomicReference<>();
+        call.accept(
+                new OutcomeReceiver<>() {
+                    @Override
+                    public void onResult(T response) {
+                        result.set(response);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(HealthConnectException exception) {
+                        error.set(exception);
+                        latch.countDown();
+                    }
+                });
+        try {
+            assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return result.get();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import android.health.connect.HealthConnectManager;
+import android.health.connect.datatypes.ActiveCaloriesBurnedRecord;
+import android.health.connect.datatypes.DistanceRecord;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Measures insert and delete throughput per record type, one batch of records per iteration. Each
+ * inserted or deleted row also updates the row count of its table.
+ */
+@RunWith(Parameterized.class)
+public class InsertRecordsBenchmark {
+    private static final int RECORDS_PER_INSERT = 100;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter public Class<? extends Record> mRecordType;
+
+    private HealthConnectManager mService;
+    private List<Record> mRecords;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> recordTypes() {
+        return Arrays.asList(
+                new Object[][] {
+                    {StepsRecord.class},
+                    {DistanceRecord.class},
+                    {ActiveCaloriesBurnedRecord.class},
+                    {HeartRateRecord.class},
+                });
+    }
+
+    @Before
+    public void setUp() {
+        mService = HealthConnectBenchmarkUtils.getHealthConnectManager();
+        HealthConnectBenchmarkUtils.deleteAllRecords(mService, mRecordType);
+        mRecords = new BenchmarkDataGenerator().records(mRecordType, RECORDS_PER_INSERT);
+    }
+
+    @After
+    public void tearDown() {
+        HealthConnectBenchmarkUtils.deleteAllRecords(mService, mRecordType);
+    }
+
+    @Test
+    public void insertRecords() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.insertRecords(mService, mRecords);
+
+            state.pauseTiming();
+            // Keep measuring the insert path rather than the conflict resolution path.
+            HealthConnectBenchmarkUtils.deleteAllRecords(mService, mRecordType);
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void deleteRecords() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            HealthConnectBenchmarkUtils.insertRecords(mService, mRecords);
+            state.resumeTiming();
+
+            HealthConnectBenchmarkUtils.deleteAllRecords(mService, mRecordType);
+        }
+    }
+}
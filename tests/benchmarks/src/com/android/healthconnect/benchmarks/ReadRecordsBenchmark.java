@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.HealthConnectManager;
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.ReadRecordsResponse;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Measures paged reads over the synthetic steps and heart rate datasets. */
+public class ReadRecordsBenchmark {
+    private static final int PAGE_SIZE = 1000;
+    private static final int HEART_RATE_PAGE_SIZE = 24;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private static HealthConnectManager sService;
+    private static TimeInstantRangeFilter sFilter;
+
+    @BeforeClass
+    public static void setUpDataset() {
+        sService = HealthConnectBenchmarkUtils.getHealthConnectManager();
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, StepsRecord.class);
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, HeartRateRecord.class);
+
+        BenchmarkDataGenerator generator = new BenchmarkDataGenerator();
+        insertInBatches(generator.stepsDataset(BenchmarkDataGenerator.getStepsYears()));
+        insertInBatches(generator.heartRateDataset(BenchmarkDataGenerator.getHeartRateDays()));
+        sFilter =
+                new TimeInstantRangeFilter.Builder()
+                        .setStartTime(Instant.EPOCH)
+                        .setEndTime(generator.getEndTime())
+                        .build();
+    }
+
+    @AfterClass
+    public static void tearDownDataset() {
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, StepsRecord.class);
+        HealthConnectBenchmarkUtils.deleteAllRecords(sService, HeartRateRecord.class);
+    }
+
+    @Test
+    public void readFirstPage_steps() {
+        ReadRecordsRequestUsingFilters<StepsRecord> request =
+                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                        .setTimeRangeFilter(sFilter)
+                        .setPageSize(PAGE_SIZE)
+                        .build();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.readRecords(sService, request);
+        }
+    }
+
+    @Test
+    public void readFirstPage_heartRate() {
+        ReadRecordsRequestUsingFilters<HeartRateRecord> request =
+                new ReadRecordsRequestUsingFilters.Builder<>(HeartRateRecord.class)
+                        .setTimeRangeFilter(sFilter)
+                        .setPageSize(HEART_RATE_PAGE_SIZE)
+                        .build();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HealthConnectBenchmarkUtils.readRecords(sService, request);
+        }
+    }
+
+    /** Reads the whole steps dataset page by page, following the page tokens. */
+    @Test
+    public void readAllPages_steps() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            long pageToken = -1;
+            int pages = 0;
+            do {
+                ReadRecordsRequestUsingFilters.Builder<StepsRecord> builder =
+                        new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                                .setTimeRangeFilter(sFilter)
+                                .setPageSize(PAGE_SIZE);
+                if (pageToken != -1) {
+                    builder.setPageToken(pageToken);
+                }
+                ReadRecordsResponse<StepsRecord> response =
+                        HealthConnectBenchmarkUtils.readRecords(sService, builder.build());
+                pageToken = response.getNextPageToken();
+                pages++;
+            } while (pageToken != -1);
+            assertThat(pages).isGreaterThan(0);
+        }
+    }
+
+    private static void insertInBatches(List<Record> records) {
+        for (List<Record> batch : BenchmarkDataGenerator.batches(records)) {
+            HealthConnectBenchmarkUtils.insertRecords(sService, batch);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import android.health.connect.aidl.RecordsParcel;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Measures {@link RecordsParcel} marshalling, which every insert and read pays on both sides. */
+public class RecordsParcelBenchmark {
+    private static final int RECORD_COUNT = 1000;
+    private static final int HEART_RATE_RECORD_COUNT = 24;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void roundTrip_steps() {
+        roundTrip(StepsRecord.class, RECORD_COUNT);
+    }
+
+    @Test
+    public void roundTrip_heartRate() {
+        roundTrip(HeartRateRecord.class, HEART_RATE_RECORD_COUNT);
+    }
+
+    private void roundTrip(Class<? extends Record> type, int count) {
+        List<RecordInternal<?>> recordInternals = new ArrayList<>(count);
+        for (Record record : new BenchmarkDataGenerator().records(type, count)) {
+            recordInternals.add(record.toRecordInternal());
+        }
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                new RecordsParcel(recordInternals).writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                RecordsParcel.CREATOR.createFromParcel(parcel).getRecords();
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.healthconnect.benchmarks;
+
+import android.health.connect.HealthConnectManager;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the throughput of a device syncing a stream of samples once per minute, each sync
+ * appending one minute of samples after the previously synced ones.
+ *
+ * <p>Time ordered batches are appended without conflict resolution, the batches in reverse order
+ * go through the generic insert path and serve as the baseline. The stream follows {@link
+ * BenchmarkDataGenerator#getStepsYears()} years of steps history of the same app and device, so
+ * that reading the latest start time of the device is measured against a populated table.
+ */
+@RunWith(Parameterized.class)
+public class StreamingInsertBenchmark {
+    private static final Duration SYNC_PERIOD = Duration.ofMinutes(1);
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter(0)
+    public int mSamplingRateHz;
+
+    @Parameterized.Parameter(1)
+    public boolean mTimeOrdered;
+
+    private HealthConnectManager mService;
+    private BenchmarkDataGenerator mDataGenerator;
+
+    @Parameterized.Parameters(name = "{0}Hz_timeOrdered={1}")
+    public static Collection<Object[]> samplingRates() {
+        return Arrays.asList(
+                new Object[][] {
+                    {1, true},
+                    {1, false},
+                    {25, true},
+                    {25, false},
+                });
+    }
+
+    @Before
+    public void setUp() {
+        mService = HealthConnectBenchmarkUtils.getHealthConnectManager();
+        HealthConnectBenchmarkUtils.deleteAllRecords(mService, StepsRecord.class);
+        mDataGenerator = new BenchmarkDataGenerator();
+        List<Record> history = mDataGenerator.stepsDataset(BenchmarkDataGenerator.getStepsYears());
+        for (List<Record> batch : BenchmarkDataGenerator.batches(history)) {
+            HealthConnectBenchmarkUtils.insertRecords(mService, batch);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        HealthConnectBenchmarkUtils.deleteAllRecords(mService, StepsRecord.class);
+    }
+
+    @Test
+    public void syncOneMinute() {
+        Duration period = Duration.ofMillis(1000 / mSamplingRateHz);
+        int samplesPerSync = (int) (SYNC_PERIOD.toMillis() / period.toMillis());
+        // The stream starts after the history.
+        Instant syncStart = mDataGenerator.getEndTime();
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            List<Record> records = mDataGenerator.stepsStream(syncStart, period, samplesPerSync);
+            if (!mTimeOrdered) {
+                records = new ArrayList<>(records);
+                Collections.reverse(records);
+            }
+            syncStart = syncStart.plus(SYNC_PERIOD);
+            state.resumeTiming();
+
+            for (List<Record> batch : BenchmarkDataGenerator.batches(records)) {
+                HealthConnectBenchmarkUtils.insertRecords(mService, batch);
+            }
+        }
+    }
+}
@@ -43,6 +43,9 @@ public class RateLimiterTest {
     private static final boolean IS_IN_FOREGROUND_FALSE = false;
     private static final int MAX_FOREGROUND_CALL_15M = 1000;
     private static final int MAX_BACKGROUND_CALL_15M = 1000;
+    private static final int MAX_BULK_IMPORT_RECORDS_24H =
+            HealthConnectDeviceConfigManager
+                    .QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H_DEFAULT_FLAG_VALUE;
     private static final Duration WINDOW_15M = Duration.ofMinutes(15);
 
     @Rule public ExpectedException exception = ExpectedException.none();
@@ -83,6 +86,9 @@ public class RateLimiterTest {
                 RateLimiter.QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_BACKGROUND,
                 HealthConnectDeviceConfigManager
                         .QUOTA_BUCKET_PER_24H_BACKGROUND_DEFAULT_FLAG_VALUE);
+        quotaBucketToMaxApiCallQuotaMap.put(
+                RateLimiter.QuotaBucket.QUOTA_BUCKET_BULK_IMPORT_RECORDS_PER_24H,
+                MAX_BULK_IMPORT_RECORDS_24H);
         quotaBucketToMaxMemoryQuotaMap.put(
                 CHUNK_SIZE_LIMIT_IN_BYTES,
                 HealthConnectDeviceConfigManager.CHUNK_SIZE_LIMIT_IN_BYTES_DEFAULT_FLAG_VALUE);
@@ -165,6 +171,24 @@ public class RateLimiterTest {
         tryAcquireCallQuotaNTimes(quotaCategoryWrite, IS_IN_FOREGROUND_FALSE, ceilQuotaAcquired);
     }
 
+    @Test
+    public void testTryAcquireBulkImportQuota_inLimit_doesNotSpendWriteQuota() {
+        RateLimiter.clearCache();
+        RateLimiter.tryAcquireBulkImportQuota(UID, MAX_BULK_IMPORT_RECORDS_24H);
+        @QuotaCategory.Type int quotaCategoryWrite = 3;
+        tryAcquireCallQuotaNTimes(
+                quotaCategoryWrite, IS_IN_FOREGROUND_FALSE, MAX_BACKGROUND_CALL_15M);
+    }
+
+    @Test
+    public void testTryAcquireBulkImportQuota_limitExceeded() {
+        RateLimiter.clearCache();
+        RateLimiter.tryAcquireBulkImportQuota(UID, MAX_BULK_IMPORT_RECORDS_24H);
+        exception.expect(HealthConnectException.class);
+        exception.expectMessage(containsString("API call quota exceeded"));
+        RateLimiter.tryAcquireBulkImportQuota(UID, /* numberOfRecords= */ 1000);
+    }
+
     @Test
     public void checkMaxChunkMemoryUsage_LimitExceeded() {
         long valueExceeding = 5000001;
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.aidl.ReadRecordsForTypesRequestParcel;
+import android.health.connect.aidl.ReadRecordsRequestParcel;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.datatypes.StepsRecord;
+import android.os.Parcel;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class ReadRecordsForTypesRequestParcelTest {
+    private static final Instant START_TIME = Instant.now().truncatedTo(ChronoUnit.DAYS);
+    private static final TimeInstantRangeFilter TIME_RANGE_FILTER =
+            new TimeInstantRangeFilter.Builder()
+                    .setStartTime(START_TIME)
+                    .setEndTime(START_TIME.plus(1, ChronoUnit.DAYS))
+                    .build();
+
+    @Test
+    public void testRequestsParsing_usingParcel() {
+        ReadRecordsForTypesRequestParcel request =
+                new ReadRecordsForTypesRequestParcel(
+                        List.of(
+                                createRequest(StepsRecord.class, TIME_RANGE_FILTER, 100),
+                                createRequest(HeartRateRecord.class, TIME_RANGE_FILTER, 100)));
+
+        Parcel parcel = Parcel.obtain();
+        request.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        ReadRecordsForTypesRequestParcel parsedRequest =
+                ReadRecordsForTypesRequestParcel.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        List<ReadRecordsRequestParcel> requests = parsedRequest.getRequests();
+        assertThat(requests).hasSize(2);
+        assertThat(requests.get(0).getRecordType())
+                .isEqualTo(RecordTypeIdentifier.RECORD_TYPE_STEPS);
+        assertThat(requests.get(1).getRecordType())
+                .isEqualTo(RecordTypeIdentifier.RECORD_TYPE_HEART_RATE);
+        assertThat(requests.get(1).getStartTime()).isEqualTo(START_TIME.toEpochMilli());
+        assertThat(requests.get(1).getPageSize()).isEqualTo(100);
+    }
+
+    @Test
+    public void testRequests_sameRecordTypeTwice_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new ReadRecordsForTypesRequestParcel(
+                                List.of(
+                                        createRequest(StepsRecord.class, TIME_RANGE_FILTER, 100),
+                                        createRequest(
+                                                StepsRecord.class, TIME_RANGE_FILTER, 100))));
+    }
+
+    @Test
+    public void testRequests_differentPageSizes_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new ReadRecordsForTypesRequestParcel(
+                                List.of(
+                                        createRequest(StepsRecord.class, TIME_RANGE_FILTER, 100),
+                                        createRequest(
+                                                HeartRateRecord.class, TIME_RANGE_FILTER, 10))));
+    }
+
+    @Test
+    public void testRequests_empty_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ReadRecordsForTypesRequestParcel(List.of()));
+    }
+
+    private static <T extends Record> ReadRecordsRequestUsingFilters<T> createRequest(
+            Class<T> recordType, TimeInstantRangeFilter timeRangeFilter, int pageSize) {
+        return new ReadRecordsRequestUsingFilters.Builder<>(recordType)
+                .setTimeRangeFilter(timeRangeFilter)
+                .setPageSize(pageSize)
+                .build();
+    }
+}
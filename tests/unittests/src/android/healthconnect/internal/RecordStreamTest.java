@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect.internal;
+
+import static android.healthconnect.internal.datatypes.TestUtils.END_TIME;
+import static android.healthconnect.internal.datatypes.TestUtils.START_TIME;
+import static android.healthconnect.internal.datatypes.TestUtils.buildExerciseSessionInternal;
+import static android.healthconnect.internal.datatypes.TestUtils.buildSleepSessionInternal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.internal.RecordStream;
+import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class RecordStreamTest {
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    @Test
+    public void testRecordStream_readsWrittenRecords() throws IOException {
+        List<RecordInternal<?>> records =
+                List.of(
+                        buildStepsRecord(10),
+                        buildExerciseSessionInternal(),
+                        buildHeartRateRecord(),
+                        buildSleepSessionInternal(),
+                        buildStepsRecord(20));
+
+        RecordStream.Reader reader = new RecordStream.Reader(toStream(records), MAX_RECORD_SIZE);
+
+        for (RecordInternal<?> record : records) {
+            RecordInternal<?> readRecord = reader.readRecord();
+            assertThat(readRecord.getRecordType()).isEqualTo(record.getRecordType());
+            assertThat(readRecord.getUuid()).isEqualTo(record.getUuid());
+            assertThat(readRecord.toExternalRecord()).isEqualTo(record.toExternalRecord());
+        }
+        assertThat(reader.readRecord()).isNull();
+    }
+
+    @Test
+    public void testRecordStream_truncatedStream_throws() throws IOException {
+        byte[] bytes = toStream(List.of(buildStepsRecord(10))).readAllBytes();
+        RecordStream.Reader reader =
+                new RecordStream.Reader(
+                        new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 4)),
+                        MAX_RECORD_SIZE);
+
+        assertThat(reader.readRecord()).isNotNull();
+        assertThrows(EOFException.class, reader::readRecord);
+    }
+
+    @Test
+    public void testRecordStream_recordLargerThanMaxSize_throws() throws IOException {
+        RecordStream.Reader reader =
+                new RecordStream.Reader(
+                        toStream(List.of(buildStepsRecord(10))), /* maxRecordSize= */ 8);
+
+        assertThrows(IOException.class, reader::readRecord);
+    }
+
+    @Test
+    public void testRecordStream_notARecordStream_throws() {
+        assertThrows(
+                IOException.class,
+                () ->
+                        new RecordStream.Reader(
+                                new ByteArrayInputStream(new byte[8]), MAX_RECORD_SIZE));
+    }
+
+    @Test
+    public void testRecordStream_unknownVersion_throws() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(RecordStream.MAGIC);
+        out.writeInt(RecordStream.VERSION + 1);
+
+        assertThrows(
+                IOException.class,
+                () ->
+                        new RecordStream.Reader(
+                                new ByteArrayInputStream(outputStream.toByteArray()),
+                                MAX_RECORD_SIZE));
+    }
+
+    @Test
+    public void testRecordStream_stringLongerThanRecord_throws() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(RecordStream.MAGIC);
+        out.writeInt(RecordStream.VERSION);
+        out.writeInt(RecordTypeIdentifier.RECORD_TYPE_STEPS);
+        // A payload of only the length of the UUID string.
+        out.writeInt(4);
+        out.writeInt(Integer.MAX_VALUE);
+        RecordStream.Reader reader =
+                new RecordStream.Reader(
+                        new ByteArrayInputStream(outputStream.toByteArray()), MAX_RECORD_SIZE);
+
+        assertThrows(IOException.class, reader::readRecord);
+    }
+
+    private static ByteArrayInputStream toStream(List<RecordInternal<?>> records)
+            throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (RecordStream.Writer writer = new RecordStream.Writer(outputStream)) {
+            for (RecordInternal<?> record : records) {
+                writer.writeRecord(record);
+            }
+            writer.finish();
+        }
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    private static HeartRateRecordInternal buildHeartRateRecord() {
+        HeartRateRecordInternal record = new HeartRateRecordInternal();
+        record.setSamples(
+                Set.of(
+                        new HeartRateRecordInternal.HeartRateSample(60, START_TIME),
+                        new HeartRateRecordInternal.HeartRateSample(70, START_TIME + 1000)));
+        record.setStartTime(START_TIME)
+                .setEndTime(END_TIME)
+                .setStartZoneOffset(0)
+                .setEndZoneOffset(0);
+        record.setUuid(UUID.randomUUID()).setPackageName("package.a");
+        return record;
+    }
+
+    private static StepsRecordInternal buildStepsRecord(int count) {
+        StepsRecordInternal record = new StepsRecordInternal().setCount(count);
+        record.setStartTime(START_TIME)
+                .setEndTime(END_TIME)
+                .setStartZoneOffset(0)
+                .setEndZoneOffset(0);
+        record.setUuid(UUID.randomUUID())
+                .setPackageName("package.a")
+                .setManufacturer("google")
+                .setModel("Pixel")
+                .setDeviceType(1);
+        return record;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect.internal.datatypes;
+
+import static android.healthconnect.internal.datatypes.TestUtils.END_TIME;
+import static android.healthconnect.internal.datatypes.TestUtils.START_TIME;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.datatypes.Device;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.health.connect.internal.datatypes.utils.InternalExternalRecordConverter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class LazyExternalRecordListTest {
+    private static final int UNKNOWN_DEVICE_TYPE = 1000;
+
+    @Test
+    public void testLazyExternalRecords_sameRecordsAsEagerConversion() {
+        List<RecordInternal<?>> recordInternals =
+                List.of(
+                        buildStepsRecord(10, "package.a", Device.DEVICE_TYPE_PHONE),
+                        buildStepsRecord(20, "package.b", UNKNOWN_DEVICE_TYPE),
+                        buildStepsRecord(30, "package.a", Device.DEVICE_TYPE_WATCH));
+
+        List<Record> expected =
+                InternalExternalRecordConverter.getInstance().getExternalRecords(recordInternals);
+        List<Record> lazyRecords =
+                InternalExternalRecordConverter.getInstance()
+                        .getLazyExternalRecords(recordInternals);
+
+        assertThat(expected).hasSize(2);
+        assertThat(lazyRecords).containsExactlyElementsIn(expected).inOrder();
+        assertThat(((StepsRecord) lazyRecords.get(1)).getCount()).isEqualTo(30);
+    }
+
+    @Test
+    public void testLazyExternalRecords_iteration_convertsRecordsOnAccess() {
+        List<RecordInternal<?>> recordInternals = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            recordInternals.add(buildStepsRecord(i, "package.a", Device.DEVICE_TYPE_PHONE));
+        }
+        List<Record> lazyRecords =
+                InternalExternalRecordConverter.getInstance()
+                        .getLazyExternalRecords(recordInternals);
+
+        List<Long> counts = new ArrayList<>();
+        for (Record record : lazyRecords) {
+            counts.add(((StepsRecord) record).getCount());
+        }
+
+        assertThat(counts).containsExactly(0L, 1L, 2L).inOrder();
+        assertThat(lazyRecords.isEmpty()).isFalse();
+    }
+
+    @Test
+    public void testLazyExternalRecords_sharesDataOriginsAndDevices() {
+        List<RecordInternal<?>> recordInternals =
+                List.of(
+                        buildStepsRecord(1, "package.a", Device.DEVICE_TYPE_PHONE),
+                        buildStepsRecord(2, "package.a", Device.DEVICE_TYPE_PHONE),
+                        buildStepsRecord(3, "package.b", Device.DEVICE_TYPE_PHONE));
+        List<Record> lazyRecords =
+                InternalExternalRecordConverter.getInstance()
+                        .getLazyExternalRecords(recordInternals);
+
+        assertThat(lazyRecords.get(1).getMetadata().getDataOrigin())
+                .isSameInstanceAs(lazyRecords.get(0).getMetadata().getDataOrigin());
+        assertThat(lazyRecords.get(1).getMetadata().getDevice())
+                .isSameInstanceAs(lazyRecords.get(0).getMetadata().getDevice());
+        assertThat(lazyRecords.get(2).getMetadata().getDataOrigin())
+                .isNotEqualTo(lazyRecords.get(0).getMetadata().getDataOrigin());
+    }
+
+    @Test
+    public void testLazyExternalRecords_canBeModified() {
+        List<RecordInternal<?>> recordInternals =
+                List.of(
+                        buildStepsRecord(1, "package.a", Device.DEVICE_TYPE_PHONE),
+                        buildStepsRecord(2, "package.a", Device.DEVICE_TYPE_PHONE));
+        List<Record> lazyRecords =
+                InternalExternalRecordConverter.getInstance()
+                        .getLazyExternalRecords(recordInternals);
+
+        lazyRecords.sort((first, second) -> -Long.compare(getCount(first), getCount(second)));
+        lazyRecords.remove(1);
+
+        assertThat(lazyRecords).hasSize(1);
+        assertThat(getCount(lazyRecords.get(0))).isEqualTo(2);
+    }
+
+    private static long getCount(Record record) {
+        return ((StepsRecord) record).getCount();
+    }
+
+    private static StepsRecordInternal buildStepsRecord(
+            int count, String packageName, int deviceType) {
+        StepsRecordInternal record = new StepsRecordInternal().setCount(count);
+        record.setStartTime(START_TIME)
+                .setEndTime(END_TIME)
+                .setStartZoneOffset(0)
+                .setEndZoneOffset(0);
+        record.setUuid(UUID.randomUUID())
+                .setPackageName(packageName)
+                .setManufacturer("google")
+                .setModel("Pixel")
+                .setDeviceType(deviceType);
+        return record;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package healthconnect.logging;
+
+import static com.android.server.healthconnect.logging.ApiLatencyStats.FOREGROUND_STATE_BACKGROUND;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.FOREGROUND_STATE_FOREGROUND;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.PHASE_DATABASE;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.PHASE_QUEUE_WAIT;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.PHASE_TOTAL;
+import static com.android.server.healthconnect.logging.HealthConnectServiceLogger.ApiMethods.READ_DATA;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.server.healthconnect.logging.ApiLatencyStats;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ApiLatencyStatsTest {
+    private static final int DATA_TYPE = 5;
+
+    @Test
+    public void testGetBucket_exponentialBounds() {
+        assertThat(ApiLatencyStats.Histogram.getBucket(0)).isEqualTo(0);
+        assertThat(ApiLatencyStats.Histogram.getBucket(millis(1))).isEqualTo(0);
+        assertThat(ApiLatencyStats.Histogram.getBucket(millis(2))).isEqualTo(1);
+        assertThat(ApiLatencyStats.Histogram.getBucket(millis(3))).isEqualTo(2);
+        assertThat(ApiLatencyStats.Histogram.getBucket(millis(4))).isEqualTo(2);
+        assertThat(ApiLatencyStats.Histogram.getBucket(millis(5))).isEqualTo(3);
+        assertThat(ApiLatencyStats.Histogram.getBucket(millis(1_000_000))).isEqualTo(16);
+    }
+
+    @Test
+    public void testRecord_negativeDurationsSkipped() {
+        ApiLatencyStats stats = new ApiLatencyStats();
+
+        stats.record(
+                READ_DATA,
+                DATA_TYPE,
+                FOREGROUND_STATE_FOREGROUND,
+                new long[] {millis(10), millis(3), -1, millis(6), -1});
+
+        ApiLatencyStats.Histogram total =
+                stats.getHistogram(READ_DATA, PHASE_TOTAL, DATA_TYPE, FOREGROUND_STATE_FOREGROUND);
+        assertThat(total.getCount()).isEqualTo(1);
+        assertThat(total.getMaxMillis()).isEqualTo(10);
+        assertThat(total.getBucketCount(4)).isEqualTo(1);
+        assertThat(
+                        stats.getHistogram(
+                                        READ_DATA,
+                                        PHASE_QUEUE_WAIT,
+                                        DATA_TYPE,
+                                        FOREGROUND_STATE_FOREGROUND)
+                                .getCount())
+                .isEqualTo(1);
+        assertThat(
+                        stats.getHistogram(
+                                READ_DATA,
+                                ApiLatencyStats.PHASE_PERMISSION_CHECK,
+                                DATA_TYPE,
+                                FOREGROUND_STATE_FOREGROUND))
+                .isNull();
+        assertThat(
+                        stats.getHistogram(
+                                READ_DATA, PHASE_DATABASE, DATA_TYPE, FOREGROUND_STATE_BACKGROUND))
+                .isNull();
+    }
+
+    @Test
+    public void testRecord_sameKey_accumulated() {
+        ApiLatencyStats stats = new ApiLatencyStats();
+
+        stats.record(READ_DATA, DATA_TYPE, FOREGROUND_STATE_BACKGROUND, phases(millis(2)));
+        stats.record(READ_DATA, DATA_TYPE, FOREGROUND_STATE_BACKGROUND, phases(millis(4)));
+
+        ApiLatencyStats.Histogram total =
+                stats.getHistogram(READ_DATA, PHASE_TOTAL, DATA_TYPE, FOREGROUND_STATE_BACKGROUND);
+        assertThat(total.getCount()).isEqualTo(2);
+        assertThat(total.getMeanMillis()).isWithin(0.01).of(3);
+        assertThat(total.getMaxMillis()).isEqualTo(4);
+    }
+
+    @Test
+    public void testSnapshotAndReset_returnsRecordedAndClears() {
+        ApiLatencyStats stats = new ApiLatencyStats();
+        stats.record(READ_DATA, -1, FOREGROUND_STATE_FOREGROUND, phases(millis(7)));
+
+        Map<String, ApiLatencyStats.Histogram> snapshot = stats.snapshotAndReset();
+
+        assertThat(snapshot).hasSize(1);
+        String key = snapshot.keySet().iterator().next();
+        assertThat(key).contains("phase=total");
+        assertThat(key).contains("dataType=-1");
+        assertThat(key).contains("caller=foreground");
+        assertThat(snapshot.get(key).getCount()).isEqualTo(1);
+        assertThat(stats.snapshotAndReset()).isEmpty();
+    }
+
+    @Test
+    public void testRecord_multipleDataTypes_recordedForEach() {
+        ApiLatencyStats stats = new ApiLatencyStats();
+
+        stats.record(
+                READ_DATA,
+                new int[] {DATA_TYPE, DATA_TYPE + 1, -1},
+                FOREGROUND_STATE_FOREGROUND,
+                phases(millis(3)));
+
+        assertThat(
+                        stats.getHistogram(
+                                        READ_DATA,
+                                        PHASE_TOTAL,
+                                        DATA_TYPE,
+                                        FOREGROUND_STATE_FOREGROUND)
+                                .getCount())
+                .isEqualTo(1);
+        assertThat(
+                        stats.getHistogram(
+                                        READ_DATA,
+                                        PHASE_TOTAL,
+                                        DATA_TYPE + 1,
+                                        FOREGROUND_STATE_FOREGROUND)
+                                .getCount())
+                .isEqualTo(1);
+        assertThat(stats.getHistogram(READ_DATA, PHASE_TOTAL, -1, FOREGROUND_STATE_FOREGROUND))
+                .isNull();
+    }
+
+    @Test
+    public void testSnapshotAndReset_recordedAfterReset_keptForNextSnapshot() {
+        ApiLatencyStats stats = new ApiLatencyStats();
+        stats.record(READ_DATA, DATA_TYPE, FOREGROUND_STATE_FOREGROUND, phases(millis(7)));
+        stats.snapshotAndReset();
+
+        stats.record(READ_DATA, DATA_TYPE, FOREGROUND_STATE_FOREGROUND, phases(millis(9)));
+
+        Map<String, ApiLatencyStats.Histogram> snapshot = stats.snapshotAndReset();
+        assertThat(snapshot).hasSize(1);
+        ApiLatencyStats.Histogram total = snapshot.values().iterator().next();
+        assertThat(total.getCount()).isEqualTo(1);
+        assertThat(total.getMaxMillis()).isEqualTo(9);
+    }
+
+    @Test
+    public void testDump_printsHistograms() {
+        ApiLatencyStats stats = new ApiLatencyStats();
+        stats.record(READ_DATA, DATA_TYPE, FOREGROUND_STATE_FOREGROUND, phases(millis(1)));
+        StringWriter stringWriter = new StringWriter();
+
+        stats.dump(new PrintWriter(stringWriter, true));
+
+        assertThat(stringWriter.toString()).contains("api=" + READ_DATA + " phase=total");
+        assertThat(stringWriter.toString()).contains("count=1");
+    }
+
+    private static long[] phases(long totalNanos) {
+        return new long[] {totalNanos, -1, -1, -1, -1};
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
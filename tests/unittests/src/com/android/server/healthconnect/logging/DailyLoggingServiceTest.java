@@ -28,6 +28,7 @@ import static org.mockito.Mockito.when;
 
 import android.content.Context;
 import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.database.DatabaseUtils;
 import android.health.HealthFitnessStatsLog;
 import android.health.connect.HealthConnectManager;
@@ -36,6 +37,7 @@ import android.os.UserHandle;
 
 import com.android.dx.mockito.inline.extended.ExtendedMockito;
 import com.android.server.healthconnect.logging.DailyLoggingService;
+import com.android.server.healthconnect.permission.HealthAppsIndex;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.BloodPressureRecordHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
@@ -65,6 +67,7 @@ public class DailyLoggingServiceTest {
     @Mock private PackageInfo mPackageInfoConnectedApp;
     @Mock private PackageInfo mPackageInfoNotHoldingPermission;
     @Mock private PackageInfo mPackageInfoNotConnectedApp;
+    @Mock private PackageInfo mPackageInfoOtherNotConnectedApp;
     private final UserHandle mCurrentUser = Process.myUserHandle();
     private MockitoSession mStaticMockSession;
     private static final String HEALTH_PERMISSION = "HEALTH_PERMISSION";
@@ -88,22 +91,32 @@ public class DailyLoggingServiceTest {
                         () ->
                                 HealthConnectManager.isHealthPermission(
                                         mContext, NOT_HEALTH_PERMISSION));
+        HealthAppsIndex.getInstance().clear();
+        mPackageInfoConnectedApp.packageName = "connected.app";
         mPackageInfoConnectedApp.requestedPermissions = new String[] {HEALTH_PERMISSION};
         mPackageInfoConnectedApp.requestedPermissionsFlags =
                 new int[] {PackageInfo.REQUESTED_PERMISSION_GRANTED};
 
+        mPackageInfoNotHoldingPermission.packageName = "not.holding.permission.app";
         mPackageInfoNotHoldingPermission.requestedPermissions =
                 new String[] {NOT_HEALTH_PERMISSION};
         mPackageInfoNotHoldingPermission.requestedPermissionsFlags =
                 new int[] {PackageInfo.REQUESTED_PERMISSION_GRANTED};
 
+        mPackageInfoNotConnectedApp.packageName = "not.connected.app";
         mPackageInfoNotConnectedApp.requestedPermissions = new String[] {HEALTH_PERMISSION};
         mPackageInfoNotConnectedApp.requestedPermissionsFlags =
                 new int[] {PackageInfo.REQUESTED_PERMISSION_NEVER_FOR_LOCATION};
+
+        mPackageInfoOtherNotConnectedApp.packageName = "other.not.connected.app";
+        mPackageInfoOtherNotConnectedApp.requestedPermissions = new String[] {HEALTH_PERMISSION};
+        mPackageInfoOtherNotConnectedApp.requestedPermissionsFlags =
+                new int[] {PackageInfo.REQUESTED_PERMISSION_NEVER_FOR_LOCATION};
     }
 
     @After
     public void tearDown() {
+        HealthAppsIndex.getInstance().clear();
         mStaticMockSession.finishMocking();
     }
 
@@ -150,12 +163,10 @@ public class DailyLoggingServiceTest {
     }
 
     @Test
-    public void testDailyUsageStatsLogs_oneConnected_oneAvailable_oneNotAvailableApp() {
+    public void testDailyUsageStatsLogs_oneConnected_oneAvailable_oneNotAvailableApp()
+            throws PackageManager.NameNotFoundException {
 
-        when(mContext.createContextAsUser(mCurrentUser, 0)
-                        .getPackageManager()
-                        .getInstalledPackages(any()))
-                .thenReturn(List.of(mPackageInfoConnectedApp, mPackageInfoNotHoldingPermission));
+        setInstalledPackages(mPackageInfoConnectedApp, mPackageInfoNotHoldingPermission);
 
         DailyLoggingService.logDailyMetrics(mContext, mCurrentUser);
 
@@ -167,12 +178,10 @@ public class DailyLoggingServiceTest {
     }
 
     @Test
-    public void testDailyUsageStatsLogs_oneConnected_oneAvailableApp() {
+    public void testDailyUsageStatsLogs_oneConnected_oneAvailableApp()
+            throws PackageManager.NameNotFoundException {
 
-        when(mContext.createContextAsUser(mCurrentUser, 0)
-                        .getPackageManager()
-                        .getInstalledPackages(any()))
-                .thenReturn(List.of(mPackageInfoConnectedApp));
+        setInstalledPackages(mPackageInfoConnectedApp);
 
         DailyLoggingService.logDailyMetrics(mContext, mCurrentUser);
 
@@ -182,12 +191,10 @@ public class DailyLoggingServiceTest {
     }
 
     @Test
-    public void testDailyUsageStatsLogs_zeroConnected_twoAvailableApps() {
+    public void testDailyUsageStatsLogs_zeroConnected_twoAvailableApps()
+            throws PackageManager.NameNotFoundException {
 
-        when(mContext.createContextAsUser(mCurrentUser, 0)
-                        .getPackageManager()
-                        .getInstalledPackages(any()))
-                .thenReturn(List.of(mPackageInfoNotConnectedApp, mPackageInfoNotConnectedApp));
+        setInstalledPackages(mPackageInfoNotConnectedApp, mPackageInfoOtherNotConnectedApp);
 
         DailyLoggingService.logDailyMetrics(mContext, mCurrentUser);
 
@@ -197,12 +204,10 @@ public class DailyLoggingServiceTest {
     }
 
     @Test
-    public void testDailyUsageStatsLogs_zeroConnected_zeroAvailableApps() {
+    public void testDailyUsageStatsLogs_zeroConnected_zeroAvailableApps()
+            throws PackageManager.NameNotFoundException {
 
-        when(mContext.createContextAsUser(mCurrentUser, 0)
-                        .getPackageManager()
-                        .getInstalledPackages(any()))
-                .thenReturn(List.of(mPackageInfoNotHoldingPermission));
+        setInstalledPackages(mPackageInfoNotHoldingPermission);
 
         DailyLoggingService.logDailyMetrics(mContext, mCurrentUser);
 
@@ -210,4 +215,18 @@ public class DailyLoggingServiceTest {
                 () -> HealthFitnessStatsLog.write(eq(HEALTH_CONNECT_USAGE_STATS), eq(0), eq(0)),
                 times(1));
     }
+
+    private void setInstalledPackages(PackageInfo... packageInfos)
+            throws PackageManager.NameNotFoundException {
+        PackageManager packageManager =
+                mContext.createContextAsUser(mCurrentUser, 0).getPackageManager();
+        when(packageManager.getInstalledPackages(any(PackageManager.PackageInfoFlags.class)))
+                .thenReturn(List.of(packageInfos));
+        for (PackageInfo packageInfo : packageInfos) {
+            when(packageManager.getPackageInfo(
+                            eq(packageInfo.packageName),
+                            any(PackageManager.PackageInfoFlags.class)))
+                    .thenReturn(packageInfo);
+        }
+    }
 }
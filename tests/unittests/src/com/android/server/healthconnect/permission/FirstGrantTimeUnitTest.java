@@ -21,6 +21,10 @@ import static com.android.server.healthconnect.permission.FirstGrantTimeDatastor
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -172,6 +176,64 @@ public class FirstGrantTimeUnitTest {
         assertThat(state.getPackageGrantTimes().get(SELF_PACKAGE_NAME)).isEqualTo(stateTime);
     }
 
+    @Test
+    public void testSetFirstGrantTime_backupRequested_pendingWriteFlushed() {
+        Instant stateTime = Instant.now().minusSeconds((long) 1e5);
+        setupGrantTimeState(stateTime, null);
+        Instant newTime = stateTime.minusSeconds(10);
+
+        mGrantTimeManager.setFirstGrantTime(SELF_PACKAGE_NAME, newTime, CURRENT_USER);
+        assertThat(mGrantTimeManager.getFirstGrantTime(SELF_PACKAGE_NAME, CURRENT_USER))
+                .isEqualTo(newTime);
+
+        UserGrantTimeState state = mGrantTimeManager.createBackupState(CURRENT_USER);
+        assertThat(state.getPackageGrantTimes().get(SELF_PACKAGE_NAME)).isEqualTo(newTime);
+        verify(mDatastore, atLeastOnce())
+                .writeForUser(
+                        ArgumentMatchers.argThat(
+                                written ->
+                                        newTime.equals(
+                                                written.getPackageGrantTimes()
+                                                        .get(SELF_PACKAGE_NAME))),
+                        ArgumentMatchers.eq(CURRENT_USER),
+                        ArgumentMatchers.eq(DATA_TYPE_CURRENT));
+    }
+
+    @Test
+    public void testSetFirstGrantTime_flushFailed_nextChangeFlushed() {
+        Instant stateTime = Instant.now().minusSeconds((long) 1e5);
+        setupGrantTimeState(stateTime, null);
+        Instant firstTime = stateTime.minusSeconds(10);
+        Instant secondTime = stateTime.minusSeconds(20);
+        // Initializes the state of the user, which writes it synchronously.
+        mGrantTimeManager.getFirstGrantTime(SELF_PACKAGE_NAME, CURRENT_USER);
+        doThrow(new IllegalStateException())
+                .doNothing()
+                .when(mDatastore)
+                .writeForUser(
+                        any(),
+                        ArgumentMatchers.eq(CURRENT_USER),
+                        ArgumentMatchers.eq(DATA_TYPE_CURRENT));
+
+        mGrantTimeManager.setFirstGrantTime(SELF_PACKAGE_NAME, firstTime, CURRENT_USER);
+        verify(mDatastore, timeout(1000))
+                .writeForUser(
+                        any(),
+                        ArgumentMatchers.eq(CURRENT_USER),
+                        ArgumentMatchers.eq(DATA_TYPE_CURRENT));
+        mGrantTimeManager.setFirstGrantTime(SELF_PACKAGE_NAME, secondTime, CURRENT_USER);
+
+        verify(mDatastore, timeout(1000))
+                .writeForUser(
+                        ArgumentMatchers.argThat(
+                                written ->
+                                        secondTime.equals(
+                                                written.getPackageGrantTimes()
+                                                        .get(SELF_PACKAGE_NAME))),
+                        ArgumentMatchers.eq(CURRENT_USER),
+                        ArgumentMatchers.eq(DATA_TYPE_CURRENT));
+    }
+
     @Test(expected = HealthConnectException.class)
     public <T extends Record> void testReadRecords_withNoIntent_throwsException()
             throws InterruptedException {
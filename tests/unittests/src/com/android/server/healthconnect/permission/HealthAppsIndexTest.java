@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HealthAppsIndexTest {
+    private static final String SELF_PACKAGE_NAME = "com.android.healthconnect.unittests";
+    private static final UserHandle CURRENT_USER = Process.myUserHandle();
+
+    private Context mContext;
+    private HealthAppsIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mIndex = new HealthAppsIndex();
+    }
+
+    @Test
+    public void testGetPackages_packageRequestingHealthPermission_isIndexed() {
+        assertThat(mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER))
+                .contains(SELF_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testOnPackageRemoved_removesPackage() {
+        mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER);
+
+        mIndex.onPackageRemoved(SELF_PACKAGE_NAME, CURRENT_USER);
+
+        assertThat(mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER))
+                .doesNotContain(SELF_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testOnPackageChanged_packageRequestingHealthPermission_addsPackage() {
+        mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER);
+        mIndex.onPackageRemoved(SELF_PACKAGE_NAME, CURRENT_USER);
+
+        mIndex.onPackageChanged(mContext, SELF_PACKAGE_NAME, CURRENT_USER);
+
+        assertThat(mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER))
+                .contains(SELF_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testOnPackageChanged_unknownPackage_isNotIndexed() {
+        mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER);
+
+        mIndex.onPackageChanged(mContext, "android.unknown_package", CURRENT_USER);
+
+        assertThat(mIndex.getPackagesRequestingHealthPermissions(mContext, CURRENT_USER))
+                .doesNotContain("android.unknown_package");
+    }
+}
@@ -175,6 +175,11 @@ public class AutoDeleteServiceTest {
                                 (List<DeleteTableRequest> deleteTableRequestsList) ->
                                         checkTableNames_getPreferenceReturnNonNull(
                                                 deleteTableRequestsList)));
+        verify(mActivityDateHelper)
+                .markDeletedRecords(
+                        Mockito.eq(new ArrayList<>(getRecordHelpers().keySet())),
+                        Mockito.eq(0L),
+                        Mockito.anyLong());
         verify(mAppInfoHelper).syncAppInfoRecordTypesUsed();
         verify(mActivityDateHelper).reSyncForAllRecords();
     }
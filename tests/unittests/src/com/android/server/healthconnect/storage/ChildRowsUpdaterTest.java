@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal.HeartRateSample;
+import android.util.ArrayMap;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.datatypehelpers.HeartRateRecordHelper;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class ChildRowsUpdaterTest {
+    private static final String DATABASE_NAME = "child_rows_updater_test";
+    private static final String HEART_RATE_SERIES_TABLE_NAME = "heart_rate_record_series_table";
+    private static final long PARENT_ROW_ID = 1;
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+    private final HeartRateRecordHelper mHeartRateRecordHelper = new HeartRateRecordHelper();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+        mSQLiteDatabase.setForeignKeyConstraintsEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testUpdate_appendedSamples_keepsStoredSamples() {
+        ChildRowsUpdater.update(
+                mSQLiteDatabase,
+                createHeartRateRequest(sample(60, 1000), sample(61, 2000)),
+                PARENT_ROW_ID);
+        Map<Long, Long> storedRowIds = getSampleRowIds();
+
+        ChildRowsUpdater.update(
+                mSQLiteDatabase,
+                createHeartRateRequest(sample(60, 1000), sample(61, 2000), sample(62, 3000)),
+                PARENT_ROW_ID);
+
+        Map<Long, Long> rowIds = getSampleRowIds();
+        assertThat(rowIds.keySet()).containsExactly(1000L, 2000L, 3000L);
+        assertThat(rowIds.get(1000L)).isEqualTo(storedRowIds.get(1000L));
+        assertThat(rowIds.get(2000L)).isEqualTo(storedRowIds.get(2000L));
+    }
+
+    @Test
+    public void testUpdate_changedAndRemovedSamples_storesNewSamples() {
+        ChildRowsUpdater.update(
+                mSQLiteDatabase,
+                createHeartRateRequest(sample(60, 1000), sample(61, 2000), sample(62, 3000)),
+                PARENT_ROW_ID);
+
+        ChildRowsUpdater.update(
+                mSQLiteDatabase,
+                createHeartRateRequest(sample(60, 1000), sample(90, 2000)),
+                PARENT_ROW_ID);
+
+        assertThat(getSampleRowIds().keySet()).containsExactly(1000L, 2000L);
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "SELECT beats_per_minute FROM "
+                                + HEART_RATE_SERIES_TABLE_NAME
+                                + " WHERE epoch_millis = 2000",
+                        null)) {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(cursor.getLong(0)).isEqualTo(90);
+        }
+    }
+
+    @Test
+    public void testUpdate_insertedSamples_keepsSampleOrder() {
+        ChildRowsUpdater.update(
+                mSQLiteDatabase,
+                createHeartRateRequest(sample(60, 2000), sample(61, 4000)),
+                PARENT_ROW_ID);
+
+        ChildRowsUpdater.update(
+                mSQLiteDatabase,
+                createHeartRateRequest(
+                        sample(59, 1000), sample(60, 2000), sample(62, 3000), sample(61, 4000)),
+                PARENT_ROW_ID);
+
+        assertThat(getSampleTimesInRowIdOrder()).containsExactly(1000L, 2000L, 3000L, 4000L);
+    }
+
+    @Test
+    public void testUpdate_noSamples_deletesStoredSamples() {
+        ChildRowsUpdater.update(
+                mSQLiteDatabase, createHeartRateRequest(sample(60, 1000)), PARENT_ROW_ID);
+
+        ChildRowsUpdater.update(mSQLiteDatabase, createHeartRateRequest(), PARENT_ROW_ID);
+
+        assertThat(getSampleRowIds()).isEmpty();
+    }
+
+    private UpsertTableRequest createHeartRateRequest(HeartRateSample... samples) {
+        // Keeps the samples in the order of the client.
+        Set<HeartRateSample> sampleSet = new LinkedHashSet<>();
+        for (HeartRateSample sample : samples) {
+            sampleSet.add(sample);
+        }
+        HeartRateRecordInternal record = new HeartRateRecordInternal();
+        record.setSamples(sampleSet);
+        record.setStartTime(0).setStartZoneOffset(0).setEndTime(5000).setEndZoneOffset(0);
+        record.setUuid(UUID.randomUUID()).setAppInfoId(1).setDeviceInfoId(1);
+        return mHeartRateRecordHelper.getUpsertTableRequest(record);
+    }
+
+    private static HeartRateSample sample(int beatsPerMinute, long epochMillis) {
+        return new HeartRateSample(beatsPerMinute, epochMillis);
+    }
+
+    /** Returns the times of the stored samples, in the order they are read back in. */
+    private List<Long> getSampleTimesInRowIdOrder() {
+        List<Long> times = new ArrayList<>();
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "SELECT epoch_millis FROM "
+                                + HEART_RATE_SERIES_TABLE_NAME
+                                + " ORDER BY rowid",
+                        null)) {
+            while (cursor.moveToNext()) {
+                times.add(cursor.getLong(0));
+            }
+        }
+        return times;
+    }
+
+    /** Returns the row ids of the stored samples, by sample time. */
+    private Map<Long, Long> getSampleRowIds() {
+        Map<Long, Long> rowIds = new ArrayMap<>();
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "SELECT epoch_millis, rowid FROM " + HEART_RATE_SERIES_TABLE_NAME, null)) {
+            while (cursor.moveToNext()) {
+                rowIds.put(cursor.getLong(0), cursor.getLong(1));
+            }
+        }
+        return rowIds;
+    }
+}
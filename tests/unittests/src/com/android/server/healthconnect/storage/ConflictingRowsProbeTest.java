@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+public class ConflictingRowsProbeTest {
+    private static final String DATABASE_NAME = "conflicting_rows_probe_test";
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+    private final StepsRecordHelper mStepsRecordHelper = new StepsRecordHelper();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+        mSQLiteDatabase.setForeignKeyConstraintsEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testMoveToConflictingRow_sameUuid_returnsExistingRow() {
+        UUID uuid = UUID.randomUUID();
+        insert(createStepsRequest(uuid, /* count= */ 100));
+        UpsertTableRequest request = createStepsRequest(uuid, /* count= */ 200);
+
+        try (ConflictingRowsProbe probe =
+                ConflictingRowsProbe.read(mSQLiteDatabase, List.of(request))) {
+            Cursor cursor = probe.moveToConflictingRow(request);
+
+            assertThat(cursor).isNotNull();
+            assertThat(StorageUtils.getCursorUUID(cursor, "uuid")).isEqualTo(uuid);
+            assertThat(StorageUtils.getCursorInt(cursor, "count")).isEqualTo(100);
+        }
+    }
+
+    @Test
+    public void testMoveToConflictingRow_newUuid_returnsNull() {
+        insert(createStepsRequest(UUID.randomUUID(), /* count= */ 100));
+        UpsertTableRequest request = createStepsRequest(UUID.randomUUID(), /* count= */ 200);
+
+        try (ConflictingRowsProbe probe =
+                ConflictingRowsProbe.read(mSQLiteDatabase, List.of(request))) {
+            assertThat(probe.moveToConflictingRow(request)).isNull();
+        }
+    }
+
+    @Test
+    public void testMoveToConflictingRow_rowAlreadyReturned_returnsNull() {
+        UUID uuid = UUID.randomUUID();
+        insert(createStepsRequest(uuid, /* count= */ 100));
+        UpsertTableRequest first = createStepsRequest(uuid, /* count= */ 200);
+        UpsertTableRequest second = createStepsRequest(uuid, /* count= */ 300);
+
+        try (ConflictingRowsProbe probe =
+                ConflictingRowsProbe.read(mSQLiteDatabase, List.of(first, second))) {
+            assertThat(probe.moveToConflictingRow(first)).isNotNull();
+            assertThat(probe.moveToConflictingRow(second)).isNull();
+        }
+    }
+
+    private void insert(UpsertTableRequest request) {
+        mSQLiteDatabase.insertOrThrow(request.getTable(), null, request.getContentValues());
+    }
+
+    private UpsertTableRequest createStepsRequest(UUID uuid, int count) {
+        StepsRecordInternal record = new StepsRecordInternal().setCount(count);
+        record.setStartTime(1000).setStartZoneOffset(0).setEndTime(2000).setEndZoneOffset(0);
+        record.setUuid(uuid).setAppInfoId(1).setDeviceInfoId(1);
+        UpsertTableRequest request = mStepsRecordHelper.getUpsertTableRequest(record);
+        request.setRecordInternal(record);
+        return request;
+    }
+}
@@ -19,12 +19,17 @@ package com.android.server.healthconnect.storage;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 
 import androidx.test.platform.app.InstrumentationRegistry;
 
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.TableRowCountsHelper;
+
 import com.google.common.truth.Truth;
 
 import org.junit.Before;
@@ -32,10 +37,13 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class HealthConnectDatabaseTest {
     // This number can only increase, as we are not allowed to make changes that remove tables or
     // columns
-    private static final int NUM_OF_TABLES = 57;
+    private static final int NUM_OF_TABLES = 58;
 
     @Mock Context mContext;
     private HealthConnectDatabase mHealthConnectDatabase;
@@ -66,4 +74,85 @@ public class HealthConnectDatabaseTest {
         cursor.moveToNext();
         Truth.assertThat(cursor.getInt(0)).isEqualTo(NUM_OF_TABLES);
     }
+
+    @Test
+    public void testCreateTable_latestRecordOfAppAndDeviceReadFromIndex() {
+        Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "EXPLAIN QUERY PLAN SELECT start_time FROM steps_record_table WHERE"
+                                + " app_info_id = 1 AND device_info_id = 1 ORDER BY start_time"
+                                + " DESC LIMIT 1",
+                        null);
+
+        cursor.moveToNext();
+        Truth.assertThat(cursor.getString(cursor.getColumnIndex("detail")))
+                .contains("idx_steps_record_table_app_device_start_time");
+    }
+
+    @Test
+    public void testCreateTable_appForeignKeyServedByAppDeviceStartTimeIndex() {
+        Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "SELECT name FROM sqlite_master WHERE type = 'index' AND"
+                                + " tbl_name = 'steps_record_table' AND name LIKE 'idx_%'",
+                        null);
+
+        List<String> indexNames = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            indexNames.add(cursor.getString(0));
+        }
+        Truth.assertThat(indexNames)
+                .containsExactly(
+                        "idx_steps_record_table_0",
+                        "idx_steps_record_table_app_device_start_time");
+    }
+
+    @Test
+    public void testTableRowCounts_updatedOnInsertAndDelete() {
+        TableRowCountsHelper helper = TableRowCountsHelper.getInstance();
+        long initialCount = helper.getRowCount(mSQLiteDatabase, ChangeLogsHelper.TABLE_NAME);
+
+        insertChangeLog();
+        insertChangeLog();
+        Truth.assertThat(helper.getRowCount(mSQLiteDatabase, ChangeLogsHelper.TABLE_NAME))
+                .isEqualTo(initialCount + 2);
+
+        mSQLiteDatabase.execSQL(
+                "DELETE FROM "
+                        + ChangeLogsHelper.TABLE_NAME
+                        + " WHERE row_id = (SELECT MAX(row_id) FROM "
+                        + ChangeLogsHelper.TABLE_NAME
+                        + ")");
+        Truth.assertThat(helper.getRowCount(mSQLiteDatabase, ChangeLogsHelper.TABLE_NAME))
+                .isEqualTo(initialCount + 1);
+    }
+
+    @Test
+    public void testTableRowCounts_missingCount_recomputed() {
+        TableRowCountsHelper helper = TableRowCountsHelper.getInstance();
+        insertChangeLog();
+        long expectedCount =
+                DatabaseUtils.queryNumEntries(mSQLiteDatabase, ChangeLogsHelper.TABLE_NAME);
+
+        mSQLiteDatabase.delete(
+                TableRowCountsHelper.TABLE_NAME,
+                "table_name = ?",
+                new String[] {ChangeLogsHelper.TABLE_NAME});
+
+        Truth.assertThat(helper.getRowCount(mSQLiteDatabase, ChangeLogsHelper.TABLE_NAME))
+                .isEqualTo(expectedCount);
+        insertChangeLog();
+        Truth.assertThat(helper.getRowCount(mSQLiteDatabase, ChangeLogsHelper.TABLE_NAME))
+                .isEqualTo(expectedCount + 1);
+    }
+
+    private void insertChangeLog() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put("record_type", 1);
+        contentValues.put("app_id", 1);
+        contentValues.put("uuids", new byte[16]);
+        contentValues.put("operation_type", 0);
+        contentValues.put("time", 0);
+        mSQLiteDatabase.insertOrThrow(ChangeLogsHelper.TABLE_NAME, null, contentValues);
+    }
 }
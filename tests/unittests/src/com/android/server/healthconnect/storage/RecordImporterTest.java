@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.internal.RecordStream;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RecordImporterTest {
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final long START_TIME = Instant.parse("2023-01-01T00:00:00Z").toEpochMilli();
+    private static final int INVALID_STEPS_COUNT = 2000000;
+
+    private final ExecutorService mParserExecutor = Executors.newSingleThreadExecutor();
+    private final List<List<Long>> mWrittenBatches = new ArrayList<>();
+    private final List<Long> mProgress = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        mParserExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testImportRecords_writesBatchesOfCommitInterval() throws Exception {
+        RecordImporter recordImporter = createRecordImporter(/* commitInterval= */ 2);
+
+        recordImporter.importRecords(
+                toStream(buildStepsRecords(1, 2, 3, 4, 5)), this::writeBatch, mProgress::add);
+
+        assertThat(mWrittenBatches)
+                .containsExactly(List.of(1L, 2L), List.of(3L, 4L), List.of(5L))
+                .inOrder();
+        assertThat(mProgress).containsExactly(2L, 4L, 5L).inOrder();
+        assertThat(recordImporter.getNumberOfRecordsImported()).isEqualTo(5);
+        assertThat(recordImporter.getNumberOfInvalidRecords()).isEqualTo(0);
+        assertThat(recordImporter.getErrors()).isEmpty();
+    }
+
+    @Test
+    public void testImportRecords_invalidRecords_skippedAndFirstOnesReported() throws Exception {
+        RecordImporter recordImporter =
+                new RecordImporter(
+                        mParserExecutor,
+                        /* commitInterval= */ 10,
+                        /* maxErrors= */ 1,
+                        MAX_RECORD_SIZE,
+                        Long.MAX_VALUE);
+
+        recordImporter.importRecords(
+                toStream(buildStepsRecords(1, INVALID_STEPS_COUNT, 3, INVALID_STEPS_COUNT)),
+                this::writeBatch,
+                mProgress::add);
+
+        assertThat(mWrittenBatches).containsExactly(List.of(1L, 3L));
+        assertThat(recordImporter.getNumberOfInvalidRecords()).isEqualTo(2);
+        assertThat(recordImporter.getErrors()).hasSize(1);
+        assertThat(recordImporter.getErrors().get(0)).startsWith("Record 1: ");
+    }
+
+    @Test
+    public void testImportRecords_maxBatchSize_endsBatchesEarlier() throws Exception {
+        RecordImporter recordImporter =
+                new RecordImporter(
+                        mParserExecutor,
+                        /* commitInterval= */ 10,
+                        /* maxErrors= */ 0,
+                        MAX_RECORD_SIZE,
+                        /* maxBatchSize= */ 1);
+
+        recordImporter.importRecords(
+                toStream(buildStepsRecords(1, 2, 3)), this::writeBatch, mProgress::add);
+
+        assertThat(mWrittenBatches)
+                .containsExactly(List.of(1L), List.of(2L), List.of(3L))
+                .inOrder();
+    }
+
+    @Test
+    public void testImportRecords_truncatedStream_keepsWrittenBatches() throws IOException {
+        byte[] stream = toStream(buildStepsRecords(1, 2, 3)).readAllBytes();
+        RecordImporter recordImporter = createRecordImporter(/* commitInterval= */ 1);
+
+        assertThrows(
+                IOException.class,
+                () ->
+                        recordImporter.importRecords(
+                                new ByteArrayInputStream(
+                                        Arrays.copyOf(stream, stream.length - 4)),
+                                this::writeBatch,
+                                mProgress::add));
+        // The batch being parsed when the stream failed is not written.
+        assertThat(mWrittenBatches).containsExactly(List.of(1L), List.of(2L)).inOrder();
+    }
+
+    @Test
+    public void testImportRecords_writerFails_stopsImport() throws IOException {
+        RecordImporter recordImporter = createRecordImporter(/* commitInterval= */ 1);
+
+        assertThrows(
+                IllegalStateException.class,
+                () ->
+                        recordImporter.importRecords(
+                                toStream(buildStepsRecords(1, 2, 3, 4, 5)),
+                                records -> {
+                                    writeBatch(records);
+                                    if (mWrittenBatches.size() == 2) {
+                                        throw new IllegalStateException();
+                                    }
+                                    return List.of();
+                                },
+                                mProgress::add));
+        assertThat(mWrittenBatches).hasSize(2);
+        assertThat(mProgress).containsExactly(1L);
+    }
+
+    @Test
+    public void testImportRecords_conflictingRecords_notCountedAsImported() throws Exception {
+        RecordImporter recordImporter = createRecordImporter(/* commitInterval= */ 2);
+
+        recordImporter.importRecords(
+                toStream(buildStepsRecords(1, 2, 3, 4, 5)),
+                records -> {
+                    writeBatch(records);
+                    // The second record of each batch conflicts with an existing record.
+                    return records.size() == 2 ? List.of(1) : List.of();
+                },
+                mProgress::add);
+
+        assertThat(mProgress).containsExactly(1L, 2L, 3L).inOrder();
+        assertThat(recordImporter.getNumberOfRecordsImported()).isEqualTo(3);
+        assertThat(recordImporter.getNumberOfInvalidRecords()).isEqualTo(2);
+        assertThat(recordImporter.getErrors()).hasSize(2);
+        assertThat(recordImporter.getErrors().get(0)).startsWith("Record 1: ");
+        assertThat(recordImporter.getErrors().get(1)).startsWith("Record 3: ");
+    }
+
+    @Test
+    public void testImportRecords_conflictsAndInvalidRecords_firstOnesReportedInOrder()
+            throws Exception {
+        RecordImporter recordImporter =
+                new RecordImporter(
+                        mParserExecutor,
+                        /* commitInterval= */ 10,
+                        /* maxErrors= */ 2,
+                        MAX_RECORD_SIZE,
+                        Long.MAX_VALUE);
+
+        recordImporter.importRecords(
+                toStream(buildStepsRecords(1, 2, INVALID_STEPS_COUNT, INVALID_STEPS_COUNT)),
+                records -> List.of(0),
+                mProgress::add);
+
+        assertThat(recordImporter.getNumberOfRecordsImported()).isEqualTo(1);
+        assertThat(recordImporter.getNumberOfInvalidRecords()).isEqualTo(3);
+        assertThat(recordImporter.getErrors()).hasSize(2);
+        assertThat(recordImporter.getErrors().get(0)).startsWith("Record 0: ");
+        assertThat(recordImporter.getErrors().get(1)).startsWith("Record 2: ");
+    }
+
+    @Test
+    public void testImportRecords_parserError_stopsImport() {
+        RecordImporter recordImporter = createRecordImporter(/* commitInterval= */ 1);
+        InputStream failingStream =
+                new InputStream() {
+                    @Override
+                    public int read() {
+                        throw new OutOfMemoryError();
+                    }
+                };
+
+        assertThrows(
+                OutOfMemoryError.class,
+                () -> recordImporter.importRecords(failingStream, this::writeBatch, mProgress::add));
+        assertThat(mWrittenBatches).isEmpty();
+    }
+
+    private RecordImporter createRecordImporter(int commitInterval) {
+        return new RecordImporter(
+                mParserExecutor,
+                commitInterval,
+                /* maxErrors= */ 10,
+                MAX_RECORD_SIZE,
+                Long.MAX_VALUE);
+    }
+
+    private List<Integer> writeBatch(List<RecordInternal<?>> records) {
+        List<Long> counts = new ArrayList<>();
+        for (RecordInternal<?> record : records) {
+            counts.add((long) ((StepsRecordInternal) record).getCount());
+        }
+        mWrittenBatches.add(counts);
+        return List.of();
+    }
+
+    private static ByteArrayInputStream toStream(List<RecordInternal<?>> records)
+            throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (RecordStream.Writer writer = new RecordStream.Writer(outputStream)) {
+            for (RecordInternal<?> record : records) {
+                writer.writeRecord(record);
+            }
+            writer.finish();
+        }
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    private static List<RecordInternal<?>> buildStepsRecords(int... counts) {
+        List<RecordInternal<?>> records = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            StepsRecordInternal record = new StepsRecordInternal().setCount(counts[i]);
+            long startTime = START_TIME + Duration.ofMinutes(i).toMillis();
+            record.setStartTime(startTime)
+                    .setEndTime(startTime + Duration.ofSeconds(30).toMillis())
+                    .setStartZoneOffset(0)
+                    .setEndZoneOffset(0);
+            record.setUuid(UUID.randomUUID())
+                    .setPackageName("package.a")
+                    .setManufacturer("google")
+                    .setModel("Pixel")
+                    .setDeviceType(1);
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.UUID;
+
+public class TimeOrderedInserterTest {
+    private static final String DATABASE_NAME = "time_ordered_inserter_test";
+    private static final long APP_INFO_ID = 1;
+    private static final long DEVICE_INFO_ID = 1;
+    private static final long OTHER_DEVICE_INFO_ID = 2;
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+    private final StepsRecordHelper mStepsRecordHelper = new StepsRecordHelper();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+        mSQLiteDatabase.setForeignKeyConstraintsEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testTryAppend_recordsInTimeOrder_insertsAll() {
+        try (TimeOrderedInserter inserter = new TimeOrderedInserter(mSQLiteDatabase)) {
+            for (long startTime = 1000; startTime <= 3000; startTime += 1000) {
+                assertThat(inserter.tryAppend(createStepsRequest(DEVICE_INFO_ID, startTime)))
+                        .isNotEqualTo(-1);
+            }
+        }
+
+        assertThat(getNumberOfStepsRecords()).isEqualTo(3);
+    }
+
+    @Test
+    public void testTryAppend_recordNotAfterLatestRecord_doesNotInsertIt() {
+        try (TimeOrderedInserter inserter = new TimeOrderedInserter(mSQLiteDatabase)) {
+            assertThat(inserter.tryAppend(createStepsRequest(DEVICE_INFO_ID, 5000)))
+                    .isNotEqualTo(-1);
+        }
+
+        try (TimeOrderedInserter inserter = new TimeOrderedInserter(mSQLiteDatabase)) {
+            assertThat(inserter.tryAppend(createStepsRequest(DEVICE_INFO_ID, 5000))).isEqualTo(-1);
+            assertThat(inserter.tryAppend(createStepsRequest(DEVICE_INFO_ID, 4000))).isEqualTo(-1);
+            assertThat(inserter.tryAppend(createStepsRequest(DEVICE_INFO_ID, 6000)))
+                    .isNotEqualTo(-1);
+        }
+
+        assertThat(getNumberOfStepsRecords()).isEqualTo(2);
+    }
+
+    @Test
+    public void testTryAppend_otherDevice_hasItsOwnLatestRecord() {
+        try (TimeOrderedInserter inserter = new TimeOrderedInserter(mSQLiteDatabase)) {
+            assertThat(inserter.tryAppend(createStepsRequest(DEVICE_INFO_ID, 5000)))
+                    .isNotEqualTo(-1);
+            assertThat(inserter.tryAppend(createStepsRequest(OTHER_DEVICE_INFO_ID, 4000)))
+                    .isNotEqualTo(-1);
+        }
+
+        assertThat(getNumberOfStepsRecords()).isEqualTo(2);
+    }
+
+    private UpsertTableRequest createStepsRequest(long deviceInfoId, long startTime) {
+        StepsRecordInternal record = new StepsRecordInternal().setCount(100);
+        record.setStartTime(startTime)
+                .setStartZoneOffset(0)
+                .setEndTime(startTime + 500)
+                .setEndZoneOffset(0);
+        record.setUuid(UUID.randomUUID()).setAppInfoId(APP_INFO_ID).setDeviceInfoId(deviceInfoId);
+        UpsertTableRequest request = mStepsRecordHelper.getUpsertTableRequest(record);
+        request.setRecordInternal(record);
+        return request;
+    }
+
+    private long getNumberOfStepsRecords() {
+        return DatabaseUtils.queryNumEntries(mSQLiteDatabase, StepsRecordHelper.STEPS_TABLE_NAME);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.Constants.DELETE;
+import static android.health.connect.Constants.UPSERT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+public class ChangeLogsHelperTest {
+    private static final String DATABASE_NAME = "change_logs_helper_test";
+    private static final String TEST_PACKAGE_NAME = "android.healthconnect.test";
+    private static final long APP_ID = 1;
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testCompactChangeLogs_keepsLatestOperationOfEachRecord() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        long firstUpsertRowId = insertChangeLog(UPSERT, List.of(first));
+        long secondUpsertRowId = insertChangeLog(UPSERT, List.of(first, second));
+        long deleteRowId = insertChangeLog(DELETE, List.of(first));
+
+        int compactedRows = ChangeLogsHelper.getInstance().compactChangeLogs(mSQLiteDatabase);
+
+        assertThat(compactedRows).isEqualTo(2);
+        assertThat(readChangeLogUuids(firstUpsertRowId)).isNull();
+        assertThat(readChangeLogUuids(secondUpsertRowId)).containsExactly(second);
+        assertThat(readChangeLogUuids(deleteRowId)).containsExactly(first);
+    }
+
+    @Test
+    public void testCompactChangeLogs_alreadyCompacted_noChanges() {
+        insertChangeLog(UPSERT, List.of(UUID.randomUUID()));
+        insertChangeLog(DELETE, List.of(UUID.randomUUID()));
+
+        assertThat(ChangeLogsHelper.getInstance().compactChangeLogs(mSQLiteDatabase)).isEqualTo(0);
+    }
+
+    @Test
+    public void testCompactChangeLogs_supersededInPreviousChunk_compacted() {
+        UUID uuid = UUID.randomUUID();
+        long upsertRowId = insertChangeLog(UPSERT, List.of(uuid));
+        for (int i = 0; i < ChangeLogsHelper.COMPACTION_CHUNK_SIZE; i++) {
+            insertChangeLog(UPSERT, List.of(UUID.randomUUID()));
+        }
+        long deleteRowId = insertChangeLog(DELETE, List.of(uuid));
+
+        assertThat(ChangeLogsHelper.getInstance().compactChangeLogs(mSQLiteDatabase)).isEqualTo(1);
+        assertThat(readChangeLogUuids(upsertRowId)).isNull();
+        assertThat(readChangeLogUuids(deleteRowId)).containsExactly(uuid);
+    }
+
+    private long insertChangeLog(int operationType, List<UUID> uuids) {
+        ChangeLogsHelper.ChangeLogs changeLogs =
+                new ChangeLogsHelper.ChangeLogs(
+                        operationType, TEST_PACKAGE_NAME, System.currentTimeMillis());
+        changeLogs.addUUIDs(RECORD_TYPE_STEPS, APP_ID, uuids);
+        UpsertTableRequest request = changeLogs.getUpsertTableRequests().get(0);
+        return mSQLiteDatabase.insertOrThrow(request.getTable(), null, request.getContentValues());
+    }
+
+    private List<UUID> readChangeLogUuids(long rowId) {
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "SELECT uuids FROM " + ChangeLogsHelper.TABLE_NAME + " WHERE row_id = ?",
+                        new String[] {String.valueOf(rowId)})) {
+            return cursor.moveToFirst() ? StorageUtils.getCursorUUIDList(cursor, "uuids") : null;
+        }
+    }
+}
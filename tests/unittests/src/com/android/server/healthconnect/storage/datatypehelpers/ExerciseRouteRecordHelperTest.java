@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.Constants.DEFAULT_DOUBLE;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.EXERCISE_ROUTE_BLOCKS_TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.EXERCISE_ROUTE_RECORD_TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.LOCATIONS_PER_BLOCK;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal;
+import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExerciseRouteRecordHelperTest {
+    private static final String DATABASE_NAME = "exercise_route_record_helper_test";
+    private static final long START_TIME = 1672531200000L;
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+        mSQLiteDatabase.setForeignKeyConstraintsEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testEncodeLocations_decodesToSameLocations() {
+        List<ExerciseRouteInternal.LocationInternal> locations = createLocations(100);
+        locations.add(
+                new ExerciseRouteInternal.LocationInternal()
+                        .setTime(START_TIME - 1)
+                        .setLatitude(-90)
+                        .setLongitude(180)
+                        .setHorizontalAccuracy(DEFAULT_DOUBLE)
+                        .setVerticalAccuracy(DEFAULT_DOUBLE)
+                        .setAltitude(-0.0));
+
+        List<ExerciseRouteInternal.LocationInternal> decoded = new ArrayList<>();
+        ExerciseRouteRecordHelper.decodeLocations(
+                ExerciseRouteRecordHelper.encodeLocations(locations),
+                locations.size(),
+                decoded::add);
+
+        assertThat(decoded).isEqualTo(locations);
+    }
+
+    @Test
+    public void testGetRouteUpsertRequests_splitsLocationsInBlocks() {
+        ExerciseRouteInternal route =
+                new ExerciseRouteInternal(createLocations(LOCATIONS_PER_BLOCK * 2 + 1));
+
+        assertThat(ExerciseRouteRecordHelper.getRouteUpsertRequests(route)).hasSize(3);
+        assertThat(readRoute(insertRoute(route))).isEqualTo(route.getRouteLocations());
+    }
+
+    @Test
+    public void testMigrateRouteLocationsToBlocks_keepsLocationsOfEachRoute() {
+        List<ExerciseRouteInternal.LocationInternal> firstRoute = createLocations(3);
+        List<ExerciseRouteInternal.LocationInternal> secondRoute =
+                createLocations(LOCATIONS_PER_BLOCK + 5);
+        // Interleave the rows of both routes, as concurrent sessions would.
+        for (int i = 0; i < secondRoute.size(); i++) {
+            if (i < firstRoute.size()) {
+                insertLegacyLocation(/* parentKey= */ 1, firstRoute.get(i));
+            }
+            insertLegacyLocation(/* parentKey= */ 2, secondRoute.get(i));
+        }
+
+        ExerciseRouteRecordHelper.migrateRouteLocationsToBlocks(mSQLiteDatabase);
+
+        assertThat(readRoute(/* parentKey= */ 1)).isEqualTo(firstRoute);
+        assertThat(readRoute(/* parentKey= */ 2)).isEqualTo(secondRoute);
+        // The legacy rows are kept for a module rollback.
+        assertThat(getNumberOfLegacyLocations())
+                .isEqualTo((long) (firstRoute.size() + secondRoute.size()));
+    }
+
+    @Test
+    public void testMigrateRouteLocationsToBlocks_migratedAgain_onlyMigratesNewRoutes() {
+        List<ExerciseRouteInternal.LocationInternal> firstRoute = createLocations(3);
+        firstRoute.forEach(location -> insertLegacyLocation(/* parentKey= */ 1, location));
+        ExerciseRouteRecordHelper.migrateRouteLocationsToBlocks(mSQLiteDatabase);
+        // A route written by a rolled back module, before the next upgrade.
+        List<ExerciseRouteInternal.LocationInternal> secondRoute = createLocations(5);
+        secondRoute.forEach(location -> insertLegacyLocation(/* parentKey= */ 2, location));
+
+        ExerciseRouteRecordHelper.migrateRouteLocationsToBlocks(mSQLiteDatabase);
+
+        assertThat(readRoute(/* parentKey= */ 1)).isEqualTo(firstRoute);
+        assertThat(readRoute(/* parentKey= */ 2)).isEqualTo(secondRoute);
+    }
+
+    @Test
+    public void testClearLegacyRouteLocations_onlyClearsMigratedRoutes() {
+        List<ExerciseRouteInternal.LocationInternal> firstRoute = createLocations(3);
+        firstRoute.forEach(location -> insertLegacyLocation(/* parentKey= */ 1, location));
+        ExerciseRouteRecordHelper.migrateRouteLocationsToBlocks(mSQLiteDatabase);
+        List<ExerciseRouteInternal.LocationInternal> secondRoute = createLocations(5);
+        secondRoute.forEach(location -> insertLegacyLocation(/* parentKey= */ 2, location));
+
+        ExerciseRouteRecordHelper.clearLegacyRouteLocations(mSQLiteDatabase);
+
+        assertThat(readRoute(/* parentKey= */ 1)).isEqualTo(firstRoute);
+        assertThat(getNumberOfLegacyLocations()).isEqualTo((long) secondRoute.size());
+    }
+
+    private long insertRoute(ExerciseRouteInternal route) {
+        long parentKey = 1;
+        ExerciseRouteRecordHelper.getRouteUpsertRequests(route)
+                .forEach(
+                        request ->
+                                mSQLiteDatabase.insertOrThrow(
+                                        request.getTable(),
+                                        null,
+                                        request.withParentKey(parentKey).getContentValues()));
+        return parentKey;
+    }
+
+    private List<ExerciseRouteInternal.LocationInternal> readRoute(long parentKey) {
+        ExerciseSessionRecordInternal record = new ExerciseSessionRecordInternal();
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        "SELECT * FROM "
+                                + EXERCISE_ROUTE_BLOCKS_TABLE_NAME
+                                + " WHERE parent_key = ? ORDER BY block_index",
+                        new String[] {String.valueOf(parentKey)})) {
+            while (cursor.moveToNext()) {
+                ExerciseRouteRecordHelper.populateLocations(cursor, record);
+            }
+        }
+        return record.getRoute() == null ? List.of() : record.getRoute().getRouteLocations();
+    }
+
+    private void insertLegacyLocation(
+            long parentKey, ExerciseRouteInternal.LocationInternal location) {
+        ContentValues values = new ContentValues();
+        values.put("parent_key", parentKey);
+        values.put("timestamp_millis", location.getTime());
+        values.put("latitude", location.getLatitude());
+        values.put("longitude", location.getLongitude());
+        values.put("horizontal_accuracy", location.getHorizontalAccuracy());
+        values.put("vertical_accuracy", location.getVerticalAccuracy());
+        values.put("altitude", location.getAltitude());
+        mSQLiteDatabase.insertOrThrow(EXERCISE_ROUTE_RECORD_TABLE_NAME, null, values);
+    }
+
+    private long getNumberOfLegacyLocations() {
+        return DatabaseUtils.queryNumEntries(mSQLiteDatabase, EXERCISE_ROUTE_RECORD_TABLE_NAME);
+    }
+
+    private static List<ExerciseRouteInternal.LocationInternal> createLocations(int count) {
+        List<ExerciseRouteInternal.LocationInternal> locations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            locations.add(
+                    new ExerciseRouteInternal.LocationInternal()
+                            .setTime(START_TIME + i * 1000L)
+                            .setLatitude(51.5 + i * 1e-5)
+                            .setLongitude(-0.12 - i * 3e-6)
+                            .setHorizontalAccuracy(i % 2 == 0 ? DEFAULT_DOUBLE : 3.5)
+                            .setVerticalAccuracy(1.25)
+                            .setAltitude(12 + i * 0.1));
+        }
+        return locations;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.database.MatrixCursor;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.util.Pair;
+
+import com.android.dx.mockito.inline.extended.ExtendedMockito;
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoSession;
+import org.mockito.quality.Strictness;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class InternalRecordsPageTest {
+    private static final Map<Long, String> PACKAGE_NAMES_BY_APP_IDS = Map.of(1L, "package");
+
+    private MockitoSession mStaticMockSession;
+
+    @Before
+    public void setUp() {
+        mStaticMockSession =
+                ExtendedMockito.mockitoSession()
+                        .mockStatic(DeviceInfoHelper.class)
+                        .strictness(Strictness.LENIENT)
+                        .startMocking();
+        DeviceInfoHelper deviceInfoHelper = mock(DeviceInfoHelper.class);
+        ExtendedMockito.doReturn(deviceInfoHelper).when(DeviceInfoHelper::getInstance);
+    }
+
+    @After
+    public void tearDown() {
+        mStaticMockSession.finishMocking();
+    }
+
+    @Test
+    public void testGetNextInternalRecordsPage_fullPage_returnsPositionOfNextRecord() {
+        Pair<List<RecordInternal<?>>, Long> page =
+                new StepsRecordHelper()
+                        .getNextInternalRecordsPageAndToken(
+                                createStepsCursor(1, 2, 3),
+                                /* requestSize= */ 2,
+                                /* offset= */ 0,
+                                PACKAGE_NAMES_BY_APP_IDS);
+
+        assertThat(getStartTimes(page.first)).containsExactly(1L, 2L).inOrder();
+        assertThat(page.second).isEqualTo(PageTokenUtils.getPosition(3, 0));
+    }
+
+    @Test
+    public void testGetNextInternalRecordsPage_sameStartTime_cutAtRequestSize() {
+        Pair<List<RecordInternal<?>>, Long> page =
+                new StepsRecordHelper()
+                        .getNextInternalRecordsPageAndToken(
+                                createStepsCursor(1, 2, 2),
+                                /* requestSize= */ 2,
+                                /* offset= */ 0,
+                                PACKAGE_NAMES_BY_APP_IDS);
+
+        assertThat(getStartTimes(page.first)).containsExactly(1L, 2L).inOrder();
+        assertThat(page.second).isEqualTo(PageTokenUtils.getPosition(2, 1));
+    }
+
+    @Test
+    public void testGetNextInternalRecordsPage_pageInSameStartTime_countsRecordsBeforePage() {
+        Pair<List<RecordInternal<?>>, Long> page =
+                new StepsRecordHelper()
+                        .getNextInternalRecordsPageAndToken(
+                                createStepsCursor(5, 5, 5),
+                                /* requestSize= */ 2,
+                                /* offset= */ 3,
+                                PACKAGE_NAMES_BY_APP_IDS);
+
+        assertThat(getStartTimes(page.first)).containsExactly(5L, 5L);
+        assertThat(page.second).isEqualTo(PageTokenUtils.getPosition(5, 5));
+    }
+
+    @Test
+    public void testGetNextInternalRecordsPage_lastRecords_returnsNoToken() {
+        Pair<List<RecordInternal<?>>, Long> page =
+                new StepsRecordHelper()
+                        .getNextInternalRecordsPageAndToken(
+                                createStepsCursor(5, 5, 5),
+                                /* requestSize= */ 3,
+                                /* offset= */ 0,
+                                PACKAGE_NAMES_BY_APP_IDS);
+
+        assertThat(getStartTimes(page.first)).containsExactly(5L, 5L, 5L);
+        assertThat(page.second).isEqualTo(DEFAULT_LONG);
+    }
+
+    private static MatrixCursor createStepsCursor(long... startTimes) {
+        MatrixCursor cursor =
+                new MatrixCursor(
+                        new String[] {
+                            "row_id",
+                            "uuid",
+                            "last_modified_time",
+                            "client_record_id",
+                            "client_record_version",
+                            "recording_method",
+                            "device_info_id",
+                            "app_info_id",
+                            "start_time",
+                            "start_zone_offset",
+                            "end_time",
+                            "end_zone_offset",
+                            "count"
+                        });
+        int rowId = 1;
+        for (long startTime : startTimes) {
+            cursor.addRow(
+                    new Object[] {
+                        rowId++,
+                        StorageUtils.convertUUIDToBytes(UUID.randomUUID()),
+                        startTime,
+                        null,
+                        0L,
+                        0,
+                        1L,
+                        1L,
+                        startTime,
+                        0,
+                        startTime + 10,
+                        0,
+                        10
+                    });
+        }
+        return cursor;
+    }
+
+    private static List<Long> getStartTimes(List<RecordInternal<?>> records) {
+        return records.stream()
+                .map(record -> ((StepsRecordInternal) record).getStartTimeInMillis())
+                .toList();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.database.MatrixCursor;
+import android.util.Pair;
+
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MergeDataHelperTest {
+    private static final long HIGH_PRIORITY_APP_ID = 1;
+    private static final long LOW_PRIORITY_APP_ID = 2;
+    private static final double TOLERANCE = 1e-9;
+
+    private MatrixCursor mCursor;
+    private MergeDataHelper mMergeDataHelper;
+
+    @Before
+    public void setUp() {
+        mCursor =
+                new MatrixCursor(
+                        new String[] {
+                            "start_time", "end_time", "app_info_id", "last_modified_time", "energy"
+                        });
+        mMergeDataHelper =
+                new MergeDataHelper(
+                        mCursor,
+                        new AppIdPrioritySnapshot(
+                                List.of(HIGH_PRIORITY_APP_ID, LOW_PRIORITY_APP_ID), 1),
+                        "energy",
+                        Double.class,
+                        /* useLocalTime= */ false);
+    }
+
+    @Test
+    public void testReadCursor_overlappingRecords_higherPriorityWins() {
+        addRecord(0, 20, LOW_PRIORITY_APP_ID, 1, 20);
+        addRecord(0, 10, HIGH_PRIORITY_APP_ID, 1, 10);
+
+        double[] totals = mMergeDataHelper.readCursor(List.of(new Pair<>(0L, 20L)));
+
+        assertThat(totals[0]).isWithin(TOLERANCE).of(10 + 10);
+        assertThat(mMergeDataHelper.getEmptyIntervals().get(0)).isEmpty();
+    }
+
+    @Test
+    public void testReadCursor_sameApp_mostRecentlyModifiedWins() {
+        addRecord(0, 10, HIGH_PRIORITY_APP_ID, 1, 10);
+        addRecord(0, 10, HIGH_PRIORITY_APP_ID, 2, 30);
+
+        double[] totals = mMergeDataHelper.readCursor(List.of(new Pair<>(0L, 10L)));
+
+        assertThat(totals[0]).isWithin(TOLERANCE).of(30);
+    }
+
+    @Test
+    public void testReadCursor_contiguousIntervals_splitsRecordsBetweenIntervals() {
+        addRecord(5, 25, LOW_PRIORITY_APP_ID, 1, 20);
+        addRecord(8, 12, HIGH_PRIORITY_APP_ID, 1, 4);
+
+        double[] totals =
+                mMergeDataHelper.readCursor(
+                        List.of(new Pair<>(0L, 10L), new Pair<>(10L, 20L), new Pair<>(20L, 30L)));
+
+        assertThat(totals[0]).isWithin(TOLERANCE).of(3 + 2);
+        assertThat(totals[1]).isWithin(TOLERANCE).of(2 + 8);
+        assertThat(totals[2]).isWithin(TOLERANCE).of(5);
+        assertThat(mMergeDataHelper.getEmptyIntervals())
+                .containsExactly(
+                        List.of(new Pair<>(0L, 5L)), List.of(), List.of(new Pair<>(25L, 30L)))
+                .inOrder();
+    }
+
+    @Test
+    public void testReadCursor_intervalsWithGaps_ignoresDataOutsideIntervals() {
+        addRecord(5, 25, LOW_PRIORITY_APP_ID, 1, 20);
+        addRecord(12, 18, HIGH_PRIORITY_APP_ID, 1, 100);
+
+        double[] totals =
+                mMergeDataHelper.readCursor(List.of(new Pair<>(0L, 10L), new Pair<>(20L, 30L)));
+
+        assertThat(totals[0]).isWithin(TOLERANCE).of(5);
+        assertThat(totals[1]).isWithin(TOLERANCE).of(5);
+        assertThat(mMergeDataHelper.getEmptyIntervals())
+                .containsExactly(List.of(new Pair<>(0L, 5L)), List.of(new Pair<>(25L, 30L)))
+                .inOrder();
+    }
+
+    @Test
+    public void testReadCursor_noRecords_wholeIntervalsEmpty() {
+        double[] totals =
+                mMergeDataHelper.readCursor(List.of(new Pair<>(0L, 10L), new Pair<>(10L, 20L)));
+
+        assertThat(totals).usingTolerance(TOLERANCE).containsExactly(0, 0);
+        assertThat(mMergeDataHelper.getEmptyIntervals())
+                .containsExactly(List.of(new Pair<>(0L, 10L)), List.of(new Pair<>(10L, 20L)))
+                .inOrder();
+    }
+
+    @Test
+    public void testReadCursor_overlappingIntervals_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        mMergeDataHelper.readCursor(
+                                List.of(new Pair<>(0L, 10L), new Pair<>(5L, 20L))));
+    }
+
+    private void addRecord(
+            long startTime, long endTime, long appId, long lastModifiedTime, double energy) {
+        mCursor.addRow(new Object[] {startTime, endTime, appId, lastModifiedTime, energy});
+    }
+}
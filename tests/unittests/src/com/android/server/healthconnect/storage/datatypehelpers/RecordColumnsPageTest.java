@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+import static android.health.connect.ReadRecordsRequestUsingFilters.PROJECTION_END_TIME;
+import static android.health.connect.ReadRecordsRequestUsingFilters.PROJECTION_START_TIME;
+import static android.health.connect.ReadRecordsRequestUsingFilters.PROJECTION_VALUE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.database.MatrixCursor;
+import android.health.connect.aidl.RecordColumnsParcel;
+import android.util.Pair;
+
+import com.android.server.healthconnect.storage.utils.PageTokenUtils;
+
+import org.junit.Test;
+
+public class RecordColumnsPageTest {
+    private static final int ALL_COLUMNS =
+            PROJECTION_START_TIME | PROJECTION_END_TIME | PROJECTION_VALUE;
+
+    @Test
+    public void testGetNextRecordColumnsPage_fullPage_returnsPositionOfNextRecord() {
+        MatrixCursor cursor = createStepsCursor(1, 2, 3);
+
+        Pair<RecordColumnsParcel, Long> page =
+                new StepsRecordHelper()
+                        .getNextRecordColumnsPageAndToken(
+                                cursor, /* requestSize= */ 2, /* offset= */ 0, ALL_COLUMNS);
+
+        assertThat(page.first.size()).isEqualTo(2);
+        assertThat(page.first.getStartTimes()).asList().containsExactly(1L, 2L).inOrder();
+        assertThat(page.first.getEndTimes()).asList().containsExactly(11L, 12L).inOrder();
+        assertThat(page.first.getValues()).usingExactEquality().containsExactly(100.0, 200.0);
+        assertThat(page.second).isEqualTo(PageTokenUtils.getPosition(3, 0));
+    }
+
+    @Test
+    public void testGetNextRecordColumnsPage_sameStartTime_cutAtRequestSize() {
+        MatrixCursor cursor = createStepsCursor(1, 2, 2, 3);
+
+        Pair<RecordColumnsParcel, Long> page =
+                new StepsRecordHelper()
+                        .getNextRecordColumnsPageAndToken(
+                                cursor,
+                                /* requestSize= */ 2,
+                                /* offset= */ 0,
+                                PROJECTION_START_TIME);
+
+        assertThat(page.first.getStartTimes()).asList().containsExactly(1L, 2L).inOrder();
+        assertThat(page.first.getEndTimes()).isNull();
+        assertThat(page.first.getValues()).isNull();
+        assertThat(page.second).isEqualTo(PageTokenUtils.getPosition(2, 1));
+    }
+
+    @Test
+    public void testGetNextRecordColumnsPage_pageInSameStartTime_countsRowsBeforePage() {
+        MatrixCursor cursor = createStepsCursor(5, 5, 5);
+
+        Pair<RecordColumnsParcel, Long> page =
+                new StepsRecordHelper()
+                        .getNextRecordColumnsPageAndToken(
+                                cursor, /* requestSize= */ 2, /* offset= */ 2, ALL_COLUMNS);
+
+        assertThat(page.first.size()).isEqualTo(2);
+        assertThat(page.second).isEqualTo(PageTokenUtils.getPosition(5, 4));
+    }
+
+    @Test
+    public void testGetNextRecordColumnsPage_lastRows_returnsNoToken() {
+        MatrixCursor cursor = createStepsCursor(5, 5, 5);
+
+        Pair<RecordColumnsParcel, Long> page =
+                new StepsRecordHelper()
+                        .getNextRecordColumnsPageAndToken(
+                                cursor, /* requestSize= */ 3, /* offset= */ 0, ALL_COLUMNS);
+
+        assertThat(page.first.size()).isEqualTo(3);
+        assertThat(page.second).isEqualTo(DEFAULT_LONG);
+    }
+
+    @Test
+    public void testGetNextRecordColumnsPage_instantRecords_endTimesAreTimes() {
+        MatrixCursor cursor = new MatrixCursor(new String[] {"time", "weight"});
+        cursor.addRow(new Object[] {10L, 70000.0});
+        cursor.addRow(new Object[] {20L, 69500.0});
+
+        Pair<RecordColumnsParcel, Long> page =
+                new WeightRecordHelper()
+                        .getNextRecordColumnsPageAndToken(
+                                cursor, /* requestSize= */ 5, /* offset= */ 0, ALL_COLUMNS);
+
+        assertThat(page.first.getEndTimes()).asList().containsExactly(10L, 20L).inOrder();
+        assertThat(page.first.getValues()).usingExactEquality().containsExactly(70000.0, 69500.0);
+        assertThat(page.second).isEqualTo(DEFAULT_LONG);
+    }
+
+    private static MatrixCursor createStepsCursor(long... startTimes) {
+        MatrixCursor cursor = new MatrixCursor(new String[] {"start_time", "end_time", "count"});
+        for (long startTime : startTimes) {
+            cursor.addRow(new Object[] {startTime, startTime + 10, startTime * 100});
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers.aggregation;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.aggregation.AppIdPrioritySnapshot.NO_PRIORITY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class AppIdPrioritySnapshotTest {
+    @Test
+    public void testGetPriority_higherInListHasHigherPriority() {
+        AppIdPrioritySnapshot snapshot = new AppIdPrioritySnapshot(List.of(7L, 2L, 4L), 1);
+
+        assertThat(snapshot.getPriority(7)).isGreaterThan(snapshot.getPriority(2));
+        assertThat(snapshot.getPriority(2)).isGreaterThan(snapshot.getPriority(4));
+        assertThat(snapshot.getPriority(4)).isGreaterThan(NO_PRIORITY);
+    }
+
+    @Test
+    public void testGetPriority_appNotInList_noPriority() {
+        AppIdPrioritySnapshot snapshot = new AppIdPrioritySnapshot(List.of(3L, 1L), 1);
+
+        assertThat(snapshot.getPriority(2)).isEqualTo(NO_PRIORITY);
+        assertThat(snapshot.getPriority(100)).isEqualTo(NO_PRIORITY);
+        assertThat(snapshot.getPriority(-1)).isEqualTo(NO_PRIORITY);
+        assertThat(AppIdPrioritySnapshot.EMPTY.getPriority(0)).isEqualTo(NO_PRIORITY);
+    }
+
+    @Test
+    public void testGetAppIdPriorityList_returnsOrderAndVersion() {
+        AppIdPrioritySnapshot snapshot = new AppIdPrioritySnapshot(List.of(3L, 1L), 5);
+
+        assertThat(snapshot.getAppIdPriorityList()).containsExactly(3L, 1L).inOrder();
+        assertThat(snapshot.getVersion()).isEqualTo(5);
+    }
+}
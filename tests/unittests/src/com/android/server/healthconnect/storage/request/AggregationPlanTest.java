@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.AggregateResult;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.datatypes.AggregationType;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.os.Parcel;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.datatypehelpers.HeartRateRecordHelper;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AggregationPlanTest {
+    private static final String DATABASE_NAME = "aggregation_plan_test";
+    private static final String HEART_RATE_SERIES_TABLE_NAME = "heart_rate_record_series_table";
+    private static final long START_TIME = Instant.parse("2023-01-01T00:00:00Z").toEpochMilli();
+    private static final long END_TIME = START_TIME + Duration.ofHours(3).toMillis();
+    private static final List<AggregationType<?>> HEART_RATE_AGGREGATIONS =
+            List.of(
+                    HeartRateRecord.BPM_MIN,
+                    HeartRateRecord.BPM_MAX,
+                    HeartRateRecord.BPM_AVG,
+                    HeartRateRecord.HEART_MEASUREMENTS_COUNT);
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+        mSQLiteDatabase.setForeignKeyConstraintsEnabled(false);
+
+        insertHeartRateRecord(START_TIME, /* zoneOffsetSeconds= */ 3600, 70, 55, 90);
+        insertHeartRateRecord(
+                START_TIME + Duration.ofMinutes(20).toMillis(), /* zoneOffsetSeconds= */ 0, 120);
+        insertHeartRateRecord(
+                START_TIME + Duration.ofMinutes(130).toMillis(),
+                /* zoneOffsetSeconds= */ 7200,
+                60,
+                61);
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testPlan_heartRateMetrics_sharesQueries() {
+        AggregationPlan plan = new AggregationPlan(createHeartRateRequests(/* grouped= */ true));
+
+        // MIN and MAX have their own query, AVG and COUNT share one, plus a metadata query.
+        assertThat(plan.getAggregationQueries()).hasSize(3);
+        assertThat(plan.getNumberOfQueries()).isEqualTo(4);
+    }
+
+    @Test
+    public void testFusedAggregation_groupedRequests_sameResultsAsSeparateQueries() {
+        assertFusedResultsEqualSeparateResults(/* grouped= */ true);
+    }
+
+    @Test
+    public void testFusedAggregation_ungroupedRequests_sameResultsAsSeparateQueries() {
+        assertFusedResultsEqualSeparateResults(/* grouped= */ false);
+    }
+
+    @Test
+    public void testParallelAggregation_sameResultsAsSequentialQueries() {
+        List<AggregateTableRequest> sequentialRequests = createHeartRateRequests(/* grouped= */ true);
+        new AggregationPlan(sequentialRequests).populateAggregationResults(mSQLiteDatabase);
+
+        List<AggregateTableRequest> parallelRequests = createHeartRateRequests(/* grouped= */ true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new AggregationPlan(parallelRequests)
+                    .populateAggregationResults(
+                            mSQLiteDatabase, executor, /* maxParallelism= */ 3);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertSameResults(parallelRequests, sequentialRequests);
+    }
+
+    private void assertFusedResultsEqualSeparateResults(boolean grouped) {
+        List<AggregateTableRequest> separateRequests = createHeartRateRequests(grouped);
+        for (AggregateTableRequest request : separateRequests) {
+            new AggregationPlan(Collections.singletonList(request))
+                    .populateAggregationResults(mSQLiteDatabase);
+        }
+
+        List<AggregateTableRequest> fusedRequests = createHeartRateRequests(grouped);
+        new AggregationPlan(fusedRequests).populateAggregationResults(mSQLiteDatabase);
+
+        assertSameResults(fusedRequests, separateRequests);
+    }
+
+    private static void assertSameResults(
+            List<AggregateTableRequest> actualRequests,
+            List<AggregateTableRequest> expectedRequests) {
+        for (int i = 0; i < expectedRequests.size(); i++) {
+            List<AggregateResult<?>> expected = expectedRequests.get(i).getAggregateResults();
+            List<AggregateResult<?>> actual = actualRequests.get(i).getAggregateResults();
+            assertThat(actual).hasSize(expected.size());
+            for (int group = 0; group < expected.size(); group++) {
+                if (expected.get(group) == null) {
+                    assertThat(actual.get(group)).isNull();
+                    continue;
+                }
+                assertThat(toBytes(actual.get(group))).isEqualTo(toBytes(expected.get(group)));
+                assertThat(actual.get(group).getZoneOffset())
+                        .isEqualTo(expected.get(group).getZoneOffset());
+            }
+        }
+    }
+
+    private List<AggregateTableRequest> createHeartRateRequests(boolean grouped) {
+        HeartRateRecordHelper helper = new HeartRateRecordHelper();
+        List<AggregateTableRequest> requests = new ArrayList<>();
+        for (AggregationType<?> aggregationType : HEART_RATE_AGGREGATIONS) {
+            AggregateTableRequest request =
+                    helper.getAggregateTableRequest(
+                            aggregationType,
+                            Collections.emptyList(),
+                            START_TIME,
+                            END_TIME,
+                            /* useLocalTime= */ false);
+            if (grouped) {
+                request.setGroupBy(
+                        helper.getDurationGroupByColumnName(),
+                        /* period= */ null,
+                        Duration.ofHours(1),
+                        new TimeInstantRangeFilter.Builder()
+                                .setStartTime(Instant.ofEpochMilli(START_TIME))
+                                .setEndTime(Instant.ofEpochMilli(END_TIME))
+                                .build());
+            }
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private void insertHeartRateRecord(long startTime, int zoneOffsetSeconds, long... bpms) {
+        ContentValues record = new ContentValues();
+        record.put("uuid", StorageUtils.convertUUIDToBytes(UUID.randomUUID()));
+        record.put("app_info_id", 1);
+        record.put("start_time", startTime);
+        record.put("start_zone_offset", zoneOffsetSeconds);
+        record.put("end_time", startTime + Duration.ofMinutes(10).toMillis());
+        record.put("end_zone_offset", zoneOffsetSeconds);
+        long rowId = mSQLiteDatabase.insertOrThrow(HeartRateRecordHelper.TABLE_NAME, null, record);
+
+        long epochMillis = startTime;
+        for (long bpm : bpms) {
+            ContentValues sample = new ContentValues();
+            sample.put("parent_key", rowId);
+            sample.put("beats_per_minute", bpm);
+            sample.put("epoch_millis", epochMillis++);
+            mSQLiteDatabase.insertOrThrow(HEART_RATE_SERIES_TABLE_NAME, null, sample);
+        }
+    }
+
+    private static byte[] toBytes(AggregateResult<?> result) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            result.putToParcel(parcel);
+            return Arrays.copyOf(parcel.marshall(), parcel.dataSize());
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
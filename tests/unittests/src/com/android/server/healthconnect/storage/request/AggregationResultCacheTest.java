@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.AggregateRecordsRequest;
+import android.health.connect.AggregateRecordsResponse;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.aidl.AggregateDataRequestParcel;
+import android.health.connect.datatypes.StepsRecord;
+
+import com.android.server.healthconnect.storage.utils.TableWriteGenerations;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+public class AggregationResultCacheTest {
+    private static final String STEPS_TABLE = "aggregation_result_cache_test_steps";
+    private static final String HEIGHT_TABLE = "aggregation_result_cache_test_height";
+    private static final List<String> SOURCE_TABLES = List.of(STEPS_TABLE, HEIGHT_TABLE);
+
+    private final AggregationResultCache mCache =
+            new AggregationResultCache(/* maxCachedResults= */ 10);
+
+    @Test
+    public void testGet_notCached_returnsNull() {
+        assertThat(mCache.get(createKey(/* priorityVersion= */ 0))).isNull();
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testGet_unchangedTables_returnsCachedResponses() {
+        List<AggregateRecordsResponse<?>> responses = createResponses(2);
+        putWithCurrentGenerations(createKey(/* priorityVersion= */ 0), responses);
+
+        assertThat(mCache.get(createKey(/* priorityVersion= */ 0))).isSameInstanceAs(responses);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_sourceTableWritten_returnsNull() {
+        putWithCurrentGenerations(createKey(/* priorityVersion= */ 0), createResponses(2));
+
+        TableWriteGenerations.getInstance().bump(HEIGHT_TABLE);
+
+        assertThat(mCache.get(createKey(/* priorityVersion= */ 0))).isNull();
+    }
+
+    @Test
+    public void testGet_otherTableWritten_returnsCachedResponses() {
+        putWithCurrentGenerations(createKey(/* priorityVersion= */ 0), createResponses(2));
+
+        TableWriteGenerations.getInstance().bump("aggregation_result_cache_test_other");
+
+        assertThat(mCache.get(createKey(/* priorityVersion= */ 0))).isNotNull();
+    }
+
+    @Test
+    public void testGet_allTablesWritten_returnsNull() {
+        putWithCurrentGenerations(createKey(/* priorityVersion= */ 0), createResponses(2));
+
+        TableWriteGenerations.getInstance().bumpAll();
+
+        assertThat(mCache.get(createKey(/* priorityVersion= */ 0))).isNull();
+    }
+
+    @Test
+    public void testGet_priorityChanged_returnsNull() {
+        putWithCurrentGenerations(createKey(/* priorityVersion= */ 0), createResponses(2));
+
+        assertThat(mCache.get(createKey(/* priorityVersion= */ 1))).isNull();
+    }
+
+    @Test
+    public void testPut_overMaxResults_evictsLeastRecentlyUsed() {
+        AggregationResultCache.Key firstKey = createKey(/* priorityVersion= */ 0);
+        AggregationResultCache.Key secondKey = createKey(/* priorityVersion= */ 1);
+        putWithCurrentGenerations(firstKey, createResponses(6));
+        putWithCurrentGenerations(secondKey, createResponses(6));
+
+        assertThat(mCache.get(firstKey)).isNull();
+        assertThat(mCache.get(secondKey)).isNotNull();
+    }
+
+    private void putWithCurrentGenerations(
+            AggregationResultCache.Key key, List<AggregateRecordsResponse<?>> responses) {
+        mCache.put(
+                key,
+                SOURCE_TABLES,
+                TableWriteGenerations.getInstance().getGenerations(SOURCE_TABLES),
+                responses);
+    }
+
+    private static AggregationResultCache.Key createKey(long priorityVersion) {
+        AggregateRecordsRequest<Long> request =
+                new AggregateRecordsRequest.Builder<Long>(
+                                new TimeInstantRangeFilter.Builder()
+                                        .setStartTime(Instant.ofEpochMilli(0))
+                                        .setEndTime(Instant.ofEpochMilli(1000))
+                                        .build())
+                        .addAggregationType(StepsRecord.STEPS_COUNT_TOTAL)
+                        .build();
+        return new AggregationResultCache.Key(
+                new AggregateDataRequestParcel(request), priorityVersion);
+    }
+
+    private static List<AggregateRecordsResponse<?>> createResponses(int numberOfGroups) {
+        return Collections.nCopies(
+                numberOfGroups, new AggregateRecordsResponse<>(Collections.emptyMap()));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+public class DeleteTableRequestTest {
+    private static final String DATABASE_NAME = "delete_table_request_test";
+    private static final String UUID_COLUMN_NAME = "uuid";
+    private static final String APP_INFO_ID_COLUMN_NAME = "app_info_id";
+    private static final String START_TIME_COLUMN_NAME = "start_time";
+    private static final long OWNER_APP_ID = 1;
+    private static final long OTHER_APP_ID = 2;
+
+    @Mock Context mContext;
+    private File mDatabaseFile;
+    private SQLiteDatabase mSQLiteDatabase;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mDatabaseFile =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getDatabasePath(DATABASE_NAME);
+        when(mContext.getDatabasePath(anyString())).thenReturn(mDatabaseFile);
+        mSQLiteDatabase = new HealthConnectDatabase(mContext).getWritableDatabase();
+        mSQLiteDatabase.setForeignKeyConstraintsEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        mSQLiteDatabase.close();
+        SQLiteDatabase.deleteDatabase(mDatabaseFile);
+    }
+
+    @Test
+    public void testDeleteChunkCommand_deletesOnlyMatchingRowsInChunks() {
+        for (int i = 0; i < 10; i++) {
+            insertStepsRecord(OWNER_APP_ID, /* startTime= */ i * 1000L);
+        }
+        DeleteTableRequest request =
+                new DeleteTableRequest(StepsRecordHelper.STEPS_TABLE_NAME, RECORD_TYPE_STEPS)
+                        .setTimeFilter(START_TIME_COLUMN_NAME, 0, 6500)
+                        .setRequiresUuId(UUID_COLUMN_NAME);
+
+        SQLiteStatement statement =
+                mSQLiteDatabase.compileStatement(
+                        request.getDeleteChunkCommand(/* chunkSize= */ 3));
+        assertThat(statement.executeUpdateDelete()).isEqualTo(3);
+        assertThat(statement.executeUpdateDelete()).isEqualTo(3);
+        assertThat(statement.executeUpdateDelete()).isEqualTo(1);
+        assertThat(statement.executeUpdateDelete()).isEqualTo(0);
+        statement.close();
+
+        assertThat(
+                        DatabaseUtils.queryNumEntries(
+                                mSQLiteDatabase, StepsRecordHelper.STEPS_TABLE_NAME))
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void testReadCommandForRowNotOwnedBy_allRowsOwned_returnsNoRow() {
+        UUID first = insertStepsRecord(OWNER_APP_ID, /* startTime= */ 0);
+        UUID second = insertStepsRecord(OWNER_APP_ID, /* startTime= */ 1000);
+        insertStepsRecord(OTHER_APP_ID, /* startTime= */ 2000);
+
+        DeleteTableRequest request = createDeleteByIdsRequest(List.of(first, second));
+
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        request.getReadCommandForRowNotOwnedBy(OWNER_APP_ID), null)) {
+            assertThat(cursor.getCount()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testReadCommandForRowNotOwnedBy_rowOfOtherApp_returnsIt() {
+        UUID owned = insertStepsRecord(OWNER_APP_ID, /* startTime= */ 0);
+        UUID notOwned = insertStepsRecord(OTHER_APP_ID, /* startTime= */ 1000);
+
+        DeleteTableRequest request = createDeleteByIdsRequest(List.of(owned, notOwned));
+
+        try (Cursor cursor =
+                mSQLiteDatabase.rawQuery(
+                        request.getReadCommandForRowNotOwnedBy(OWNER_APP_ID), null)) {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(StorageUtils.getCursorUUID(cursor, UUID_COLUMN_NAME)).isEqualTo(notOwned);
+            assertThat(StorageUtils.getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME))
+                    .isEqualTo(OTHER_APP_ID);
+        }
+    }
+
+    private static DeleteTableRequest createDeleteByIdsRequest(List<UUID> uuids) {
+        return new DeleteTableRequest(StepsRecordHelper.STEPS_TABLE_NAME, RECORD_TYPE_STEPS)
+                .setIds(UUID_COLUMN_NAME, StorageUtils.getListOfHexString(uuids))
+                .setRequiresUuId(UUID_COLUMN_NAME)
+                .setEnforcePackageCheck(APP_INFO_ID_COLUMN_NAME, UUID_COLUMN_NAME);
+    }
+
+    private UUID insertStepsRecord(long appInfoId, long startTime) {
+        UUID uuid = UUID.randomUUID();
+        ContentValues record = new ContentValues();
+        record.put(UUID_COLUMN_NAME, StorageUtils.convertUUIDToBytes(uuid));
+        record.put(APP_INFO_ID_COLUMN_NAME, appInfoId);
+        record.put(START_TIME_COLUMN_NAME, startTime);
+        record.put("start_zone_offset", 0);
+        record.put("end_time", startTime + 500);
+        record.put("end_zone_offset", 0);
+        record.put("count", 100);
+        mSQLiteDatabase.insertOrThrow(StepsRecordHelper.STEPS_TABLE_NAME, null, record);
+        return uuid;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class EpochDayBitmapTest {
+
+    @Test
+    public void testAdd_daysInAnyOrder_returnsThemSorted() {
+        EpochDayBitmap bitmap = new EpochDayBitmap();
+
+        assertThat(bitmap.add(19_500)).isTrue();
+        assertThat(bitmap.add(18_000)).isTrue();
+        assertThat(bitmap.add(19_501)).isTrue();
+        assertThat(bitmap.add(-3)).isTrue();
+        assertThat(bitmap.add(18_000)).isFalse();
+
+        assertThat(bitmap.toArray()).asList().containsExactly(-3L, 18_000L, 19_500L, 19_501L);
+        assertThat(bitmap.contains(18_000)).isTrue();
+        assertThat(bitmap.contains(18_001)).isFalse();
+        assertThat(bitmap.contains(-100)).isFalse();
+        assertThat(bitmap.contains(100_000)).isFalse();
+    }
+
+    @Test
+    public void testRemove_lastDay_isEmpty() {
+        EpochDayBitmap bitmap = new EpochDayBitmap();
+        bitmap.add(19_500);
+
+        assertThat(bitmap.remove(19_499)).isFalse();
+        assertThat(bitmap.remove(19_500)).isTrue();
+
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThat(bitmap.toArray()).isEmpty();
+        assertThat(bitmap.add(10)).isTrue();
+        assertThat(bitmap.toArray()).asList().containsExactly(10L);
+    }
+
+    @Test
+    public void testOr_bitmapsWithDifferentFirstDays_containsAllDays() {
+        EpochDayBitmap first = new EpochDayBitmap();
+        first.add(19_000);
+        first.add(19_200);
+        EpochDayBitmap second = new EpochDayBitmap();
+        second.add(18_000);
+        second.add(19_200);
+        second.add(19_300);
+
+        EpochDayBitmap union = new EpochDayBitmap();
+        union.or(first);
+        union.or(second);
+        union.or(new EpochDayBitmap());
+
+        assertThat(union.toArray())
+                .asList()
+                .containsExactly(18_000L, 19_000L, 19_200L, 19_300L)
+                .inOrder();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class PageTokenUtilsTest {
+
+    @Test
+    public void testEncode_ascendingAndDescending_decodesPosition() {
+        long position = PageTokenUtils.getPosition(1_700_000_000_000L, 42);
+
+        long ascendingToken = PageTokenUtils.encode(position, /* isAscending= */ true);
+        long descendingToken = PageTokenUtils.encode(position, /* isAscending= */ false);
+
+        assertThat(ascendingToken % 2).isEqualTo(0);
+        assertThat(descendingToken % 2).isEqualTo(1);
+        for (long pageToken : new long[] {ascendingToken, descendingToken}) {
+            assertThat(PageTokenUtils.decodeStartTime(pageToken)).isEqualTo(1_700_000_000_000L);
+            assertThat(PageTokenUtils.decodeOffset(pageToken)).isEqualTo(42);
+        }
+    }
+
+    @Test
+    public void testEncode_negativeStartTime_decodesPosition() {
+        long pageToken =
+                PageTokenUtils.encode(
+                        PageTokenUtils.getPosition(-5_000L, 0), /* isAscending= */ false);
+
+        assertThat(PageTokenUtils.decodeStartTime(pageToken)).isEqualTo(-5_000L);
+        assertThat(PageTokenUtils.decodeOffset(pageToken)).isEqualTo(0);
+    }
+
+    @Test
+    public void testEncode_noNextPage_returnsDefault() {
+        assertThat(PageTokenUtils.encode(DEFAULT_LONG, /* isAscending= */ true))
+                .isEqualTo(DEFAULT_LONG);
+    }
+
+    @Test
+    public void testGetPosition_startTimeOutOfRange_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> PageTokenUtils.getPosition(Long.MAX_VALUE / 2, 0));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+public class StorageUtilsTest {
+    private static final String PACKAGE_NAME = "android.healthconnect.test";
+
+    @Test
+    public void testAddNameBasedUUIDTo_asciiClientRecordId_sameAsNameUUIDFromBytes() {
+        assertNameBasedUuid("client-record-id-1");
+    }
+
+    @Test
+    public void testAddNameBasedUUIDTo_nonAsciiClientRecordId_sameAsNameUUIDFromBytes() {
+        assertNameBasedUuid("relevé-de-pas-🏃");
+    }
+
+    @Test
+    public void testAddNameBasedUUIDTo_longClientRecordId_sameAsNameUUIDFromBytes() {
+        assertNameBasedUuid("a".repeat(10_000));
+        assertNameBasedUuid("b");
+    }
+
+    @Test
+    public void testConvertUUIDToBytes_sameAsByteBuffer() {
+        UUID uuid = UUID.randomUUID();
+
+        byte[] bytes = StorageUtils.convertUUIDToBytes(uuid);
+
+        assertThat(bytes)
+                .isEqualTo(
+                        ByteBuffer.allocate(StorageUtils.UUID_BYTE_SIZE)
+                                .putLong(uuid.getMostSignificantBits())
+                                .putLong(uuid.getLeastSignificantBits())
+                                .array());
+        assertThat(StorageUtils.convertBytesToUUID(bytes)).isEqualTo(uuid);
+    }
+
+    @Test
+    public void testGetSingleByteArray_concatenatesUUIDs() {
+        List<UUID> uuids = List.of(UUID.randomUUID(), new UUID(-1, Long.MIN_VALUE));
+
+        byte[] bytes = StorageUtils.getSingleByteArray(uuids);
+
+        assertThat(bytes)
+                .isEqualTo(
+                        ByteBuffer.allocate(StorageUtils.UUID_BYTE_SIZE * 2)
+                                .put(StorageUtils.convertUUIDToBytes(uuids.get(0)))
+                                .put(StorageUtils.convertUUIDToBytes(uuids.get(1)))
+                                .array());
+    }
+
+    @Test
+    public void testGetDedupeByteBuffer_sameAsByteBuffer() {
+        StepsRecordInternal record = new StepsRecordInternal();
+        record.setStartTime(-1000).setEndTime(Long.MAX_VALUE);
+        record.setAppInfoId(3).setDeviceInfoId(Long.MIN_VALUE);
+
+        assertThat(StorageUtils.getDedupeByteBuffer(record))
+                .isEqualTo(
+                        ByteBuffer.allocate(Long.BYTES * 4)
+                                .putLong(3)
+                                .putLong(Long.MIN_VALUE)
+                                .putLong(-1000)
+                                .putLong(Long.MAX_VALUE)
+                                .array());
+    }
+
+    private static void assertNameBasedUuid(String clientRecordId) {
+        StepsRecordInternal record = new StepsRecordInternal();
+        record.setPackageName(PACKAGE_NAME).setClientRecordId(clientRecordId);
+
+        StorageUtils.addNameBasedUUIDTo(record);
+
+        byte[] packageNameBytes = PACKAGE_NAME.getBytes();
+        byte[] clientRecordIdBytes = clientRecordId.getBytes();
+        byte[] name =
+                ByteBuffer.allocate(
+                                packageNameBytes.length
+                                        + Integer.BYTES
+                                        + clientRecordIdBytes.length)
+                        .put(packageNameBytes)
+                        .putInt(RecordTypeForUuidMappings.getRecordTypeIdForUuid(RECORD_TYPE_STEPS))
+                        .put(clientRecordIdBytes)
+                        .array();
+        assertThat(record.getUuid()).isEqualTo(UUID.nameUUIDFromBytes(name));
+    }
+}